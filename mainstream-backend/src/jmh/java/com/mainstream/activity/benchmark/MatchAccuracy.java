@@ -0,0 +1,92 @@
+package com.mainstream.activity.benchmark;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.service.RouteMatchingService;
+
+/**
+ * Scores route match results against the ground truth of the synthetic tracks they were
+ * computed for, so a faster matcher cannot silently match worse.
+ *
+ * A track scores a hit when its own route is the best match. The completion error is the
+ * absolute difference to the share of the route the track actually covers (100 points
+ * for a miss), and the direction is only scored where the scenario defines one.
+ */
+final class MatchAccuracy {
+
+    static final double MIN_HIT_RATE = 0.95;
+    static final double MAX_MEAN_COMPLETION_ERROR = 5.0;
+    static final double MIN_DIRECTION_RATE = 0.9;
+
+    private int tracks;
+    private int hits;
+    private double completionErrorSum;
+    private double maxCompletionError;
+    private int directionTracks;
+    private int directionHits;
+
+    /**
+     * Add the result computed for a track.
+     *
+     * @return true if the track was matched to its own route
+     */
+    boolean add(SyntheticTracks.Track track, RouteMatchingService.RouteMatchResult result) {
+        SyntheticTracks.Scenario scenario = track.getScenario();
+        boolean hit = result != null && result.getMatchedRouteId() != null
+                && result.getMatchedRouteId() == track.getRouteId();
+
+        double completionError = hit
+                ? Math.abs(result.getRouteCompletionPercentage() - scenario.getExpectedCompletionPercentage())
+                : 100.0;
+        tracks++;
+        if (hit) {
+            hits++;
+        }
+        completionErrorSum += completionError;
+        maxCompletionError = Math.max(maxCompletionError, completionError);
+
+        UserActivity.RunDirection expectedDirection = scenario.getExpectedDirection();
+        if (expectedDirection != null) {
+            directionTracks++;
+            if (hit && result.getDirection() == expectedDirection) {
+                directionHits++;
+            }
+        }
+        return hit;
+    }
+
+    int getTracks() {
+        return tracks;
+    }
+
+    double getHitRate() {
+        return tracks > 0 ? (double) hits / tracks : 0.0;
+    }
+
+    double getMeanCompletionError() {
+        return tracks > 0 ? completionErrorSum / tracks : 0.0;
+    }
+
+    double getMaxCompletionError() {
+        return maxCompletionError;
+    }
+
+    /**
+     * @return share of the tracks with a defined direction whose direction was right; 1 if
+     * none had one
+     */
+    double getDirectionRate() {
+        return directionTracks > 0 ? (double) directionHits / directionTracks : 1.0;
+    }
+
+    boolean isAcceptable() {
+        return getHitRate() >= MIN_HIT_RATE
+                && getMeanCompletionError() <= MAX_MEAN_COMPLETION_ERROR
+                && getDirectionRate() >= MIN_DIRECTION_RATE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tracks: hit rate %.3f, completion error mean %.2f / max %.2f, direction rate %.3f",
+                tracks, getHitRate(), getMeanCompletionError(), maxCompletionError, getDirectionRate());
+    }
+}
@@ -0,0 +1,65 @@
+package com.mainstream.activity.benchmark;
+
+import com.mainstream.activity.service.RouteMatchingService;
+
+/**
+ * Scores route matching against ground truth over every catalogue size, scenario and
+ * sampling interval of {@link RouteMatchingBenchmark}, with several tracks each, and
+ * exits with status 1 if any combination falls below the {@link MatchAccuracy} limits.
+ * Meant to be run next to the benchmark whenever the matcher is optimized.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ *     -Dbenchmark.main=com.mainstream.activity.benchmark.RouteMatchingAccuracy -Dbenchmark.args=
+ */
+public final class RouteMatchingAccuracy {
+
+    private static final int[] ROUTE_COUNTS = {10, 100, 1000};
+    private static final int[] SAMPLING_SECONDS = {1, 5};
+    private static final int TRACKS_PER_COMBINATION = 10;
+    private static final long CATALOGUE_SEED = 42;
+
+    private RouteMatchingAccuracy() {
+    }
+
+    public static void main(String[] args) {
+        boolean acceptable = true;
+        MatchAccuracy overall = new MatchAccuracy();
+
+        for (int routeCount : ROUTE_COUNTS) {
+            SyntheticTracks.Catalogue catalogue = SyntheticTracks.catalogue(routeCount, CATALOGUE_SEED);
+            RouteMatchingService routeMatchingService = catalogue.newRouteMatchingService(0);
+
+            for (SyntheticTracks.Scenario scenario : SyntheticTracks.Scenario.values()) {
+                for (int samplingSeconds : SAMPLING_SECONDS) {
+                    MatchAccuracy accuracy = new MatchAccuracy();
+                    for (int t = 0; t < TRACKS_PER_COMBINATION; t++) {
+                        // Different routes (where the catalogue has them) and different noise
+                        int route = catalogue.pickRoute(scenario.getShape(), 2 * t);
+                        SyntheticTracks.Track track = SyntheticTracks.track(catalogue, route, scenario,
+                                samplingSeconds, t);
+                        RouteMatchingService.RouteMatchResult fitResult =
+                                routeMatchingService.matchRoute(track.toFitTrackPoints());
+                        RouteMatchingService.RouteMatchResult gpsResult =
+                                routeMatchingService.matchRouteFromGpsPoints(track.toGpsPoints());
+                        accuracy.add(track, fitResult);
+                        accuracy.add(track, gpsResult);
+                        overall.add(track, fitResult);
+                        overall.add(track, gpsResult);
+                    }
+
+                    boolean passed = accuracy.isAcceptable();
+                    acceptable &= passed;
+                    System.out.printf("%5d routes  %-12s %d s  %s  %s%n", routeCount, scenario, samplingSeconds,
+                            passed ? "OK  " : "FAIL", accuracy);
+                }
+            }
+        }
+
+        System.out.printf("Overall: %s%n", overall);
+        System.out.printf("Limits: hit rate >= %.2f, mean completion error <= %.1f, direction rate >= %.2f%n",
+                MatchAccuracy.MIN_HIT_RATE, MatchAccuracy.MAX_MEAN_COMPLETION_ERROR, MatchAccuracy.MIN_DIRECTION_RATE);
+        if (!acceptable) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mainstream.activity.benchmark;
+
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.run.entity.GpsPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link RouteMatchingService#matchRoute} and
+ * {@link RouteMatchingService#matchRouteFromGpsPoints} against a growing catalogue of
+ * synthetic active routes ({@link SyntheticTracks}).
+ *
+ * Latency is reported as a sample-time distribution (p50/p90/p99). Before measuring, the
+ * track is matched once and checked against its ground truth, so a configuration that
+ * matches the wrong route fails instead of reporting a misleading speed; run
+ * {@link RouteMatchingAccuracy} for the full accuracy scores.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ * (JMH options through -Dbenchmark.args, e.g. "RouteMatchingBenchmark -p routeCount=1000").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class RouteMatchingBenchmark {
+
+    private static final long CATALOGUE_SEED = 42;
+    private static final long TRACK_SEED = 7;
+
+    @Param({"10", "100", "1000"})
+    public int routeCount;
+
+    @Param({"LOOP", "LOOP_REVERSE", "OUT_AND_BACK", "PARTIAL"})
+    public String scenario;
+
+    @Param({"1", "5"})
+    public int samplingSeconds;
+
+    // 0 = number of CPU cores, like mainstream.route-matching.parallelism
+    @Param({"0"})
+    public int parallelism;
+
+    private RouteMatchingService routeMatchingService;
+    private List<FitTrackPoint> fitTrackPoints;
+    private List<GpsPoint> gpsPoints;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticTracks.Scenario trackScenario = SyntheticTracks.Scenario.valueOf(scenario);
+        SyntheticTracks.Catalogue catalogue = SyntheticTracks.catalogue(routeCount, CATALOGUE_SEED);
+        SyntheticTracks.Track track = SyntheticTracks.track(catalogue,
+                catalogue.pickRoute(trackScenario.getShape(), 0), trackScenario, samplingSeconds, TRACK_SEED);
+
+        routeMatchingService = catalogue.newRouteMatchingService(parallelism);
+        fitTrackPoints = track.toFitTrackPoints();
+        gpsPoints = track.toGpsPoints();
+
+        // Also builds the geometry cache and spatial index outside the measurement
+        MatchAccuracy accuracy = new MatchAccuracy();
+        accuracy.add(track, routeMatchingService.matchRoute(fitTrackPoints));
+        accuracy.add(track, routeMatchingService.matchRouteFromGpsPoints(gpsPoints));
+        if (!accuracy.isAcceptable()) {
+            throw new IllegalStateException("Benchmark track is not matched to its route (" + scenario + ", "
+                    + routeCount + " routes, " + samplingSeconds + " s sampling): " + accuracy);
+        }
+    }
+
+    @Benchmark
+    public RouteMatchingService.RouteMatchResult matchRoute() {
+        return routeMatchingService.matchRoute(fitTrackPoints);
+    }
+
+    @Benchmark
+    public RouteMatchingService.RouteMatchResult matchRouteFromGpsPoints() {
+        return routeMatchingService.matchRouteFromGpsPoints(gpsPoints);
+    }
+}
@@ -0,0 +1,412 @@
+package com.mainstream.activity.benchmark;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
+import com.mainstream.activity.service.RouteGeometryCache;
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.activity.service.RouteSpatialIndex;
+import com.mainstream.activity.service.TrackPreprocessingService;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.run.entity.GpsPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic predefined routes and of noisy user tracks along
+ * them, together with the ground truth a track should be matched to.
+ *
+ * Routes are laid out on a jittered grid around Berlin, about 1.2 km apart, so that
+ * neighbouring routes overlap like real ones do: half are loops, half out-and-back
+ * courses, with a point every 5 m like imported GPX files. A user track follows one
+ * route at running pace, sampled every 1 or 5 seconds, with Gaussian GPS noise.
+ */
+final class SyntheticTracks {
+
+    private static final double METERS_PER_DEGREE = GeoDistance.METERS_PER_DEGREE;
+    private static final double ORIGIN_LATITUDE = 52.52;
+    private static final double ORIGIN_LONGITUDE = 13.405;
+
+    static final double ROUTE_POINT_SPACING_METERS = 5.0;
+    private static final double ROUTE_SPACING_METERS = 1200.0;
+    static final double RUNNING_SPEED_METERS_PER_SECOND = 3.0;
+    // Per axis; well inside the 10 m matching tolerance most of the time
+    static final double GPS_NOISE_METERS = 3.0;
+    // Like mainstream.route-matching.additional-match-min-completion
+    private static final double ADDITIONAL_MATCH_MIN_COMPLETION = 80.0;
+
+    enum Shape {
+        LOOP,
+        OUT_AND_BACK
+    }
+
+    /**
+     * What the user does on the route, and what the matcher should report for it.
+     */
+    enum Scenario {
+        LOOP(Shape.LOOP, 0.0, 1.0, false, UserActivity.RunDirection.CLOCKWISE),
+        LOOP_REVERSE(Shape.LOOP, 0.0, 1.0, true, UserActivity.RunDirection.COUNTER_CLOCKWISE),
+        OUT_AND_BACK(Shape.OUT_AND_BACK, 0.0, 1.0, false, null),
+        PARTIAL(Shape.LOOP, 0.2, 0.8, false, UserActivity.RunDirection.CLOCKWISE);
+
+        private final Shape shape;
+        private final double from;
+        private final double to;
+        private final boolean reversed;
+        // Null where the direction is not meaningful (an out-and-back runs both ways)
+        private final UserActivity.RunDirection expectedDirection;
+
+        Scenario(Shape shape, double from, double to, boolean reversed,
+                 UserActivity.RunDirection expectedDirection) {
+            this.shape = shape;
+            this.from = from;
+            this.to = to;
+            this.reversed = reversed;
+            this.expectedDirection = expectedDirection;
+        }
+
+        Shape getShape() {
+            return shape;
+        }
+
+        double getExpectedCompletionPercentage() {
+            return (to - from) * 100.0;
+        }
+
+        UserActivity.RunDirection getExpectedDirection() {
+            return expectedDirection;
+        }
+    }
+
+    /**
+     * Positions of a route or track, with the cumulative distance along it.
+     */
+    static final class Polyline {
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[] distances;
+
+        Polyline(double[] latitudes, double[] longitudes) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.distances = new double[latitudes.length];
+            for (int i = 1; i < latitudes.length; i++) {
+                distances[i] = distances[i - 1]
+                        + GeoDistance.haversine(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            }
+        }
+
+        int size() {
+            return latitudes.length;
+        }
+
+        double getLatitude(int i) {
+            return latitudes[i];
+        }
+
+        double getLongitude(int i) {
+            return longitudes[i];
+        }
+
+        double getLength() {
+            return distances[distances.length - 1];
+        }
+
+        /**
+         * @return latitude and longitude at the given distance along the line
+         */
+        double[] at(double distance) {
+            int hi = 1;
+            while (hi < distances.length - 1 && distances[hi] < distance) {
+                hi++;
+            }
+            int lo = hi - 1;
+            double span = distances[hi] - distances[lo];
+            double t = span > 0 ? Math.max(0.0, Math.min(1.0, (distance - distances[lo]) / span)) : 0.0;
+            return new double[] {
+                    latitudes[lo] + t * (latitudes[hi] - latitudes[lo]),
+                    longitudes[lo] + t * (longitudes[hi] - longitudes[lo])
+            };
+        }
+
+        /**
+         * @return this line resampled with a point every spacing meters
+         */
+        Polyline resampled(double spacing) {
+            int n = (int) Math.floor(getLength() / spacing) + 1;
+            double[] lat = new double[n + 1];
+            double[] lon = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                double[] position = at(i * spacing);
+                lat[i] = position[0];
+                lon[i] = position[1];
+            }
+            lat[n] = latitudes[latitudes.length - 1];
+            lon[n] = longitudes[longitudes.length - 1];
+            return new Polyline(lat, lon);
+        }
+    }
+
+    /**
+     * A set of active routes; route k has id k + 1.
+     */
+    static final class Catalogue {
+        private final List<PredefinedRoute> routes;
+        private final List<Polyline> geometries;
+        private final List<Shape> shapes;
+
+        private Catalogue(List<PredefinedRoute> routes, List<Polyline> geometries, List<Shape> shapes) {
+            this.routes = routes;
+            this.geometries = geometries;
+            this.shapes = shapes;
+        }
+
+        List<PredefinedRoute> getRoutes() {
+            return routes;
+        }
+
+        int size() {
+            return routes.size();
+        }
+
+        long getRouteId(int route) {
+            return routes.get(route).getId();
+        }
+
+        Polyline getGeometry(int route) {
+            return geometries.get(route);
+        }
+
+        /**
+         * @return a matching service over exactly these routes, as if they were the active
+         * routes in the database
+         */
+        RouteMatchingService newRouteMatchingService(int parallelism) {
+            PredefinedRouteRepository repository = Mockito.mock(PredefinedRouteRepository.class);
+            Mockito.when(repository.findByIsActiveTrueWithTrackPoints()).thenReturn(routes);
+            RouteSpatialIndex index = new RouteSpatialIndex(new RouteGeometryCache(repository));
+            // Default preprocessing settings, as in production
+            TrackPreprocessingService preprocessing = new TrackPreprocessingService(true, 15, 5, 10);
+            return new RouteMatchingService(index, preprocessing, new SimpleMeterRegistry(), parallelism,
+                    ADDITIONAL_MATCH_MIN_COMPLETION);
+        }
+
+        /**
+         * @return index of a route of the given shape near the middle of the catalogue (and
+         * so surrounded by neighbours on every side)
+         */
+        int pickRoute(Shape shape, int offset) {
+            int start = (size() / 2 + offset) % size();
+            for (int k = 0; k < size(); k++) {
+                int route = (start + k) % size();
+                if (shapes.get(route) == shape) {
+                    return route;
+                }
+            }
+            throw new IllegalArgumentException("No " + shape + " route in a catalogue of " + size());
+        }
+    }
+
+    /**
+     * A user track and the route it was generated from.
+     */
+    static final class Track {
+        private final Scenario scenario;
+        private final long routeId;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final int samplingSeconds;
+
+        private Track(Scenario scenario, long routeId, double[] latitudes, double[] longitudes, int samplingSeconds) {
+            this.scenario = scenario;
+            this.routeId = routeId;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.samplingSeconds = samplingSeconds;
+        }
+
+        Scenario getScenario() {
+            return scenario;
+        }
+
+        long getRouteId() {
+            return routeId;
+        }
+
+        int size() {
+            return latitudes.length;
+        }
+
+        List<FitTrackPoint> toFitTrackPoints() {
+            LocalDateTime start = LocalDateTime.of(2024, 6, 1, 7, 0);
+            List<FitTrackPoint> points = new ArrayList<>(latitudes.length);
+            for (int i = 0; i < latitudes.length; i++) {
+                points.add(FitTrackPoint.builder()
+                        .sequenceNumber(i)
+                        .timestamp(start.plusSeconds((long) i * samplingSeconds))
+                        .positionLat(degrees(latitudes[i]))
+                        .positionLong(degrees(longitudes[i]))
+                        .build());
+            }
+            return points;
+        }
+
+        List<GpsPoint> toGpsPoints() {
+            LocalDateTime start = LocalDateTime.of(2024, 6, 1, 7, 0);
+            List<GpsPoint> points = new ArrayList<>(latitudes.length);
+            for (int i = 0; i < latitudes.length; i++) {
+                points.add(GpsPoint.builder()
+                        .sequenceNumber(i)
+                        .timestamp(start.plusSeconds((long) i * samplingSeconds))
+                        .latitude(degrees(latitudes[i]))
+                        .longitude(degrees(longitudes[i]))
+                        .build());
+            }
+            return points;
+        }
+    }
+
+    private SyntheticTracks() {
+    }
+
+    /**
+     * Generate routeCount active routes, alternating loops and out-and-backs.
+     */
+    static Catalogue catalogue(int routeCount, long seed) {
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(routeCount));
+        List<PredefinedRoute> routes = new ArrayList<>(routeCount);
+        List<Polyline> geometries = new ArrayList<>(routeCount);
+        List<Shape> shapes = new ArrayList<>(routeCount);
+
+        for (int k = 0; k < routeCount; k++) {
+            double north = (k / side) * ROUTE_SPACING_METERS + (random.nextDouble() - 0.5) * 0.5 * ROUTE_SPACING_METERS;
+            double east = (k % side) * ROUTE_SPACING_METERS + (random.nextDouble() - 0.5) * 0.5 * ROUTE_SPACING_METERS;
+            Shape shape = k % 2 == 0 ? Shape.LOOP : Shape.OUT_AND_BACK;
+            Polyline geometry = (shape == Shape.LOOP ? loop(north, east, random) : outAndBack(north, east, random))
+                    .resampled(ROUTE_POINT_SPACING_METERS);
+
+            routes.add(toRoute(k + 1L, shape, geometry));
+            geometries.add(geometry);
+            shapes.add(shape);
+        }
+        return new Catalogue(List.copyOf(routes), List.copyOf(geometries), List.copyOf(shapes));
+    }
+
+    /**
+     * Generate the track of a user running the scenario on the given route.
+     */
+    static Track track(Catalogue catalogue, int route, Scenario scenario, int samplingSeconds, long seed) {
+        Random random = new Random(seed);
+        Polyline geometry = catalogue.getGeometry(route);
+        double start = scenario.from * geometry.getLength();
+        double end = scenario.to * geometry.getLength();
+        double step = RUNNING_SPEED_METERS_PER_SECOND * samplingSeconds;
+        int n = (int) Math.floor((end - start) / step) + 1;
+
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            double along = scenario.reversed ? end - i * step : start + i * step;
+            double[] position = geometry.at(along);
+            double noiseNorth = random.nextGaussian() * GPS_NOISE_METERS;
+            double noiseEast = random.nextGaussian() * GPS_NOISE_METERS;
+            latitudes[i] = position[0] + noiseNorth / METERS_PER_DEGREE;
+            longitudes[i] = position[1] + noiseEast / (METERS_PER_DEGREE * Math.cos(Math.toRadians(position[0])));
+        }
+        return new Track(scenario, catalogue.getRouteId(route), latitudes, longitudes, samplingSeconds);
+    }
+
+    /**
+     * Wobbly loop of 400-800 m radius around the given offset; points run clockwise, so
+     * walking the route forward is the clockwise direction.
+     */
+    private static Polyline loop(double north, double east, Random random) {
+        double radius = 400 + random.nextDouble() * 400;
+        double phase = random.nextDouble() * 2 * Math.PI;
+        int n = 720;
+        double[] northOffsets = new double[n + 1];
+        double[] eastOffsets = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            double angle = -2 * Math.PI * i / n;
+            double r = radius * (1 + 0.15 * Math.sin(3 * angle + phase));
+            northOffsets[i] = north + r * Math.sin(angle);
+            eastOffsets[i] = east + r * Math.cos(angle);
+        }
+        return toPolyline(northOffsets, eastOffsets);
+    }
+
+    /**
+     * Gently curving 0.75-1.5 km line from the given offset, run out and back on the same
+     * path.
+     */
+    private static Polyline outAndBack(double north, double east, Random random) {
+        double length = 750 + random.nextDouble() * 750;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        double curvature = (random.nextDouble() - 0.5) * 2 / length;
+        int n = 300;
+        double[] northOffsets = new double[2 * n + 1];
+        double[] eastOffsets = new double[2 * n + 1];
+        double segment = length / n;
+        northOffsets[0] = north;
+        eastOffsets[0] = east;
+        for (int i = 1; i <= n; i++) {
+            heading += curvature * segment;
+            northOffsets[i] = northOffsets[i - 1] + segment * Math.cos(heading);
+            eastOffsets[i] = eastOffsets[i - 1] + segment * Math.sin(heading);
+        }
+        for (int i = 1; i <= n; i++) {
+            northOffsets[n + i] = northOffsets[n - i];
+            eastOffsets[n + i] = eastOffsets[n - i];
+        }
+        return toPolyline(northOffsets, eastOffsets);
+    }
+
+    private static Polyline toPolyline(double[] northOffsets, double[] eastOffsets) {
+        double[] latitudes = new double[northOffsets.length];
+        double[] longitudes = new double[northOffsets.length];
+        for (int i = 0; i < northOffsets.length; i++) {
+            latitudes[i] = ORIGIN_LATITUDE + northOffsets[i] / METERS_PER_DEGREE;
+            longitudes[i] = ORIGIN_LONGITUDE
+                    + eastOffsets[i] / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitudes[i])));
+        }
+        return new Polyline(latitudes, longitudes);
+    }
+
+    private static PredefinedRoute toRoute(long id, Shape shape, Polyline geometry) {
+        PredefinedRoute route = new PredefinedRoute();
+        route.setId(id);
+        route.setName("Synthetic " + shape.name().toLowerCase() + " " + id);
+        route.setIsActive(true);
+        route.setDistanceMeters(BigDecimal.valueOf(geometry.getLength()).setScale(2, RoundingMode.HALF_UP));
+        route.setStartLatitude(degrees(geometry.getLatitude(0)));
+        route.setStartLongitude(degrees(geometry.getLongitude(0)));
+
+        List<RouteTrackPoint> trackPoints = new ArrayList<>(geometry.size());
+        for (int i = 0; i < geometry.size(); i++) {
+            RouteTrackPoint trackPoint = new RouteTrackPoint();
+            trackPoint.setRoute(route);
+            trackPoint.setSequenceNumber(i);
+            trackPoint.setLatitude(BigDecimal.valueOf(geometry.getLatitude(i)).setScale(7, RoundingMode.HALF_UP));
+            trackPoint.setLongitude(BigDecimal.valueOf(geometry.getLongitude(i)).setScale(7, RoundingMode.HALF_UP));
+            trackPoint.setDistanceFromStartMeters(
+                    BigDecimal.valueOf(geometry.distances[i]).setScale(2, RoundingMode.HALF_UP));
+            trackPoints.add(trackPoint);
+        }
+        route.setTrackPoints(trackPoints);
+        return route;
+    }
+
+    private static BigDecimal degrees(double value) {
+        return BigDecimal.valueOf(value).setScale(8, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,106 @@
+package com.mainstream.geo.benchmark;
+
+import com.mainstream.geo.GeoDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of measuring a track with {@link GeoDistance}: the haversine formula every caller
+ * used to copy, the scalar equirectangular fast path with precomputed cos(latitude), and
+ * the batch methods (vectorized when run with the vector profile as well, see below).
+ *
+ * The track is a random walk around Berlin with a sample every ~3 m; the corridor case
+ * measures from one position to a window of route points, like the route matcher does.
+ *
+ * Run with: mvn -Pbenchmark,vector test-compile exec:exec -Dbenchmark.args=GeoDistanceBenchmark
+ * (the fork inherits the incubator module flag from exec; add "-jvmArgsAppend
+ * -Dmainstream.geo.scalar=true" to the args, or leave out the vector profile, for the scalar
+ * batch path).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class GeoDistanceBenchmark {
+
+    private static final long SEED = 42;
+    private static final double STEP_DEGREES = 3.0 / GeoDistance.METERS_PER_DEGREE;
+
+    @Param({"32", "1000", "100000"})
+    public int pointCount;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] cosLatitudes;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        latitudes = new double[pointCount];
+        longitudes = new double[pointCount];
+        double latitude = 52.52;
+        double longitude = 13.405;
+        for (int i = 0; i < pointCount; i++) {
+            latitude += (random.nextDouble() - 0.5) * 2 * STEP_DEGREES;
+            longitude += (random.nextDouble() - 0.5) * 2 * STEP_DEGREES;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+        }
+        cosLatitudes = GeoDistance.cosLatitudes(latitudes);
+        out = new double[pointCount];
+    }
+
+    @Benchmark
+    public double[] stepsHaversine() {
+        for (int i = 1; i < pointCount; i++) {
+            out[i] = GeoDistance.haversine(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] stepsScalar() {
+        for (int i = 1; i < pointCount; i++) {
+            out[i] = GeoDistance.meters(latitudes[i - 1], longitudes[i - 1], cosLatitudes[i - 1],
+                    latitudes[i], longitudes[i], cosLatitudes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] stepsBatch() {
+        GeoDistance.stepMeters(latitudes, longitudes, cosLatitudes, pointCount, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] corridorHaversine() {
+        for (int i = 0; i < pointCount; i++) {
+            out[i] = GeoDistance.haversine(latitudes[0], longitudes[0], latitudes[i], longitudes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] corridorBatch() {
+        GeoDistance.metersTo(latitudes[0], longitudes[0], cosLatitudes[0], latitudes, longitudes, cosLatitudes,
+                0, pointCount, out);
+        return out;
+    }
+}
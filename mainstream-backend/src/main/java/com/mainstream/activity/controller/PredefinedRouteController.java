@@ -6,19 +6,27 @@ import com.mainstream.activity.dto.RouteStatsDto;
 import com.mainstream.activity.dto.RouteTrackPointDto;
 import com.mainstream.activity.entity.PredefinedRoute;
 import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.event.RouteChangedEvent;
 import com.mainstream.activity.repository.PredefinedRouteRepository;
 import com.mainstream.activity.service.GpxParserService;
+import com.mainstream.activity.service.RouteMapService;
 import com.mainstream.activity.service.RouteStatsService;
 import com.mainstream.user.service.FileStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -34,7 +42,9 @@ public class PredefinedRouteController {
     private final GpxParserService gpxParserService;
     private final PredefinedRouteRepository predefinedRouteRepository;
     private final RouteStatsService routeStatsService;
+    private final RouteMapService routeMapService;
     private final FileStorageService fileStorageService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Upload a GPX file to create a predefined route (Admin only).
@@ -81,25 +91,7 @@ public class PredefinedRouteController {
             @RequestParam(value = "activeOnly", defaultValue = "true") boolean activeOnly,
             @RequestParam(value = "city", required = false) String city) {
 
-        List<PredefinedRoute> routes;
-
-        // If city is provided, only return routes from that city
-        if (city != null && !city.isEmpty()) {
-            if (activeOnly) {
-                routes = predefinedRouteRepository.findByIsActiveTrueAndCityWithTrackPoints(city);
-            } else {
-                routes = predefinedRouteRepository.findAllWithTrackPoints().stream()
-                        .filter(route -> city.equals(route.getCity()))
-                        .collect(Collectors.toList());
-            }
-        } else {
-            // No city filter - return all routes (for admin panel)
-            if (activeOnly) {
-                routes = predefinedRouteRepository.findByIsActiveTrueWithTrackPoints();
-            } else {
-                routes = predefinedRouteRepository.findAllWithTrackPoints();
-            }
-        }
+        List<PredefinedRoute> routes = findRoutes(activeOnly, city);
 
         List<PredefinedRouteDto> dtos = routes.stream()
                 .map(this::toDto)
@@ -116,25 +108,7 @@ public class PredefinedRouteController {
             @RequestParam(value = "activeOnly", defaultValue = "true") boolean activeOnly,
             @RequestParam(value = "city", required = false) String city) {
 
-        List<PredefinedRoute> routes;
-
-        // If city is provided, only return routes from that city
-        if (city != null && !city.isEmpty()) {
-            if (activeOnly) {
-                routes = predefinedRouteRepository.findByIsActiveTrueAndCityWithTrackPoints(city);
-            } else {
-                routes = predefinedRouteRepository.findAllWithTrackPoints().stream()
-                        .filter(route -> city.equals(route.getCity()))
-                        .collect(Collectors.toList());
-            }
-        } else {
-            // No city filter - return all routes (for admin panel)
-            if (activeOnly) {
-                routes = predefinedRouteRepository.findByIsActiveTrueWithTrackPoints();
-            } else {
-                routes = predefinedRouteRepository.findAllWithTrackPoints();
-            }
-        }
+        List<PredefinedRoute> routes = findRoutes(activeOnly, city);
 
         List<PredefinedRouteWithStatsDto> dtos = routes.stream()
                 .map(this::toDtoWithStats)
@@ -144,12 +118,72 @@ public class PredefinedRouteController {
     }
 
     /**
-     * Get a specific route by ID.
+     * Get the active routes passing through a map viewport, with geometry simplified to
+     * the zoom level.
+     *
+     * @param bbox viewport as minLon,minLat,maxLon,maxLat
+     */
+    @GetMapping("/within")
+    public ResponseEntity<?> getRoutesWithin(
+            @RequestParam("bbox") String bbox,
+            @RequestParam(value = "zoom", required = false) Integer zoom) {
+        try {
+            String[] parts = bbox.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+            }
+            double[] values = new double[4];
+            for (int i = 0; i < 4; i++) {
+                values[i] = Double.parseDouble(parts[i].trim());
+            }
+            return ResponseEntity.ok(routeMapService.findWithin(values[1], values[0], values[3], values[2], zoom));
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Get the k active routes starting closest to a position, closest first.
+     */
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestRoutes(
+            @RequestParam("lat") double latitude,
+            @RequestParam("lon") double longitude,
+            @RequestParam(value = "k", defaultValue = "5") int k,
+            @RequestParam(value = "zoom", required = false) Integer zoom) {
+        try {
+            return ResponseEntity.ok(routeMapService.findNearest(latitude, longitude, k, zoom));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Get a specific route by ID, with all track points. Answers 304 Not Modified when the
+     * client's ETag or Last-Modified still matches, without loading the track points.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<PredefinedRouteDto> getRouteById(@PathVariable Long id) {
+    public ResponseEntity<PredefinedRouteDto> getRouteById(@PathVariable Long id, WebRequest request) {
+        Optional<PredefinedRoute> summary = predefinedRouteRepository.findById(id);
+        if (summary.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        LocalDateTime modified = summary.get().getUpdatedAt() != null
+                ? summary.get().getUpdatedAt() : summary.get().getCreatedAt();
+        long lastModified = modified != null ? modified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+        String eTag = "\"" + id + "-" + lastModified + "\"";
+        if (request.checkNotModified(eTag, lastModified)) {
+            // Status and validators are already set on the response
+            return null;
+        }
+
         return predefinedRouteRepository.findByIdWithTrackPoints(id)
-                .map(route -> ResponseEntity.ok(toDtoWithTrackPoints(route)))
+                .map(route -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noCache())
+                        .eTag(eTag)
+                        .lastModified(lastModified)
+                        .body(toDtoWithTrackPoints(route)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -159,10 +193,11 @@ public class PredefinedRouteController {
     @PutMapping("/{id}/deactivate")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<PredefinedRouteDto> deactivateRoute(@PathVariable Long id) {
-        return predefinedRouteRepository.findByIdWithTrackPoints(id)
+        return predefinedRouteRepository.findById(id)
                 .map(route -> {
                     route.setIsActive(false);
                     PredefinedRoute updated = predefinedRouteRepository.save(route);
+                    eventPublisher.publishEvent(new RouteChangedEvent(id, RouteChangedEvent.ChangeType.DEACTIVATED));
                     return ResponseEntity.ok(toDto(updated));
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -174,10 +209,11 @@ public class PredefinedRouteController {
     @PutMapping("/{id}/activate")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<PredefinedRouteDto> activateRoute(@PathVariable Long id) {
-        return predefinedRouteRepository.findByIdWithTrackPoints(id)
+        return predefinedRouteRepository.findById(id)
                 .map(route -> {
                     route.setIsActive(true);
                     PredefinedRoute updated = predefinedRouteRepository.save(route);
+                    eventPublisher.publishEvent(new RouteChangedEvent(id, RouteChangedEvent.ChangeType.ACTIVATED));
                     return ResponseEntity.ok(toDto(updated));
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -195,7 +231,7 @@ public class PredefinedRouteController {
             @RequestParam(value = "city", required = false) String city) {
 
         try {
-            return predefinedRouteRepository.findByIdWithTrackPoints(id)
+            return predefinedRouteRepository.findById(id)
                     .map(route -> {
                         // Validate name uniqueness if name is being changed
                         if (name != null && !name.trim().isEmpty() && !name.equals(route.getName())) {
@@ -216,6 +252,7 @@ public class PredefinedRouteController {
                         }
 
                         PredefinedRoute updated = predefinedRouteRepository.save(route);
+                        eventPublisher.publishEvent(new RouteChangedEvent(id, RouteChangedEvent.ChangeType.UPDATED));
                         log.info("Successfully updated route: {}", id);
 
                         return ResponseEntity.ok(toDto(updated));
@@ -243,7 +280,7 @@ public class PredefinedRouteController {
                 return ResponseEntity.badRequest().body("Image file is empty");
             }
 
-            return predefinedRouteRepository.findByIdWithTrackPoints(id)
+            return predefinedRouteRepository.findById(id)
                     .map(route -> {
                         // Delete old image if exists
                         if (route.getImageUrl() != null) {
@@ -277,7 +314,7 @@ public class PredefinedRouteController {
     @DeleteMapping("/{id}/image")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteRouteImage(@PathVariable Long id) {
-        return predefinedRouteRepository.findByIdWithTrackPoints(id)
+        return predefinedRouteRepository.findById(id)
                 .map(route -> {
                     if (route.getImageUrl() == null) {
                         return ResponseEntity.badRequest().body("Route has no image");
@@ -294,6 +331,20 @@ public class PredefinedRouteController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Routes for list views, filtered in the database; track points are not loaded.
+     */
+    private List<PredefinedRoute> findRoutes(boolean activeOnly, String city) {
+        // If city is provided, only return routes from that city
+        if (city != null && !city.isEmpty()) {
+            return activeOnly
+                    ? predefinedRouteRepository.findByIsActiveTrueAndCity(city)
+                    : predefinedRouteRepository.findByCity(city);
+        }
+        // No city filter - return all routes (for admin panel)
+        return activeOnly ? predefinedRouteRepository.findByIsActiveTrue() : predefinedRouteRepository.findAll();
+    }
+
     /**
      * Convert entity to DTO (without trackPoints for list views).
      */
@@ -311,7 +362,12 @@ public class PredefinedRouteController {
                 .startLatitude(route.getStartLatitude())
                 .startLongitude(route.getStartLongitude())
                 .isActive(route.getIsActive())
-                .trackPointCount(route.getTrackPoints() != null ? route.getTrackPoints().size() : 0)
+                .trackPointCount(route.getTrackPointCount() != null ? route.getTrackPointCount() : 0)
+                .minLatitude(route.getMinLatitude())
+                .maxLatitude(route.getMaxLatitude())
+                .minLongitude(route.getMinLongitude())
+                .maxLongitude(route.getMaxLongitude())
+                .encodedPolyline(route.getEncodedPolyline())
                 .createdAt(route.getCreatedAt())
                 .updatedAt(route.getUpdatedAt())
                 .build();
@@ -341,6 +397,11 @@ public class PredefinedRouteController {
                 .startLongitude(route.getStartLongitude())
                 .isActive(route.getIsActive())
                 .trackPointCount(route.getTrackPoints() != null ? route.getTrackPoints().size() : 0)
+                .minLatitude(route.getMinLatitude())
+                .maxLatitude(route.getMaxLatitude())
+                .minLongitude(route.getMinLongitude())
+                .maxLongitude(route.getMaxLongitude())
+                .encodedPolyline(route.getEncodedPolyline())
                 .createdAt(route.getCreatedAt())
                 .updatedAt(route.getUpdatedAt())
                 .trackPoints(trackPointDtos)
@@ -380,7 +441,12 @@ public class PredefinedRouteController {
                 .startLatitude(route.getStartLatitude())
                 .startLongitude(route.getStartLongitude())
                 .isActive(route.getIsActive())
-                .trackPointCount(route.getTrackPoints() != null ? route.getTrackPoints().size() : 0)
+                .trackPointCount(route.getTrackPointCount() != null ? route.getTrackPointCount() : 0)
+                .minLatitude(route.getMinLatitude())
+                .maxLatitude(route.getMaxLatitude())
+                .minLongitude(route.getMinLongitude())
+                .maxLongitude(route.getMaxLongitude())
+                .encodedPolyline(route.getEncodedPolyline())
                 .createdAt(route.getCreatedAt())
                 .updatedAt(route.getUpdatedAt())
                 .stats(stats)
@@ -27,6 +27,12 @@ public class PredefinedRouteDto {
     private BigDecimal startLongitude;
     private Boolean isActive;
     private Integer trackPointCount;
+    // Bounding box and simplified polyline of the track, for list views and map previews
+    private BigDecimal minLatitude;
+    private BigDecimal maxLatitude;
+    private BigDecimal minLongitude;
+    private BigDecimal maxLongitude;
+    private String encodedPolyline;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private List<RouteTrackPointDto> trackPoints;
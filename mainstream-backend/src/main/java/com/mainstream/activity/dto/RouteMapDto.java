@@ -0,0 +1,30 @@
+package com.mainstream.activity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Active route as shown on the map: its geometry simplified to the requested zoom level.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteMapDto {
+    private Long id;
+    private String name;
+    private Double distanceMeters;
+    private Double startLatitude;
+    private Double startLongitude;
+    private Double minLatitude;
+    private Double maxLatitude;
+    private Double minLongitude;
+    private Double maxLongitude;
+    // Encoded polyline (precision 1e5), simplified to the tolerance below
+    private String encodedPolyline;
+    private Double toleranceMeters;
+    // Distance from the query position to the route start (nearest queries only)
+    private Double distanceToStartMeters;
+}
@@ -81,6 +81,33 @@ public class PredefinedRoute {
     @Column(precision = 10, scale = 7)
     private BigDecimal startLongitude;
 
+    /**
+     * Number of stored track points
+     */
+    @Column(name = "track_point_count")
+    private Integer trackPointCount;
+
+    /**
+     * Bounding box of the track points
+     */
+    @Column(name = "min_latitude", precision = 10, scale = 7)
+    private BigDecimal minLatitude;
+
+    @Column(name = "max_latitude", precision = 10, scale = 7)
+    private BigDecimal maxLatitude;
+
+    @Column(name = "min_longitude", precision = 10, scale = 7)
+    private BigDecimal minLongitude;
+
+    @Column(name = "max_longitude", precision = 10, scale = 7)
+    private BigDecimal maxLongitude;
+
+    /**
+     * Encoded polyline (precision 1e5) of the simplified track, for listings and previews
+     */
+    @Column(name = "encoded_polyline", columnDefinition = "TEXT")
+    private String encodedPolyline;
+
     /**
      * Whether this route is active and should be used for matching
      */
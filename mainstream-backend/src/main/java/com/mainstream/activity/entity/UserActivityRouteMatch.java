@@ -0,0 +1,84 @@
+package com.mainstream.activity.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A predefined route covered by a user activity. An activity has one record per route it
+ * matched: the best match (also kept on {@link UserActivity#getMatchedRoute()}) and every
+ * other route it covered well enough, so a long run over several routes counts for each.
+ */
+@Entity
+@Table(name = "user_activity_route_matches",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_activity_route_match", columnNames = {"user_activity_id", "route_id"})
+    },
+    indexes = {
+        @Index(name = "idx_user_activity_route_match_route", columnList = "route_id")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class UserActivityRouteMatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_activity_id", nullable = false)
+    private UserActivity userActivity;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "route_id", nullable = false)
+    private PredefinedRoute route;
+
+    /**
+     * Whether this is the activity's best match
+     */
+    @Column(nullable = false)
+    private Boolean isPrimary = false;
+
+    /**
+     * Running direction on the route
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private UserActivity.RunDirection direction;
+
+    /**
+     * Distance matched to the route in meters
+     */
+    @Column(precision = 10, scale = 2)
+    private BigDecimal matchedDistanceMeters;
+
+    /**
+     * Percentage of the route completed (0-100)
+     */
+    @Column(precision = 5, scale = 2)
+    private BigDecimal routeCompletionPercentage;
+
+    /**
+     * Average matching accuracy in meters
+     */
+    @Column(precision = 10, scale = 2)
+    private BigDecimal averageMatchingAccuracyMeters;
+
+    /**
+     * Whether the route was run completely (vs partial)
+     */
+    @Column(nullable = false)
+    private Boolean isCompleteRoute = false;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,67 @@
+package com.mainstream.activity.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregates of all activities of one user, kept up to date with every activity change
+ * (see UserActivityStatsService) so trophy checkers answer without scanning activities.
+ * The counters are packed as big-endian binary, decoded by UserActivityAggregate.
+ */
+@Entity
+@Table(name = "user_activity_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class UserActivityStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "activity_count", nullable = false)
+    private Integer activityCount;
+
+    @Column(name = "total_distance_meters", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalDistanceMeters;
+
+    @Column(name = "total_duration_seconds", nullable = false)
+    private Long totalDurationSeconds;
+
+    // (epoch day int, activity count int) pairs, by day
+    @Lob
+    @Column(name = "day_counts", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] dayCounts;
+
+    // 7 x 24 activity counts by start weekday (Monday first) and hour, as ints
+    @Lob
+    @Column(name = "weekday_hour_counts", nullable = false, columnDefinition = "BLOB")
+    private byte[] weekdayHourCounts;
+
+    // (route id long, best completion in hundredths of a percent int) pairs, by route id
+    @Lob
+    @Column(name = "route_completions", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] routeCompletions;
+
+    // (1 km cell key long, activity count int) pairs of the FIT tracks, by cell key
+    @Lob
+    @Column(name = "area_cells", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] areaCells;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
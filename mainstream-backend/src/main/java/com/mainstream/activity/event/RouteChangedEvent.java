@@ -0,0 +1,23 @@
+package com.mainstream.activity.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when a predefined route is created or changed, so in-memory route data
+ * (geometry cache, spatial index) can be refreshed. Listeners registered as
+ * transactional event listeners only see it once the change is committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RouteChangedEvent {
+
+    public enum ChangeType {
+        CREATED, UPDATED, ACTIVATED, DEACTIVATED
+    }
+
+    private final Long routeId;
+    private final ChangeType changeType;
+}
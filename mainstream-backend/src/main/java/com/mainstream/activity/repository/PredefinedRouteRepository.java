@@ -14,15 +14,18 @@ public interface PredefinedRouteRepository extends JpaRepository<PredefinedRoute
 
     List<PredefinedRoute> findByIsActiveTrue();
 
-    Optional<PredefinedRoute> findByName(String name);
+    List<PredefinedRoute> findByCity(String city);
 
-    boolean existsByName(String name);
+    List<PredefinedRoute> findByIsActiveTrueAndCity(String city);
 
     /**
-     * Find all routes with trackPoints eagerly loaded to avoid LazyInitializationException.
+     * Routes stored before the route summary existed.
      */
-    @Query("SELECT DISTINCT r FROM PredefinedRoute r LEFT JOIN FETCH r.trackPoints")
-    List<PredefinedRoute> findAllWithTrackPoints();
+    List<PredefinedRoute> findByEncodedPolylineIsNull();
+
+    Optional<PredefinedRoute> findByName(String name);
+
+    boolean existsByName(String name);
 
     /**
      * Find active routes with trackPoints eagerly loaded to avoid LazyInitializationException.
@@ -35,10 +38,4 @@ public interface PredefinedRouteRepository extends JpaRepository<PredefinedRoute
      */
     @Query("SELECT r FROM PredefinedRoute r LEFT JOIN FETCH r.trackPoints WHERE r.id = :id")
     Optional<PredefinedRoute> findByIdWithTrackPoints(@Param("id") Long id);
-
-    /**
-     * Find active routes by city with trackPoints eagerly loaded to avoid LazyInitializationException.
-     */
-    @Query("SELECT DISTINCT r FROM PredefinedRoute r LEFT JOIN FETCH r.trackPoints WHERE r.isActive = true AND r.city = :city")
-    List<PredefinedRoute> findByIsActiveTrueAndCityWithTrackPoints(@Param("city") String city);
 }
@@ -0,0 +1,14 @@
+package com.mainstream.activity.repository;
+
+import com.mainstream.activity.entity.RouteRematchJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RouteRematchJobRepository extends JpaRepository<RouteRematchJob, Long> {
+
+    List<RouteRematchJob> findByStatusInOrderById(Collection<RouteRematchJob.Status> statuses);
+}
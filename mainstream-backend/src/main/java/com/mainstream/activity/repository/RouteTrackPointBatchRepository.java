@@ -0,0 +1,15 @@
+package com.mainstream.activity.repository;
+
+/**
+ * Bulk insert of route track points, bypassing the entity cascade: with IDENTITY ids
+ * Hibernate inserts every point on its own, while routes have thousands of points.
+ */
+public interface RouteTrackPointBatchRepository {
+
+    /**
+     * Insert the first count points of a route in JDBC batches, numbered from 0 in order.
+     * Elevations are NaN (or the array null) where unknown.
+     */
+    void insertAll(long routeId, double[] latitudes, double[] longitudes, double[] elevations,
+                   double[] distancesFromStart, int count);
+}
@@ -0,0 +1,66 @@
+package com.mainstream.activity.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * How fast a batch goes depends on the driver: with useBulkStmtsForInserts on the MariaDB
+ * JDBC URL (set in the application properties) a batch is one bulk command, otherwise the
+ * driver falls back to pipelining the single inserts. Every call logs its duration.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class RouteTrackPointBatchRepositoryImpl implements RouteTrackPointBatchRepository {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_SQL = "INSERT INTO route_track_points "
+            + "(route_id, sequence_number, latitude, longitude, elevation, distance_from_start_meters) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(long routeId, double[] latitudes, double[] longitudes, double[] elevations,
+                          double[] distancesFromStart, int count) {
+        long start = System.currentTimeMillis();
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(BATCH_SIZE, count - from);
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int i) throws SQLException {
+                    int point = offset + i;
+                    statement.setLong(1, routeId);
+                    statement.setInt(2, point);
+                    statement.setBigDecimal(3, scaled(latitudes[point], 7));
+                    statement.setBigDecimal(4, scaled(longitudes[point], 7));
+                    if (elevations != null && !Double.isNaN(elevations[point])) {
+                        statement.setBigDecimal(5, scaled(elevations[point], 2));
+                    } else {
+                        statement.setNull(5, Types.DECIMAL);
+                    }
+                    statement.setBigDecimal(6, scaled(distancesFromStart[point], 2));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+        log.info("Inserted {} track points of route {} in {} ms", count, routeId,
+                System.currentTimeMillis() - start);
+    }
+
+    private static BigDecimal scaled(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+}
@@ -5,5 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface RouteTrackPointRepository extends JpaRepository<RouteTrackPoint, Long> {
+public interface RouteTrackPointRepository extends JpaRepository<RouteTrackPoint, Long>, RouteTrackPointBatchRepository {
 }
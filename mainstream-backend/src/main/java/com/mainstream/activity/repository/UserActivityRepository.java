@@ -21,7 +21,7 @@ public interface UserActivityRepository extends JpaRepository<UserActivity, Long
 
     Optional<UserActivity> findByRunId(Long runId);
 
-    @Query("SELECT COUNT(DISTINCT ua.matchedRoute.id) FROM UserActivity ua WHERE ua.user.id = :userId AND ua.matchedRoute IS NOT NULL")
+    @Query("SELECT COUNT(DISTINCT m.route.id) FROM UserActivityRouteMatch m WHERE m.userActivity.user.id = :userId")
     long countDistinctRoutesForUser(@Param("userId") Long userId);
 
     @Query("SELECT ua FROM UserActivity ua WHERE ua.user.id = :userId AND ua.activityStartTime >= :startDate ORDER BY ua.activityStartTime ASC")
@@ -33,10 +33,17 @@ public interface UserActivityRepository extends JpaRepository<UserActivity, Long
     @Query("SELECT SUM(ua.distanceMeters) FROM UserActivity ua WHERE ua.user.id = :userId")
     Long getTotalDistanceForUser(@Param("userId") Long userId);
 
-    // Route statistics queries
-    @Query("SELECT COUNT(ua) FROM UserActivity ua WHERE ua.matchedRoute.id = :routeId AND ua.activityStartTime >= :startTime")
-    long countByRouteAndTimeRange(@Param("routeId") Long routeId, @Param("startTime") LocalDateTime startTime);
-
-    @Query("SELECT COUNT(ua) FROM UserActivity ua WHERE ua.matchedRoute.id = :routeId")
-    long countByRoute(@Param("routeId") Long routeId);
+    // Route statistics (every activity covering the route, not only those it was the best match of),
+    // for all routes in one pass: route id, counts since today, week, month and year start, total
+    @Query("SELECT m.route.id, " +
+           "SUM(CASE WHEN a.activityStartTime >= :todayStart THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN a.activityStartTime >= :weekStart THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN a.activityStartTime >= :monthStart THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN a.activityStartTime >= :yearStart THEN 1 ELSE 0 END), " +
+           "COUNT(m) " +
+           "FROM UserActivityRouteMatch m JOIN m.userActivity a GROUP BY m.route.id")
+    List<Object[]> countAllRoutesByTimeRanges(@Param("todayStart") LocalDateTime todayStart,
+                                              @Param("weekStart") LocalDateTime weekStart,
+                                              @Param("monthStart") LocalDateTime monthStart,
+                                              @Param("yearStart") LocalDateTime yearStart);
 }
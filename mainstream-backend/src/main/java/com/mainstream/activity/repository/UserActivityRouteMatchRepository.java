@@ -0,0 +1,39 @@
+package com.mainstream.activity.repository;
+
+import com.mainstream.activity.entity.UserActivityRouteMatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserActivityRouteMatchRepository extends JpaRepository<UserActivityRouteMatch, Long> {
+
+    List<UserActivityRouteMatch> findByUserActivityId(Long userActivityId);
+
+    List<UserActivityRouteMatch> findByUserActivityIdIn(Collection<Long> userActivityIds);
+
+    boolean existsByUserActivityIdAndRouteId(Long userActivityId, Long routeId);
+
+    @Query("SELECT m FROM UserActivityRouteMatch m WHERE m.userActivity.user.id = :userId AND m.userActivity.activityStartTime >= :startDate")
+    List<UserActivityRouteMatch> findUserMatchesSince(@Param("userId") Long userId, @Param("startDate") LocalDateTime startDate);
+
+    /**
+     * Best completion percentage of every route the user matched: route id, MAX(completion).
+     */
+    @Query("SELECT m.route.id, MAX(m.routeCompletionPercentage) FROM UserActivityRouteMatch m " +
+           "WHERE m.userActivity.user.id = :userId GROUP BY m.route.id")
+    List<Object[]> findBestCompletionsByUser(@Param("userId") Long userId);
+
+    /**
+     * Delete the route matches of an activity before it is matched again.
+     */
+    @Modifying
+    @Query("DELETE FROM UserActivityRouteMatch m WHERE m.userActivity.id = :userActivityId")
+    int deleteByUserActivityId(@Param("userActivityId") Long userActivityId);
+}
@@ -0,0 +1,48 @@
+package com.mainstream.activity.repository;
+
+import com.mainstream.activity.entity.UserActivityStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserActivityStatsRepository extends JpaRepository<UserActivityStats, Long> {
+
+    /**
+     * The stats row locked until the end of the transaction, so concurrent activity changes
+     * of the same user are applied one after the other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserActivityStats s WHERE s.userId = :userId")
+    Optional<UserActivityStats> findByUserIdForUpdate(@Param("userId") Long userId);
+
+    /**
+     * Create an empty stats row unless the user has one, without failing when a concurrent
+     * transaction creates it first (the insert then waits for that one and is ignored), so
+     * {@link #findByUserIdForUpdate} always finds a row to lock afterwards.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_activity_stats (user_id, day_counts, weekday_hour_counts, " +
+                   "route_completions, area_cells) VALUES (:userId, '', '', '', '')", nativeQuery = true)
+    void insertEmptyIfMissing(@Param("userId") Long userId);
+
+    /**
+     * Ids of users with activities, after the given id, for rebuilding in chunks.
+     *
+     * @param missingOnly only users without a stats row
+     */
+    @Query("SELECT DISTINCT ua.user.id FROM UserActivity ua WHERE ua.user.id > :afterUserId " +
+           "AND (:missingOnly = false OR NOT EXISTS (SELECT s FROM UserActivityStats s WHERE s.userId = ua.user.id)) " +
+           "ORDER BY ua.user.id")
+    List<Long> findUserIdsToRebuild(@Param("afterUserId") Long afterUserId,
+                                    @Param("missingOnly") boolean missingOnly,
+                                    Pageable pageable);
+}
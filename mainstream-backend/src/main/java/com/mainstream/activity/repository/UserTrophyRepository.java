@@ -18,6 +18,9 @@ public interface UserTrophyRepository extends JpaRepository<UserTrophy, Long> {
 
     boolean existsByUserIdAndTrophyId(Long userId, Long trophyId);
 
+    @Query("SELECT ut.trophy.id FROM UserTrophy ut WHERE ut.user.id = :userId")
+    List<Long> findTrophyIdsByUserId(@Param("userId") Long userId);
+
     @Query("SELECT COUNT(ut) FROM UserTrophy ut WHERE ut.user.id = :userId")
     long countByUserId(@Param("userId") Long userId);
 
@@ -0,0 +1,304 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PointGridIndex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Matches a user track against one route by walking along the route inside a tolerance
+ * corridor, instead of snapping every user point to its nearest route point.
+ *
+ * A cursor on the route follows the user: each user point is compared only with the
+ * route points around the cursor, within the distance the user moved plus the
+ * tolerance. Only when nothing in that window is close enough is the route's grid used
+ * to re-acquire the cursor; a re-acquisition no further along the route than the user
+ * moved still counts as walking (sparse samples), anything else as a jump (GPS gaps,
+ * shortcuts). Walking only continues from the user point right before: after user
+ * points off the corridor (a detour, e.g. along a parallel street) the cursor is
+ * re-acquired and a new covered stretch starts, as nothing is known about the route in
+ * between. The work per user point is bounded, so a track is matched in O(N + M).
+ *
+ * Within the window, the point chosen is the one that best fits both the user's position
+ * and the distance moved, in the direction the walk is heading; so where a route passes
+ * the same place twice (an out-and-back course) the walk stays on the pass it is on.
+ *
+ * While walking, the route segments passed are set in a coverage bitmap, and the signed
+ * progress along the route is summed. Completion, direction and coverage all come from
+ * the same walk, and jitter back and forth over the same stretch does not count twice.
+ */
+class CorridorWalker {
+
+    // Longest stretch of route scanned around the cursor before falling back to the grid
+    private static final double MAX_LOOKAHEAD_METERS = 100.0;
+
+    private final RouteGeometry route;
+    private final PointGridIndex grid;
+    private final double toleranceMeters;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double[] distances;
+    private final int routePoints;
+    private final double routeLength;
+    private final boolean closed;
+
+    private final BitSet coveredSegments;
+    private int[] matchedIndices = new int[64];
+    private int matchCount;
+    private double accuracySum;
+    private int lastUserIndex = -2;
+    private int consecutive;
+    private int maxConsecutive;
+
+    private int cursor = -1;
+    private double lastLatitude = Double.NaN;
+    private double lastLongitude = Double.NaN;
+    private double lastCosLatitude;
+    // cos(latitude) of the position being fed
+    private double cosLatitude;
+    private double forwardMeters;
+    private double backwardMeters;
+    // Net recent progress along the route, clamped to twice the tolerance either way, so
+    // GPS jitter against the direction of travel does not turn the walk around
+    private double momentum;
+
+    // Result of the last corridor or grid search
+    private int nearestPoint;
+    private double nearestDistance;
+    private double nearestCost;
+    // Distances from the user to the route points of the window being scanned
+    private double[] window = new double[64];
+
+    CorridorWalker(RouteGeometry route, PointGridIndex grid, double toleranceMeters) {
+        this.route = route;
+        this.grid = grid;
+        this.toleranceMeters = toleranceMeters;
+        this.latitudes = route.getLatitudes();
+        this.longitudes = route.getLongitudes();
+        this.cosLatitudes = route.getCosLatitudes();
+        this.distances = route.getDistancesFromStart();
+        this.routePoints = route.getPointCount();
+        this.routeLength = routePoints > 1 ? distances[routePoints - 1] : 0.0;
+        this.closed = routePoints > 2 && GeoDistance.meters(latitudes[0], longitudes[0],
+                latitudes[routePoints - 1], longitudes[routePoints - 1]) <= 2 * toleranceMeters;
+        this.coveredSegments = new BitSet(Math.max(1, routePoints - 1));
+    }
+
+    /**
+     * Feed the next user position, in track order.
+     *
+     * @param userIndex index of the position within the user track
+     */
+    void accept(int userIndex, double latitude, double longitude) {
+        cosLatitude = GeoDistance.cosLatitude(latitude);
+        // Distance moved since the position the cursor was last placed for
+        double step = Double.isNaN(lastLatitude) ? 0.0
+                : GeoDistance.meters(lastLatitude, lastLongitude, lastCosLatitude, latitude, longitude, cosLatitude);
+
+        int previous = cursor;
+        // Only the user point right after the last matched one continues the walk; points
+        // in between were off the corridor (or not fed at all)
+        boolean continuous = previous >= 0 && userIndex == lastUserIndex + 1;
+        boolean walked = false;
+        if (continuous) {
+            double lookahead = step + 2 * toleranceMeters;
+            if (lookahead <= MAX_LOOKAHEAD_METERS) {
+                walked = walkFrom(previous, step, lookahead, latitude, longitude);
+            }
+        }
+        if (!walked && !reacquire(latitude, longitude)) {
+            return;
+        }
+
+        int current = nearestPoint;
+        if (continuous) {
+            double slack = step + 2 * toleranceMeters;
+            if (walked || Math.abs(distances[current] - distances[previous]) <= slack) {
+                // Found in the corridor, or re-acquired no further along than the user moved
+                // (sparse samples): one continuous walk
+                advance(previous, current);
+            } else if (closed) {
+                // Re-acquired across the start/finish of a loop
+                advanceAcrossSeam(previous, current, slack);
+            }
+        }
+        cursor = current;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastCosLatitude = cosLatitude;
+        record(userIndex, current, nearestDistance);
+    }
+
+    /**
+     * Among the route points within lookahead meters (along the route) of the cursor and
+     * within the tolerance of the user, pick the one that best fits both the position and
+     * the distance the user moved: the cost is the distance to the point plus the
+     * difference between the progress along the route (in the direction the walk is
+     * heading) and the step. Where a route passes the same place twice, this keeps the
+     * walk on the pass it is on instead of snapping to the other one.
+     */
+    private boolean walkFrom(int from, double step, double lookahead, double latitude, double longitude) {
+        nearestPoint = -1;
+        nearestDistance = Double.MAX_VALUE;
+        nearestCost = Double.MAX_VALUE;
+        int ahead = momentum < 0 ? -1 : 1;
+        scan(from, ahead, from, lookahead, step, latitude, longitude);
+        scan(from - ahead, -ahead, from, lookahead, step, latitude, longitude);
+        if (momentum != 0 && (nearestPoint < 0 || (nearestPoint - from) * ahead < 0)) {
+            // Nothing ahead: at a hairpin (the turn of an out-and-back course) the route
+            // runs on further than the user moved, so look further ahead
+            scan(from + ahead, ahead, from, MAX_LOOKAHEAD_METERS, step, latitude, longitude);
+        }
+        return nearestPoint >= 0;
+    }
+
+    private void scan(int first, int direction, int cursor, double lookahead, double step,
+                      double latitude, double longitude) {
+        double origin = distances[cursor];
+        // The window ends where the route leaves the lookahead; measure it in one batch
+        int end = first;
+        while (end >= 0 && end < routePoints && Math.abs(distances[end] - origin) <= lookahead) {
+            end += direction;
+        }
+        int count = Math.abs(end - first);
+        if (count == 0) {
+            return;
+        }
+        int low = direction > 0 ? first : end + 1;
+        if (window.length < count) {
+            window = new double[Math.max(count, 2 * window.length)];
+        }
+        GeoDistance.metersTo(latitude, longitude, cosLatitude, latitudes, longitudes, cosLatitudes,
+                low, low + count, window);
+
+        for (int j = first; j != end; j += direction) {
+            double distance = window[j - low];
+            if (distance > toleranceMeters) {
+                continue;
+            }
+            double progress = momentum == 0 ? Math.abs(distances[j] - origin)
+                    : Math.signum(momentum) * (distances[j] - origin);
+            double cost = distance + Math.abs(progress - step);
+            if (cost < nearestCost || (cost == nearestCost && j < nearestPoint)) {
+                nearestPoint = j;
+                nearestDistance = distance;
+                nearestCost = cost;
+            }
+        }
+    }
+
+    private boolean reacquire(double latitude, double longitude) {
+        nearestPoint = -1;
+        nearestDistance = Double.MAX_VALUE;
+        grid.forEachWithin(latitude, longitude, toleranceMeters, (point, distance) -> {
+            if (distance < nearestDistance || (distance == nearestDistance && point < nearestPoint)) {
+                nearestPoint = point;
+                nearestDistance = distance;
+            }
+        });
+        return nearestPoint >= 0;
+    }
+
+    private void advance(int from, int to) {
+        addProgress(distances[to] - distances[from]);
+        if (to > from) {
+            coveredSegments.set(from, to);
+            forwardMeters += distances[to] - distances[from];
+        } else if (to < from) {
+            coveredSegments.set(to, from);
+            backwardMeters += distances[from] - distances[to];
+        }
+    }
+
+    private void addProgress(double progress) {
+        momentum = Math.max(-2 * toleranceMeters, Math.min(2 * toleranceMeters, momentum + progress));
+    }
+
+    private void advanceAcrossSeam(int from, int to, double slack) {
+        double forward = (routeLength - distances[from]) + distances[to];
+        double backward = distances[from] + (routeLength - distances[to]);
+        if (forward <= slack && forward <= backward) {
+            coveredSegments.set(from, routePoints - 1);
+            coveredSegments.set(0, to);
+            forwardMeters += forward;
+            addProgress(forward);
+        } else if (backward <= slack) {
+            coveredSegments.set(0, from);
+            coveredSegments.set(to, routePoints - 1);
+            backwardMeters += backward;
+            addProgress(-backward);
+        }
+    }
+
+    private void record(int userIndex, int routeIndex, double distanceMeters) {
+        if (matchCount == matchedIndices.length) {
+            matchedIndices = Arrays.copyOf(matchedIndices, matchCount * 2);
+        }
+        matchedIndices[matchCount++] = routeIndex;
+        accuracySum += distanceMeters;
+        consecutive = userIndex == lastUserIndex + 1 ? consecutive + 1 : 1;
+        maxConsecutive = Math.max(maxConsecutive, consecutive);
+        lastUserIndex = userIndex;
+    }
+
+    RouteGeometry getRoute() {
+        return route;
+    }
+
+    int getMatchCount() {
+        return matchCount;
+    }
+
+    int getMaxConsecutive() {
+        return maxConsecutive;
+    }
+
+    double getAverageAccuracyMeters() {
+        return matchCount > 0 ? accuracySum / matchCount : 0.0;
+    }
+
+    /**
+     * @return route indices matched, one per matched user point, in track order
+     */
+    int[] getMatchedIndices() {
+        return Arrays.copyOf(matchedIndices, matchCount);
+    }
+
+    /**
+     * @return length of the route segments walked, in meters
+     */
+    double getCoveredMeters() {
+        double covered = 0.0;
+        for (int segment = coveredSegments.nextSetBit(0); segment >= 0;
+             segment = coveredSegments.nextSetBit(segment + 1)) {
+            covered += distances[segment + 1] - distances[segment];
+        }
+        return covered;
+    }
+
+    /**
+     * @return share of the route length walked, 0-100
+     */
+    double getCompletionPercentage() {
+        return routeLength > 0 ? Math.min(100.0, getCoveredMeters() / routeLength * 100.0) : 0.0;
+    }
+
+    /**
+     * Predominant direction of progress along the route (increasing point order is
+     * clockwise), requiring twice as much progress one way as the other.
+     */
+    UserActivity.RunDirection getDirection() {
+        if (matchCount < 3) {
+            return UserActivity.RunDirection.UNKNOWN;
+        }
+        if (forwardMeters > backwardMeters * 2) {
+            return UserActivity.RunDirection.CLOCKWISE;
+        } else if (backwardMeters > forwardMeters * 2) {
+            return UserActivity.RunDirection.COUNTER_CLOCKWISE;
+        }
+        return UserActivity.RunDirection.UNKNOWN;
+    }
+}
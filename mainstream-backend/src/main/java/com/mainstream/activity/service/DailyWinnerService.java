@@ -4,6 +4,7 @@ import com.mainstream.activity.entity.DailyWinner;
 import com.mainstream.activity.entity.UserActivity;
 import com.mainstream.activity.repository.DailyWinnerRepository;
 import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -27,6 +28,7 @@ public class DailyWinnerService {
 
     private final DailyWinnerRepository dailyWinnerRepository;
     private final UserActivityRepository userActivityRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
 
     /**
      * Calculate daily winners for a specific date.
@@ -179,13 +181,16 @@ public class DailyWinnerService {
 
     /**
      * Calculate most routes winner (Explorer).
+     * Counts every route an activity covered, not only its best match.
      */
     private void calculateMostRoutes(LocalDate date, List<UserActivity> activities) {
-        Map<Long, Long> userRouteCounts = activities.stream()
-            .filter(a -> a.getMatchedRoute() != null)
+        Map<Long, Long> activityUsers = activities.stream()
+            .collect(Collectors.toMap(UserActivity::getId, a -> a.getUser().getId()));
+
+        Map<Long, Long> userRouteCounts = userActivityRouteMatchRepository.findByUserActivityIdIn(activityUsers.keySet()).stream()
             .collect(Collectors.groupingBy(
-                a -> a.getUser().getId(),
-                Collectors.mapping(a -> a.getMatchedRoute().getId(), Collectors.toSet())
+                m -> activityUsers.get(m.getUserActivity().getId()),
+                Collectors.mapping(m -> m.getRoute().getId(), Collectors.toSet())
             ))
             .entrySet().stream()
             .collect(Collectors.toMap(
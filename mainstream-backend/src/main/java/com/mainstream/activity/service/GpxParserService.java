@@ -1,34 +1,49 @@
 package com.mainstream.activity.service;
 
 import com.mainstream.activity.entity.PredefinedRoute;
-import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.event.RouteChangedEvent;
 import com.mainstream.activity.repository.PredefinedRouteRepository;
-import io.jenetics.jpx.GPX;
-import io.jenetics.jpx.Track;
-import io.jenetics.jpx.TrackSegment;
-import io.jenetics.jpx.WayPoint;
-import lombok.RequiredArgsConstructor;
+import com.mainstream.activity.repository.RouteTrackPointRepository;
+import com.mainstream.geo.GpxTrackReader;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.math.RoundingMode;
 
 /**
  * Service for parsing GPX files and creating predefined routes.
+ *
+ * The upload is streamed through {@link GpxTrackReader} (first track only), and the track
+ * points are written with JDBC batch inserts instead of one cascaded insert per point.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GpxParserService {
 
     private final PredefinedRouteRepository predefinedRouteRepository;
+    private final RouteTrackPointRepository routeTrackPointRepository;
+    private final RouteSummaryService routeSummaryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final double resampleMeters;
+
+    public GpxParserService(PredefinedRouteRepository predefinedRouteRepository,
+                            RouteTrackPointRepository routeTrackPointRepository,
+                            RouteSummaryService routeSummaryService,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${mainstream.gpx.resample-meters:0}") double resampleMeters) {
+        this.predefinedRouteRepository = predefinedRouteRepository;
+        this.routeTrackPointRepository = routeTrackPointRepository;
+        this.routeSummaryService = routeSummaryService;
+        this.eventPublisher = eventPublisher;
+        this.resampleMeters = resampleMeters;
+    }
 
     /**
      * Parse a GPX file and create a predefined route.
@@ -37,8 +52,8 @@ public class GpxParserService {
      * @param routeName Name for the route
      * @param description Optional description
      * @param city Optional city where the route is located
-     * @return Created PredefinedRoute
-     * @throws IOException if file cannot be parsed
+     * @return Created PredefinedRoute (its track points are stored, but not loaded)
+     * @throws IOException if file cannot be read
      */
     @Transactional
     public PredefinedRoute parseAndCreateRoute(MultipartFile file, String routeName, String description, String city) throws IOException {
@@ -49,125 +64,37 @@ public class GpxParserService {
             throw new IllegalArgumentException("Route with name '" + routeName + "' already exists");
         }
 
-        // Create a temporary file to read the GPX
-        Path tempFile = Files.createTempFile("gpx-upload-", ".gpx");
-        try {
-            // Copy uploaded file to temp file
-            Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-
-            // Read GPX from temp file
-            GPX gpx = GPX.read(tempFile);
-
-            if (gpx.getTracks().isEmpty()) {
-                throw new IllegalArgumentException("GPX file contains no tracks");
-            }
-
-            return processGpxData(gpx, routeName, description, city, file.getOriginalFilename());
-
-        } finally {
-            // Clean up temp file
-            try {
-                Files.deleteIfExists(tempFile);
-            } catch (IOException e) {
-                log.warn("Failed to delete temporary file: {}", tempFile, e);
-            }
+        long start = System.currentTimeMillis();
+        GpxTrackReader.GpxTrack track;
+        try (InputStream input = file.getInputStream()) {
+            track = GpxTrackReader.read(input, resampleMeters);
         }
-    }
-
-    /**
-     * Process GPX data and create route entity.
-     */
-    private PredefinedRoute processGpxData(GPX gpx, String routeName, String description, String city, String originalFilename) {
+        if (track.size() == 0) {
+            throw new IllegalArgumentException("GPX track contains no points");
+        }
+        long parsed = System.currentTimeMillis();
 
         PredefinedRoute route = new PredefinedRoute();
         route.setName(routeName);
         route.setDescription(description);
         route.setCity(city);
-        route.setOriginalFilename(originalFilename);
+        route.setOriginalFilename(file.getOriginalFilename());
         route.setIsActive(true);
-
-        // Process first track
-        Track track = gpx.getTracks().get(0);
-
-        AtomicInteger sequenceNumber = new AtomicInteger(0);
-        double totalDistance = 0.0;
-        double totalElevationGain = 0.0;
-        double totalElevationLoss = 0.0;
-        WayPoint previousPoint = null;
-
-        for (TrackSegment segment : track.getSegments()) {
-            for (WayPoint wayPoint : segment.getPoints()) {
-                RouteTrackPoint trackPoint = new RouteTrackPoint();
-                trackPoint.setSequenceNumber(sequenceNumber.getAndIncrement());
-                trackPoint.setLatitude(BigDecimal.valueOf(wayPoint.getLatitude().doubleValue()));
-                trackPoint.setLongitude(BigDecimal.valueOf(wayPoint.getLongitude().doubleValue()));
-
-                if (wayPoint.getElevation().isPresent()) {
-                    double elevation = wayPoint.getElevation().get().doubleValue();
-                    trackPoint.setElevation(BigDecimal.valueOf(elevation));
-
-                    // Calculate elevation gain/loss
-                    if (previousPoint != null && previousPoint.getElevation().isPresent()) {
-                        double elevationDiff = elevation - previousPoint.getElevation().get().doubleValue();
-                        if (elevationDiff > 0) {
-                            totalElevationGain += elevationDiff;
-                        } else {
-                            totalElevationLoss += Math.abs(elevationDiff);
-                        }
-                    }
-                }
-
-                // Calculate distance from start
-                if (previousPoint != null) {
-                    double distance = calculateDistance(
-                        previousPoint.getLatitude().doubleValue(),
-                        previousPoint.getLongitude().doubleValue(),
-                        wayPoint.getLatitude().doubleValue(),
-                        wayPoint.getLongitude().doubleValue()
-                    );
-                    totalDistance += distance;
-                }
-
-                trackPoint.setDistanceFromStartMeters(BigDecimal.valueOf(totalDistance));
-
-                // Set start point coordinates
-                if (sequenceNumber.get() == 1) {
-                    route.setStartLatitude(trackPoint.getLatitude());
-                    route.setStartLongitude(trackPoint.getLongitude());
-                }
-
-                route.addTrackPoint(trackPoint);
-                previousPoint = wayPoint;
-            }
-        }
-
-        route.setDistanceMeters(BigDecimal.valueOf(totalDistance));
-        route.setElevationGainMeters(BigDecimal.valueOf(totalElevationGain));
-        route.setElevationLossMeters(BigDecimal.valueOf(totalElevationLoss));
+        route.setStartLatitude(BigDecimal.valueOf(track.getLatitudes()[0]).setScale(7, RoundingMode.HALF_UP));
+        route.setStartLongitude(BigDecimal.valueOf(track.getLongitudes()[0]).setScale(7, RoundingMode.HALF_UP));
+        route.setDistanceMeters(BigDecimal.valueOf(track.getDistanceMeters()).setScale(2, RoundingMode.HALF_UP));
+        route.setElevationGainMeters(BigDecimal.valueOf(track.getElevationGainMeters()).setScale(2, RoundingMode.HALF_UP));
+        route.setElevationLossMeters(BigDecimal.valueOf(track.getElevationLossMeters()).setScale(2, RoundingMode.HALF_UP));
+        routeSummaryService.applySummary(route, track.getLatitudes(), track.getLongitudes(), track.size());
 
         PredefinedRoute savedRoute = predefinedRouteRepository.save(route);
-        log.info("Created predefined route: {} with {} track points, distance: {}m",
-                 routeName, route.getTrackPoints().size(), totalDistance);
+        routeTrackPointRepository.insertAll(savedRoute.getId(), track.getLatitudes(), track.getLongitudes(),
+                track.getElevations(), track.getDistancesFromStart(), track.size());
+        eventPublisher.publishEvent(new RouteChangedEvent(savedRoute.getId(), RouteChangedEvent.ChangeType.CREATED));
+        log.info("Created predefined route: {} with {} track points ({} in the file), distance: {}m, parsed in {} ms, stored in {} ms",
+                 routeName, track.size(), track.getOriginalPointCount(), track.getDistanceMeters(),
+                 parsed - start, System.currentTimeMillis() - parsed);
 
         return savedRoute;
     }
-
-    /**
-     * Calculate distance between two GPS coordinates using Haversine formula.
-     * Returns distance in meters.
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double EARTH_RADIUS = 6371000; // meters
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c;
-    }
 }
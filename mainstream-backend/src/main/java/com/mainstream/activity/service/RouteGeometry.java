@@ -0,0 +1,41 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.GeoDistance;
+import lombok.Getter;
+
+/**
+ * Immutable, primitive-array geometry of one predefined route, as cached by
+ * {@link RouteGeometryCache} for matching. Arrays are shared; callers must not modify them.
+ */
+@Getter
+public final class RouteGeometry {
+
+    private final long id;
+    private final String name;
+    private final double distanceMeters;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    // cos(latitude) of every point, for the GeoDistance fast path
+    private final double[] cosLatitudes;
+    private final double[] distancesFromStart;
+    // Unpadded box around the track points (and the stored start position)
+    private final BoundingBox bounds;
+
+    public RouteGeometry(long id, String name, double distanceMeters,
+                         double[] latitudes, double[] longitudes, double[] distancesFromStart,
+                         BoundingBox bounds) {
+        this.id = id;
+        this.name = name;
+        this.distanceMeters = distanceMeters;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cosLatitudes = GeoDistance.cosLatitudes(latitudes);
+        this.distancesFromStart = distancesFromStart;
+        this.bounds = bounds;
+    }
+
+    public int getPointCount() {
+        return latitudes.length;
+    }
+}
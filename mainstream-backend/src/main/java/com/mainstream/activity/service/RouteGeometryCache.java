@@ -0,0 +1,149 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.event.RouteChangedEvent;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.GeoDistance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Application-level cache of the geometry of all active predefined routes as primitive
+ * arrays, so route matching never loads route entities, track points or BigDecimals.
+ *
+ * All active routes are loaded with one fetch-join query on first use. Afterwards only
+ * the route named in a {@link RouteChangedEvent} is reloaded, once its change has been
+ * committed. Every change produces a new immutable snapshot with a higher version.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteGeometryCache {
+
+    private final PredefinedRouteRepository predefinedRouteRepository;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Active routes ordered by id, with the version of the snapshot they belong to.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<RouteGeometry> routes;
+
+        private Snapshot(long version, List<RouteGeometry> routes) {
+            this.version = version;
+            this.routes = routes;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<RouteGeometry> getRoutes() {
+            return routes;
+        }
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = loadAll(0);
+            }
+            return snapshot;
+        }
+    }
+
+    public List<RouteGeometry> getActiveRoutes() {
+        return current().getRoutes();
+    }
+
+    public Optional<RouteGeometry> getRoute(long routeId) {
+        return current().getRoutes().stream().filter(route -> route.getId() == routeId).findFirst();
+    }
+
+    /**
+     * Reload the changed route after its transaction committed (or right away when it was
+     * published outside a transaction). Runs before other listeners of the event, so they
+     * see the refreshed geometry.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        synchronized (this) {
+            if (snapshot == null) {
+                // Nothing cached yet; the first read loads the current state anyway
+                return;
+            }
+            Optional<RouteGeometry> reloaded = predefinedRouteRepository.findByIdWithTrackPoints(event.getRouteId())
+                    .filter(route -> Boolean.TRUE.equals(route.getIsActive()))
+                    .map(this::toGeometry)
+                    .filter(geometry -> geometry.getPointCount() > 0);
+
+            List<RouteGeometry> routes = new ArrayList<>(snapshot.getRoutes());
+            routes.removeIf(route -> route.getId() == event.getRouteId());
+            reloaded.ifPresent(routes::add);
+            routes.sort(Comparator.comparingLong(RouteGeometry::getId));
+            snapshot = new Snapshot(snapshot.getVersion() + 1, List.copyOf(routes));
+            log.info("Route geometry cache refreshed for {}: {} active routes (version {})",
+                    event, routes.size(), snapshot.getVersion());
+        }
+    }
+
+    private Snapshot loadAll(long version) {
+        long start = System.currentTimeMillis();
+        List<RouteGeometry> routes = predefinedRouteRepository.findByIsActiveTrueWithTrackPoints().stream()
+                .map(this::toGeometry)
+                .filter(geometry -> geometry.getPointCount() > 0)
+                .sorted(Comparator.comparingLong(RouteGeometry::getId))
+                .toList();
+        log.info("Loaded geometry of {} active routes ({} points) in {} ms", routes.size(),
+                routes.stream().mapToInt(RouteGeometry::getPointCount).sum(), System.currentTimeMillis() - start);
+        return new Snapshot(version, routes);
+    }
+
+    private RouteGeometry toGeometry(PredefinedRoute route) {
+        List<RouteTrackPoint> trackPoints = route.getTrackPoints() != null ? route.getTrackPoints() : List.of();
+        int n = trackPoints.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            RouteTrackPoint trackPoint = trackPoints.get(i);
+            latitudes[i] = trackPoint.getLatitude().doubleValue();
+            longitudes[i] = trackPoint.getLongitude().doubleValue();
+        }
+        // Step lengths first, turned into distances from the start in place
+        double[] distancesFromStart = new double[n];
+        GeoDistance.stepMeters(latitudes, longitudes, GeoDistance.cosLatitudes(latitudes), n, distancesFromStart);
+        double cumulative = 0.0;
+        for (int i = 0; i < n; i++) {
+            RouteTrackPoint trackPoint = trackPoints.get(i);
+            cumulative += distancesFromStart[i];
+            // Older imports may lack the stored distance; derive it from the geometry
+            distancesFromStart[i] = trackPoint.getDistanceFromStartMeters() != null
+                    ? trackPoint.getDistanceFromStartMeters().doubleValue() : cumulative;
+        }
+        double distance = route.getDistanceMeters() != null ? route.getDistanceMeters().doubleValue() : cumulative;
+        BoundingBox bounds = BoundingBox.of(latitudes, longitudes, n);
+        if (route.getStartLatitude() != null && route.getStartLongitude() != null) {
+            bounds = bounds.including(route.getStartLatitude().doubleValue(), route.getStartLongitude().doubleValue());
+        }
+        return new RouteGeometry(route.getId(), route.getName(), distance, latitudes, longitudes, distancesFromStart,
+                bounds);
+    }
+}
@@ -0,0 +1,309 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.dto.RouteMapDto;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PointGridIndex;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.geo.TrackSimplifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Viewport and nearest-route queries for map clients, so the map only fetches the routes
+ * it shows instead of the whole catalogue.
+ *
+ * The index is an immutable snapshot over the active routes of the {@link RouteGeometryCache},
+ * rebuilt when the cache moves to a new version: route bounding boxes are registered in
+ * a coarse grid of {@value #BUCKET_DEGREES} degree buckets for viewport queries, and the
+ * route start points in a {@link PointGridIndex} for nearest queries. Geometry is returned
+ * simplified to about one screen pixel at the requested zoom level; the simplified
+ * polylines are computed on first use per route and level (tolerance 2^level meters) and
+ * kept with the snapshot.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteMapService {
+
+    public static final int MAX_NEAREST = 50;
+
+    // Simplification tolerances 1 m .. 2 km
+    static final int LEVELS = 12;
+    private static final double BUCKET_DEGREES = 0.1;
+    // Viewports spanning more buckets are answered by scanning all routes
+    private static final int MAX_VIEWPORT_BUCKETS = 2500;
+    private static final double START_CELL_METERS = 1000.0;
+    // Nearest queries beyond this radius scan all start points
+    private static final double MAX_NEAREST_RADIUS_METERS = 64000.0;
+    // Web Mercator ground resolution at zoom 0 on the equator, meters per 256-pixel tile pixel
+    private static final double METERS_PER_PIXEL_ZOOM_0 = 156543.03392;
+    // Assumed screen width for viewport queries without a zoom level
+    private static final double DEFAULT_VIEWPORT_PIXELS = 1024.0;
+
+    private final RouteGeometryCache routeGeometryCache;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Active routes whose track passes through the viewport, in id order.
+     *
+     * @param zoom map zoom level deciding the simplification, or null to derive it from the viewport width
+     * @throws IllegalArgumentException if the viewport is not a valid box
+     */
+    public List<RouteMapDto> findWithin(double minLatitude, double minLongitude, double maxLatitude,
+                                        double maxLongitude, Integer zoom) {
+        if (!(minLatitude <= maxLatitude) || !(minLongitude <= maxLongitude)
+                || Math.abs(minLatitude) > 90 || Math.abs(maxLatitude) > 90
+                || Math.abs(minLongitude) > 180 || Math.abs(maxLongitude) > 180) {
+            throw new IllegalArgumentException("Invalid bounding box");
+        }
+        double centerLatitude = (minLatitude + maxLatitude) / 2;
+        double metersPerPixel = zoom != null
+                ? METERS_PER_PIXEL_ZOOM_0 * GeoDistance.cosLatitude(centerLatitude) / Math.pow(2, zoom)
+                : (maxLongitude - minLongitude) * GeoDistance.METERS_PER_DEGREE
+                        * GeoDistance.cosLatitude(centerLatitude) / DEFAULT_VIEWPORT_PIXELS;
+        int level = level(metersPerPixel);
+
+        Snapshot current = current();
+        List<RouteMapDto> result = new ArrayList<>();
+        for (int route : current.within(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+            result.add(toDto(current, route, level, null));
+        }
+        return result;
+    }
+
+    /**
+     * The k active routes starting closest to the position, closest first.
+     *
+     * @param zoom map zoom level deciding the simplification, or null for full detail (1 m)
+     */
+    public List<RouteMapDto> findNearest(double latitude, double longitude, int k, Integer zoom) {
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new IllegalArgumentException("Invalid position");
+        }
+        int level = zoom != null
+                ? level(METERS_PER_PIXEL_ZOOM_0 * GeoDistance.cosLatitude(latitude) / Math.pow(2, zoom)) : 0;
+        Snapshot current = current();
+        List<RouteMapDto> result = new ArrayList<>();
+        for (double[] hit : current.nearest(latitude, longitude, Math.max(1, Math.min(k, MAX_NEAREST)))) {
+            result.add(toDto(current, (int) hit[0], level, hit[1]));
+        }
+        return result;
+    }
+
+    private Snapshot current() {
+        RouteGeometryCache.Snapshot geometry = routeGeometryCache.current();
+        Snapshot current = snapshot;
+        if (current != null && current.version == geometry.getVersion()) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != geometry.getVersion()) {
+                long start = System.currentTimeMillis();
+                current = new Snapshot(geometry.getVersion(), geometry.getRoutes());
+                snapshot = current;
+                log.info("Built route map index over {} active routes in {} ms",
+                        current.routes.size(), System.currentTimeMillis() - start);
+            }
+            return current;
+        }
+    }
+
+    private static RouteMapDto toDto(Snapshot snapshot, int route, int level, Double distanceToStart) {
+        RouteGeometry geometry = snapshot.routes.get(route);
+        BoundingBox bounds = geometry.getBounds();
+        return RouteMapDto.builder()
+                .id(geometry.getId())
+                .name(geometry.getName())
+                .distanceMeters(geometry.getDistanceMeters())
+                .startLatitude(geometry.getLatitudes()[0])
+                .startLongitude(geometry.getLongitudes()[0])
+                .minLatitude(bounds.getMinLatitude())
+                .maxLatitude(bounds.getMaxLatitude())
+                .minLongitude(bounds.getMinLongitude())
+                .maxLongitude(bounds.getMaxLongitude())
+                .encodedPolyline(snapshot.polyline(route, level))
+                .toleranceMeters(tolerance(level))
+                .distanceToStartMeters(distanceToStart)
+                .build();
+    }
+
+    /**
+     * Coarsest level whose tolerance does not exceed one pixel.
+     */
+    static int level(double metersPerPixel) {
+        if (!(metersPerPixel > 1.0)) {
+            return 0;
+        }
+        return Math.min(LEVELS - 1, (int) Math.floor(Math.log(metersPerPixel) / Math.log(2)));
+    }
+
+    static double tolerance(int level) {
+        return 1 << level;
+    }
+
+    /**
+     * Immutable index over the active routes (numbered 0..n-1 in id order), with lazily
+     * filled simplified polylines.
+     */
+    private static final class Snapshot {
+        private final long version;
+        private final List<RouteGeometry> routes;
+        // Bucket key -> routes whose bounding box overlaps the bucket
+        private final Map<Long, int[]> buckets = new HashMap<>();
+        private final PointGridIndex starts;
+        // Route r at level l: polylines[r * LEVELS + l], null until first requested
+        private final String[] polylines;
+
+        private Snapshot(long version, List<RouteGeometry> routes) {
+            this.version = version;
+            this.routes = routes;
+            this.polylines = new String[routes.size() * LEVELS];
+
+            Map<Long, List<Integer>> routesByBucket = new HashMap<>();
+            double[] startLatitudes = new double[routes.size()];
+            double[] startLongitudes = new double[routes.size()];
+            for (int r = 0; r < routes.size(); r++) {
+                RouteGeometry route = routes.get(r);
+                BoundingBox bounds = route.getBounds();
+                for (int row = bucket(bounds.getMinLatitude()); row <= bucket(bounds.getMaxLatitude()); row++) {
+                    for (int column = bucket(bounds.getMinLongitude()); column <= bucket(bounds.getMaxLongitude()); column++) {
+                        routesByBucket.computeIfAbsent(key(row, column), key -> new ArrayList<>()).add(r);
+                    }
+                }
+                startLatitudes[r] = route.getLatitudes()[0];
+                startLongitudes[r] = route.getLongitudes()[0];
+            }
+            routesByBucket.forEach((key, list) -> buckets.put(key, list.stream().mapToInt(Integer::intValue).toArray()));
+            this.starts = new PointGridIndex(startLatitudes, startLongitudes, START_CELL_METERS);
+        }
+
+        int[] within(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+            boolean[] candidate = new boolean[routes.size()];
+            long rows = (long) bucket(maxLatitude) - bucket(minLatitude) + 1;
+            long columns = (long) bucket(maxLongitude) - bucket(minLongitude) + 1;
+            if (rows * columns > MAX_VIEWPORT_BUCKETS) {
+                Arrays.fill(candidate, true);
+            } else {
+                for (int row = bucket(minLatitude); row <= bucket(maxLatitude); row++) {
+                    for (int column = bucket(minLongitude); column <= bucket(maxLongitude); column++) {
+                        int[] bucketRoutes = buckets.get(key(row, column));
+                        if (bucketRoutes != null) {
+                            for (int route : bucketRoutes) {
+                                candidate[route] = true;
+                            }
+                        }
+                    }
+                }
+            }
+
+            BoundingBox viewport = new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+            int[] result = new int[routes.size()];
+            int count = 0;
+            for (int r = 0; r < routes.size(); r++) {
+                if (candidate[r] && routes.get(r).getBounds().intersects(viewport) && crosses(routes.get(r), viewport)) {
+                    result[count++] = r;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * @return {route, distance to its start} of the k closest starts, closest first
+         */
+        List<double[]> nearest(double latitude, double longitude, int k) {
+            List<double[]> hits = new ArrayList<>();
+            // All starts within the radius are found, so once there are k of them they are the k closest
+            for (double radius = START_CELL_METERS; hits.size() < k; radius *= 4) {
+                hits.clear();
+                if (radius > MAX_NEAREST_RADIUS_METERS) {
+                    for (int r = 0; r < routes.size(); r++) {
+                        hits.add(new double[] {r, GeoDistance.meters(latitude, longitude,
+                                starts.getLatitude(r), starts.getLongitude(r))});
+                    }
+                    break;
+                }
+                starts.forEachWithin(latitude, longitude, radius, (point, distance) -> hits.add(new double[] {point, distance}));
+            }
+            hits.sort((a, b) -> Double.compare(a[1], b[1]));
+            return hits.size() > k ? hits.subList(0, k) : hits;
+        }
+
+        String polyline(int route, int level) {
+            int slot = route * LEVELS + level;
+            String polyline = polylines[slot];
+            if (polyline == null) {
+                // Strings are immutable, so a concurrent duplicate computation is harmless
+                RouteGeometry geometry = routes.get(route);
+                int[] indices = TrackSimplifier.simplify(geometry.getLatitudes(), geometry.getLongitudes(), tolerance(level));
+                polyline = PolylineEncoder.encode(geometry.getLatitudes(), geometry.getLongitudes(), indices);
+                polylines[slot] = polyline;
+            }
+            return polyline;
+        }
+
+        /**
+         * Whether a point or segment of the track lies in the box (segments clipped in
+         * degree space, which is exact enough at viewport scales).
+         */
+        private static boolean crosses(RouteGeometry route, BoundingBox box) {
+            double[] latitudes = route.getLatitudes();
+            double[] longitudes = route.getLongitudes();
+            for (int i = 0; i < latitudes.length; i++) {
+                if (box.contains(latitudes[i], longitudes[i])) {
+                    return true;
+                }
+                if (i > 0 && clips(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i], box)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Liang-Barsky: does the segment enter the box?
+        private static boolean clips(double lat1, double lon1, double lat2, double lon2, BoundingBox box) {
+            double dLon = lon2 - lon1;
+            double dLat = lat2 - lat1;
+            double[] p = {-dLon, dLon, -dLat, dLat};
+            double[] q = {lon1 - box.getMinLongitude(), box.getMaxLongitude() - lon1,
+                    lat1 - box.getMinLatitude(), box.getMaxLatitude() - lat1};
+            double enter = 0.0;
+            double exit = 1.0;
+            for (int i = 0; i < 4; i++) {
+                if (p[i] == 0) {
+                    if (q[i] < 0) {
+                        return false;
+                    }
+                } else {
+                    double t = q[i] / p[i];
+                    if (p[i] < 0) {
+                        enter = Math.max(enter, t);
+                    } else {
+                        exit = Math.min(exit, t);
+                    }
+                    if (enter > exit) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static int bucket(double degrees) {
+            return (int) Math.floor(degrees / BUCKET_DEGREES);
+        }
+
+        private static long key(int row, int column) {
+            return ((long) row << 32) | (column & 0xFFFFFFFFL);
+        }
+    }
+}
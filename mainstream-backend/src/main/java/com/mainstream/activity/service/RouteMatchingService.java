@@ -1,49 +1,110 @@
 package com.mainstream.activity.service;
 
-import com.mainstream.activity.entity.PredefinedRoute;
-import com.mainstream.activity.entity.RouteTrackPoint;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.PredefinedRouteRepository;
 import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.TrackPreprocessor;
 import com.mainstream.run.entity.GpsPoint;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Service for matching user GPS tracks against predefined routes.
+ * Service for matching user GPS tracks against predefined routes. Route geometry comes
+ * from the {@link RouteGeometryCache} through the {@link RouteSpatialIndex}, and each
+ * candidate route is matched by walking its tolerance corridor ({@link CorridorWalker}),
+ * in O(N + M) per route and without touching the database.
+ *
+ * Before any point-level work, routes whose bounding box does not intersect the user
+ * track's box (padded by the tolerance) are rejected; the outcome is counted in the
+ * {@value #PREFILTER_METRIC} metric, tagged result=rejected|candidate.
+ *
+ * The remaining candidates are evaluated independently, fanned out over at most
+ * mainstream.route-matching.parallelism virtual threads per match, and the best result
+ * is picked by {@link #calculateMatchScore}; on equal scores the route with the lower id
+ * wins, so the outcome does not depend on scheduling.
+ *
+ * Since every candidate is walked anyway, the other routes the track covers come for
+ * free: those with at least mainstream.route-matching.additional-match-min-completion
+ * percent completion are attached to the best result as additional matches, so a long
+ * run over several routes is credited to each of them.
+ *
+ * User tracks are cleaned by the {@link TrackPreprocessingService} first (spikes dropped,
+ * stationary clusters collapsed, resampled along the path), in batch and online matches
+ * alike, so the walkers see several times fewer points and no GPS spikes.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RouteMatchingService {
 
-    private final PredefinedRouteRepository predefinedRouteRepository;
-    private static final double MATCHING_TOLERANCE_METERS = 10.0; // 10m tolerance
+    static final String PREFILTER_METRIC = "mainstream.route.matching.prefilter";
+
+    private final RouteSpatialIndex routeSpatialIndex;
+    private final TrackPreprocessingService trackPreprocessingService;
+    private final MeterRegistry meterRegistry;
+    private final int parallelism;
+    private final double additionalMatchMinCompletion;
+    static final double MATCHING_TOLERANCE_METERS = 10.0; // 10m tolerance
+
+    public RouteMatchingService(RouteSpatialIndex routeSpatialIndex,
+                                TrackPreprocessingService trackPreprocessingService,
+                                MeterRegistry meterRegistry,
+                                @Value("${mainstream.route-matching.parallelism:0}") int parallelism,
+                                @Value("${mainstream.route-matching.additional-match-min-completion:80}")
+                                double additionalMatchMinCompletion) {
+        this.routeSpatialIndex = routeSpatialIndex;
+        this.trackPreprocessingService = trackPreprocessingService;
+        this.meterRegistry = meterRegistry;
+        // Virtual threads run on the shared carrier pool, so CPU use is bounded by the cores
+        // overall; this caps how many of them a single match may occupy
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.additionalMatchMinCompletion = additionalMatchMinCompletion;
+        log.info("Geo distance batches run {}", GeoDistance.isVectorized() ? "on the vector API"
+                : "scalar (build with -Pvector and start the JVM with --add-modules jdk.incubator.vector"
+                + " to vectorize them)");
+    }
 
     /**
-     * Result of route matching
+     * Result of route matching. The route is identified by id, so matching never touches
+     * JPA; resolve it with a repository reference when recording the activity.
+     *
+     * The best match also carries the other routes the track covered well enough
+     * ({@link #getAdditionalMatches()}, best first); those have no additional matches
+     * of their own.
      */
     public static class RouteMatchResult {
-        private PredefinedRoute matchedRoute;
+        private Long matchedRouteId;
+        private String matchedRouteName;
         private double matchedDistanceMeters;
         private double routeCompletionPercentage;
         private double averageAccuracyMeters;
         private boolean isCompleteRoute;
         private UserActivity.RunDirection direction;
         private List<Integer> matchedIndices; // Indices of matched route points
+        private List<RouteMatchResult> additionalMatches;
 
         public RouteMatchResult() {
             this.matchedIndices = new ArrayList<>();
+            this.additionalMatches = new ArrayList<>();
         }
 
         // Getters and setters
-        public PredefinedRoute getMatchedRoute() { return matchedRoute; }
-        public void setMatchedRoute(PredefinedRoute matchedRoute) { this.matchedRoute = matchedRoute; }
+        public Long getMatchedRouteId() { return matchedRouteId; }
+        public void setMatchedRouteId(Long matchedRouteId) { this.matchedRouteId = matchedRouteId; }
+
+        public String getMatchedRouteName() { return matchedRouteName; }
+        public void setMatchedRouteName(String matchedRouteName) { this.matchedRouteName = matchedRouteName; }
 
         public double getMatchedDistanceMeters() { return matchedDistanceMeters; }
         public void setMatchedDistanceMeters(double matchedDistanceMeters) { this.matchedDistanceMeters = matchedDistanceMeters; }
@@ -62,13 +123,27 @@ public class RouteMatchingService {
 
         public List<Integer> getMatchedIndices() { return matchedIndices; }
         public void setMatchedIndices(List<Integer> matchedIndices) { this.matchedIndices = matchedIndices; }
+
+        public List<RouteMatchResult> getAdditionalMatches() { return additionalMatches; }
+        public void setAdditionalMatches(List<RouteMatchResult> additionalMatches) { this.additionalMatches = additionalMatches; }
+
+        /**
+         * @return this match followed by the additional matches
+         */
+        public List<RouteMatchResult> getAllMatches() {
+            List<RouteMatchResult> all = new ArrayList<>(1 + additionalMatches.size());
+            all.add(this);
+            all.addAll(additionalMatches);
+            return all;
+        }
     }
 
     /**
      * Match GPS track points from FIT file against all active predefined routes.
      *
      * @param trackPoints User's GPS track points from FIT file
-     * @return Best matching route result, or null if no match found
+     * @return Best matching route result with the other covered routes attached, or null
+     * if no match found
      */
     public RouteMatchResult matchRoute(List<FitTrackPoint> trackPoints) {
         if (trackPoints == null || trackPoints.isEmpty()) {
@@ -76,47 +151,29 @@ public class RouteMatchingService {
             return null;
         }
 
-        List<PredefinedRoute> activeRoutes = predefinedRouteRepository.findByIsActiveTrue();
-        if (activeRoutes.isEmpty()) {
-            log.warn("No active predefined routes available for matching");
-            return null;
-        }
-
-        log.info("Matching {} FIT track points against {} active routes", trackPoints.size(), activeRoutes.size());
-
-        RouteMatchResult bestMatch = null;
-        double bestMatchScore = 0.0;
-
-        for (PredefinedRoute route : activeRoutes) {
-            RouteMatchResult matchResult = matchAgainstRoute(trackPoints, route);
-            if (matchResult != null) {
-                double matchScore = calculateMatchScore(matchResult);
-                log.debug("Route '{}' match score: {}", route.getName(), matchScore);
-
-                if (matchScore > bestMatchScore) {
-                    bestMatchScore = matchScore;
-                    bestMatch = matchResult;
-                }
+        double[] latitudes = new double[trackPoints.size()];
+        double[] longitudes = new double[trackPoints.size()];
+        double[] times = new double[trackPoints.size()];
+        int count = 0;
+        for (FitTrackPoint userPoint : trackPoints) {
+            if (userPoint.getPositionLat() == null || userPoint.getPositionLong() == null) {
+                continue;
             }
+            latitudes[count] = userPoint.getPositionLat().doubleValue();
+            longitudes[count] = userPoint.getPositionLong().doubleValue();
+            times[count] = TrackPreprocessingService.seconds(userPoint.getTimestamp());
+            count++;
         }
 
-        if (bestMatch != null) {
-            log.info("Best match: Route '{}' with {}% completion, avg accuracy: {}m",
-                     bestMatch.getMatchedRoute().getName(),
-                     bestMatch.getRouteCompletionPercentage(),
-                     bestMatch.getAverageAccuracyMeters());
-        } else {
-            log.info("No matching route found for track");
-        }
-
-        return bestMatch;
+        return findBestMatch(latitudes, longitudes, times, count, "FIT track points");
     }
 
     /**
      * Match GPS points from a manual run against all active predefined routes.
      *
      * @param gpsPoints User's GPS points from manual run
-     * @return Best matching route result, or null if no match found
+     * @return Best matching route result with the other covered routes attached, or null
+     * if no match found
      */
     public RouteMatchResult matchRouteFromGpsPoints(List<GpsPoint> gpsPoints) {
         if (gpsPoints == null || gpsPoints.isEmpty()) {
@@ -124,257 +181,311 @@ public class RouteMatchingService {
             return null;
         }
 
-        List<PredefinedRoute> activeRoutes = predefinedRouteRepository.findByIsActiveTrue();
-        if (activeRoutes.isEmpty()) {
+        double[] latitudes = new double[gpsPoints.size()];
+        double[] longitudes = new double[gpsPoints.size()];
+        double[] times = new double[gpsPoints.size()];
+        int count = 0;
+        for (GpsPoint userPoint : gpsPoints) {
+            if (userPoint.getLatitude() == null || userPoint.getLongitude() == null) {
+                continue;
+            }
+            latitudes[count] = userPoint.getLatitude().doubleValue();
+            longitudes[count] = userPoint.getLongitude().doubleValue();
+            times[count] = TrackPreprocessingService.seconds(userPoint.getTimestamp());
+            count++;
+        }
+
+        return findBestMatch(latitudes, longitudes, times, count, "GPS points");
+    }
+
+    /**
+     * Match the first count positions against all active routes: clean the track, prefilter
+     * the routes by bounding box, evaluate the candidates in parallel and pick the best
+     * scoring one, with the other covered routes attached.
+     */
+    private RouteMatchResult findBestMatch(double[] latitudes, double[] longitudes, double[] times, int count,
+                                           String pointType) {
+        RouteSpatialIndex.Snapshot index = routeSpatialIndex.current();
+        if (index.getRouteCount() == 0) {
             log.warn("No active predefined routes available for matching");
             return null;
         }
 
-        log.info("Matching {} GPS points against {} active routes", gpsPoints.size(), activeRoutes.size());
+        TrackPreprocessor.Points track = trackPreprocessingService.process(latitudes, longitudes, times, count);
+        int[] candidates = prefilter(index, BoundingBox.of(track.getLatitudes(), track.getLongitudes(), track.size()));
+        log.info("Matching {} {} ({} after preprocessing) against {} of {} active routes (others rejected by bounding box)",
+                count, pointType, track.size(), candidates.length, index.getRouteCount());
+
+        return selectBest(evaluateCandidates(index, candidates, track.getLatitudes(), track.getLongitudes(),
+                track.size()), pointType);
+    }
 
+    /**
+     * Bounding-box prefilter: O(1) per route, before any point-level work.
+     *
+     * @return indices of the routes whose box intersects the (padded) track box, ascending
+     */
+    private int[] prefilter(RouteSpatialIndex.Snapshot index, BoundingBox trackBounds) {
+        BoundingBox paddedTrack = trackBounds.padded(MATCHING_TOLERANCE_METERS);
+        int[] candidates = new int[index.getRouteCount()];
+        int candidateCount = 0;
+        for (int route = 0; route < index.getRouteCount(); route++) {
+            if (index.getRoute(route).getBounds().intersects(paddedTrack)) {
+                candidates[candidateCount++] = route;
+            }
+        }
+        meterRegistry.counter(PREFILTER_METRIC, "result", "rejected").increment(index.getRouteCount() - candidateCount);
+        meterRegistry.counter(PREFILTER_METRIC, "result", "candidate").increment(candidateCount);
+        return Arrays.copyOf(candidates, candidateCount);
+    }
+
+    /**
+     * Pick the best scoring result. Results are in route id order and only a strictly
+     * better score replaces the current best, so ties go to the lower route id. The other
+     * results reaching {@link #additionalMatchMinCompletion} are attached to it, ordered
+     * the same way.
+     */
+    private RouteMatchResult selectBest(RouteMatchResult[] results, String pointType) {
         RouteMatchResult bestMatch = null;
         double bestMatchScore = 0.0;
+        List<RouteMatchResult> covered = new ArrayList<>();
 
-        for (PredefinedRoute route : activeRoutes) {
-            RouteMatchResult matchResult = matchAgainstRouteFromGpsPoints(gpsPoints, route);
+        for (RouteMatchResult matchResult : results) {
             if (matchResult != null) {
                 double matchScore = calculateMatchScore(matchResult);
-                log.debug("Route '{}' match score: {}", route.getName(), matchScore);
+                log.debug("Route '{}' match score: {}", matchResult.getMatchedRouteName(), matchScore);
 
                 if (matchScore > bestMatchScore) {
                     bestMatchScore = matchScore;
                     bestMatch = matchResult;
                 }
+                if (matchResult.getRouteCompletionPercentage() >= additionalMatchMinCompletion) {
+                    covered.add(matchResult);
+                }
             }
         }
 
         if (bestMatch != null) {
-            log.info("Best match: Route '{}' with {}% completion, avg accuracy: {}m",
-                     bestMatch.getMatchedRoute().getName(),
+            RouteMatchResult best = bestMatch;
+            // Stable sort, so equal scores stay in route id order
+            bestMatch.setAdditionalMatches(covered.stream()
+                    .filter(matchResult -> matchResult != best)
+                    .sorted(Comparator.comparingDouble(this::calculateMatchScore).reversed())
+                    .toList());
+
+            log.info("Best match: Route '{}' with {}% completion, avg accuracy: {}m ({} other routes covered)",
+                     bestMatch.getMatchedRouteName(),
                      bestMatch.getRouteCompletionPercentage(),
-                     bestMatch.getAverageAccuracyMeters());
+                     bestMatch.getAverageAccuracyMeters(),
+                     bestMatch.getAdditionalMatches().size());
         } else {
-            log.info("No matching route found for GPS track");
+            log.info("No matching route found for {}", pointType);
         }
 
         return bestMatch;
     }
 
     /**
-     * Match track points against a specific route.
+     * Evaluate every candidate route; result k belongs to candidates[k]. Candidates are
+     * striped over at most {@link #parallelism} virtual threads, and the call returns once
+     * all of them finished.
      */
-    private RouteMatchResult matchAgainstRoute(List<FitTrackPoint> trackPoints, PredefinedRoute route) {
-        List<RouteTrackPoint> routePoints = route.getTrackPoints();
-        if (routePoints.isEmpty()) {
-            return null;
-        }
-
-        RouteMatchResult result = new RouteMatchResult();
-        result.setMatchedRoute(route);
-
-        List<Integer> matchedIndices = new ArrayList<>();
-        List<Double> accuracies = new ArrayList<>();
-        int consecutiveMatches = 0;
-        int maxConsecutiveMatches = 0;
-        double matchedDistance = 0.0;
-
-        // Try to match each user track point to the closest route point
-        for (FitTrackPoint userPoint : trackPoints) {
-            if (userPoint.getPositionLat() == null || userPoint.getPositionLong() == null) {
-                continue;
+    private RouteMatchResult[] evaluateCandidates(RouteSpatialIndex.Snapshot index, int[] candidates,
+                                                  double[] latitudes, double[] longitudes, int count) {
+        RouteMatchResult[] results = new RouteMatchResult[candidates.length];
+        int workers = Math.min(parallelism, candidates.length);
+        if (workers <= 1) {
+            for (int k = 0; k < candidates.length; k++) {
+                results[k] = evaluateRoute(index, candidates[k], latitudes, longitudes, count);
             }
+            return results;
+        }
 
-            // Find closest route point within tolerance
-            int closestIndex = -1;
-            double minDistance = Double.MAX_VALUE;
-
-            for (int i = 0; i < routePoints.size(); i++) {
-                RouteTrackPoint routePoint = routePoints.get(i);
-                double distance = calculateDistance(
-                    userPoint.getPositionLat().doubleValue(),
-                    userPoint.getPositionLong().doubleValue(),
-                    routePoint.getLatitude().doubleValue(),
-                    routePoint.getLongitude().doubleValue()
-                );
-
-                if (distance < minDistance && distance <= MATCHING_TOLERANCE_METERS) {
-                    minDistance = distance;
-                    closestIndex = i;
-                }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int worker = 0; worker < workers; worker++) {
+                int first = worker;
+                futures.add(executor.submit(() -> {
+                    for (int k = first; k < candidates.length; k += workers) {
+                        results[k] = evaluateRoute(index, candidates[k], latitudes, longitudes, count);
+                    }
+                }));
             }
-
-            if (closestIndex >= 0) {
-                matchedIndices.add(closestIndex);
-                accuracies.add(minDistance);
-                consecutiveMatches++;
-                maxConsecutiveMatches = Math.max(maxConsecutiveMatches, consecutiveMatches);
-            } else {
-                consecutiveMatches = 0;
+            for (Future<?> future : futures) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Route matching was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Route matching failed: " + e.getCause().getMessage(), e.getCause());
         }
+        return results;
+    }
 
-        // If we have too few matches, this is not a valid match
-        if (matchedIndices.size() < 5 || maxConsecutiveMatches < 5) {
-            return null;
-        }
-
-        // Calculate matched distance and completion percentage
-        if (!matchedIndices.isEmpty()) {
-            int minIndex = matchedIndices.stream().min(Integer::compareTo).orElse(0);
-            int maxIndex = matchedIndices.stream().max(Integer::compareTo).orElse(0);
-
-            if (maxIndex > minIndex) {
-                BigDecimal startDist = routePoints.get(minIndex).getDistanceFromStartMeters();
-                BigDecimal endDist = routePoints.get(maxIndex).getDistanceFromStartMeters();
-                matchedDistance = endDist.subtract(startDist).doubleValue();
+    /**
+     * Match the track against one route by walking the route's tolerance corridor with
+     * the user points near it (see {@link CorridorWalker}).
+     */
+    private RouteMatchResult evaluateRoute(RouteSpatialIndex.Snapshot index, int route,
+                                           double[] latitudes, double[] longitudes, int count) {
+        RouteGeometry geometry = index.getRoute(route);
+        BoundingBox routeBounds = geometry.getBounds().padded(MATCHING_TOLERANCE_METERS);
+
+        CorridorWalker walker = new CorridorWalker(geometry, index.getGrid(route), MATCHING_TOLERANCE_METERS);
+        for (int i = 0; i < count; i++) {
+            if (routeBounds.contains(latitudes[i], longitudes[i])) {
+                walker.accept(i, latitudes[i], longitudes[i]);
             }
         }
+        return toMatchResult(walker);
+    }
 
-        double totalRouteDistance = route.getDistanceMeters().doubleValue();
-        double completionPercentage = (matchedDistance / totalRouteDistance) * 100.0;
-
-        result.setMatchedDistanceMeters(matchedDistance);
-        result.setRouteCompletionPercentage(completionPercentage);
-        result.setCompleteRoute(completionPercentage >= 95.0); // 95% threshold for "complete"
-        result.setMatchedIndices(matchedIndices);
-
-        // Calculate average accuracy
-        double avgAccuracy = accuracies.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        result.setAverageAccuracyMeters(avgAccuracy);
-
-        // Determine direction
-        UserActivity.RunDirection direction = determineDirection(matchedIndices, routePoints.size());
-        result.setDirection(direction);
-
-        return result;
+    /**
+     * Start matching a track whose positions arrive one by one (while a FIT file is
+     * decoded, or while a provider stream is read). The route index is pinned for the
+     * whole track.
+     */
+    public OnlineMatcher startOnlineMatch() {
+        return new OnlineMatcher(routeSpatialIndex.current());
     }
 
     /**
-     * Match GPS points from manual run against a specific route.
+     * Route matcher fed with one position at a time. Each position is matched against
+     * the routes the spatial index finds within the tolerance as soon as it arrives,
+     * instead of testing it against every route, keeping the
+     * per-route match state, so {@link #finish()} only has to turn that state into
+     * results. Positions go through the same preprocessing as in a batch match, so it
+     * gives the same result as matching the whole track at once. Not thread safe; feed it
+     * from the decoding thread.
      */
-    private RouteMatchResult matchAgainstRouteFromGpsPoints(List<GpsPoint> gpsPoints, PredefinedRoute route) {
-        List<RouteTrackPoint> routePoints = route.getTrackPoints();
-        if (routePoints.isEmpty()) {
-            return null;
+    public class OnlineMatcher {
+        private final RouteSpatialIndex.Snapshot index;
+        private final TrackPreprocessor preprocessor;
+        private final CorridorWalker[] walkers;
+        // Last position each route was fed, so it is fed once however many of its points are near
+        private final int[] fedAt;
+        private double minLatitude = Double.POSITIVE_INFINITY;
+        private double maxLatitude = Double.NEGATIVE_INFINITY;
+        private double minLongitude = Double.POSITIVE_INFINITY;
+        private double maxLongitude = Double.NEGATIVE_INFINITY;
+        private int count;
+        private boolean finished;
+        private RouteMatchResult result;
+
+        OnlineMatcher(RouteSpatialIndex.Snapshot index) {
+            this.index = index;
+            this.walkers = new CorridorWalker[index.getRouteCount()];
+            this.fedAt = new int[index.getRouteCount()];
+            Arrays.fill(fedAt, -1);
+            this.preprocessor = trackPreprocessingService.start(this::match);
         }
 
-        RouteMatchResult result = new RouteMatchResult();
-        result.setMatchedRoute(route);
-
-        List<Integer> matchedIndices = new ArrayList<>();
-        List<Double> accuracies = new ArrayList<>();
-        int consecutiveMatches = 0;
-        int maxConsecutiveMatches = 0;
-        double matchedDistance = 0.0;
-
-        // Try to match each user GPS point to the closest route point
-        for (GpsPoint userPoint : gpsPoints) {
-            if (userPoint.getLatitude() == null || userPoint.getLongitude() == null) {
-                continue;
+        /**
+         * Feed the next position of the track, in recording order. Positions with a NaN
+         * coordinate are ignored, like points without GPS data in a batch match.
+         *
+         * @param timeSeconds recording time in seconds, or NaN if unknown (then spikes are not
+         * detected)
+         */
+        public void accept(double latitude, double longitude, double timeSeconds) {
+            if (finished) {
+                throw new IllegalStateException("Online route match already finished");
             }
+            preprocessor.accept(latitude, longitude, timeSeconds);
+        }
+
+        public void accept(double latitude, double longitude) {
+            accept(latitude, longitude, Double.NaN);
+        }
 
-            // Find closest route point within tolerance
-            int closestIndex = -1;
-            double minDistance = Double.MAX_VALUE;
-
-            for (int i = 0; i < routePoints.size(); i++) {
-                RouteTrackPoint routePoint = routePoints.get(i);
-                double distance = calculateDistance(
-                    userPoint.getLatitude().doubleValue(),
-                    userPoint.getLongitude().doubleValue(),
-                    routePoint.getLatitude().doubleValue(),
-                    routePoint.getLongitude().doubleValue()
-                );
-
-                if (distance < minDistance && distance <= MATCHING_TOLERANCE_METERS) {
-                    minDistance = distance;
-                    closestIndex = i;
+        private void match(double latitude, double longitude) {
+            int i = count++;
+            minLatitude = Math.min(minLatitude, latitude);
+            maxLatitude = Math.max(maxLatitude, latitude);
+            minLongitude = Math.min(minLongitude, longitude);
+            maxLongitude = Math.max(maxLongitude, longitude);
+
+            // A walker ignores positions with no route point within the tolerance, so only the
+            // routes the combined grid finds near the position need to see it
+            index.forEachRouteWithin(latitude, longitude, MATCHING_TOLERANCE_METERS, route -> {
+                if (fedAt[route] == i) {
+                    return;
+                }
+                fedAt[route] = i;
+                if (walkers[route] == null) {
+                    walkers[route] = new CorridorWalker(index.getRoute(route), index.getGrid(route),
+                            MATCHING_TOLERANCE_METERS);
                 }
+                walkers[route].accept(i, latitude, longitude);
+            });
+        }
+
+        public int getPointCount() {
+            return count;
+        }
+
+        /**
+         * @return the best match of the positions fed so far with the other covered routes
+         * attached, or null if none; later calls return the same result
+         */
+        public RouteMatchResult finish() {
+            if (finished) {
+                return result;
+            }
+            preprocessor.finish();
+            finished = true;
+            if (count == 0 || index.getRouteCount() == 0) {
+                log.info("No positions or no active routes for online route matching");
+                return null;
             }
 
-            if (closestIndex >= 0) {
-                matchedIndices.add(closestIndex);
-                accuracies.add(minDistance);
-                consecutiveMatches++;
-                maxConsecutiveMatches = Math.max(maxConsecutiveMatches, consecutiveMatches);
-            } else {
-                consecutiveMatches = 0;
+            BoundingBox trackBounds = new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+            int[] candidates = prefilter(index, trackBounds);
+            RouteMatchResult[] results = new RouteMatchResult[candidates.length];
+            for (int k = 0; k < candidates.length; k++) {
+                CorridorWalker walker = walkers[candidates[k]];
+                if (walker != null) {
+                    results[k] = toMatchResult(walker);
+                }
             }
+            log.info("Online match of {} positions ({} after preprocessing) against {} of {} active routes",
+                    preprocessor.getInputCount(), count, candidates.length, index.getRouteCount());
+            result = selectBest(results, "streamed positions");
+            return result;
         }
+    }
 
+    /**
+     * Turn the walk along one route into a result, or null if too few user points
+     * matched it.
+     */
+    private RouteMatchResult toMatchResult(CorridorWalker walker) {
         // If we have too few matches, this is not a valid match
-        if (matchedIndices.size() < 5 || maxConsecutiveMatches < 5) {
+        if (walker.getMatchCount() < 5 || walker.getMaxConsecutive() < 5) {
             return null;
         }
 
-        // Calculate matched distance and completion percentage
-        if (!matchedIndices.isEmpty()) {
-            int minIndex = matchedIndices.stream().min(Integer::compareTo).orElse(0);
-            int maxIndex = matchedIndices.stream().max(Integer::compareTo).orElse(0);
-
-            if (maxIndex > minIndex) {
-                BigDecimal startDist = routePoints.get(minIndex).getDistanceFromStartMeters();
-                BigDecimal endDist = routePoints.get(maxIndex).getDistanceFromStartMeters();
-                matchedDistance = endDist.subtract(startDist).doubleValue();
-            }
+        List<Integer> matchedIndices = new ArrayList<>(walker.getMatchCount());
+        for (int routeIndex : walker.getMatchedIndices()) {
+            matchedIndices.add(routeIndex);
         }
 
-        double totalRouteDistance = route.getDistanceMeters().doubleValue();
-        double completionPercentage = (matchedDistance / totalRouteDistance) * 100.0;
+        RouteGeometry geometry = walker.getRoute();
+        double completionPercentage = walker.getCompletionPercentage();
 
-        result.setMatchedDistanceMeters(matchedDistance);
+        RouteMatchResult result = new RouteMatchResult();
+        result.setMatchedRouteId(geometry.getId());
+        result.setMatchedRouteName(geometry.getName());
+        result.setMatchedDistanceMeters(walker.getCoveredMeters());
         result.setRouteCompletionPercentage(completionPercentage);
         result.setCompleteRoute(completionPercentage >= 95.0); // 95% threshold for "complete"
         result.setMatchedIndices(matchedIndices);
-
-        // Calculate average accuracy
-        double avgAccuracy = accuracies.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        result.setAverageAccuracyMeters(avgAccuracy);
-
-        // Determine direction
-        UserActivity.RunDirection direction = determineDirection(matchedIndices, routePoints.size());
-        result.setDirection(direction);
-
+        result.setAverageAccuracyMeters(walker.getAverageAccuracyMeters());
+        result.setDirection(walker.getDirection());
         return result;
     }
 
-    /**
-     * Determine if the route was run clockwise or counter-clockwise.
-     */
-    private UserActivity.RunDirection determineDirection(List<Integer> matchedIndices, int totalRoutePoints) {
-        if (matchedIndices.size() < 3) {
-            return UserActivity.RunDirection.UNKNOWN;
-        }
-
-        // Count increasing vs decreasing index transitions
-        int increasingCount = 0;
-        int decreasingCount = 0;
-
-        for (int i = 1; i < matchedIndices.size(); i++) {
-            int diff = matchedIndices.get(i) - matchedIndices.get(i - 1);
-
-            // Handle wrap-around for circular routes
-            if (Math.abs(diff) > totalRoutePoints / 2) {
-                diff = diff > 0 ? diff - totalRoutePoints : diff + totalRoutePoints;
-            }
-
-            if (diff > 0) {
-                increasingCount++;
-            } else if (diff < 0) {
-                decreasingCount++;
-            }
-        }
-
-        // Determine predominant direction
-        if (increasingCount > decreasingCount * 2) {
-            return UserActivity.RunDirection.CLOCKWISE;
-        } else if (decreasingCount > increasingCount * 2) {
-            return UserActivity.RunDirection.COUNTER_CLOCKWISE;
-        } else {
-            return UserActivity.RunDirection.UNKNOWN;
-        }
-    }
-
     /**
      * Calculate a match score for ranking multiple route matches.
      * Higher score = better match.
@@ -389,23 +500,4 @@ public class RouteMatchingService {
         // Weighted combination: 70% completion, 30% accuracy
         return (completionScore * 0.7) + (accuracyScore * 0.3);
     }
-
-    /**
-     * Calculate distance between two GPS coordinates using Haversine formula.
-     * Returns distance in meters.
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double EARTH_RADIUS = 6371000; // meters
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c;
-    }
 }
@@ -0,0 +1,359 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.RouteRematchJob;
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.event.RouteChangedEvent;
+import com.mainstream.activity.repository.RouteRematchJobRepository;
+import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.fitfile.repository.FitFileUploadRepository;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.ingest.stage.PolylineStage;
+import com.mainstream.run.entity.ActivityMetrics;
+import com.mainstream.run.entity.Run;
+import com.mainstream.run.repository.ActivityMetricsRepository;
+import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.run.repository.RunRepository;
+import com.mainstream.run.service.ActivityMetricsService;
+import com.mainstream.user.entity.User;
+import com.mainstream.user.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Re-matches past activities when a route is created or reactivated, so runs recorded
+ * before the route existed are credited to it.
+ *
+ * Candidates are found with a bounding-box query over the activity metrics (activities
+ * stored before the metrics existed get theirs first, see {@link #backfillMetrics}), and each is
+ * matched against the cached geometry of all active routes; only activities that now
+ * cover the changed route (as best or additional match) and did not before are updated,
+ * which also re-checks the user's trophies.
+ * Jobs run one at a time on a background thread, in chunks: after every chunk the
+ * checkpoint is saved and the job pauses, so a restart resumes where it stopped and the
+ * database is never saturated.
+ */
+@Slf4j
+@Service
+public class RouteRematchService {
+
+    // Activity boxes backfilled from the simplified polyline may be a few meters short
+    private static final double CANDIDATE_PADDING_METERS = 2 * RouteMatchingService.MATCHING_TOLERANCE_METERS;
+
+    private final RouteRematchJobRepository routeRematchJobRepository;
+    private final RouteGeometryCache routeGeometryCache;
+    private final RouteMatchingService routeMatchingService;
+    private final UserActivityService userActivityService;
+    private final UserActivityRepository userActivityRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
+    private final ActivityMetricsRepository activityMetricsRepository;
+    private final ActivityMetricsService activityMetricsService;
+    private final FitFileUploadRepository fitFileUploadRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final RunRepository runRepository;
+    private final GpsPointRepository gpsPointRepository;
+    private final UserRepository userRepository;
+    private final IngestPipeline ingestPipeline;
+    private final int chunkSize;
+    private final long chunkDelayMillis;
+    private final ExecutorService executor;
+
+    public RouteRematchService(RouteRematchJobRepository routeRematchJobRepository,
+                               RouteGeometryCache routeGeometryCache,
+                               RouteMatchingService routeMatchingService,
+                               UserActivityService userActivityService,
+                               UserActivityRepository userActivityRepository,
+                               UserActivityRouteMatchRepository userActivityRouteMatchRepository,
+                               ActivityMetricsRepository activityMetricsRepository,
+                               ActivityMetricsService activityMetricsService,
+                               FitFileUploadRepository fitFileUploadRepository,
+                               FitTrackPointRepository fitTrackPointRepository,
+                               RunRepository runRepository,
+                               GpsPointRepository gpsPointRepository,
+                               UserRepository userRepository,
+                               IngestPipeline ingestPipeline,
+                               @Value("${mainstream.route-rematch.chunk-size:50}") int chunkSize,
+                               @Value("${mainstream.route-rematch.chunk-delay-ms:1000}") long chunkDelayMillis) {
+        this.routeRematchJobRepository = routeRematchJobRepository;
+        this.routeGeometryCache = routeGeometryCache;
+        this.routeMatchingService = routeMatchingService;
+        this.userActivityService = userActivityService;
+        this.userActivityRepository = userActivityRepository;
+        this.userActivityRouteMatchRepository = userActivityRouteMatchRepository;
+        this.activityMetricsRepository = activityMetricsRepository;
+        this.activityMetricsService = activityMetricsService;
+        this.fitFileUploadRepository = fitFileUploadRepository;
+        this.fitTrackPointRepository = fitTrackPointRepository;
+        this.runRepository = runRepository;
+        this.gpsPointRepository = gpsPointRepository;
+        this.userRepository = userRepository;
+        this.ingestPipeline = ingestPipeline;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMillis = chunkDelayMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-rematch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a re-match once a route creation or activation committed. Runs after the
+     * geometry cache picked up the route.
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        if (event.getChangeType() != RouteChangedEvent.ChangeType.CREATED
+                && event.getChangeType() != RouteChangedEvent.ChangeType.ACTIVATED) {
+            return;
+        }
+        // The job row is written on the worker, outside the committed transaction
+        executor.submit(() -> {
+            RouteRematchJob job = routeRematchJobRepository.save(
+                    RouteRematchJob.builder().routeId(event.getRouteId()).build());
+            log.info("Queued re-match job {} for {}", job.getId(), event);
+            runJob(job.getId());
+        });
+    }
+
+    /**
+     * Resume jobs interrupted by a shutdown from their last checkpoint.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<RouteRematchJob> unfinished = routeRematchJobRepository.findByStatusInOrderById(
+                List.of(RouteRematchJob.Status.PENDING, RouteRematchJob.Status.RUNNING));
+        for (RouteRematchJob job : unfinished) {
+            log.info("Resuming re-match job {} for route {} after metrics {}",
+                    job.getId(), job.getRouteId(), job.getLastMetricsId());
+            executor.submit(() -> runJob(job.getId()));
+        }
+    }
+
+    private void runJob(Long jobId) {
+        RouteRematchJob job = routeRematchJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        Optional<RouteGeometry> route = routeGeometryCache.getRoute(job.getRouteId());
+        if (route.isEmpty()) {
+            finish(job, RouteRematchJob.Status.COMPLETED, "Route is not active");
+            return;
+        }
+
+        job.setStatus(RouteRematchJob.Status.RUNNING);
+        job = routeRematchJobRepository.save(job);
+        long start = System.currentTimeMillis();
+        try {
+            backfillMetrics();
+            backfillBounds();
+
+            BoundingBox area = route.get().getBounds().padded(CANDIDATE_PADDING_METERS);
+            while (true) {
+                List<ActivityMetrics> chunk = activityMetricsRepository.findIntersecting(
+                        area.getMinLatitude(), area.getMaxLatitude(), area.getMinLongitude(), area.getMaxLongitude(),
+                        job.getLastMetricsId(), PageRequest.of(0, chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                int rematched = 0;
+                for (ActivityMetrics metrics : chunk) {
+                    try {
+                        if (rematch(metrics, job.getRouteId())) {
+                            rematched++;
+                        }
+                    } catch (Exception e) {
+                        log.warn("Re-match of activity metrics {} against route {} failed: {}",
+                                metrics.getId(), job.getRouteId(), e.getMessage());
+                    }
+                }
+
+                // Checkpoint
+                job.setLastMetricsId(chunk.get(chunk.size() - 1).getId());
+                job.setProcessedCount(job.getProcessedCount() + chunk.size());
+                job.setRematchedCount(job.getRematchedCount() + rematched);
+                job = routeRematchJobRepository.save(job);
+
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                Thread.sleep(chunkDelayMillis);
+            }
+
+            log.info("Re-match job {} for route {} finished in {} ms: {} candidates, {} re-matched",
+                    job.getId(), job.getRouteId(), System.currentTimeMillis() - start,
+                    job.getProcessedCount(), job.getRematchedCount());
+            finish(job, RouteRematchJob.Status.COMPLETED, null);
+        } catch (InterruptedException e) {
+            // Left RUNNING; resumed from the checkpoint on the next start
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Re-match job {} for route {} failed: {}", job.getId(), job.getRouteId(), e.getMessage(), e);
+            finish(job, RouteRematchJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Give FIT uploads and runs stored before the ingest pipeline an activity metrics row
+     * with their polyline and bounding box, so the candidate query can find them. Only
+     * the first job after an upgrade has much to do; activities without GPS data never
+     * get a row and are skipped by the queries.
+     */
+    private void backfillMetrics() throws InterruptedException {
+        long afterId = 0;
+        while (true) {
+            List<Long> uploadIds = fitFileUploadRepository.findIdsWithGpsWithoutMetrics(
+                    afterId, PageRequest.of(0, chunkSize));
+            for (Long uploadId : uploadIds) {
+                try {
+                    fitFileUploadRepository.findById(uploadId).ifPresent(upload -> ingestPipeline.execute(
+                            ActivityModel.forFitFile(upload,
+                                    fitTrackPointRepository.findByFitFileUploadIdWithGpsData(uploadId)).build(),
+                            Set.of(PolylineStage.NAME)));
+                } catch (Exception e) {
+                    log.warn("Metrics backfill of FIT upload {} failed: {}", uploadId, e.getMessage());
+                }
+            }
+            if (uploadIds.size() < chunkSize) {
+                break;
+            }
+            afterId = uploadIds.get(uploadIds.size() - 1);
+            Thread.sleep(chunkDelayMillis);
+        }
+
+        afterId = 0;
+        while (true) {
+            List<Long> runIds = runRepository.findIdsWithGpsWithoutMetrics(afterId, PageRequest.of(0, chunkSize));
+            for (Long runId : runIds) {
+                try {
+                    runRepository.findById(runId).ifPresent(run -> ingestPipeline.execute(
+                            ActivityModel.forRunFromGpsPoints(run,
+                                    gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(runId)).build(),
+                            Set.of(PolylineStage.NAME)));
+                } catch (Exception e) {
+                    log.warn("Metrics backfill of run {} failed: {}", runId, e.getMessage());
+                }
+            }
+            if (runIds.size() < chunkSize) {
+                break;
+            }
+            afterId = runIds.get(runIds.size() - 1);
+            Thread.sleep(chunkDelayMillis);
+        }
+    }
+
+    /**
+     * Give activities stored before bounding boxes were recorded one, so the candidate
+     * query can find them.
+     */
+    private void backfillBounds() throws InterruptedException {
+        long afterId = 0;
+        while (true) {
+            long lastId = activityMetricsService.backfillBounds(afterId, chunkSize);
+            if (lastId == afterId) {
+                return;
+            }
+            afterId = lastId;
+            Thread.sleep(chunkDelayMillis);
+        }
+    }
+
+    /**
+     * Match one candidate against all active routes, and record the result if it now
+     * covers the route and did not before.
+     *
+     * @return true if the activity was updated
+     */
+    private boolean rematch(ActivityMetrics metrics, Long routeId) {
+        if (metrics.getFitFileUploadId() != null) {
+            Optional<UserActivity> existing = userActivityRepository.findByFitFileUploadId(metrics.getFitFileUploadId());
+            if (isMatchedTo(existing, routeId)) {
+                return false;
+            }
+            FitFileUpload upload = fitFileUploadRepository.findById(metrics.getFitFileUploadId()).orElse(null);
+            if (upload == null) {
+                return false;
+            }
+            RouteMatchingService.RouteMatchResult match = routeMatchingService.matchRoute(
+                    fitTrackPointRepository.findByFitFileUploadIdWithGpsData(upload.getId()));
+            if (!covers(match, routeId)) {
+                return false;
+            }
+            User user = userRepository.findById(upload.getUserId()).orElse(null);
+            if (user == null) {
+                return false;
+            }
+            userActivityService.recordActivity(user, upload, match);
+            log.info("FIT upload {} re-matched to route {}", upload.getId(), routeId);
+            return true;
+        }
+
+        if (metrics.getRunId() != null) {
+            Optional<UserActivity> existing = userActivityRepository.findByRunId(metrics.getRunId());
+            if (isMatchedTo(existing, routeId)) {
+                return false;
+            }
+            Run run = runRepository.findById(metrics.getRunId()).orElse(null);
+            if (run == null) {
+                return false;
+            }
+            RouteMatchingService.RouteMatchResult match = routeMatchingService.matchRouteFromGpsPoints(
+                    gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(run.getId()));
+            if (!covers(match, routeId)) {
+                return false;
+            }
+            User user = userRepository.findById(run.getUserId()).orElse(null);
+            if (user == null) {
+                return false;
+            }
+            userActivityService.recordActivityFromRun(user, run, match);
+            log.info("Run {} re-matched to route {}", run.getId(), routeId);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isMatchedTo(Optional<UserActivity> activity, Long routeId) {
+        return activity
+                .map(a -> userActivityRouteMatchRepository.existsByUserActivityIdAndRouteId(a.getId(), routeId))
+                .orElse(false);
+    }
+
+    private boolean covers(RouteMatchingService.RouteMatchResult match, Long routeId) {
+        return match != null && match.getAllMatches().stream()
+                .anyMatch(routeMatch -> routeId.equals(routeMatch.getMatchedRouteId()));
+    }
+
+    private void finish(RouteRematchJob job, RouteRematchJob.Status status, String errorMessage) {
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage);
+        job.setFinishedAt(LocalDateTime.now());
+        routeRematchJobRepository.save(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,148 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.geo.PointGridIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory spatial index over the track points of all active predefined routes, used
+ * by {@link RouteMatchingService} so that each user point is only compared with the
+ * route points within the matching tolerance.
+ *
+ * Every route has its own grid, so candidate routes can be evaluated independently (and
+ * in parallel) without seeing each other's points. A combined grid over the points of
+ * all routes answers which routes pass near a position, for matching a track point by
+ * point while it streams in. The index is an immutable snapshot
+ * built from the {@link RouteGeometryCache}, and is rebuilt whenever the cache moves to
+ * a new version (route created, updated, activated or deactivated). Readers keep using
+ * the previous snapshot while a rebuild is running.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteSpatialIndex {
+
+    /** Grid cell edge; equal to the matching tolerance so a query scans at most 3x3 cells. */
+    static final double CELL_SIZE_METERS = 10.0;
+
+    private final RouteGeometryCache routeGeometryCache;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @return an index over the currently active routes
+     */
+    public Snapshot current() {
+        RouteGeometryCache.Snapshot geometry = routeGeometryCache.current();
+        Snapshot current = snapshot;
+        if (current != null && current.version == geometry.getVersion()) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != geometry.getVersion()) {
+                current = build(geometry, current);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private Snapshot build(RouteGeometryCache.Snapshot geometry, Snapshot previous) {
+        long start = System.currentTimeMillis();
+        List<RouteGeometry> routes = geometry.getRoutes();
+
+        // Route geometry is immutable, so grids of unchanged routes are carried over
+        Map<RouteGeometry, PointGridIndex> reusable = new IdentityHashMap<>();
+        if (previous != null) {
+            for (int r = 0; r < previous.routes.size(); r++) {
+                reusable.put(previous.routes.get(r), previous.grids[r]);
+            }
+        }
+
+        PointGridIndex[] grids = new PointGridIndex[routes.size()];
+        int built = 0;
+        for (int r = 0; r < routes.size(); r++) {
+            RouteGeometry route = routes.get(r);
+            grids[r] = reusable.get(route);
+            if (grids[r] == null) {
+                grids[r] = new PointGridIndex(route.getLatitudes(), route.getLongitudes(), CELL_SIZE_METERS);
+                built++;
+            }
+        }
+
+        // The combined grid changes with every route, so it is always rebuilt
+        int totalPoints = 0;
+        for (RouteGeometry route : routes) {
+            totalPoints += route.getPointCount();
+        }
+        double[] latitudes = new double[totalPoints];
+        double[] longitudes = new double[totalPoints];
+        int[] pointRoutes = new int[totalPoints];
+        int offset = 0;
+        for (int r = 0; r < routes.size(); r++) {
+            RouteGeometry route = routes.get(r);
+            int n = route.getPointCount();
+            System.arraycopy(route.getLatitudes(), 0, latitudes, offset, n);
+            System.arraycopy(route.getLongitudes(), 0, longitudes, offset, n);
+            Arrays.fill(pointRoutes, offset, offset + n, r);
+            offset += n;
+        }
+        PointGridIndex combined = new PointGridIndex(latitudes, longitudes, CELL_SIZE_METERS);
+
+        log.info("Built route spatial index over {} active routes ({} grids rebuilt) in {} ms",
+                routes.size(), built, System.currentTimeMillis() - start);
+        return new Snapshot(geometry.getVersion(), routes, grids, combined, pointRoutes);
+    }
+
+    /**
+     * Immutable index over the points of all active routes. Routes are numbered 0..n-1 in
+     * id order; grid point indices are the route's own track point indices.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<RouteGeometry> routes;
+        private final PointGridIndex[] grids;
+        // Points of all routes, and the route of each point
+        private final PointGridIndex combined;
+        private final int[] pointRoutes;
+
+        private Snapshot(long version, List<RouteGeometry> routes, PointGridIndex[] grids,
+                         PointGridIndex combined, int[] pointRoutes) {
+            this.version = version;
+            this.routes = routes;
+            this.grids = grids;
+            this.combined = combined;
+            this.pointRoutes = pointRoutes;
+        }
+
+        public int getRouteCount() {
+            return routes.size();
+        }
+
+        public RouteGeometry getRoute(int route) {
+            return routes.get(route);
+        }
+
+        public PointGridIndex getGrid(int route) {
+            return grids[route];
+        }
+
+        /**
+         * Visit the routes with a point within radiusMeters of the given position; a route
+         * is visited once for each such point.
+         */
+        public void forEachRouteWithin(double latitude, double longitude, double radiusMeters,
+                                       IntConsumer visitor) {
+            combined.forEachWithin(latitude, longitude, radiusMeters,
+                    (point, distance) -> visitor.accept(pointRoutes[point]));
+        }
+    }
+}
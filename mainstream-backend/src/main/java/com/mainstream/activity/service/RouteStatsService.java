@@ -2,64 +2,115 @@ package com.mainstream.activity.service;
 
 import com.mainstream.activity.dto.RouteStatsDto;
 import com.mainstream.activity.repository.UserActivityRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Service for calculating route usage statistics.
+ *
+ * The counts of all routes come from one grouped query and are cached for ttlSeconds, so
+ * listing routes with statistics costs at most one query per interval whatever the number
+ * of routes. The cache is also dropped when the day changes, as all period starts move then.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RouteStatsService {
 
     private final UserActivityRepository userActivityRepository;
+    private final long ttlMillis;
+
+    private volatile Snapshot snapshot;
+
+    public RouteStatsService(UserActivityRepository userActivityRepository,
+                             @Value("${mainstream.route-stats.cache-ttl-seconds:60}") long ttlSeconds) {
+        this.userActivityRepository = userActivityRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
 
     /**
-     * Calculate statistics for a specific route.
+     * Statistics of one route for different time periods (all zero if it was never run).
      */
     public RouteStatsDto calculateRouteStats(Long routeId) {
-        LocalDateTime now = LocalDateTime.now();
-
-        // Today (from start of day)
-        LocalDateTime todayStart = now.toLocalDate().atStartOfDay();
-        long todayCount = userActivityRepository.countByRouteAndTimeRange(routeId, todayStart);
+        RouteStatsDto stats = currentSnapshot().statsByRoute.get(routeId);
+        return stats != null ? stats : empty(routeId);
+    }
 
-        // This week (from Monday)
-        LocalDateTime weekStart = now.toLocalDate()
-                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
-                .atStartOfDay();
-        long thisWeekCount = userActivityRepository.countByRouteAndTimeRange(routeId, weekStart);
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.isFresh(LocalDate.now(), System.currentTimeMillis(), ttlMillis)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || !current.isFresh(LocalDate.now(), System.currentTimeMillis(), ttlMillis)) {
+                current = load();
+                snapshot = current;
+            }
+            return current;
+        }
+    }
 
-        // This month (from first day of month)
-        LocalDateTime monthStart = now.toLocalDate()
-                .withDayOfMonth(1)
-                .atStartOfDay();
-        long thisMonthCount = userActivityRepository.countByRouteAndTimeRange(routeId, monthStart);
+    private Snapshot load() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        LocalDateTime todayStart = today.atStartOfDay();
+        // This week (from Monday), month and year
+        LocalDateTime weekStart = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+        LocalDateTime monthStart = today.withDayOfMonth(1).atStartOfDay();
+        LocalDateTime yearStart = today.withDayOfYear(1).atStartOfDay();
 
-        // This year (from first day of year)
-        LocalDateTime yearStart = now.toLocalDate()
-                .withDayOfYear(1)
-                .atStartOfDay();
-        long thisYearCount = userActivityRepository.countByRouteAndTimeRange(routeId, yearStart);
+        Map<Long, RouteStatsDto> statsByRoute = new HashMap<>();
+        for (Object[] row : userActivityRepository.countAllRoutesByTimeRanges(todayStart, weekStart, monthStart, yearStart)) {
+            Long routeId = (Long) row[0];
+            statsByRoute.put(routeId, RouteStatsDto.builder()
+                    .routeId(routeId)
+                    .todayCount(count(row[1]))
+                    .thisWeekCount(count(row[2]))
+                    .thisMonthCount(count(row[3]))
+                    .thisYearCount(count(row[4]))
+                    .totalCount(count(row[5]))
+                    .build());
+        }
+        log.debug("Loaded statistics of {} routes in {} ms", statsByRoute.size(), System.currentTimeMillis() - start);
+        return new Snapshot(today, System.currentTimeMillis(), Map.copyOf(statsByRoute));
+    }
 
-        // Total count
-        long totalCount = userActivityRepository.countByRoute(routeId);
+    private static long count(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
 
+    private static RouteStatsDto empty(Long routeId) {
         return RouteStatsDto.builder()
                 .routeId(routeId)
-                .todayCount(todayCount)
-                .thisWeekCount(thisWeekCount)
-                .thisMonthCount(thisMonthCount)
-                .thisYearCount(thisYearCount)
-                .totalCount(totalCount)
+                .todayCount(0L)
+                .thisWeekCount(0L)
+                .thisMonthCount(0L)
+                .thisYearCount(0L)
+                .totalCount(0L)
                 .build();
     }
+
+    private static final class Snapshot {
+        private final LocalDate day;
+        private final long loadedAtMillis;
+        private final Map<Long, RouteStatsDto> statsByRoute;
+
+        private Snapshot(LocalDate day, long loadedAtMillis, Map<Long, RouteStatsDto> statsByRoute) {
+            this.day = day;
+            this.loadedAtMillis = loadedAtMillis;
+            this.statsByRoute = statsByRoute;
+        }
+
+        private boolean isFresh(LocalDate today, long nowMillis, long ttlMillis) {
+            return day.equals(today) && nowMillis - loadedAtMillis < ttlMillis;
+        }
+    }
 }
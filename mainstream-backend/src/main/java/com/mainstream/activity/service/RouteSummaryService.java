@@ -0,0 +1,90 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.geo.TrackSimplifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maintains the summary stored with every predefined route (track point count, bounding
+ * box, simplified polyline), from which route listings are served without loading the
+ * track points. Set when a route is created; routes stored before the summary existed are
+ * filled in once after startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RouteSummaryService {
+
+    // Precise enough for map previews, a few hundred points for a long route
+    public static final double POLYLINE_TOLERANCE_METERS = 10.0;
+
+    private final PredefinedRouteRepository predefinedRouteRepository;
+
+    /**
+     * Set the summary of a route from the first count of its track point positions.
+     */
+    public void applySummary(PredefinedRoute route, double[] latitudes, double[] longitudes, int count) {
+        route.setTrackPointCount(count);
+        if (count == 0) {
+            route.setMinLatitude(null);
+            route.setMaxLatitude(null);
+            route.setMinLongitude(null);
+            route.setMaxLongitude(null);
+            route.setEncodedPolyline("");
+            return;
+        }
+        BoundingBox bounds = BoundingBox.of(latitudes, longitudes, count);
+        route.setMinLatitude(coordinate(bounds.getMinLatitude()));
+        route.setMaxLatitude(coordinate(bounds.getMaxLatitude()));
+        route.setMinLongitude(coordinate(bounds.getMinLongitude()));
+        route.setMaxLongitude(coordinate(bounds.getMaxLongitude()));
+
+        double[] lat = count == latitudes.length ? latitudes : Arrays.copyOf(latitudes, count);
+        double[] lon = count == longitudes.length ? longitudes : Arrays.copyOf(longitudes, count);
+        int[] indices = TrackSimplifier.simplify(lat, lon, POLYLINE_TOLERANCE_METERS);
+        route.setEncodedPolyline(PolylineEncoder.encode(lat, lon, indices));
+    }
+
+    /**
+     * Compute the summary of routes stored before it existed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillMissingSummaries() {
+        List<PredefinedRoute> missing = predefinedRouteRepository.findByEncodedPolylineIsNull();
+        for (PredefinedRoute summaryless : missing) {
+            predefinedRouteRepository.findByIdWithTrackPoints(summaryless.getId()).ifPresent(route -> {
+                List<RouteTrackPoint> trackPoints = route.getTrackPoints();
+                int n = trackPoints.size();
+                double[] latitudes = new double[n];
+                double[] longitudes = new double[n];
+                for (int i = 0; i < n; i++) {
+                    latitudes[i] = trackPoints.get(i).getLatitude().doubleValue();
+                    longitudes[i] = trackPoints.get(i).getLongitude().doubleValue();
+                }
+                applySummary(route, latitudes, longitudes, n);
+            });
+        }
+        if (!missing.isEmpty()) {
+            log.info("Computed the summary of {} predefined routes", missing.size());
+        }
+    }
+
+    private static BigDecimal coordinate(double value) {
+        return BigDecimal.valueOf(value).setScale(7, RoundingMode.HALF_UP);
+    }
+}
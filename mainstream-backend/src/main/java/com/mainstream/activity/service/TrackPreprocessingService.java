@@ -0,0 +1,78 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.geo.TrackPreprocessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Cleans user tracks before they are matched against routes or checked for location
+ * trophies (see {@link TrackPreprocessor}): GPS spikes are dropped, stationary clusters
+ * collapsed and, for matching, the rest resampled along the path. A 1 Hz recording
+ * typically shrinks three to ten times. Settings come from mainstream.track-preprocessing.*; with
+ * enabled=false positions pass through unchanged.
+ */
+@Slf4j
+@Service
+public class TrackPreprocessingService {
+
+    private final double maxSpeedMetersPerSecond;
+    private final double stationaryRadiusMeters;
+    private final double resampleMeters;
+
+    public TrackPreprocessingService(
+            @Value("${mainstream.track-preprocessing.enabled:true}") boolean enabled,
+            @Value("${mainstream.track-preprocessing.max-speed-mps:15}") double maxSpeedMetersPerSecond,
+            @Value("${mainstream.track-preprocessing.stationary-radius-meters:5}") double stationaryRadiusMeters,
+            @Value("${mainstream.track-preprocessing.resample-meters:10}") double resampleMeters) {
+        this.maxSpeedMetersPerSecond = enabled ? maxSpeedMetersPerSecond : 0;
+        this.stationaryRadiusMeters = enabled ? stationaryRadiusMeters : 0;
+        this.resampleMeters = enabled ? resampleMeters : 0;
+    }
+
+    /**
+     * Start cleaning a track whose positions arrive one by one.
+     */
+    public TrackPreprocessor start(TrackPreprocessor.Sink sink) {
+        return new TrackPreprocessor(maxSpeedMetersPerSecond, stationaryRadiusMeters, resampleMeters, sink);
+    }
+
+    /**
+     * Clean the first count positions of a whole track.
+     *
+     * @param timeSeconds recording time of each position in seconds (NaN where unknown), or null
+     */
+    public TrackPreprocessor.Points process(double[] latitudes, double[] longitudes, double[] timeSeconds, int count) {
+        TrackPreprocessor.Points points = TrackPreprocessor.process(latitudes, longitudes, timeSeconds, count,
+                maxSpeedMetersPerSecond, stationaryRadiusMeters, resampleMeters);
+        log.debug("Preprocessed track: {} positions in, {} spikes, {} stationary, {} gaps, {} out",
+                points.getInputCount(), points.getSpikeCount(), points.getStationaryCount(), points.getGapCount(),
+                points.size());
+        return points;
+    }
+
+    /**
+     * Clean the first count positions of a whole track without resampling, so only
+     * recorded positions come out: for checks where an interpolated point could place the
+     * user somewhere they never were, like location trophies.
+     *
+     * @param timeSeconds recording time of each position in seconds (NaN where unknown), or null
+     */
+    public TrackPreprocessor.Points filter(double[] latitudes, double[] longitudes, double[] timeSeconds, int count) {
+        TrackPreprocessor.Points points = TrackPreprocessor.process(latitudes, longitudes, timeSeconds, count,
+                maxSpeedMetersPerSecond, stationaryRadiusMeters, 0);
+        log.debug("Filtered track: {} positions in, {} spikes, {} stationary, {} out",
+                points.getInputCount(), points.getSpikeCount(), points.getStationaryCount(), points.size());
+        return points;
+    }
+
+    /**
+     * Time of a position as preprocessing expects it; only differences matter.
+     */
+    public static double seconds(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.toEpochSecond(ZoneOffset.UTC) + timestamp.getNano() / 1e9 : Double.NaN;
+    }
+}
@@ -9,9 +9,12 @@ import com.mainstream.activity.repository.TrophyRepository;
 import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.repository.UserTrophyRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContextFactory;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.fitfile.entity.FitTrackPoint;
 import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.geo.GeoDistance;
 import com.mainstream.user.entity.User;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -47,10 +50,12 @@ public class TrophyService {
 
     // Auto-inject all TrophyChecker implementations
     private final List<TrophyChecker> trophyCheckers;
+    private final TrophyEvaluationContextFactory trophyEvaluationContextFactory;
 
     /**
      * Check and award trophies for a user based on their latest activity.
      * Uses pluggable TrophyChecker implementations for flexible, configurable trophy logic.
+     * The checkers share one TrophyEvaluationContext, so the user's history is loaded once.
      *
      * @param user The user
      * @param activity The latest activity
@@ -66,11 +71,13 @@ public class TrophyService {
         List<Trophy> allTrophies = trophyRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
         log.info("Found {} active trophies to check", allTrophies.size());
 
+        TrophyEvaluationContext context = trophyEvaluationContextFactory.create(user, activity);
+
         for (Trophy trophy : allTrophies) {
             log.debug("Checking trophy: {} (type: {}, ID: {})", trophy.getCode(), trophy.getType(), trophy.getId());
 
             // Skip if user already has this trophy
-            if (userTrophyRepository.existsByUserIdAndTrophyId(user.getId(), trophy.getId())) {
+            if (context.hasEarned(trophy.getId())) {
                 log.debug("User already has trophy {}, skipping", trophy.getCode());
                 continue;
             }
@@ -99,10 +106,11 @@ public class TrophyService {
             // Check if criteria is met
             try {
                 log.debug("Running checker for trophy {}", trophy.getCode());
-                if (checker.checkCriteria(user, activity, trophy)) {
+                if (checker.checkCriteria(context, trophy)) {
                     // Calculate progress before awarding
-                    TrophyProgress progress = checker.calculateProgress(user, trophy);
+                    TrophyProgress progress = checker.calculateProgress(context, trophy);
                     awardTrophy(user, trophy, activity, progress);
+                    context.markEarned(trophy.getId());
                     newTrophies.add(trophy);
                     log.info("Awarded trophy '{}' (type: {}) to user {} with progress {}/{}",
                         trophy.getName(), trophy.getType(), user.getId(),
@@ -278,7 +286,7 @@ public class TrophyService {
             boolean collected = false;
             for (FitTrackPoint trackPoint : trackPoints) {
                 if (trackPoint.hasValidGpsPosition()) {
-                    double distance = calculateDistance(
+                    double distance = GeoDistance.meters(
                             trophy.getLatitude(),
                             trophy.getLongitude(),
                             trackPoint.getPositionLat().doubleValue(),
@@ -304,32 +312,6 @@ public class TrophyService {
         return newTrophies;
     }
 
-    /**
-     * Calculate distance between two GPS coordinates using Haversine formula.
-     *
-     * @param lat1 Latitude of point 1 (degrees)
-     * @param lon1 Longitude of point 1 (degrees)
-     * @param lat2 Latitude of point 2 (degrees)
-     * @param lon2 Longitude of point 2 (degrees)
-     * @return Distance in meters
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000; // meters
-
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double deltaLat = Math.toRadians(lat2 - lat1);
-        double deltaLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2)
-                + Math.cos(lat1Rad) * Math.cos(lat2Rad)
-                * Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c;
-    }
-
     /**
      * Award a trophy to a user.
      */
@@ -391,6 +373,8 @@ public class TrophyService {
         // Get all active trophies
         List<Trophy> allTrophies = trophyRepository.findByIsActiveTrueOrderByDisplayOrderAsc();
 
+        TrophyEvaluationContext context = trophyEvaluationContextFactory.create(user, null);
+
         for (Trophy trophy : allTrophies) {
             // Skip if trophy has no criteriaConfig
             // Exception: LOCATION_BASED trophies can use entity fields instead of criteriaConfig
@@ -407,7 +391,7 @@ public class TrophyService {
 
             // Calculate progress
             try {
-                TrophyProgress progress = checker.calculateProgress(user, trophy);
+                TrophyProgress progress = checker.calculateProgress(context, trophy);
                 progressMap.put(trophy.getId(), progress);
             } catch (Exception e) {
                 log.error("Error calculating progress for trophy {} and user {}: {}",
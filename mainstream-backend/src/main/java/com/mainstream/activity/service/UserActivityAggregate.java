@@ -0,0 +1,279 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.UserActivityStats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Decoded {@link UserActivityStats} of one user: what the trophy checkers ask about all
+ * of the user's activities, answered from counters instead of the activities.
+ *
+ * Every counter can be decremented, so an activity is removed again by subtracting its
+ * {@link Contribution}; only the best completion per route cannot, and is reloaded from
+ * the route matches when activities change (see UserActivityStatsService).
+ */
+public final class UserActivityAggregate {
+
+    // Visited areas are counted in cells of this size; trophy grids that are a multiple of it
+    // are answered from these cells
+    public static final int AREA_CELL_METERS = 1000;
+    // Same approximation as the explorer trophies: 1 degree ~ 111 km, also for longitude
+    private static final double AREA_CELL_DEGREES = AREA_CELL_METERS / 111000.0;
+    private static final int MAX_STREAK_DAYS = 365;
+
+    private int activityCount;
+    private BigDecimal totalDistanceMeters = BigDecimal.ZERO;
+    private long totalDurationSeconds;
+    // Epoch day -> activities started that day
+    private final TreeMap<Integer, Integer> dayCounts = new TreeMap<>();
+    // Activities by start weekday (Monday = 0) * 24 + hour
+    private final int[] weekdayHourCounts = new int[7 * 24];
+    // Route id -> best completion percentage
+    private final Map<Long, BigDecimal> routeCompletions = new HashMap<>();
+    // Cell key -> FIT activities whose track passed through the cell
+    private final Map<Long, Integer> areaCells = new HashMap<>();
+
+    /**
+     * What one activity adds to the aggregate.
+     *
+     * @param areaCells distinct cell keys of the track (see {@link #areaCell}), empty if not counted
+     */
+    public record Contribution(LocalDateTime startTime, BigDecimal distanceMeters, Integer durationSeconds,
+                               long[] areaCells) {
+    }
+
+    public void add(Contribution contribution) {
+        apply(contribution, 1);
+    }
+
+    public void remove(Contribution contribution) {
+        apply(contribution, -1);
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        activityCount = Math.max(0, activityCount + sign);
+        if (contribution.distanceMeters() != null) {
+            totalDistanceMeters = sign > 0
+                    ? totalDistanceMeters.add(contribution.distanceMeters())
+                    : totalDistanceMeters.subtract(contribution.distanceMeters());
+        }
+        if (contribution.durationSeconds() != null) {
+            totalDurationSeconds += sign * (long) contribution.durationSeconds();
+        }
+        LocalDateTime start = contribution.startTime();
+        if (start != null) {
+            count(dayCounts, (int) start.toLocalDate().toEpochDay(), sign);
+            int slot = (start.getDayOfWeek().getValue() - 1) * 24 + start.getHour();
+            weekdayHourCounts[slot] = Math.max(0, weekdayHourCounts[slot] + sign);
+        }
+        for (long cell : contribution.areaCells()) {
+            count(areaCells, cell, sign);
+        }
+    }
+
+    /**
+     * Raise the best completion of routes (from a new activity's route matches).
+     */
+    public void mergeRouteCompletions(Map<Long, BigDecimal> completions) {
+        completions.forEach((routeId, completion) -> routeCompletions.merge(routeId, completion, BigDecimal::max));
+    }
+
+    public void replaceRouteCompletions(Map<Long, BigDecimal> completions) {
+        routeCompletions.clear();
+        routeCompletions.putAll(completions);
+    }
+
+    public int getActivityCount() {
+        return activityCount;
+    }
+
+    public BigDecimal getTotalDistanceMeters() {
+        return totalDistanceMeters;
+    }
+
+    public long getTotalDurationSeconds() {
+        return totalDurationSeconds;
+    }
+
+    /**
+     * Consecutive days with an activity up to today, where today may still be missing.
+     */
+    public int currentStreakDays(LocalDate today) {
+        int streak = 0;
+        long day = today.toEpochDay();
+        for (int i = 0; i < MAX_STREAK_DAYS; i++, day--) {
+            if (dayCounts.containsKey((int) day)) {
+                streak++;
+            } else if (i > 0) {
+                break;
+            }
+        }
+        return streak;
+    }
+
+    /**
+     * Consecutive weeks (Monday to Sunday) with at least minActivities, up to the current
+     * week, which may still fall short; at most maxWeeks are looked at.
+     */
+    public int consecutiveWeeks(LocalDate today, int minActivities, int maxWeeks) {
+        int weeks = 0;
+        LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        for (int i = 0; i < maxWeeks; i++, monday = monday.minusWeeks(1)) {
+            int from = (int) monday.toEpochDay();
+            int count = 0;
+            for (int activities : dayCounts.subMap(from, from + 7).values()) {
+                count += activities;
+            }
+            if (count >= minActivities) {
+                weeks++;
+            } else if (i > 0) {
+                break;
+            }
+        }
+        return weeks;
+    }
+
+    /**
+     * Activities started from startHour (inclusive) to endHour (exclusive) on the given
+     * weekdays (1 = Monday .. 7 = Sunday; null or empty for all).
+     */
+    public long countInTimeWindow(int startHour, int endHour, Collection<Integer> daysOfWeek) {
+        long count = 0;
+        for (int weekday = 1; weekday <= 7; weekday++) {
+            if (daysOfWeek != null && !daysOfWeek.isEmpty() && !daysOfWeek.contains(weekday)) {
+                continue;
+            }
+            for (int hour = Math.max(0, startHour); hour < Math.min(24, endHour); hour++) {
+                count += weekdayHourCounts[(weekday - 1) * 24 + hour];
+            }
+        }
+        return count;
+    }
+
+    public boolean hasCompletedRoute(Long routeId, int minCompletionPercentage) {
+        BigDecimal best = routeCompletions.get(routeId);
+        return best != null && best.compareTo(BigDecimal.valueOf(minCompletionPercentage)) >= 0;
+    }
+
+    public int countCompletedRoutes(int minCompletionPercentage) {
+        BigDecimal min = BigDecimal.valueOf(minCompletionPercentage);
+        int count = 0;
+        for (BigDecimal best : routeCompletions.values()) {
+            if (best.compareTo(min) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static boolean supportsGridSize(int gridSizeMeters) {
+        return gridSizeMeters > 0 && gridSizeMeters % AREA_CELL_METERS == 0;
+    }
+
+    /**
+     * Distinct cells of the given size visited by FIT tracks.
+     *
+     * @throws IllegalArgumentException unless {@link #supportsGridSize} holds
+     */
+    public int countAreas(int gridSizeMeters) {
+        if (!supportsGridSize(gridSizeMeters)) {
+            throw new IllegalArgumentException("Grid size must be a multiple of " + AREA_CELL_METERS + " m");
+        }
+        int factor = gridSizeMeters / AREA_CELL_METERS;
+        if (factor == 1) {
+            return areaCells.size();
+        }
+        // floor(floor(x) / k) == floor(x / k), so coarser cells follow from the base cells
+        Set<Long> coarse = new HashSet<>();
+        for (long cell : areaCells.keySet()) {
+            coarse.add(key(Math.floorDiv((int) (cell >> 32), factor), Math.floorDiv((int) cell, factor)));
+        }
+        return coarse.size();
+    }
+
+    /**
+     * Key of the area cell containing a position.
+     */
+    public static long areaCell(double latitude, double longitude) {
+        return key((int) Math.floor(latitude / AREA_CELL_DEGREES), (int) Math.floor(longitude / AREA_CELL_DEGREES));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    // Counts never go below zero; a key whose count drops to zero is removed
+    private static <K> void count(Map<K, Integer> counts, K key, int sign) {
+        if (sign > 0) {
+            counts.merge(key, 1, Integer::sum);
+        } else {
+            counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // Encoding
+
+    public static UserActivityAggregate decode(UserActivityStats stats) {
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.activityCount = stats.getActivityCount();
+        aggregate.totalDistanceMeters = stats.getTotalDistanceMeters();
+        aggregate.totalDurationSeconds = stats.getTotalDurationSeconds();
+        ByteBuffer days = ByteBuffer.wrap(stats.getDayCounts());
+        while (days.remaining() >= 8) {
+            aggregate.dayCounts.put(days.getInt(), days.getInt());
+        }
+        ByteBuffer hours = ByteBuffer.wrap(stats.getWeekdayHourCounts());
+        for (int i = 0; i < aggregate.weekdayHourCounts.length && hours.remaining() >= 4; i++) {
+            aggregate.weekdayHourCounts[i] = hours.getInt();
+        }
+        ByteBuffer routes = ByteBuffer.wrap(stats.getRouteCompletions());
+        while (routes.remaining() >= 12) {
+            aggregate.routeCompletions.put(routes.getLong(), BigDecimal.valueOf(routes.getInt(), 2));
+        }
+        ByteBuffer cells = ByteBuffer.wrap(stats.getAreaCells());
+        while (cells.remaining() >= 12) {
+            aggregate.areaCells.put(cells.getLong(), cells.getInt());
+        }
+        return aggregate;
+    }
+
+    /**
+     * Write the aggregate into the stats row.
+     */
+    public void encodeInto(UserActivityStats stats) {
+        stats.setActivityCount(activityCount);
+        stats.setTotalDistanceMeters(totalDistanceMeters.setScale(2, RoundingMode.HALF_UP));
+        stats.setTotalDurationSeconds(totalDurationSeconds);
+
+        ByteBuffer days = ByteBuffer.allocate(dayCounts.size() * 8);
+        dayCounts.forEach((day, count) -> days.putInt(day).putInt(count));
+        stats.setDayCounts(days.array());
+
+        ByteBuffer hours = ByteBuffer.allocate(weekdayHourCounts.length * 4);
+        for (int count : weekdayHourCounts) {
+            hours.putInt(count);
+        }
+        stats.setWeekdayHourCounts(hours.array());
+
+        ByteBuffer routes = ByteBuffer.allocate(routeCompletions.size() * 12);
+        new TreeMap<>(routeCompletions).forEach((routeId, completion) -> routes.putLong(routeId)
+                .putInt(completion.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValue()));
+        stats.setRouteCompletions(routes.array());
+
+        ByteBuffer cells = ByteBuffer.allocate(areaCells.size() * 12);
+        new TreeMap<>(areaCells).forEach((cell, count) -> cells.putLong(cell).putInt(count));
+        stats.setAreaCells(cells.array());
+    }
+}
@@ -1,10 +1,16 @@
 package com.mainstream.activity.service;
 
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.entity.UserActivityRouteMatch;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
 import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
 import com.mainstream.fitfile.entity.FitFileUpload;
 import com.mainstream.fitfile.entity.FitTrackPoint;
 import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.progress.service.ProgressTracker;
 import com.mainstream.run.entity.GpsPoint;
 import com.mainstream.run.entity.Run;
 import com.mainstream.run.repository.GpsPointRepository;
@@ -15,7 +21,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -27,11 +36,15 @@ import java.util.stream.Collectors;
 public class UserActivityService {
 
     private final UserActivityRepository userActivityRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
+    private final PredefinedRouteRepository predefinedRouteRepository;
     private final FitTrackPointRepository fitTrackPointRepository;
     private final GpsPointRepository gpsPointRepository;
     private final RouteMatchingService routeMatchingService;
     private final TrophyService trophyService;
     private final com.mainstream.activity.repository.DailyWinnerRepository dailyWinnerRepository;
+    private final ProgressTracker progressTracker;
+    private final UserActivityStatsService userActivityStatsService;
 
     /**
      * Process a FIT file upload and create a user activity with route matching.
@@ -58,10 +71,10 @@ public class UserActivityService {
         log.info("Attempting to match {} track points against predefined routes", trackPoints.size());
         RouteMatchingService.RouteMatchResult matchResult = routeMatchingService.matchRoute(trackPoints);
 
-        if (matchResult != null && matchResult.getMatchedRoute() != null) {
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
             log.info("Successfully matched FIT file {} to route: {} ({}% complete)",
                      fitFileUpload.getId(),
-                     matchResult.getMatchedRoute().getName(),
+                     matchResult.getMatchedRouteName(),
                      matchResult.getRouteCompletionPercentage());
         } else {
             log.info("No route match found for FIT file {}", fitFileUpload.getId());
@@ -71,7 +84,7 @@ public class UserActivityService {
         UserActivity activity = createBasicActivity(user, fitFileUpload, matchResult);
 
         // Check and award trophies
-        trophyService.checkAndAwardTrophies(user, activity);
+        checkTrophiesAndReportProgress(user, activity);
 
         return activity;
     }
@@ -100,8 +113,8 @@ public class UserActivityService {
         }
 
         // Set route matching data if available
-        if (matchResult != null && matchResult.getMatchedRoute() != null) {
-            activity.setMatchedRoute(matchResult.getMatchedRoute());
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
+            activity.setMatchedRoute(resolveMatchedRoute(matchResult));
             activity.setMatchedDistanceMeters(BigDecimal.valueOf(matchResult.getMatchedDistanceMeters()));
             activity.setRouteCompletionPercentage(BigDecimal.valueOf(matchResult.getRouteCompletionPercentage()));
             activity.setAverageMatchingAccuracyMeters(BigDecimal.valueOf(matchResult.getAverageAccuracyMeters()));
@@ -109,7 +122,7 @@ public class UserActivityService {
             activity.setDirection(matchResult.getDirection());
 
             log.info("Activity matched to route: {} ({}% complete, direction: {})",
-                     matchResult.getMatchedRoute().getName(),
+                     matchResult.getMatchedRouteName(),
                      matchResult.getRouteCompletionPercentage(),
                      matchResult.getDirection());
         } else {
@@ -118,7 +131,12 @@ public class UserActivityService {
             log.info("Activity did not match any predefined route");
         }
 
-        return userActivityRepository.save(activity);
+        UserActivity saved = userActivityRepository.save(activity);
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
+            saveRouteMatches(saved, matchResult);
+        }
+        userActivityStatsService.activityAdded(saved, routeCompletions(matchResult));
+        return saved;
     }
 
     /**
@@ -170,7 +188,7 @@ public class UserActivityService {
         // Match against predefined routes
         RouteMatchingService.RouteMatchResult matchResult = routeMatchingService.matchRouteFromGpsPoints(gpsPoints);
 
-        if (matchResult == null || matchResult.getMatchedRoute() == null) {
+        if (matchResult == null || matchResult.getMatchedRouteId() == null) {
             log.info("Run {} did not match any predefined route", run.getId());
             return null;
         }
@@ -179,7 +197,7 @@ public class UserActivityService {
         UserActivity activity = createActivityFromRun(user, run, matchResult);
 
         // Check and award trophies
-        trophyService.checkAndAwardTrophies(user, activity);
+        checkTrophiesAndReportProgress(user, activity);
 
         return activity;
     }
@@ -200,7 +218,7 @@ public class UserActivityService {
         activity.setDistanceMeters(run.getDistanceMeters());
 
         // Set route matching data
-        activity.setMatchedRoute(matchResult.getMatchedRoute());
+        activity.setMatchedRoute(resolveMatchedRoute(matchResult));
         activity.setMatchedDistanceMeters(BigDecimal.valueOf(matchResult.getMatchedDistanceMeters()));
         activity.setRouteCompletionPercentage(BigDecimal.valueOf(matchResult.getRouteCompletionPercentage()));
         activity.setAverageMatchingAccuracyMeters(BigDecimal.valueOf(matchResult.getAverageAccuracyMeters()));
@@ -209,11 +227,14 @@ public class UserActivityService {
 
         log.info("Run {} matched to route: {} ({}% complete, direction: {})",
                  run.getId(),
-                 matchResult.getMatchedRoute().getName(),
+                 matchResult.getMatchedRouteName(),
                  matchResult.getRouteCompletionPercentage(),
                  matchResult.getDirection());
 
-        return userActivityRepository.save(activity);
+        UserActivity saved = userActivityRepository.save(activity);
+        saveRouteMatches(saved, matchResult);
+        userActivityStatsService.activityAdded(saved, routeCompletions(matchResult));
+        return saved;
     }
 
     /**
@@ -235,6 +256,8 @@ public class UserActivityService {
      */
     private UserActivity updateActivityWithMatchResult(UserActivity existingActivity, Run run,
                                                        RouteMatchingService.RouteMatchResult matchResult) {
+        UserActivityAggregate.Contribution before = userActivityStatsService.contributionOf(existingActivity, false);
+
         // Update basic activity data from run
         existingActivity.setActivityStartTime(run.getStartTime());
         existingActivity.setActivityEndTime(run.getEndTime());
@@ -242,7 +265,7 @@ public class UserActivityService {
         existingActivity.setDistanceMeters(run.getDistanceMeters());
 
         // Update route matching data
-        existingActivity.setMatchedRoute(matchResult.getMatchedRoute());
+        existingActivity.setMatchedRoute(resolveMatchedRoute(matchResult));
         existingActivity.setMatchedDistanceMeters(BigDecimal.valueOf(matchResult.getMatchedDistanceMeters()));
         existingActivity.setRouteCompletionPercentage(BigDecimal.valueOf(matchResult.getRouteCompletionPercentage()));
         existingActivity.setAverageMatchingAccuracyMeters(BigDecimal.valueOf(matchResult.getAverageAccuracyMeters()));
@@ -252,11 +275,14 @@ public class UserActivityService {
         log.info("Updated activity {} for run {} with route: {} ({}% complete, direction: {})",
                  existingActivity.getId(),
                  run.getId(),
-                 matchResult.getMatchedRoute().getName(),
+                 matchResult.getMatchedRouteName(),
                  matchResult.getRouteCompletionPercentage(),
                  matchResult.getDirection());
 
-        return userActivityRepository.save(existingActivity);
+        UserActivity saved = userActivityRepository.save(existingActivity);
+        saveRouteMatches(saved, matchResult);
+        userActivityStatsService.activityChanged(before, saved);
+        return saved;
     }
 
     /**
@@ -285,7 +311,18 @@ public class UserActivityService {
         // Match against predefined routes
         RouteMatchingService.RouteMatchResult matchResult = routeMatchingService.matchRouteFromGpsPoints(gpsPoints);
 
-        if (matchResult == null || matchResult.getMatchedRoute() == null) {
+        return recordActivityFromRun(user, run, matchResult);
+    }
+
+    /**
+     * Create or update the activity for a run from an already computed route match
+     * (e.g. by the ingest pipeline) and award trophies.
+     *
+     * @return Created or updated UserActivity, or null if the run matched no route
+     */
+    @Transactional
+    public UserActivity recordActivityFromRun(User user, Run run, RouteMatchingService.RouteMatchResult matchResult) {
+        if (matchResult == null || matchResult.getMatchedRouteId() == null) {
             log.info("Run {} did not match any predefined route", run.getId());
             return null;
         }
@@ -305,7 +342,7 @@ public class UserActivityService {
         }
 
         // Check and award trophies
-        trophyService.checkAndAwardTrophies(user, activity);
+        checkTrophiesAndReportProgress(user, activity);
 
         return activity;
     }
@@ -315,6 +352,8 @@ public class UserActivityService {
      */
     private UserActivity updateActivityWithFitFileMatchResult(UserActivity existingActivity, FitFileUpload fitFileUpload,
                                                               RouteMatchingService.RouteMatchResult matchResult) {
+        UserActivityAggregate.Contribution before = userActivityStatsService.contributionOf(existingActivity, false);
+
         // Update basic activity data from FIT file
         if (fitFileUpload.getActivityStartTime() != null) {
             existingActivity.setActivityStartTime(fitFileUpload.getActivityStartTime());
@@ -330,8 +369,8 @@ public class UserActivityService {
         }
 
         // Update route matching data
-        if (matchResult != null && matchResult.getMatchedRoute() != null) {
-            existingActivity.setMatchedRoute(matchResult.getMatchedRoute());
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
+            existingActivity.setMatchedRoute(resolveMatchedRoute(matchResult));
             existingActivity.setMatchedDistanceMeters(BigDecimal.valueOf(matchResult.getMatchedDistanceMeters()));
             existingActivity.setRouteCompletionPercentage(BigDecimal.valueOf(matchResult.getRouteCompletionPercentage()));
             existingActivity.setAverageMatchingAccuracyMeters(BigDecimal.valueOf(matchResult.getAverageAccuracyMeters()));
@@ -341,7 +380,7 @@ public class UserActivityService {
             log.info("Updated activity {} for FIT file {} with route: {} ({}% complete, direction: {})",
                      existingActivity.getId(),
                      fitFileUpload.getId(),
-                     matchResult.getMatchedRoute().getName(),
+                     matchResult.getMatchedRouteName(),
                      matchResult.getRouteCompletionPercentage(),
                      matchResult.getDirection());
         } else {
@@ -350,7 +389,12 @@ public class UserActivityService {
             log.info("Updated activity {} for FIT file {} - no route match", existingActivity.getId(), fitFileUpload.getId());
         }
 
-        return userActivityRepository.save(existingActivity);
+        UserActivity saved = userActivityRepository.save(existingActivity);
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
+            saveRouteMatches(saved, matchResult);
+        }
+        userActivityStatsService.activityChanged(before, saved);
+        return saved;
     }
 
     /**
@@ -377,10 +421,10 @@ public class UserActivityService {
             log.info("Attempting to match {} track points against predefined routes", trackPoints.size());
             matchResult = routeMatchingService.matchRoute(trackPoints);
 
-            if (matchResult != null && matchResult.getMatchedRoute() != null) {
+            if (matchResult != null && matchResult.getMatchedRouteId() != null) {
                 log.info("Successfully matched FIT file {} to route: {} ({}% complete)",
                          fitFileUpload.getId(),
-                         matchResult.getMatchedRoute().getName(),
+                         matchResult.getMatchedRouteName(),
                          matchResult.getRouteCompletionPercentage());
             } else {
                 log.info("No route match found for FIT file {}", fitFileUpload.getId());
@@ -389,6 +433,19 @@ public class UserActivityService {
             log.warn("No track points with GPS data found for FIT file {} - creating activity without route match", fitFileUpload.getId());
         }
 
+        return recordActivity(user, fitFileUpload, matchResult);
+    }
+
+    /**
+     * Create or update the activity for a FIT file from an already computed route match
+     * (e.g. by the ingest pipeline) and award trophies.
+     *
+     * @param matchResult route match, or null if the track matched no route
+     * @return Created or updated UserActivity
+     */
+    @Transactional
+    public UserActivity recordActivity(User user, FitFileUpload fitFileUpload,
+                                       RouteMatchingService.RouteMatchResult matchResult) {
         // Check if activity already exists for this FIT file
         java.util.Optional<UserActivity> existingActivityOpt = userActivityRepository.findByFitFileUploadId(fitFileUpload.getId());
 
@@ -404,19 +461,24 @@ public class UserActivityService {
         }
 
         // Check and award trophies
-        trophyService.checkAndAwardTrophies(user, activity);
+        checkTrophiesAndReportProgress(user, activity);
 
         return activity;
     }
 
     /**
      * Delete an activity.
-     * Deletes related daily winners first to avoid foreign key constraint violations.
+     * Deletes related daily winners first to avoid foreign key constraint violations,
+     * and subtracts the activity from the user's activity stats.
      */
     @Transactional
     public void deleteActivity(Long activityId) {
         log.info("Deleting activity {}", activityId);
 
+        UserActivity activity = userActivityRepository.findById(activityId).orElse(null);
+        UserActivityAggregate.Contribution contribution =
+            activity != null ? userActivityStatsService.contributionOf(activity, true) : null;
+
         // Delete related daily winners first to avoid FK constraint violation
         List<com.mainstream.activity.entity.DailyWinner> relatedWinners =
             dailyWinnerRepository.findByActivityId(activityId);
@@ -427,5 +489,83 @@ public class UserActivityService {
         }
 
         userActivityRepository.deleteById(activityId);
+        if (activity != null) {
+            userActivityStatsService.activityRemoved(activity.getUser().getId(), contribution);
+        }
+    }
+
+    /**
+     * Route id -> completion percentage of every route in a match result (none if null).
+     */
+    private static Map<Long, BigDecimal> routeCompletions(RouteMatchingService.RouteMatchResult matchResult) {
+        Map<Long, BigDecimal> completions = new HashMap<>();
+        if (matchResult != null && matchResult.getMatchedRouteId() != null) {
+            for (RouteMatchingService.RouteMatchResult routeMatch : matchResult.getAllMatches()) {
+                if (routeMatch.getMatchedRouteId() != null) {
+                    completions.merge(routeMatch.getMatchedRouteId(),
+                        BigDecimal.valueOf(routeMatch.getRouteCompletionPercentage()), BigDecimal::max);
+                }
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Replace the activity's route match records with the best match and the other routes
+     * the track covered.
+     */
+    private void saveRouteMatches(UserActivity activity, RouteMatchingService.RouteMatchResult matchResult) {
+        userActivityRouteMatchRepository.deleteByUserActivityId(activity.getId());
+
+        List<UserActivityRouteMatch> routeMatches = new ArrayList<>();
+        for (RouteMatchingService.RouteMatchResult routeMatch : matchResult.getAllMatches()) {
+            boolean primary = routeMatch == matchResult;
+            PredefinedRoute route = primary ? activity.getMatchedRoute() : resolveMatchedRoute(routeMatch);
+            if (route == null) {
+                continue;
+            }
+
+            UserActivityRouteMatch matchRecord = new UserActivityRouteMatch();
+            matchRecord.setUserActivity(activity);
+            matchRecord.setRoute(route);
+            matchRecord.setIsPrimary(primary);
+            matchRecord.setDirection(routeMatch.getDirection());
+            matchRecord.setMatchedDistanceMeters(BigDecimal.valueOf(routeMatch.getMatchedDistanceMeters()));
+            matchRecord.setRouteCompletionPercentage(BigDecimal.valueOf(routeMatch.getRouteCompletionPercentage()));
+            matchRecord.setAverageMatchingAccuracyMeters(BigDecimal.valueOf(routeMatch.getAverageAccuracyMeters()));
+            matchRecord.setIsCompleteRoute(routeMatch.isCompleteRoute());
+            routeMatches.add(matchRecord);
+        }
+        userActivityRouteMatchRepository.saveAll(routeMatches);
+
+        if (routeMatches.size() > 1) {
+            log.info("Activity {} covered {} routes", activity.getId(), routeMatches.size());
+        }
+    }
+
+    /**
+     * Load the matched route in the current transaction; route matching itself works on
+     * cached geometry and only knows the route's id.
+     */
+    private PredefinedRoute resolveMatchedRoute(RouteMatchingService.RouteMatchResult matchResult) {
+        if (matchResult.getMatchedRouteId() == null) {
+            return null;
+        }
+        return predefinedRouteRepository.findById(matchResult.getMatchedRouteId()).orElse(null);
+    }
+
+    /**
+     * Check and award trophies, reporting the matched route and awarded trophies
+     * to the upload/sync progress job running on this thread (if any).
+     */
+    private void checkTrophiesAndReportProgress(User user, UserActivity activity) {
+        List<Trophy> awarded = trophyService.checkAndAwardTrophies(user, activity);
+
+        progressTracker.current().ifPresent(job -> {
+            if (activity.getMatchedRoute() != null) {
+                job.routeMatched(activity.getMatchedRoute().getId(), activity.getMatchedRoute().getName());
+            }
+            job.trophiesAwarded(awarded != null ? awarded.size() : 0);
+        });
     }
 }
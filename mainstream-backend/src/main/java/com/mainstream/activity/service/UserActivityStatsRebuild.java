@@ -0,0 +1,84 @@
+package com.mainstream.activity.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Rebuilds the per-user activity aggregates from the activities, on a background thread
+ * and in chunks of users so the database is never saturated: once after startup for the
+ * users that have none yet, and on mainstream.activity-stats.rebuild-cron for all users,
+ * so any drift from the incremental updates (e.g. routes deleted since) is corrected.
+ */
+@Slf4j
+@Service
+public class UserActivityStatsRebuild {
+
+    private final UserActivityStatsService userActivityStatsService;
+    private final int chunkSize;
+    private final long chunkDelayMillis;
+    private final ExecutorService executor;
+
+    public UserActivityStatsRebuild(UserActivityStatsService userActivityStatsService,
+                                    @Value("${mainstream.activity-stats.rebuild-chunk-size:50}") int chunkSize,
+                                    @Value("${mainstream.activity-stats.rebuild-chunk-delay-ms:1000}") long chunkDelayMillis) {
+        this.userActivityStatsService = userActivityStatsService;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMillis = chunkDelayMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "activity-stats-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildMissing() {
+        executor.submit(() -> run(true));
+    }
+
+    @Scheduled(cron = "${mainstream.activity-stats.rebuild-cron:-}")
+    public void rebuildAll() {
+        executor.submit(() -> run(false));
+    }
+
+    private void run(boolean missingOnly) {
+        long start = System.currentTimeMillis();
+        long afterUserId = 0;
+        int rebuilt = 0;
+        try {
+            while (true) {
+                List<Long> userIds = userActivityStatsService.findUsersToRebuild(afterUserId, chunkSize, missingOnly);
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                for (Long userId : userIds) {
+                    userActivityStatsService.rebuild(userId);
+                    rebuilt++;
+                }
+                afterUserId = userIds.get(userIds.size() - 1);
+                Thread.sleep(chunkDelayMillis);
+            }
+            if (rebuilt > 0) {
+                log.info("Rebuilt the activity stats of {} users in {} ms", rebuilt, System.currentTimeMillis() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Activity stats rebuild failed after user {}: {}", afterUserId, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,177 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.entity.UserActivityStats;
+import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
+import com.mainstream.activity.repository.UserActivityStatsRepository;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maintains the per-user activity aggregates ({@link UserActivityStats}) in the same
+ * transaction as the activity change: a new activity is added to the counters, a changed
+ * or deleted one is subtracted with the contribution captured before the change. The best
+ * completion per route is reloaded with one grouped query whenever route matches may have
+ * gone away. The row is locked while it is updated, so concurrent imports of one user do
+ * not lose updates; a missing row is first inserted with INSERT IGNORE, so there is always
+ * one to lock.
+ *
+ * Users whose row is missing (activities from before the aggregates existed) are answered
+ * by computing the aggregate from their activities; {@link UserActivityStatsRebuild}
+ * stores those rows after startup and periodically rebuilds all of them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserActivityStatsService {
+
+    private final UserActivityStatsRepository userActivityStatsRepository;
+    private final UserActivityRepository userActivityRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+
+    /**
+     * The aggregate of all activities of a user.
+     */
+    @Transactional(readOnly = true)
+    public UserActivityAggregate getAggregate(Long userId) {
+        return userActivityStatsRepository.findById(userId)
+                .map(UserActivityAggregate::decode)
+                .orElseGet(() -> build(userId));
+    }
+
+    /**
+     * What an activity currently adds to the aggregate; capture it before changing or
+     * deleting the activity.
+     *
+     * @param withAreas whether to load the track for the visited areas (unchanged when only
+     * the route match of an activity is updated)
+     */
+    public UserActivityAggregate.Contribution contributionOf(UserActivity activity, boolean withAreas) {
+        long[] areaCells = withAreas && activity.getFitFileUpload() != null
+                ? areaCells(activity.getFitFileUpload().getId())
+                : new long[0];
+        return new UserActivityAggregate.Contribution(activity.getActivityStartTime(), activity.getDistanceMeters(),
+                activity.getDurationSeconds(), areaCells);
+    }
+
+    /**
+     * Add a newly saved activity with the route completions of its matches.
+     */
+    @Transactional
+    public void activityAdded(UserActivity activity, Map<Long, BigDecimal> routeCompletions) {
+        Long userId = activity.getUser().getId();
+        Optional<UserActivityStats> stored = userActivityStatsRepository.findByUserIdForUpdate(userId);
+        if (stored.isEmpty()) {
+            // The new activity is already saved, so it is part of the rebuilt aggregate
+            rebuild(userId);
+            return;
+        }
+        UserActivityAggregate aggregate = UserActivityAggregate.decode(stored.get());
+        aggregate.add(contributionOf(activity, true));
+        aggregate.mergeRouteCompletions(routeCompletions);
+        aggregate.encodeInto(stored.get());
+        userActivityStatsRepository.save(stored.get());
+    }
+
+    /**
+     * Replace the contribution of an updated activity (same track, new times, distance or
+     * route matches).
+     */
+    @Transactional
+    public void activityChanged(UserActivityAggregate.Contribution before, UserActivity activity) {
+        Long userId = activity.getUser().getId();
+        Optional<UserActivityStats> stored = userActivityStatsRepository.findByUserIdForUpdate(userId);
+        if (stored.isEmpty()) {
+            rebuild(userId);
+            return;
+        }
+        UserActivityAggregate aggregate = UserActivityAggregate.decode(stored.get());
+        aggregate.remove(before);
+        aggregate.add(contributionOf(activity, false));
+        aggregate.replaceRouteCompletions(loadRouteCompletions(userId));
+        aggregate.encodeInto(stored.get());
+        userActivityStatsRepository.save(stored.get());
+    }
+
+    /**
+     * Subtract a deleted activity.
+     */
+    @Transactional
+    public void activityRemoved(Long userId, UserActivityAggregate.Contribution before) {
+        Optional<UserActivityStats> stored = userActivityStatsRepository.findByUserIdForUpdate(userId);
+        if (stored.isEmpty()) {
+            rebuild(userId);
+            return;
+        }
+        UserActivityAggregate aggregate = UserActivityAggregate.decode(stored.get());
+        aggregate.remove(before);
+        aggregate.replaceRouteCompletions(loadRouteCompletions(userId));
+        aggregate.encodeInto(stored.get());
+        userActivityStatsRepository.save(stored.get());
+    }
+
+    /**
+     * Recompute the aggregate of a user from all activities and store it.
+     */
+    @Transactional
+    public void rebuild(Long userId) {
+        // A missing row cannot be locked, so two first activities of a user would both insert
+        // one and the second would fail its whole import on the duplicate key
+        userActivityStatsRepository.insertEmptyIfMissing(userId);
+        UserActivityStats stats = userActivityStatsRepository.findByUserIdForUpdate(userId).orElseThrow();
+        build(userId).encodeInto(stats);
+        userActivityStatsRepository.save(stats);
+    }
+
+    /**
+     * Ids of up to limit users with activities after the given id, to be rebuilt.
+     *
+     * @param missingOnly only users without a stored aggregate
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findUsersToRebuild(long afterUserId, int limit, boolean missingOnly) {
+        return userActivityStatsRepository.findUserIdsToRebuild(afterUserId, missingOnly, PageRequest.of(0, limit));
+    }
+
+    private UserActivityAggregate build(Long userId) {
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        for (UserActivity activity : userActivityRepository.findByUserIdOrderByActivityStartTimeDesc(userId)) {
+            aggregate.add(contributionOf(activity, true));
+        }
+        aggregate.replaceRouteCompletions(loadRouteCompletions(userId));
+        return aggregate;
+    }
+
+    private Map<Long, BigDecimal> loadRouteCompletions(Long userId) {
+        Map<Long, BigDecimal> completions = new HashMap<>();
+        for (Object[] row : userActivityRouteMatchRepository.findBestCompletionsByUser(userId)) {
+            if (row[1] != null) {
+                completions.put((Long) row[0], (BigDecimal) row[1]);
+            }
+        }
+        return completions;
+    }
+
+    private long[] areaCells(Long fitFileUploadId) {
+        List<FitTrackPoint> trackPoints = fitTrackPointRepository.findByFitFileUploadIdWithGpsData(fitFileUploadId);
+        return trackPoints.stream()
+                .filter(FitTrackPoint::hasValidGpsPosition)
+                .mapToLong(point -> UserActivityAggregate.areaCell(point.getPositionLat().doubleValue(),
+                        point.getPositionLong().doubleValue()))
+                .distinct()
+                .toArray();
+    }
+}
@@ -0,0 +1,198 @@
+package com.mainstream.activity.service.trophy;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.entity.UserActivityRouteMatch;
+import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
+import com.mainstream.activity.repository.UserTrophyRepository;
+import com.mainstream.activity.service.TrackPreprocessingService;
+import com.mainstream.activity.service.UserActivityAggregate;
+import com.mainstream.activity.service.UserActivityStatsService;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.geo.TrackPreprocessor;
+import com.mainstream.run.entity.GpsPoint;
+import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.user.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the trophy checkers read about one user during one trophy check, loaded on first
+ * use and then shared by all trophies of the check: the activity stats, the activity
+ * history, the GPS tracks, the route matches of the triggering activity and the trophies
+ * already earned. A check of all active trophies then costs a few queries instead of
+ * several per trophy.
+ *
+ * Created per check by {@link TrophyEvaluationContextFactory}; not thread-safe and not
+ * meant to outlive the check, as the loaded data is not refreshed.
+ */
+public final class TrophyEvaluationContext {
+
+    // The history is loaded for at least this long, so the usual lookbacks share one query
+    private static final int MIN_HISTORY_YEARS = 1;
+
+    private final User user;
+    private final UserActivity activity;
+    private final UserActivityRepository userActivityRepository;
+    private final UserTrophyRepository userTrophyRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final GpsPointRepository gpsPointRepository;
+    private final UserActivityStatsService userActivityStatsService;
+    private final TrackPreprocessingService trackPreprocessingService;
+
+    private UserActivityAggregate aggregate;
+    private LocalDateTime historySince;
+    private List<UserActivity> history;
+    // The entities are held by the persistence context of the check anyway
+    private final Map<Long, List<FitTrackPoint>> trackPoints = new HashMap<>();
+    private TrackPreprocessor.Points activityTrack;
+    private List<UserActivityRouteMatch> activityRouteMatches;
+    private Set<Long> earnedTrophyIds;
+
+    TrophyEvaluationContext(User user, UserActivity activity,
+                            UserActivityRepository userActivityRepository,
+                            UserTrophyRepository userTrophyRepository,
+                            UserActivityRouteMatchRepository userActivityRouteMatchRepository,
+                            FitTrackPointRepository fitTrackPointRepository,
+                            GpsPointRepository gpsPointRepository,
+                            UserActivityStatsService userActivityStatsService,
+                            TrackPreprocessingService trackPreprocessingService) {
+        this.user = user;
+        this.activity = activity;
+        this.userActivityRepository = userActivityRepository;
+        this.userTrophyRepository = userTrophyRepository;
+        this.userActivityRouteMatchRepository = userActivityRouteMatchRepository;
+        this.fitTrackPointRepository = fitTrackPointRepository;
+        this.gpsPointRepository = gpsPointRepository;
+        this.userActivityStatsService = userActivityStatsService;
+        this.trackPreprocessingService = trackPreprocessingService;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * The activity that triggered the check; null when only progress is calculated.
+     */
+    public UserActivity getActivity() {
+        return activity;
+    }
+
+    public UserActivityAggregate getAggregate() {
+        if (aggregate == null) {
+            aggregate = userActivityStatsService.getAggregate(user.getId());
+        }
+        return aggregate;
+    }
+
+    /**
+     * The user's activities started at or after the given time, oldest first.
+     */
+    public List<UserActivity> getActivitiesSince(LocalDateTime since) {
+        if (history == null || since.isBefore(historySince)) {
+            LocalDateTime minSince = LocalDateTime.now().minusYears(MIN_HISTORY_YEARS);
+            historySince = history == null && minSince.isBefore(since) ? minSince : since;
+            history = userActivityRepository.findUserActivitiesSince(user.getId(), historySince);
+        }
+        if (!since.isAfter(historySince)) {
+            return history;
+        }
+        return history.stream()
+            .filter(act -> !act.getActivityStartTime().isBefore(since))
+            .toList();
+    }
+
+    /**
+     * GPS track points of a FIT upload.
+     */
+    public List<FitTrackPoint> getTrackPoints(Long fitFileUploadId) {
+        return trackPoints.computeIfAbsent(fitFileUploadId, fitTrackPointRepository::findByFitFileUploadIdWithGpsData);
+    }
+
+    /**
+     * The recorded GPS positions of the triggering activity (FIT upload or run) with spikes
+     * dropped by {@link TrackPreprocessingService#filter}, not resampled; empty without an
+     * activity or GPS data.
+     */
+    public TrackPreprocessor.Points getActivityTrack() {
+        if (activityTrack == null) {
+            activityTrack = loadActivityTrack();
+        }
+        return activityTrack;
+    }
+
+    private TrackPreprocessor.Points loadActivityTrack() {
+        double[] latitudes = new double[0];
+        double[] longitudes = new double[0];
+        double[] times = new double[0];
+        int count = 0;
+
+        if (activity != null && activity.getFitFileUpload() != null) {
+            List<FitTrackPoint> points = getTrackPoints(activity.getFitFileUpload().getId());
+            latitudes = new double[points.size()];
+            longitudes = new double[points.size()];
+            times = new double[points.size()];
+            for (FitTrackPoint point : points) {
+                if (point.hasValidGpsPosition()) {
+                    latitudes[count] = point.getPositionLat().doubleValue();
+                    longitudes[count] = point.getPositionLong().doubleValue();
+                    times[count] = TrackPreprocessingService.seconds(point.getTimestamp());
+                    count++;
+                }
+            }
+        } else if (activity != null && activity.getRun() != null) {
+            List<GpsPoint> points = gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(activity.getRun().getId());
+            latitudes = new double[points.size()];
+            longitudes = new double[points.size()];
+            times = new double[points.size()];
+            for (GpsPoint point : points) {
+                if (point.getLatitude() != null && point.getLongitude() != null) {
+                    latitudes[count] = point.getLatitude().doubleValue();
+                    longitudes[count] = point.getLongitude().doubleValue();
+                    times[count] = TrackPreprocessingService.seconds(point.getTimestamp());
+                    count++;
+                }
+            }
+        }
+
+        return trackPreprocessingService.filter(latitudes, longitudes, times, count);
+    }
+
+    /**
+     * Route matches of the triggering activity; empty without an activity.
+     */
+    public List<UserActivityRouteMatch> getActivityRouteMatches() {
+        if (activityRouteMatches == null) {
+            activityRouteMatches = activity != null && activity.getId() != null
+                ? userActivityRouteMatchRepository.findByUserActivityId(activity.getId())
+                : List.of();
+        }
+        return activityRouteMatches;
+    }
+
+    public boolean hasEarned(Long trophyId) {
+        return earnedTrophyIds().contains(trophyId);
+    }
+
+    /**
+     * Record a trophy awarded during this check.
+     */
+    public void markEarned(Long trophyId) {
+        earnedTrophyIds().add(trophyId);
+    }
+
+    private Set<Long> earnedTrophyIds() {
+        if (earnedTrophyIds == null) {
+            earnedTrophyIds = new HashSet<>(userTrophyRepository.findTrophyIdsByUserId(user.getId()));
+        }
+        return earnedTrophyIds;
+    }
+}
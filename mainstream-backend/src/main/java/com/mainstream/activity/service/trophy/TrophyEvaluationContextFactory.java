@@ -0,0 +1,38 @@
+package com.mainstream.activity.service.trophy;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.repository.UserActivityRouteMatchRepository;
+import com.mainstream.activity.repository.UserTrophyRepository;
+import com.mainstream.activity.service.TrackPreprocessingService;
+import com.mainstream.activity.service.UserActivityStatsService;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.user.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the {@link TrophyEvaluationContext} of a trophy check.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrophyEvaluationContextFactory {
+
+    private final UserActivityRepository userActivityRepository;
+    private final UserTrophyRepository userTrophyRepository;
+    private final UserActivityRouteMatchRepository userActivityRouteMatchRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final GpsPointRepository gpsPointRepository;
+    private final UserActivityStatsService userActivityStatsService;
+    private final TrackPreprocessingService trackPreprocessingService;
+
+    /**
+     * @param activity the activity that triggered the check, or null when only progress is calculated
+     */
+    public TrophyEvaluationContext create(User user, UserActivity activity) {
+        return new TrophyEvaluationContext(user, activity, userActivityRepository, userTrophyRepository,
+            userActivityRouteMatchRepository, fitTrackPointRepository, gpsPointRepository,
+            userActivityStatsService, trackPreprocessingService);
+    }
+}
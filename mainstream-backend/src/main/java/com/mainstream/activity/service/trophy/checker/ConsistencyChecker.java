@@ -2,16 +2,16 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.ConsistencyConfig;
-import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.WeekFields;
 import java.util.List;
@@ -29,10 +29,9 @@ import java.util.stream.Collectors;
 public class ConsistencyChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             ConsistencyConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), ConsistencyConfig.class);
 
@@ -41,7 +40,7 @@ public class ConsistencyChecker implements TrophyChecker {
                 return false;
             }
 
-            int consecutiveWeeks = countConsecutiveWeeksWithMinActivity(user, config);
+            int consecutiveWeeks = countConsecutiveWeeksWithMinActivity(context, config);
             return consecutiveWeeks >= config.getNumberOfWeeks();
 
         } catch (Exception e) {
@@ -51,7 +50,7 @@ public class ConsistencyChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             ConsistencyConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), ConsistencyConfig.class);
 
@@ -59,7 +58,7 @@ public class ConsistencyChecker implements TrophyChecker {
                 return new TrophyProgress(0, 0);
             }
 
-            int consecutiveWeeks = countConsecutiveWeeksWithMinActivity(user, config);
+            int consecutiveWeeks = countConsecutiveWeeksWithMinActivity(context, config);
             return new TrophyProgress(consecutiveWeeks, config.getNumberOfWeeks());
 
         } catch (Exception e) {
@@ -74,14 +73,21 @@ public class ConsistencyChecker implements TrophyChecker {
     }
 
     /**
-     * Count consecutive weeks where user met the minimum activity requirement.
+     * Count consecutive weeks where user met the minimum activity requirement. Without a
+     * minimum distance per activity it comes from the activity days in the user's activity
+     * stats (Monday to Sunday weeks).
      */
-    private int countConsecutiveWeeksWithMinActivity(User user, ConsistencyConfig config) {
+    private int countConsecutiveWeeksWithMinActivity(TrophyEvaluationContext context, ConsistencyConfig config) {
         // Look back enough to find the required number of weeks
         int weeksToCheck = Math.max(config.getNumberOfWeeks() * 2, 12);
+
+        if (config.getMinDistancePerActivity() == null || config.getMinDistancePerActivity() <= 0) {
+            return context.getAggregate()
+                .consecutiveWeeks(LocalDate.now(), config.getMinActivitiesPerWeek(), weeksToCheck);
+        }
         LocalDateTime startDate = LocalDateTime.now().minusWeeks(weeksToCheck);
 
-        List<UserActivity> activities = userActivityRepository.findUserActivitiesSince(user.getId(), startDate);
+        List<UserActivity> activities = context.getActivitiesSince(startDate);
 
         // Filter by minimum distance if specified
         if (config.getMinDistancePerActivity() != null && config.getMinDistancePerActivity() > 0) {
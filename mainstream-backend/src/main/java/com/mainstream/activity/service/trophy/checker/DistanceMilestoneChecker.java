@@ -2,12 +2,11 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.DistanceConfig;
-import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -22,10 +21,9 @@ import org.springframework.stereotype.Component;
 public class DistanceMilestoneChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             DistanceConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), DistanceConfig.class);
 
@@ -38,6 +36,7 @@ public class DistanceMilestoneChecker implements TrophyChecker {
 
             if ("SINGLE_ACTIVITY".equals(scope)) {
                 // Check if this specific activity meets the distance requirement
+                UserActivity activity = context.getActivity();
                 if (activity == null) {
                     return false;
                 }
@@ -45,10 +44,7 @@ public class DistanceMilestoneChecker implements TrophyChecker {
                     && activity.getDistanceMeters().compareTo(java.math.BigDecimal.valueOf(config.getDistanceMeters())) >= 0;
             } else {
                 // TOTAL scope: Check total distance across all activities
-                Long totalDistance = userActivityRepository.getTotalDistanceForUser(user.getId());
-                if (totalDistance == null) {
-                    totalDistance = 0L;
-                }
+                long totalDistance = totalDistance(context);
                 return totalDistance >= config.getDistanceMeters();
             }
         } catch (Exception e) {
@@ -58,7 +54,7 @@ public class DistanceMilestoneChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             DistanceConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), DistanceConfig.class);
 
@@ -74,11 +70,7 @@ public class DistanceMilestoneChecker implements TrophyChecker {
                 return new TrophyProgress(0, config.getDistanceMeters());
             } else {
                 // TOTAL scope: Return total distance progress
-                Long totalDistance = userActivityRepository.getTotalDistanceForUser(user.getId());
-                if (totalDistance == null) {
-                    totalDistance = 0L;
-                }
-                return new TrophyProgress(totalDistance, config.getDistanceMeters());
+                return new TrophyProgress(totalDistance(context), config.getDistanceMeters());
             }
         } catch (Exception e) {
             log.error("Error calculating progress for trophy {}: {}", trophy.getCode(), e.getMessage(), e);
@@ -90,4 +82,11 @@ public class DistanceMilestoneChecker implements TrophyChecker {
     public boolean supports(Trophy.TrophyType type) {
         return type == Trophy.TrophyType.DISTANCE_MILESTONE;
     }
+
+    /**
+     * Total distance of all the user's activities, in whole meters, from the activity stats.
+     */
+    private long totalDistance(TrophyEvaluationContext context) {
+        return context.getAggregate().getTotalDistanceMeters().longValue();
+    }
 }
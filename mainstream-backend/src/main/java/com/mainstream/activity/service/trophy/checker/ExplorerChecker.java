@@ -2,14 +2,14 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
+import com.mainstream.activity.service.UserActivityAggregate;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.ExplorerConfig;
 import com.mainstream.fitfile.entity.FitTrackPoint;
-import com.mainstream.fitfile.repository.FitTrackPointRepository;
-import com.mainstream.user.entity.User;
+import com.mainstream.geo.GeoDistance;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -30,11 +30,9 @@ import java.util.Set;
 public class ExplorerChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
-    private final FitTrackPointRepository fitTrackPointRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             ExplorerConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), ExplorerConfig.class);
 
@@ -43,7 +41,7 @@ public class ExplorerChecker implements TrophyChecker {
                 return false;
             }
 
-            int uniqueAreas = countUniqueAreas(user, config);
+            int uniqueAreas = countUniqueAreas(context, config);
             return uniqueAreas >= config.getUniqueAreasCount();
 
         } catch (Exception e) {
@@ -53,7 +51,7 @@ public class ExplorerChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             ExplorerConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), ExplorerConfig.class);
 
@@ -61,7 +59,7 @@ public class ExplorerChecker implements TrophyChecker {
                 return new TrophyProgress(0, 0);
             }
 
-            int uniqueAreas = countUniqueAreas(user, config);
+            int uniqueAreas = countUniqueAreas(context, config);
             return new TrophyProgress(uniqueAreas, config.getUniqueAreasCount());
 
         } catch (Exception e) {
@@ -77,12 +75,23 @@ public class ExplorerChecker implements TrophyChecker {
 
     /**
      * Count unique geographical areas visited by the user.
-     * Uses either grid-based or radius-based approach.
+     * Uses either grid-based or radius-based approach. Grids that are a multiple of the
+     * stats cell size, without a minimum distance, come from the visited cells in the
+     * user's activity stats; the rest scans the tracks.
      */
-    private int countUniqueAreas(User user, ExplorerConfig config) {
+    private int countUniqueAreas(TrophyEvaluationContext context, ExplorerConfig config) {
+        boolean radiusBased = (config.getGridSizeMeters() == null || config.getGridSizeMeters() <= 0)
+            && config.getRadiusMeters() != null && config.getRadiusMeters() > 0;
+        int gridSizeMeters = config.getGridSizeMeters() != null && config.getGridSizeMeters() > 0
+            ? config.getGridSizeMeters() : 1000;
+        if (!radiusBased && UserActivityAggregate.supportsGridSize(gridSizeMeters)
+            && (config.getMinDistancePerArea() == null || config.getMinDistancePerArea() <= 0)) {
+            return context.getAggregate().countAreas(gridSizeMeters);
+        }
+
         // Get all user activities with GPS data
         LocalDateTime lookbackDate = LocalDateTime.now().minusYears(1);
-        List<UserActivity> activities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
+        List<UserActivity> activities = context.getActivitiesSince(lookbackDate);
 
         // Filter by minimum distance if specified
         if (config.getMinDistancePerArea() != null && config.getMinDistancePerArea() > 0) {
@@ -100,9 +109,7 @@ public class ExplorerChecker implements TrophyChecker {
             }
 
             // Get GPS track points
-            List<FitTrackPoint> trackPoints = fitTrackPointRepository.findByFitFileUploadIdWithGpsData(
-                activity.getFitFileUpload().getId()
-            );
+            List<FitTrackPoint> trackPoints = context.getTrackPoints(activity.getFitFileUpload().getId());
 
             if (trackPoints.isEmpty()) {
                 continue;
@@ -178,7 +185,7 @@ public class ExplorerChecker implements TrophyChecker {
                     double existingLat = Double.parseDouble(parts[0]);
                     double existingLon = Double.parseDouble(parts[1]);
 
-                    double distance = calculateDistance(startLat, startLon, existingLat, existingLon);
+                    double distance = GeoDistance.meters(startLat, startLon, existingLat, existingLon);
                     if (distance <= radiusMeters) {
                         foundExistingArea = true;
                         break;
@@ -197,24 +204,4 @@ public class ExplorerChecker implements TrophyChecker {
 
         return newAreas;
     }
-
-    /**
-     * Calculate distance between two GPS coordinates using Haversine formula.
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000; // meters
-
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double deltaLat = Math.toRadians(lat2 - lat1);
-        double deltaLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2)
-                + Math.cos(lat1Rad) * Math.cos(lat2Rad)
-                * Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c;
-    }
 }
@@ -4,19 +4,17 @@ import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.LocationBasedConfig;
-import com.mainstream.fitfile.entity.FitTrackPoint;
-import com.mainstream.fitfile.repository.FitTrackPointRepository;
-import com.mainstream.run.entity.GpsPoint;
-import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.TrackPreprocessor;
 import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 /**
  * Checker for LOCATION_BASED trophies.
@@ -28,12 +26,12 @@ import java.util.List;
 public class LocationBasedChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final FitTrackPointRepository fitTrackPointRepository;
-    private final GpsPointRepository gpsPointRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
+            User user = context.getUser();
+            UserActivity activity = context.getActivity();
             log.info("=== LOCATION_BASED Trophy Check Started ===");
             log.info("Trophy: {} (ID: {})", trophy.getCode(), trophy.getId());
             log.info("User ID: {}, Activity ID: {}", user.getId(), activity != null ? activity.getId() : "null");
@@ -96,83 +94,39 @@ public class LocationBasedChecker implements TrophyChecker {
                 return false;
             }
 
-            // Get GPS data points (from FitFile or Run)
+            // Get GPS data points (from FitFile or Run), recorded positions only with GPS spikes
+            // dropped, so neither a spike nor an interpolated point can collect a trophy the
+            // user never came near; loaded once for all location trophies
+            TrackPreprocessor.Points track = context.getActivityTrack();
+            if (track.getInputCount() == 0) {
+                log.warn("No GPS points found for activity {}", activity.getId());
+                return false;
+            }
+            log.info("Checking {} of {} GPS points after filtering ({} spikes dropped)",
+                track.size(), track.getInputCount(), track.getSpikeCount());
+
+            // Check if any track point is within collection radius
             int pointsChecked = 0;
             double minDistance = Double.MAX_VALUE;
-
-            if (hasFitFile) {
-                // Use FitTrackPoints for FIT file uploads
-                List<FitTrackPoint> trackPoints = fitTrackPointRepository.findByFitFileUploadIdWithGpsData(
-                    activity.getFitFileUpload().getId()
+            for (int i = 0; i < track.size(); i++) {
+                pointsChecked++;
+                double distance = GeoDistance.meters(
+                    latitude,
+                    longitude,
+                    track.getLatitudes()[i],
+                    track.getLongitudes()[i]
                 );
 
-                log.info("Found {} FitTrackPoints for activity {}", trackPoints.size(), activity.getId());
-
-                if (trackPoints.isEmpty()) {
-                    log.warn("No FitTrackPoints found for activity {}", activity.getId());
-                    return false;
+                if (distance < minDistance) {
+                    minDistance = distance;
                 }
 
-                // Check if any track point is within collection radius
-                for (FitTrackPoint trackPoint : trackPoints) {
-                    if (trackPoint.hasValidGpsPosition()) {
-                        pointsChecked++;
-                        double distance = calculateDistance(
-                            latitude,
-                            longitude,
-                            trackPoint.getPositionLat().doubleValue(),
-                            trackPoint.getPositionLong().doubleValue()
-                        );
-
-                        if (distance < minDistance) {
-                            minDistance = distance;
-                        }
-
-                        if (distance <= radiusMeters) {
-                            log.info("✓ Trophy {} COLLECTED! FitTrackPoint at distance {} meters (radius: {} m)",
-                                trophy.getCode(), String.format("%.2f", distance), radiusMeters);
-                            log.info("  Trophy location: {}, {}", latitude, longitude);
-                            log.info("  Track point: {}, {}", trackPoint.getPositionLat(), trackPoint.getPositionLong());
-                            return true;
-                        }
-                    }
-                }
-            } else if (hasRun) {
-                // Use GpsPoints for Strava runs
-                List<GpsPoint> gpsPoints = gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(
-                    activity.getRun().getId()
-                );
-
-                log.info("Found {} GpsPoints for activity {}", gpsPoints.size(), activity.getId());
-
-                if (gpsPoints.isEmpty()) {
-                    log.warn("No GpsPoints found for activity {}", activity.getId());
-                    return false;
-                }
-
-                // Check if any GPS point is within collection radius
-                for (GpsPoint gpsPoint : gpsPoints) {
-                    if (gpsPoint.getLatitude() != null && gpsPoint.getLongitude() != null) {
-                        pointsChecked++;
-                        double distance = calculateDistance(
-                            latitude,
-                            longitude,
-                            gpsPoint.getLatitude().doubleValue(),
-                            gpsPoint.getLongitude().doubleValue()
-                        );
-
-                        if (distance < minDistance) {
-                            minDistance = distance;
-                        }
-
-                        if (distance <= radiusMeters) {
-                            log.info("✓ Trophy {} COLLECTED! GpsPoint at distance {} meters (radius: {} m)",
-                                trophy.getCode(), String.format("%.2f", distance), radiusMeters);
-                            log.info("  Trophy location: {}, {}", latitude, longitude);
-                            log.info("  GPS point: {}, {}", gpsPoint.getLatitude(), gpsPoint.getLongitude());
-                            return true;
-                        }
-                    }
+                if (distance <= radiusMeters) {
+                    log.info("✓ Trophy {} COLLECTED! Track point at distance {} meters (radius: {} m)",
+                        trophy.getCode(), String.format("%.2f", distance), radiusMeters);
+                    log.info("  Trophy location: {}, {}", latitude, longitude);
+                    log.info("  Track point: {}, {}", track.getLatitudes()[i], track.getLongitudes()[i]);
+                    return true;
                 }
             }
 
@@ -188,7 +142,7 @@ public class LocationBasedChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         // Location trophies are binary: either collected or not
         // Progress doesn't make sense here
         return new TrophyProgress(0, 1);
@@ -198,30 +152,4 @@ public class LocationBasedChecker implements TrophyChecker {
     public boolean supports(Trophy.TrophyType type) {
         return type == Trophy.TrophyType.LOCATION_BASED;
     }
-
-    /**
-     * Calculate distance between two GPS coordinates using Haversine formula.
-     *
-     * @param lat1 Latitude of point 1 (degrees)
-     * @param lon1 Longitude of point 1 (degrees)
-     * @param lat2 Latitude of point 2 (degrees)
-     * @param lon2 Longitude of point 2 (degrees)
-     * @return Distance in meters
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000; // meters
-
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double deltaLat = Math.toRadians(lat2 - lat1);
-        double deltaLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2)
-                + Math.cos(lat1Rad) * Math.cos(lat2Rad)
-                * Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c;
-    }
 }
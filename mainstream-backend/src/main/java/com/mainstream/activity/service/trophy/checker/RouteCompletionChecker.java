@@ -3,26 +3,22 @@ package com.mainstream.activity.service.trophy.checker;
 import com.mainstream.activity.entity.PredefinedRoute;
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.activity.entity.UserActivityRouteMatch;
 import com.mainstream.activity.repository.PredefinedRouteRepository;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.RouteCompletionConfig;
-import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 /**
  * Checker for ROUTE_COMPLETION trophies.
  * Awards trophies for completing predefined routes.
  * Supports both specific route completion and multiple unique routes.
+ * Every route an activity covered counts, not only its best match.
  */
 @Component
 @RequiredArgsConstructor
@@ -30,22 +26,21 @@ import java.util.Set;
 public class RouteCompletionChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
     private final PredefinedRouteRepository predefinedRouteRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             RouteCompletionConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), RouteCompletionConfig.class);
 
             // Mode 1: Specific route completion
             if (config.getRouteId() != null) {
-                return checkSpecificRouteCompletion(user, activity, config);
+                return checkSpecificRouteCompletion(context, context.getActivity(), config);
             }
 
             // Mode 2: Multiple unique routes
             if (config.getUniqueRoutesCount() != null) {
-                return checkUniqueRoutesCompletion(user, config);
+                return checkUniqueRoutesCompletion(context, config);
             }
 
             log.warn("Route completion trophy {} has neither routeId nor uniqueRoutesCount configured", trophy.getCode());
@@ -58,19 +53,19 @@ public class RouteCompletionChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             RouteCompletionConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), RouteCompletionConfig.class);
 
             // Mode 1: Specific route (binary: completed or not)
             if (config.getRouteId() != null) {
-                boolean completed = checkSpecificRouteCompletion(user, null, config);
+                boolean completed = checkSpecificRouteCompletion(context, null, config);
                 return new TrophyProgress(completed ? 1 : 0, 1);
             }
 
             // Mode 2: Multiple unique routes
             if (config.getUniqueRoutesCount() != null) {
-                int completedRoutes = countCompletedUniqueRoutes(user, config);
+                int completedRoutes = countCompletedUniqueRoutes(context, config);
                 return new TrophyProgress(completedRoutes, config.getUniqueRoutesCount());
             }
 
@@ -90,7 +85,7 @@ public class RouteCompletionChecker implements TrophyChecker {
     /**
      * Check if user completed a specific route.
      */
-    private boolean checkSpecificRouteCompletion(User user, UserActivity activity, RouteCompletionConfig config) {
+    private boolean checkSpecificRouteCompletion(TrophyEvaluationContext context, UserActivity activity, RouteCompletionConfig config) {
         // Verify route exists
         PredefinedRoute route = predefinedRouteRepository.findById(config.getRouteId()).orElse(null);
         if (route == null) {
@@ -98,53 +93,42 @@ public class RouteCompletionChecker implements TrophyChecker {
             return false;
         }
 
+        int minMatch = getMinMatchPercentage(config);
+
         // If activity is provided, check just this activity
         if (activity != null && activity.getMatchedRoute() != null) {
-            boolean routeMatches = activity.getMatchedRoute().getId().equals(config.getRouteId());
-            boolean completionMet = activity.getRouteCompletionPercentage() != null
-                && activity.getRouteCompletionPercentage().compareTo(java.math.BigDecimal.valueOf(getMinMatchPercentage(config))) >= 0;
-            return routeMatches && completionMet;
+            return context.getActivityRouteMatches().stream()
+                .anyMatch(match -> completesRoute(match, config.getRouteId(), minMatch));
         }
 
-        // Otherwise check all user activities
-        LocalDateTime lookbackDate = LocalDateTime.now().minusYears(1);
-        List<UserActivity> activities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
+        // Otherwise check the best completion of the route over all user activities
+        return context.getAggregate().hasCompletedRoute(config.getRouteId(), minMatch);
+    }
 
-        int minMatch = getMinMatchPercentage(config);
-        return activities.stream()
-            .anyMatch(act -> act.getMatchedRoute() != null
-                && act.getMatchedRoute().getId().equals(config.getRouteId())
-                && act.getRouteCompletionPercentage() != null
-                && act.getRouteCompletionPercentage().compareTo(java.math.BigDecimal.valueOf(minMatch)) >= 0);
+    private boolean completesRoute(UserActivityRouteMatch match, Long routeId, int minMatchPercentage) {
+        return match.getRoute().getId().equals(routeId)
+            && meetsMinMatch(match, minMatchPercentage);
+    }
+
+    private boolean meetsMinMatch(UserActivityRouteMatch match, int minMatchPercentage) {
+        return match.getRouteCompletionPercentage() != null
+            && match.getRouteCompletionPercentage().compareTo(java.math.BigDecimal.valueOf(minMatchPercentage)) >= 0;
     }
 
     /**
      * Check if user completed the required number of unique routes.
      */
-    private boolean checkUniqueRoutesCompletion(User user, RouteCompletionConfig config) {
-        int completedRoutes = countCompletedUniqueRoutes(user, config);
+    private boolean checkUniqueRoutesCompletion(TrophyEvaluationContext context, RouteCompletionConfig config) {
+        int completedRoutes = countCompletedUniqueRoutes(context, config);
         return completedRoutes >= config.getUniqueRoutesCount();
     }
 
     /**
-     * Count how many unique routes the user has completed.
+     * Count how many unique routes the user has completed, from the best completion per
+     * route in the user's activity stats.
      */
-    private int countCompletedUniqueRoutes(User user, RouteCompletionConfig config) {
-        LocalDateTime lookbackDate = LocalDateTime.now().minusYears(1);
-        List<UserActivity> activities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
-
-        Set<Long> completedRouteIds = new HashSet<>();
-        int minMatchPercentage = getMinMatchPercentage(config);
-
-        for (UserActivity activity : activities) {
-            if (activity.getMatchedRoute() != null
-                && activity.getRouteCompletionPercentage() != null
-                && activity.getRouteCompletionPercentage().compareTo(java.math.BigDecimal.valueOf(minMatchPercentage)) >= 0) {
-                completedRouteIds.add(activity.getMatchedRoute().getId());
-            }
-        }
-
-        return completedRouteIds.size();
+    private int countCompletedUniqueRoutes(TrophyEvaluationContext context, RouteCompletionConfig config) {
+        return context.getAggregate().countCompletedRoutes(getMinMatchPercentage(config));
     }
 
     /**
@@ -2,9 +2,9 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.SpecialConfig;
 import com.mainstream.user.entity.User;
@@ -28,11 +28,15 @@ import java.util.List;
 public class SpecialChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
+        return checkCriteria(context, context.getActivity(), trophy);
+    }
+
+    private boolean checkCriteria(TrophyEvaluationContext context, UserActivity activity, Trophy trophy) {
         try {
+            User user = context.getUser();
             SpecialConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), SpecialConfig.class);
 
             if (config.getSpecialType() == null) {
@@ -44,7 +48,7 @@ public class SpecialChecker implements TrophyChecker {
                 case "BIRTHDAY_RUN" -> checkBirthdayRun(user, activity);
                 case "DATE_BASED" -> checkDateBased(activity, config);
                 case "PERFORMANCE" -> checkPerformance(activity, config);
-                case "FIRST_ACTIVITY" -> checkFirstActivity(user);
+                case "FIRST_ACTIVITY" -> checkFirstActivity(context);
                 default -> {
                     log.warn("Unknown special type: {}", config.getSpecialType());
                     yield false;
@@ -58,7 +62,7 @@ public class SpecialChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             SpecialConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), SpecialConfig.class);
 
@@ -67,7 +71,7 @@ public class SpecialChecker implements TrophyChecker {
             if ("PERFORMANCE".equals(config.getSpecialType()) && config.getDistanceMeters() != null) {
                 // Find best performance
                 LocalDateTime lookbackDate = LocalDateTime.now().minusYears(1);
-                List<UserActivity> activities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
+                List<UserActivity> activities = context.getActivitiesSince(lookbackDate);
 
                 long bestTime = activities.stream()
                     .filter(act -> act.getDistanceMeters() != null
@@ -85,7 +89,7 @@ public class SpecialChecker implements TrophyChecker {
             }
 
             // For other special types, just binary
-            boolean achieved = checkCriteria(user, null, trophy);
+            boolean achieved = checkCriteria(context, null, trophy);
             return new TrophyProgress(achieved ? 1 : 0, 1);
 
         } catch (Exception e) {
@@ -158,8 +162,7 @@ public class SpecialChecker implements TrophyChecker {
      * Check if this is user's first activity ever.
      * This trophy is awarded once the user has completed their first activity.
      */
-    private boolean checkFirstActivity(User user) {
-        List<UserActivity> allActivities = userActivityRepository.findByUserIdOrderByActivityStartTimeDesc(user.getId());
-        return !allActivities.isEmpty(); // User has at least one activity
+    private boolean checkFirstActivity(TrophyEvaluationContext context) {
+        return context.getAggregate().getActivityCount() > 0; // User has at least one activity
     }
 }
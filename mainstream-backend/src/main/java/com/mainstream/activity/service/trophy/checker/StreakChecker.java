@@ -2,16 +2,16 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.StreakConfig;
-import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
@@ -27,10 +27,9 @@ import java.util.Set;
 public class StreakChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             StreakConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), StreakConfig.class);
 
@@ -39,7 +38,7 @@ public class StreakChecker implements TrophyChecker {
                 return false;
             }
 
-            int currentStreak = calculateCurrentStreak(user, config.getMinimumDistancePerDay());
+            int currentStreak = calculateCurrentStreak(context, config.getMinimumDistancePerDay());
             return currentStreak >= config.getConsecutiveDays();
 
         } catch (Exception e) {
@@ -49,7 +48,7 @@ public class StreakChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             StreakConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), StreakConfig.class);
 
@@ -57,7 +56,7 @@ public class StreakChecker implements TrophyChecker {
                 return new TrophyProgress(0, 0);
             }
 
-            int currentStreak = calculateCurrentStreak(user, config.getMinimumDistancePerDay());
+            int currentStreak = calculateCurrentStreak(context, config.getMinimumDistancePerDay());
             return new TrophyProgress(currentStreak, config.getConsecutiveDays());
 
         } catch (Exception e) {
@@ -72,16 +71,21 @@ public class StreakChecker implements TrophyChecker {
     }
 
     /**
-     * Calculate current consecutive day streak for a user.
+     * Calculate current consecutive day streak for a user. Without a minimum distance it
+     * comes from the activity days in the user's activity stats.
      *
-     * @param user User to check
+     * @param context Check context of the user
      * @param minimumDistancePerDay Optional minimum distance per day (in meters)
      * @return Number of consecutive days with activities
      */
-    private int calculateCurrentStreak(User user, Integer minimumDistancePerDay) {
+    private int calculateCurrentStreak(TrophyEvaluationContext context, Integer minimumDistancePerDay) {
+        if (minimumDistancePerDay == null || minimumDistancePerDay <= 0) {
+            return context.getAggregate().currentStreakDays(LocalDate.now());
+        }
+
         // Look back up to 365 days for streak calculation
         LocalDateTime lookbackDate = LocalDateTime.now().minusDays(365);
-        List<UserActivity> recentActivities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
+        List<UserActivity> recentActivities = context.getActivitiesSince(lookbackDate);
 
         if (recentActivities.isEmpty()) {
             return 0;
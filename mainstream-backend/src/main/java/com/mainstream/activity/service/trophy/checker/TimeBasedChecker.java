@@ -2,12 +2,11 @@ package com.mainstream.activity.service.trophy.checker;
 
 import com.mainstream.activity.entity.Trophy;
 import com.mainstream.activity.entity.UserActivity;
-import com.mainstream.activity.repository.UserActivityRepository;
 import com.mainstream.activity.service.trophy.TrophyChecker;
 import com.mainstream.activity.service.trophy.TrophyConfigParser;
+import com.mainstream.activity.service.trophy.TrophyEvaluationContext;
 import com.mainstream.activity.service.trophy.TrophyProgress;
 import com.mainstream.activity.service.trophy.config.TimeBasedConfig;
-import com.mainstream.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -26,10 +25,9 @@ import java.util.List;
 public class TimeBasedChecker implements TrophyChecker {
 
     private final TrophyConfigParser configParser;
-    private final UserActivityRepository userActivityRepository;
 
     @Override
-    public boolean checkCriteria(User user, UserActivity activity, Trophy trophy) {
+    public boolean checkCriteria(TrophyEvaluationContext context, Trophy trophy) {
         try {
             TimeBasedConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), TimeBasedConfig.class);
 
@@ -39,7 +37,7 @@ public class TimeBasedChecker implements TrophyChecker {
             }
 
             // Count all activities in the time window
-            long count = countActivitiesInTimeWindow(user, config);
+            long count = countActivitiesInTimeWindow(context, config);
             return count >= config.getRequiredCount();
 
         } catch (Exception e) {
@@ -49,7 +47,7 @@ public class TimeBasedChecker implements TrophyChecker {
     }
 
     @Override
-    public TrophyProgress calculateProgress(User user, Trophy trophy) {
+    public TrophyProgress calculateProgress(TrophyEvaluationContext context, Trophy trophy) {
         try {
             TimeBasedConfig config = configParser.parseConfig(trophy.getCriteriaConfig(), TimeBasedConfig.class);
 
@@ -57,7 +55,7 @@ public class TimeBasedChecker implements TrophyChecker {
                 return new TrophyProgress(0, 0);
             }
 
-            long count = countActivitiesInTimeWindow(user, config);
+            long count = countActivitiesInTimeWindow(context, config);
             return new TrophyProgress(count, config.getRequiredCount());
 
         } catch (Exception e) {
@@ -72,13 +70,19 @@ public class TimeBasedChecker implements TrophyChecker {
     }
 
     /**
-     * Count activities within the configured time window.
+     * Count activities within the configured time window. Without a minimum distance it
+     * comes from the weekday/hour counts in the user's activity stats.
      */
-    private long countActivitiesInTimeWindow(User user, TimeBasedConfig config) {
+    private long countActivitiesInTimeWindow(TrophyEvaluationContext context, TimeBasedConfig config) {
+        if (config.getMinimumDistance() == null || config.getMinimumDistance() <= 0) {
+            return context.getAggregate()
+                .countInTimeWindow(config.getStartHour(), config.getEndHour(), config.getDaysOfWeek());
+        }
+
         // Get all user activities (we'll filter in memory)
         // In a production system, you'd want to add a repository method for this
         LocalDateTime lookbackDate = LocalDateTime.now().minusYears(1);
-        List<UserActivity> allActivities = userActivityRepository.findUserActivitiesSince(user.getId(), lookbackDate);
+        List<UserActivity> allActivities = context.getActivitiesSince(lookbackDate);
 
         return allActivities.stream()
             .filter(act -> matchesTimeWindow(act, config))
@@ -0,0 +1,146 @@
+package com.mainstream.discovery.controller;
+
+import com.mainstream.discovery.dto.ApproveRouteCandidateRequest;
+import com.mainstream.discovery.dto.RouteCandidateDto;
+import com.mainstream.discovery.dto.RouteDiscoveryStatusDto;
+import com.mainstream.discovery.entity.RouteCandidate;
+import com.mainstream.discovery.service.RouteCandidateService;
+import com.mainstream.discovery.service.RouteDiscoveryService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Controller for route discovery: running it and reviewing the route candidates it
+ * proposes (Admin only).
+ */
+@RestController
+@RequestMapping("/api/route-discovery")
+@RequiredArgsConstructor
+@Slf4j
+public class RouteDiscoveryController {
+
+    private final RouteDiscoveryService routeDiscoveryService;
+    private final RouteCandidateService routeCandidateService;
+
+    /**
+     * Start a discovery run in the background (Admin only).
+     */
+    @PostMapping("/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RouteDiscoveryStatusDto> startDiscovery() {
+        if (!routeDiscoveryService.startDiscovery()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(routeDiscoveryService.getStatus());
+        }
+        return ResponseEntity.accepted().body(routeDiscoveryService.getStatus());
+    }
+
+    /**
+     * State of the current or last discovery run (Admin only).
+     */
+    @GetMapping("/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RouteDiscoveryStatusDto> getStatus() {
+        return ResponseEntity.ok(routeDiscoveryService.getStatus());
+    }
+
+    /**
+     * Route candidates with the given status, most users first (Admin only).
+     */
+    @GetMapping("/candidates")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCandidates(
+            @RequestParam(value = "status", defaultValue = "PENDING") String status) {
+        RouteCandidate.Status parsed;
+        try {
+            parsed = RouteCandidate.Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unknown status: " + status);
+        }
+        List<RouteCandidateDto> candidates = routeCandidateService.getCandidates(parsed).stream()
+                .map(this::toDto)
+                .toList();
+        return ResponseEntity.ok(candidates);
+    }
+
+    @GetMapping("/candidates/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RouteCandidateDto> getCandidate(@PathVariable Long id) {
+        return routeCandidateService.getCandidate(id)
+                .map(candidate -> ResponseEntity.ok(toDto(candidate)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Create a predefined route from a pending candidate (Admin only).
+     */
+    @PostMapping("/candidates/{id}/approve")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> approveCandidate(
+            @PathVariable Long id,
+            @Valid @RequestBody ApproveRouteCandidateRequest request) {
+        try {
+            Optional<RouteCandidate> approved = routeCandidateService.approve(id, request);
+            if (approved.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(toDto(approved.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Reject a pending candidate; later runs do not propose its corridor again (Admin only).
+     */
+    @PutMapping("/candidates/{id}/reject")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rejectCandidate(@PathVariable Long id) {
+        try {
+            return routeCandidateService.reject(id)
+                    .<ResponseEntity<?>>map(candidate -> ResponseEntity.ok(toDto(candidate)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Convert entity to DTO.
+     */
+    private RouteCandidateDto toDto(RouteCandidate candidate) {
+        List<Double> elevations = null;
+        if (candidate.getElevations() != null) {
+            elevations = new ArrayList<>();
+            for (double elevation : RouteCandidateService.unpackElevations(candidate.getElevations())) {
+                elevations.add(Double.isNaN(elevation) ? null : elevation);
+            }
+        }
+        return RouteCandidateDto.builder()
+                .id(candidate.getId())
+                .status(candidate.getStatus().name())
+                .encodedPolyline(candidate.getEncodedPolyline())
+                .pointCount(candidate.getPointCount())
+                .elevations(elevations)
+                .distanceMeters(candidate.getDistanceMeters())
+                .elevationGainMeters(candidate.getElevationGainMeters())
+                .elevationLossMeters(candidate.getElevationLossMeters())
+                .startLatitude(candidate.getStartLatitude())
+                .startLongitude(candidate.getStartLongitude())
+                .isLoop(candidate.getIsLoop())
+                .userCount(candidate.getUserCount())
+                .activityCount(candidate.getActivityCount())
+                .routeId(candidate.getRouteId())
+                .reviewedAt(candidate.getReviewedAt())
+                .createdAt(candidate.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.mainstream.discovery.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Turns a route candidate into a predefined route with this name.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApproveRouteCandidateRequest {
+    @NotBlank(message = "Name is required")
+    @Size(max = 200)
+    private String name;
+
+    @Size(max = 1000)
+    private String description;
+
+    @Size(max = 100)
+    private String city;
+}
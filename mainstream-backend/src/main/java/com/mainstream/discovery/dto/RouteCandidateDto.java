@@ -0,0 +1,34 @@
+package com.mainstream.discovery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteCandidateDto {
+    private Long id;
+    private String status;
+    private String encodedPolyline;
+    private Integer pointCount;
+    // Altitude per polyline point (null = unknown); null if no track had altitudes
+    private List<Double> elevations;
+    private BigDecimal distanceMeters;
+    private BigDecimal elevationGainMeters;
+    private BigDecimal elevationLossMeters;
+    private BigDecimal startLatitude;
+    private BigDecimal startLongitude;
+    private Boolean isLoop;
+    private Integer userCount;
+    private Integer activityCount;
+    private Long routeId;
+    private LocalDateTime reviewedAt;
+    private LocalDateTime createdAt;
+}
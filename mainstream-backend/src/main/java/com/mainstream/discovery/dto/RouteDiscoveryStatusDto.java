@@ -0,0 +1,29 @@
+package com.mainstream.discovery.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of the current or last route discovery run.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteDiscoveryStatusDto {
+    private boolean running;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Integer trackCount;
+    private Long pointCount;
+    private Long loadMillis;
+    private Long extractMillis;
+    // Corridors found, and those left after dropping known routes and reviewed candidates
+    private Integer corridorCount;
+    private Integer candidateCount;
+    private String errorMessage;
+}
@@ -0,0 +1,106 @@
+package com.mainstream.discovery.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A route proposed by route discovery from a corridor many users run along, waiting for
+ * an admin to approve it (which creates a predefined route) or reject it. Rejected and
+ * approved candidates are kept so later discovery runs do not propose them again.
+ */
+@Entity
+@Table(name = "route_candidates", indexes = {
+    @Index(name = "idx_route_candidates_status", columnList = "status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class RouteCandidate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    /**
+     * Encoded polyline (precision 1e5) of the simplified corridor
+     */
+    @Column(name = "encoded_polyline", columnDefinition = "TEXT", nullable = false)
+    private String encodedPolyline;
+
+    @Column(name = "point_count", nullable = false)
+    private Integer pointCount;
+
+    /**
+     * Mean altitude at every polyline point, packed as big-endian floats (NaN = unknown);
+     * null if no track had altitudes
+     */
+    @Lob
+    @Column(name = "elevations", columnDefinition = "BLOB")
+    private byte[] elevations;
+
+    @Column(name = "distance_meters", nullable = false, precision = 10, scale = 2)
+    private BigDecimal distanceMeters;
+
+    @Column(name = "elevation_gain_meters", precision = 10, scale = 2)
+    private BigDecimal elevationGainMeters;
+
+    @Column(name = "elevation_loss_meters", precision = 10, scale = 2)
+    private BigDecimal elevationLossMeters;
+
+    @Column(name = "start_latitude", nullable = false, precision = 10, scale = 7)
+    private BigDecimal startLatitude;
+
+    @Column(name = "start_longitude", nullable = false, precision = 10, scale = 7)
+    private BigDecimal startLongitude;
+
+    @Column(name = "is_loop", nullable = false)
+    private Boolean isLoop;
+
+    /**
+     * Typical (median) number of distinct users and activities along the corridor
+     */
+    @Column(name = "user_count", nullable = false)
+    private Integer userCount;
+
+    @Column(name = "activity_count", nullable = false)
+    private Integer activityCount;
+
+    /**
+     * Predefined route created on approval
+     */
+    @Column(name = "route_id")
+    private Long routeId;
+
+    @Column(name = "reviewed_at")
+    private LocalDateTime reviewedAt;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        PENDING,
+        APPROVED,
+        REJECTED
+    }
+}
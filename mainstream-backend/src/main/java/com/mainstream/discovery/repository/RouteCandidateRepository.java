@@ -0,0 +1,22 @@
+package com.mainstream.discovery.repository;
+
+import com.mainstream.discovery.entity.RouteCandidate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RouteCandidateRepository extends JpaRepository<RouteCandidate, Long> {
+
+    List<RouteCandidate> findByStatusOrderByUserCountDescIdAsc(RouteCandidate.Status status);
+
+    List<RouteCandidate> findByStatusNot(RouteCandidate.Status status);
+
+    @Modifying
+    @Query("DELETE FROM RouteCandidate c WHERE c.status = :status")
+    void deleteByStatus(@Param("status") RouteCandidate.Status status);
+}
@@ -0,0 +1,592 @@
+package com.mainstream.discovery.service;
+
+import com.mainstream.geo.GeoDistance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the corridors many different people run along, in a set of GPS tracks.
+ *
+ * Every track is rasterised into square cells of cellSizeMeters (steps longer than half a
+ * cell are interpolated, GPS gaps are not bridged). A cell is dense when at least minUsers
+ * different users and minActivities activities passed through it, so one runner's daily
+ * laps never make a corridor on their own and no single user's track can surface. The
+ * dense cells are clustered into connected components (8-neighbourhood), i.e. DBSCAN on
+ * the grid with one cell as radius. From each component its longest path is extracted
+ * with a double-sweep breadth-first search; if the component also connects the two ends
+ * away from that path, the return leg is added and the corridor becomes a loop. The
+ * geometry follows the mean position of the samples in each cell, smoothed, with the mean
+ * altitude of the cell.
+ *
+ * Everything runs on primitive arrays: per-track cell sets and the per-cell accumulation
+ * are computed with parallel streams, the counting is a parallel sort of all cells.
+ */
+final class CorridorExtractor {
+
+    // Cells at most this many hops from a path end may be shared by the return leg of a loop
+    private static final int LOOP_END_HOPS = 3;
+    // Steps longer than this are gaps in the recording, not movement
+    private static final double MAX_INTERPOLATED_STEP_METERS = 200.0;
+    private static final int SMOOTHING_RADIUS = 2;
+    private static final double MIN_COS_LATITUDE = 0.01;
+
+    private final double cellSizeMeters;
+    private final double cellLatDegrees;
+    private final int minUsers;
+    private final int minActivities;
+    private final double minLengthMeters;
+
+    CorridorExtractor(double cellSizeMeters, int minUsers, int minActivities, double minLengthMeters) {
+        if (cellSizeMeters <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSizeMeters = cellSizeMeters;
+        this.cellLatDegrees = cellSizeMeters / GeoDistance.METERS_PER_DEGREE;
+        this.minUsers = Math.max(1, minUsers);
+        this.minActivities = Math.max(1, minActivities);
+        this.minLengthMeters = minLengthMeters;
+    }
+
+    /**
+     * One recorded activity; altitudes are NaN where missing.
+     */
+    static final class Track {
+        final long userId;
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] altitudes;
+
+        Track(long userId, double[] latitudes, double[] longitudes, double[] altitudes) {
+            this.userId = userId;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.altitudes = altitudes;
+        }
+
+        int size() {
+            return latitudes.length;
+        }
+    }
+
+    /**
+     * An extracted corridor; altitudes are NaN where no sample in the cell had one.
+     */
+    static final class Corridor {
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] altitudes;
+        final double lengthMeters;
+        final boolean loop;
+        // Median over the cells of the path
+        final int userCount;
+        final int activityCount;
+
+        Corridor(double[] latitudes, double[] longitudes, double[] altitudes, double lengthMeters, boolean loop,
+                 int userCount, int activityCount) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.altitudes = altitudes;
+            this.lengthMeters = lengthMeters;
+            this.loop = loop;
+            this.userCount = userCount;
+            this.activityCount = activityCount;
+        }
+    }
+
+    /**
+     * @return the corridors, most users first
+     */
+    List<Corridor> extract(List<Track> tracks) {
+        // Cells of every track, and of every user (union over the user's tracks)
+        long[][] trackCells = tracks.parallelStream().map(this::cellsOf).toArray(long[][]::new);
+        Map<Long, List<Integer>> tracksByUser = new HashMap<>();
+        for (int t = 0; t < tracks.size(); t++) {
+            tracksByUser.computeIfAbsent(tracks.get(t).userId, user -> new ArrayList<>()).add(t);
+        }
+        long[][] userCells = tracksByUser.values().parallelStream()
+                .map(userTracks -> union(trackCells, userTracks))
+                .toArray(long[][]::new);
+
+        // Both unions cover the same cells, so the two counts line up
+        long[] cells = sortedConcat(trackCells);
+        long[] keys = distinct(cells.clone());
+        int[] activityCounts = runLengths(cells, keys.length);
+        int[] userCounts = runLengths(sortedConcat(userCells), keys.length);
+
+        // Dense cells, with their counts
+        int[] dense = IntStream.range(0, keys.length)
+                .filter(c -> userCounts[c] >= minUsers && activityCounts[c] >= minActivities)
+                .toArray();
+        Grid grid = new Grid(dense.length);
+        for (int i = 0; i < dense.length; i++) {
+            grid.keys[i] = keys[dense[i]];
+            grid.users[i] = userCounts[dense[i]];
+            grid.activities[i] = activityCounts[dense[i]];
+        }
+        if (dense.length == 0) {
+            return List.of();
+        }
+        accumulateSamples(tracks, grid);
+        grid.buildAdjacency();
+
+        return components(grid).parallelStream()
+                .filter(component -> component.length * cellSizeMeters * Math.sqrt(2) >= minLengthMeters)
+                .map(component -> corridorOf(grid, component))
+                .filter(Objects::nonNull)
+                .filter(corridor -> corridor.lengthMeters >= minLengthMeters)
+                .sorted(Comparator.comparingInt((Corridor corridor) -> corridor.userCount).reversed()
+                        .thenComparing(Comparator.comparingDouble((Corridor corridor) -> corridor.lengthMeters).reversed()))
+                .toList();
+    }
+
+    // ---- grid ----
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellLatDegrees);
+    }
+
+    // Cells are square: each row's cells are as wide in meters as they are high
+    private double cellLonDegrees(int row) {
+        double latitude = (row + 0.5) * cellLatDegrees;
+        return cellLatDegrees / Math.max(Math.cos(Math.toRadians(latitude)), MIN_COS_LATITUDE);
+    }
+
+    private int column(double longitude, int row) {
+        return (int) Math.floor(longitude / cellLonDegrees(row));
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        int row = row(latitude);
+        return key(row, column(longitude, row));
+    }
+
+    static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    static int rowOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int columnOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Dense cells in key order, with their counts, sample sums and neighbours.
+     */
+    private final class Grid {
+        final long[] keys;
+        final int[] users;
+        final int[] activities;
+        final double[] latitudeSums;
+        final double[] longitudeSums;
+        final int[] sampleCounts;
+        final double[] altitudeSums;
+        final int[] altitudeCounts;
+        // Neighbours of cell c are adjacency[adjacencyStart[c] .. adjacencyStart[c + 1])
+        int[] adjacencyStart;
+        int[] adjacency;
+
+        Grid(int size) {
+            keys = new long[size];
+            users = new int[size];
+            activities = new int[size];
+            latitudeSums = new double[size];
+            longitudeSums = new double[size];
+            sampleCounts = new int[size];
+            altitudeSums = new double[size];
+            altitudeCounts = new int[size];
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        int indexOf(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? index : -1;
+        }
+
+        void buildAdjacency() {
+            int n = size();
+            int[] all = new int[n * 8];
+            int[] counts = new int[n];
+            IntStream.range(0, n).parallel().forEach(c -> counts[c] = neighbours(c, all, c * 8));
+            adjacencyStart = new int[n + 1];
+            for (int c = 0; c < n; c++) {
+                adjacencyStart[c + 1] = adjacencyStart[c] + counts[c];
+            }
+            adjacency = new int[adjacencyStart[n]];
+            for (int c = 0; c < n; c++) {
+                System.arraycopy(all, c * 8, adjacency, adjacencyStart[c], counts[c]);
+            }
+        }
+
+        private int neighbours(int cell, int[] out, int offset) {
+            int row = rowOf(keys[cell]);
+            int column = columnOf(keys[cell]);
+            double centreLongitude = (column + 0.5) * cellLonDegrees(row);
+            int count = 0;
+            for (int dRow = -1; dRow <= 1; dRow++) {
+                int neighbourRow = row + dRow;
+                // Rows differ slightly in cell width; align on the cell centre
+                int centreColumn = dRow == 0 ? column : column(centreLongitude, neighbourRow);
+                for (int dColumn = -1; dColumn <= 1; dColumn++) {
+                    if (dRow == 0 && dColumn == 0) {
+                        continue;
+                    }
+                    int neighbour = indexOf(key(neighbourRow, centreColumn + dColumn));
+                    if (neighbour >= 0) {
+                        out[offset + count++] = neighbour;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    // ---- rasterisation and counting ----
+
+    /**
+     * Sorted distinct cells a track passes through.
+     */
+    private long[] cellsOf(Track track) {
+        double maxStep = cellSizeMeters / 2;
+        long[] cells = new long[Math.max(16, track.size())];
+        int size = 0;
+        for (int i = 0; i < track.size(); i++) {
+            double latitude = track.latitudes[i];
+            double longitude = track.longitudes[i];
+            int steps = 1;
+            if (i > 0) {
+                double step = GeoDistance.meters(track.latitudes[i - 1], track.longitudes[i - 1], latitude, longitude);
+                if (step <= MAX_INTERPOLATED_STEP_METERS) {
+                    steps = Math.max(1, (int) Math.ceil(step / maxStep));
+                }
+            }
+            for (int s = 1; s <= steps; s++) {
+                double t = (double) s / steps;
+                long cell = steps == 1
+                        ? cellOf(latitude, longitude)
+                        : cellOf(track.latitudes[i - 1] + t * (latitude - track.latitudes[i - 1]),
+                                track.longitudes[i - 1] + t * (longitude - track.longitudes[i - 1]));
+                if (size > 0 && cells[size - 1] == cell) {
+                    continue;
+                }
+                if (size == cells.length) {
+                    cells = Arrays.copyOf(cells, size * 2);
+                }
+                cells[size++] = cell;
+            }
+        }
+        Arrays.sort(cells, 0, size);
+        return distinct(Arrays.copyOf(cells, size));
+    }
+
+    private static long[] union(long[][] sets, List<Integer> members) {
+        long[][] selected = new long[members.size()][];
+        for (int i = 0; i < members.size(); i++) {
+            selected[i] = sets[members.get(i)];
+        }
+        return distinct(sortedConcat(selected));
+    }
+
+    private static long[] sortedConcat(long[][] arrays) {
+        int total = 0;
+        for (long[] array : arrays) {
+            total += array.length;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] array : arrays) {
+            System.arraycopy(array, 0, all, offset, array.length);
+            offset += array.length;
+        }
+        Arrays.parallelSort(all);
+        return all;
+    }
+
+    /**
+     * Removes duplicates from a sorted array, in place; returns it or a shorter copy.
+     */
+    private static long[] distinct(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private static int[] runLengths(long[] sorted, int runs) {
+        int[] lengths = new int[runs];
+        int run = -1;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                run++;
+            }
+            lengths[run]++;
+        }
+        return lengths;
+    }
+
+    /**
+     * Sum the positions and altitudes of the samples in every dense cell. Finding the cell
+     * of each sample is the expensive part and runs in parallel; the sums are sequential.
+     */
+    private void accumulateSamples(List<Track> tracks, Grid grid) {
+        int[][] sampleCells = tracks.parallelStream()
+                .map(track -> {
+                    int[] indices = new int[track.size()];
+                    for (int i = 0; i < track.size(); i++) {
+                        indices[i] = grid.indexOf(cellOf(track.latitudes[i], track.longitudes[i]));
+                    }
+                    return indices;
+                })
+                .toArray(int[][]::new);
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            int[] indices = sampleCells[t];
+            for (int i = 0; i < indices.length; i++) {
+                int cell = indices[i];
+                if (cell < 0) {
+                    continue;
+                }
+                grid.latitudeSums[cell] += track.latitudes[i];
+                grid.longitudeSums[cell] += track.longitudes[i];
+                grid.sampleCounts[cell]++;
+                if (!Double.isNaN(track.altitudes[i])) {
+                    grid.altitudeSums[cell] += track.altitudes[i];
+                    grid.altitudeCounts[cell]++;
+                }
+            }
+        }
+    }
+
+    // ---- clustering and path extraction ----
+
+    /**
+     * Connected components of the dense cells (union-find, so a neighbour relation seen
+     * from one side only still joins the cells).
+     */
+    private static List<int[]> components(Grid grid) {
+        int n = grid.size();
+        int[] parent = new int[n];
+        for (int c = 0; c < n; c++) {
+            parent[c] = c;
+        }
+        for (int c = 0; c < n; c++) {
+            for (int a = grid.adjacencyStart[c]; a < grid.adjacencyStart[c + 1]; a++) {
+                int rootA = find(parent, c);
+                int rootB = find(parent, grid.adjacency[a]);
+                if (rootA != rootB) {
+                    parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                }
+            }
+        }
+        int[] sizes = new int[n];
+        for (int c = 0; c < n; c++) {
+            sizes[find(parent, c)]++;
+        }
+        int[][] members = new int[n][];
+        int[] fill = new int[n];
+        List<int[]> components = new ArrayList<>();
+        for (int c = 0; c < n; c++) {
+            int root = find(parent, c);
+            if (members[root] == null) {
+                members[root] = new int[sizes[root]];
+                components.add(members[root]);
+            }
+            members[root][fill[root]++] = c;
+        }
+        return components;
+    }
+
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    private Corridor corridorOf(Grid grid, int[] component) {
+        // Component cells are numbered 0..n-1 locally; neighbours are always in the component
+        Map<Integer, Integer> local = new HashMap<>(component.length * 2);
+        for (int i = 0; i < component.length; i++) {
+            local.put(component[i], i);
+        }
+        int n = component.length;
+        int[][] neighbours = new int[n][];
+        for (int i = 0; i < n; i++) {
+            int cell = component[i];
+            int start = grid.adjacencyStart[cell];
+            int end = grid.adjacencyStart[cell + 1];
+            neighbours[i] = new int[end - start];
+            for (int a = start; a < end; a++) {
+                neighbours[i][a - start] = local.get(grid.adjacency[a]);
+            }
+        }
+
+        // Double sweep: the farthest cell from anywhere is one end of a longest path
+        int[] parent = new int[n];
+        int[] fromAny = bfs(neighbours, 0, null, parent);
+        int a = farthest(fromAny);
+        int[] fromA = bfs(neighbours, a, null, parent);
+        int b = farthest(fromA);
+        int[] path = pathTo(parent, b);
+        if (path.length < 2) {
+            return null;
+        }
+        reverse(path);
+
+        // A second way back from b to a, clear of the first, makes a loop
+        int[] fromB = bfs(neighbours, b, null, new int[n]);
+        boolean[] blocked = new boolean[n];
+        for (int cell : path) {
+            blocked[cell] = true;
+            for (int neighbour : neighbours[cell]) {
+                blocked[neighbour] = true;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((fromA[i] >= 0 && fromA[i] <= LOOP_END_HOPS) || (fromB[i] >= 0 && fromB[i] <= LOOP_END_HOPS)) {
+                blocked[i] = false;
+            }
+        }
+        int[] returnParent = new int[n];
+        int[] returnDistance = bfs(neighbours, b, blocked, returnParent);
+        boolean loop = false;
+        if (returnDistance[a] >= path.length / 2) {
+            int[] back = pathTo(returnParent, a);
+            // back runs a..b; the loop is path (a..b) followed by it reversed, without repeating b
+            int[] closed = Arrays.copyOf(path, path.length + back.length - 1);
+            for (int i = 1; i < back.length; i++) {
+                closed[path.length + i - 1] = back[back.length - 1 - i];
+            }
+            path = closed;
+            loop = true;
+        }
+
+        return geometry(grid, component, path, loop);
+    }
+
+    /**
+     * Hop distances from start (-1 if unreachable), avoiding blocked cells.
+     */
+    private static int[] bfs(int[][] neighbours, int start, boolean[] blocked, int[] parent) {
+        int[] distance = new int[neighbours.length];
+        Arrays.fill(distance, -1);
+        Arrays.fill(parent, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distance[start] = 0;
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int neighbour : neighbours[cell]) {
+                if (distance[neighbour] < 0 && (blocked == null || !blocked[neighbour])) {
+                    distance[neighbour] = distance[cell] + 1;
+                    parent[neighbour] = cell;
+                    queue.add(neighbour);
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static int farthest(int[] distance) {
+        int best = 0;
+        for (int i = 1; i < distance.length; i++) {
+            if (distance[i] > distance[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The BFS tree path from end back to its root, starting at end.
+     */
+    private static int[] pathTo(int[] parent, int end) {
+        int length = 0;
+        for (int cell = end; cell >= 0; cell = parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int i = 0;
+        for (int cell = end; cell >= 0; cell = parent[cell]) {
+            path[i++] = cell;
+        }
+        return path;
+    }
+
+    private static void reverse(int[] array) {
+        for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    private Corridor geometry(Grid grid, int[] component, int[] path, boolean loop) {
+        int n = path.length;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        double[] altitudes = new double[n];
+        int[] users = new int[n];
+        int[] activities = new int[n];
+        for (int i = 0; i < n; i++) {
+            int cell = component[path[i]];
+            if (grid.sampleCounts[cell] > 0) {
+                latitudes[i] = grid.latitudeSums[cell] / grid.sampleCounts[cell];
+                longitudes[i] = grid.longitudeSums[cell] / grid.sampleCounts[cell];
+            } else {
+                // Only crossed between two samples
+                int row = rowOf(grid.keys[cell]);
+                latitudes[i] = (row + 0.5) * cellLatDegrees;
+                longitudes[i] = (columnOf(grid.keys[cell]) + 0.5) * cellLonDegrees(row);
+            }
+            altitudes[i] = grid.altitudeCounts[cell] > 0
+                    ? grid.altitudeSums[cell] / grid.altitudeCounts[cell]
+                    : Double.NaN;
+            users[i] = grid.users[cell];
+            activities[i] = grid.activities[cell];
+        }
+        latitudes = smooth(latitudes);
+        longitudes = smooth(longitudes);
+        double length = GeoDistance.pathMeters(latitudes, longitudes, n);
+        return new Corridor(latitudes, longitudes, altitudes, length, loop, median(users), median(activities));
+    }
+
+    /**
+     * Moving average, narrowing towards the ends so they stay in place.
+     */
+    private static double[] smooth(double[] values) {
+        double[] smoothed = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int radius = Math.min(SMOOTHING_RADIUS, Math.min(i, values.length - 1 - i));
+            double sum = 0.0;
+            for (int j = i - radius; j <= i + radius; j++) {
+                sum += values[j];
+            }
+            smoothed[i] = sum / (2 * radius + 1);
+        }
+        return smoothed;
+    }
+
+    private static int median(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
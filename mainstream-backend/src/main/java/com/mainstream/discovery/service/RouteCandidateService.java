@@ -0,0 +1,209 @@
+package com.mainstream.discovery.service;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.event.RouteChangedEvent;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
+import com.mainstream.activity.repository.RouteTrackPointRepository;
+import com.mainstream.activity.service.RouteSummaryService;
+import com.mainstream.discovery.dto.ApproveRouteCandidateRequest;
+import com.mainstream.discovery.entity.RouteCandidate;
+import com.mainstream.discovery.repository.RouteCandidateRepository;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PolylineEncoder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores the candidates of route discovery and handles their review (admin only).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteCandidateService {
+
+    // Spacing of the track points of a route created from a candidate, similar to a GPX
+    // recording, so route matching finds a route point near every activity point
+    static final double ROUTE_POINT_SPACING_METERS = 10.0;
+
+    private final RouteCandidateRepository routeCandidateRepository;
+    private final PredefinedRouteRepository predefinedRouteRepository;
+    private final RouteTrackPointRepository routeTrackPointRepository;
+    private final RouteSummaryService routeSummaryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<RouteCandidate> getCandidates(RouteCandidate.Status status) {
+        return routeCandidateRepository.findByStatusOrderByUserCountDescIdAsc(status);
+    }
+
+    public Optional<RouteCandidate> getCandidate(Long id) {
+        return routeCandidateRepository.findById(id);
+    }
+
+    /**
+     * Approved and rejected candidates, which discovery does not propose again.
+     */
+    public List<RouteCandidate> getReviewedCandidates() {
+        return routeCandidateRepository.findByStatusNot(RouteCandidate.Status.PENDING);
+    }
+
+    /**
+     * Replace the pending candidates of the previous discovery run.
+     */
+    @Transactional
+    public void replacePendingCandidates(List<RouteCandidate> candidates) {
+        routeCandidateRepository.deleteByStatus(RouteCandidate.Status.PENDING);
+        routeCandidateRepository.saveAll(candidates);
+    }
+
+    /**
+     * Create a predefined route from a pending candidate.
+     *
+     * @return the approved candidate, or empty if it does not exist
+     * @throws IllegalArgumentException if the candidate was already reviewed or the name is taken
+     */
+    @Transactional
+    public Optional<RouteCandidate> approve(Long id, ApproveRouteCandidateRequest request) {
+        Optional<RouteCandidate> found = routeCandidateRepository.findById(id);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        RouteCandidate candidate = found.get();
+        if (candidate.getStatus() != RouteCandidate.Status.PENDING) {
+            throw new IllegalArgumentException("Route candidate " + id + " is already " + candidate.getStatus());
+        }
+        String name = request.getName().trim();
+        if (predefinedRouteRepository.existsByName(name)) {
+            throw new IllegalArgumentException("Route with name '" + name + "' already exists");
+        }
+
+        double[][] points = routePoints(candidate);
+        double[] distances = new double[points[0].length];
+        for (int i = 1; i < distances.length; i++) {
+            distances[i] = distances[i - 1]
+                    + GeoDistance.meters(points[0][i - 1], points[1][i - 1], points[0][i], points[1][i]);
+        }
+
+        PredefinedRoute route = new PredefinedRoute();
+        route.setName(name);
+        route.setDescription(request.getDescription());
+        route.setCity(request.getCity());
+        route.setOriginalFilename("route-candidate-" + candidate.getId());
+        route.setIsActive(true);
+        route.setStartLatitude(candidate.getStartLatitude());
+        route.setStartLongitude(candidate.getStartLongitude());
+        route.setDistanceMeters(BigDecimal.valueOf(distances[distances.length - 1]).setScale(2, RoundingMode.HALF_UP));
+        route.setElevationGainMeters(candidate.getElevationGainMeters());
+        route.setElevationLossMeters(candidate.getElevationLossMeters());
+        routeSummaryService.applySummary(route, points[0], points[1], distances.length);
+        PredefinedRoute saved = predefinedRouteRepository.save(route);
+        routeTrackPointRepository.insertAll(saved.getId(), points[0], points[1], points[2], distances, distances.length);
+        eventPublisher.publishEvent(new RouteChangedEvent(saved.getId(), RouteChangedEvent.ChangeType.CREATED));
+
+        candidate.setStatus(RouteCandidate.Status.APPROVED);
+        candidate.setRouteId(saved.getId());
+        candidate.setReviewedAt(LocalDateTime.now());
+        log.info("Approved route candidate {} as route {} '{}' with {} track points",
+                id, saved.getId(), name, distances.length);
+        return Optional.of(routeCandidateRepository.save(candidate));
+    }
+
+    /**
+     * Reject a pending candidate; discovery will not propose its corridor again.
+     *
+     * @return the rejected candidate, or empty if it does not exist
+     * @throws IllegalArgumentException if the candidate was already reviewed
+     */
+    @Transactional
+    public Optional<RouteCandidate> reject(Long id) {
+        return routeCandidateRepository.findById(id).map(candidate -> {
+            if (candidate.getStatus() != RouteCandidate.Status.PENDING) {
+                throw new IllegalArgumentException("Route candidate " + id + " is already " + candidate.getStatus());
+            }
+            candidate.setStatus(RouteCandidate.Status.REJECTED);
+            candidate.setReviewedAt(LocalDateTime.now());
+            return routeCandidateRepository.save(candidate);
+        });
+    }
+
+    /**
+     * Candidate geometry densified to {@link #ROUTE_POINT_SPACING_METERS}.
+     *
+     * @return latitudes, longitudes and elevations (NaN where unknown)
+     */
+    private static double[][] routePoints(RouteCandidate candidate) {
+        double[][] points = PolylineEncoder.decode(candidate.getEncodedPolyline());
+        int n = points.length;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = points[i][0];
+            longitudes[i] = points[i][1];
+        }
+        double[] elevations = candidate.getElevations() != null ? unpackElevations(candidate.getElevations()) : null;
+        return densify(latitudes, longitudes, elevations, ROUTE_POINT_SPACING_METERS);
+    }
+
+    /**
+     * Insert points so no step is longer than maxStepMeters, interpolating linearly.
+     *
+     * @param altitudes may be null (all NaN then)
+     * @return latitudes, longitudes and altitudes of the densified line
+     */
+    static double[][] densify(double[] latitudes, double[] longitudes, double[] altitudes, double maxStepMeters) {
+        int n = latitudes.length;
+        double[] outLatitudes = new double[Math.max(1, n * 2)];
+        double[] outLongitudes = new double[outLatitudes.length];
+        double[] outAltitudes = new double[outLatitudes.length];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int steps = 1;
+            if (i > 0) {
+                double step = GeoDistance.meters(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+                steps = Math.max(1, (int) Math.ceil(step / maxStepMeters));
+            }
+            for (int s = i == 0 ? steps : 1; s <= steps; s++) {
+                if (size == outLatitudes.length) {
+                    outLatitudes = Arrays.copyOf(outLatitudes, size * 2);
+                    outLongitudes = Arrays.copyOf(outLongitudes, size * 2);
+                    outAltitudes = Arrays.copyOf(outAltitudes, size * 2);
+                }
+                double t = (double) s / steps;
+                outLatitudes[size] = i == 0 ? latitudes[0] : latitudes[i - 1] + t * (latitudes[i] - latitudes[i - 1]);
+                outLongitudes[size] = i == 0 ? longitudes[0] : longitudes[i - 1] + t * (longitudes[i] - longitudes[i - 1]);
+                outAltitudes[size] = altitudes == null ? Double.NaN
+                        : i == 0 ? altitudes[0] : altitudes[i - 1] + t * (altitudes[i] - altitudes[i - 1]);
+                size++;
+            }
+        }
+        return new double[][] {
+                Arrays.copyOf(outLatitudes, size), Arrays.copyOf(outLongitudes, size), Arrays.copyOf(outAltitudes, size)};
+    }
+
+    static byte[] packElevations(double[] elevations) {
+        ByteBuffer buffer = ByteBuffer.allocate(elevations.length * Float.BYTES);
+        for (double elevation : elevations) {
+            buffer.putFloat((float) elevation);
+        }
+        return buffer.array();
+    }
+
+    public static double[] unpackElevations(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        double[] elevations = new double[data.length / Float.BYTES];
+        for (int i = 0; i < elevations.length; i++) {
+            elevations[i] = buffer.getFloat();
+        }
+        return elevations;
+    }
+}
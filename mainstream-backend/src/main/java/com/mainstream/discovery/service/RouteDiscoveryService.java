@@ -0,0 +1,288 @@
+package com.mainstream.discovery.service;
+
+import com.mainstream.activity.service.RouteGeometry;
+import com.mainstream.activity.service.RouteGeometryCache;
+import com.mainstream.discovery.dto.RouteDiscoveryStatusDto;
+import com.mainstream.discovery.entity.RouteCandidate;
+import com.mainstream.fitfile.repository.FitFileUploadRepository;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.geo.PointGridIndex;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.geo.TrackSimplifier;
+import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.run.repository.RunRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Offline route discovery: proposes the corridors many people run along, and which no
+ * route covers yet, as route candidates for an admin to approve.
+ *
+ * A run loads the tracks of the last lookbackDays (public runs, and processed FIT uploads),
+ * extracts the dense corridors with the {@link CorridorExtractor}, drops those mostly
+ * covered by an active route or an already reviewed candidate, and replaces the pending
+ * candidates with the rest. Runs happen one at a time on a background thread, started by
+ * an admin or by the optional cron schedule.
+ */
+@Slf4j
+@Service
+public class RouteDiscoveryService {
+
+    // A corridor is known when this share of its points is near a route or reviewed candidate
+    private static final double KNOWN_COVERAGE = 0.8;
+    private static final double SIMPLIFY_TOLERANCE_METERS = 5.0;
+
+    private final RouteCandidateService routeCandidateService;
+    private final RouteGeometryCache routeGeometryCache;
+    private final RunRepository runRepository;
+    private final GpsPointRepository gpsPointRepository;
+    private final FitFileUploadRepository fitFileUploadRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final int lookbackDays;
+    private final double cellSizeMeters;
+    private final int minUsers;
+    private final int minActivities;
+    private final double minLengthMeters;
+    private final int maxCandidates;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile RouteDiscoveryStatusDto status = RouteDiscoveryStatusDto.builder().build();
+
+    public RouteDiscoveryService(RouteCandidateService routeCandidateService,
+                                 RouteGeometryCache routeGeometryCache,
+                                 RunRepository runRepository,
+                                 GpsPointRepository gpsPointRepository,
+                                 FitFileUploadRepository fitFileUploadRepository,
+                                 FitTrackPointRepository fitTrackPointRepository,
+                                 @Value("${mainstream.route-discovery.lookback-days:90}") int lookbackDays,
+                                 @Value("${mainstream.route-discovery.cell-size-meters:20}") double cellSizeMeters,
+                                 @Value("${mainstream.route-discovery.min-users:3}") int minUsers,
+                                 @Value("${mainstream.route-discovery.min-activities:5}") int minActivities,
+                                 @Value("${mainstream.route-discovery.min-length-meters:1000}") double minLengthMeters,
+                                 @Value("${mainstream.route-discovery.max-candidates:50}") int maxCandidates) {
+        this.routeCandidateService = routeCandidateService;
+        this.routeGeometryCache = routeGeometryCache;
+        this.runRepository = runRepository;
+        this.gpsPointRepository = gpsPointRepository;
+        this.fitFileUploadRepository = fitFileUploadRepository;
+        this.fitTrackPointRepository = fitTrackPointRepository;
+        this.lookbackDays = lookbackDays;
+        this.cellSizeMeters = cellSizeMeters;
+        this.minUsers = minUsers;
+        this.minActivities = minActivities;
+        this.minLengthMeters = minLengthMeters;
+        this.maxCandidates = maxCandidates;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a discovery run in the background.
+     *
+     * @return false if one is already running
+     */
+    public boolean startDiscovery() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        status = RouteDiscoveryStatusDto.builder().running(true).startedAt(LocalDateTime.now()).build();
+        executor.submit(this::run);
+        return true;
+    }
+
+    public RouteDiscoveryStatusDto getStatus() {
+        return status;
+    }
+
+    /**
+     * Scheduled discovery; disabled unless mainstream.route-discovery.cron is set.
+     */
+    @Scheduled(cron = "${mainstream.route-discovery.cron:-}")
+    public void scheduledDiscovery() {
+        if (!startDiscovery()) {
+            log.info("Scheduled route discovery skipped, a run is still in progress");
+        }
+    }
+
+    private void run() {
+        RouteDiscoveryStatusDto.RouteDiscoveryStatusDtoBuilder result = RouteDiscoveryStatusDto.builder()
+                .startedAt(status.getStartedAt());
+        try {
+            long start = System.currentTimeMillis();
+            List<CorridorExtractor.Track> tracks = loadTracks(LocalDateTime.now().minusDays(lookbackDays));
+            long points = tracks.stream().mapToLong(CorridorExtractor.Track::size).sum();
+            long loaded = System.currentTimeMillis();
+            result.trackCount(tracks.size()).pointCount(points).loadMillis(loaded - start);
+
+            List<CorridorExtractor.Corridor> corridors =
+                    new CorridorExtractor(cellSizeMeters, minUsers, minActivities, minLengthMeters).extract(tracks);
+            result.extractMillis(System.currentTimeMillis() - loaded).corridorCount(corridors.size());
+
+            PointGridIndex known = knownPositions();
+            List<RouteCandidate> candidates = new ArrayList<>();
+            for (CorridorExtractor.Corridor corridor : corridors) {
+                if (candidates.size() >= maxCandidates) {
+                    break;
+                }
+                if (coverage(corridor, known) < KNOWN_COVERAGE) {
+                    candidates.add(toCandidate(corridor));
+                }
+            }
+            routeCandidateService.replacePendingCandidates(candidates);
+            result.candidateCount(candidates.size());
+            log.info("Route discovery found {} corridors in {} tracks ({} points), {} new candidates, in {} ms",
+                    corridors.size(), tracks.size(), points, candidates.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Route discovery failed: {}", e.getMessage(), e);
+            result.errorMessage(e.getMessage());
+        } finally {
+            status = result.running(false).finishedAt(LocalDateTime.now()).build();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Positions of the recent tracks, one query per activity so the track point entities
+     * are never loaded.
+     */
+    private List<CorridorExtractor.Track> loadTracks(LocalDateTime since) {
+        List<CorridorExtractor.Track> tracks = new ArrayList<>();
+        for (Object[] run : runRepository.findPublicIdsAndUsersSince(since)) {
+            addTrack(tracks, (Long) run[1], gpsPointRepository.findPositionsByRunId((Long) run[0]));
+        }
+        for (Object[] upload : fitFileUploadRepository.findCompletedIdsAndUsersSince(since)) {
+            addTrack(tracks, (Long) upload[1], fitTrackPointRepository.findPositionsByFitFileUploadId((Long) upload[0]));
+        }
+        return tracks;
+    }
+
+    private static void addTrack(List<CorridorExtractor.Track> tracks, Long userId, List<Object[]> positions) {
+        if (userId == null || positions.size() < 2) {
+            return;
+        }
+        int n = positions.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        double[] altitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            Object[] position = positions.get(i);
+            latitudes[i] = ((Number) position[0]).doubleValue();
+            longitudes[i] = ((Number) position[1]).doubleValue();
+            altitudes[i] = position[2] != null ? ((Number) position[2]).doubleValue() : Double.NaN;
+        }
+        tracks.add(new CorridorExtractor.Track(userId, latitudes, longitudes, altitudes));
+    }
+
+    /**
+     * Densified points of every active route and reviewed candidate, so a corridor point
+     * between two far-apart route points is still found near the route.
+     */
+    private PointGridIndex knownPositions() {
+        double spacing = cellSizeMeters / 2;
+        List<double[][]> lines = new ArrayList<>();
+        for (RouteGeometry route : routeGeometryCache.getActiveRoutes()) {
+            lines.add(RouteCandidateService.densify(route.getLatitudes(), route.getLongitudes(), null, spacing));
+        }
+        for (RouteCandidate candidate : routeCandidateService.getReviewedCandidates()) {
+            double[][] points = PolylineEncoder.decode(candidate.getEncodedPolyline());
+            double[] latitudes = new double[points.length];
+            double[] longitudes = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                latitudes[i] = points[i][0];
+                longitudes[i] = points[i][1];
+            }
+            lines.add(RouteCandidateService.densify(latitudes, longitudes, null, spacing));
+        }
+
+        int total = lines.stream().mapToInt(line -> line[0].length).sum();
+        double[] latitudes = new double[total];
+        double[] longitudes = new double[total];
+        int offset = 0;
+        for (double[][] line : lines) {
+            System.arraycopy(line[0], 0, latitudes, offset, line[0].length);
+            System.arraycopy(line[1], 0, longitudes, offset, line[1].length);
+            offset += line[0].length;
+        }
+        return new PointGridIndex(latitudes, longitudes, 2 * cellSizeMeters);
+    }
+
+    private double coverage(CorridorExtractor.Corridor corridor, PointGridIndex known) {
+        if (known.size() == 0) {
+            return 0.0;
+        }
+        int n = corridor.latitudes.length;
+        int covered = 0;
+        for (int i = 0; i < n; i++) {
+            boolean[] near = new boolean[1];
+            known.forEachWithin(corridor.latitudes[i], corridor.longitudes[i], 2 * cellSizeMeters,
+                    (point, distanceMeters) -> near[0] = true);
+            if (near[0]) {
+                covered++;
+            }
+        }
+        return (double) covered / n;
+    }
+
+    private static RouteCandidate toCandidate(CorridorExtractor.Corridor corridor) {
+        int[] indices = TrackSimplifier.simplify(corridor.latitudes, corridor.longitudes, SIMPLIFY_TOLERANCE_METERS);
+
+        // Gain and loss over the full corridor, skipping cells without altitude
+        double gain = 0.0;
+        double loss = 0.0;
+        double previous = Double.NaN;
+        for (double altitude : corridor.altitudes) {
+            if (Double.isNaN(altitude)) {
+                continue;
+            }
+            if (!Double.isNaN(previous)) {
+                gain += Math.max(0.0, altitude - previous);
+                loss += Math.max(0.0, previous - altitude);
+            }
+            previous = altitude;
+        }
+        boolean hasAltitude = !Double.isNaN(previous);
+
+        double[] elevations = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            elevations[i] = corridor.altitudes[indices[i]];
+        }
+
+        return RouteCandidate.builder()
+                .encodedPolyline(PolylineEncoder.encode(corridor.latitudes, corridor.longitudes, indices))
+                .pointCount(indices.length)
+                .elevations(hasAltitude ? RouteCandidateService.packElevations(elevations) : null)
+                .distanceMeters(scale(corridor.lengthMeters, 2))
+                .elevationGainMeters(hasAltitude ? scale(gain, 2) : null)
+                .elevationLossMeters(hasAltitude ? scale(loss, 2) : null)
+                .startLatitude(scale(corridor.latitudes[0], 7))
+                .startLongitude(scale(corridor.longitudes[0], 7))
+                .isLoop(corridor.loop)
+                .userCount(corridor.userCount)
+                .activityCount(corridor.activityCount)
+                .build();
+    }
+
+    private static BigDecimal scale(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -14,4 +14,5 @@ public class FitFileUploadRequestDto {
     private String description;
     private Boolean isPublic;
     private String tags;
+    private String progressId; // optional client-chosen id for /api/progress/stream
 }
\ No newline at end of file
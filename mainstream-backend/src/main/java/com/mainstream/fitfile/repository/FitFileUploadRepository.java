@@ -41,6 +41,17 @@ public interface FitFileUploadRepository extends JpaRepository<FitFileUpload, Lo
 
     List<FitFileUpload> findByProcessingStatus(FitFileUpload.ProcessingStatus status);
 
+    // Id and user of every processed upload started since the given time
+    @Query("SELECT f.id, f.userId FROM FitFileUpload f WHERE f.processingStatus = 'COMPLETED' AND f.activityStartTime >= :since ORDER BY f.id")
+    List<Object[]> findCompletedIdsAndUsersSince(@Param("since") LocalDateTime since);
+
+    // Processed uploads with GPS data but no activity metrics (stored before the ingest pipeline), keyset by id
+    @Query("SELECT f.id FROM FitFileUpload f WHERE f.processingStatus = 'COMPLETED' AND f.id > :afterId " +
+           "AND EXISTS (SELECT tp.id FROM FitTrackPoint tp WHERE tp.fitFileUpload.id = f.id AND tp.positionLat IS NOT NULL) " +
+           "AND NOT EXISTS (SELECT m.id FROM ActivityMetrics m WHERE m.fitFileUploadId = f.id) " +
+           "ORDER BY f.id")
+    List<Long> findIdsWithGpsWithoutMetrics(@Param("afterId") long afterId, Pageable pageable);
+
     // Additional methods for RunService integration
     List<FitFileUpload> findByUserIdAndProcessingStatusOrderByActivityStartTimeDesc(
         Long userId, FitFileUpload.ProcessingStatus status);
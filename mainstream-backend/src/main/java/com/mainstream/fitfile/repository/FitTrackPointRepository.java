@@ -25,5 +25,14 @@ public interface FitTrackPointRepository extends JpaRepository<FitTrackPoint, Lo
     @Query("SELECT tp FROM FitTrackPoint tp WHERE tp.fitFileUpload.id = :fitFileUploadId AND tp.heartRate IS NOT NULL ORDER BY tp.sequenceNumber")
     List<FitTrackPoint> findByFitFileUploadIdWithHeartRate(@Param("fitFileUploadId") Long fitFileUploadId);
 
+    /**
+     * Latitude, longitude and altitude (null if missing) of the points with a position,
+     * without loading the track point entities
+     */
+    @Query("SELECT tp.positionLat, tp.positionLong, COALESCE(tp.enhancedAltitude, tp.altitude) FROM FitTrackPoint tp " +
+           "WHERE tp.fitFileUpload.id = :fitFileUploadId AND tp.positionLat IS NOT NULL AND tp.positionLong IS NOT NULL " +
+           "ORDER BY tp.sequenceNumber")
+    List<Object[]> findPositionsByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
     void deleteByFitFileUploadId(Long fitFileUploadId);
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.mainstream.fitfile.service.impl;
 
 import com.garmin.fit.*;
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.activity.service.TrackPreprocessingService;
 import com.mainstream.fitfile.dto.FitFileUploadDto;
 import com.mainstream.fitfile.dto.FitFileUploadRequestDto;
 import com.mainstream.fitfile.dto.FitFileUploadResponseDto;
@@ -8,8 +10,22 @@ import com.mainstream.fitfile.entity.*;
 import com.mainstream.fitfile.mapper.FitFileMapper;
 import com.mainstream.fitfile.repository.*;
 import com.mainstream.fitfile.service.FitFileService;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.progress.dto.ProgressEvent;
+import com.mainstream.progress.service.ProgressJob;
+import com.mainstream.progress.service.ProgressTracker;
+import com.mainstream.run.service.ActivityHrvService;
+import com.mainstream.run.service.ActivityMetricsService;
+import com.mainstream.run.service.ChartSeriesService;
+import com.mainstream.run.service.HrvAnalyzer;
+import com.mainstream.run.service.SplitService;
+import com.mainstream.run.service.TrackFingerprintService;
+import com.mainstream.segment.service.SegmentEffortService;
+import com.mainstream.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -41,12 +57,43 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
     private final FitEventRepository fitEventRepository;
     private final FitHrvRepository fitHrvRepository;
     private final FitFileMapper fitFileMapper;
+    private final SplitService splitService;
+    private final ActivityMetricsService activityMetricsService;
+    private final ChartSeriesService chartSeriesService;
+    private final ActivityHrvService activityHrvService;
+    private final SegmentEffortService segmentEffortService;
+    private final TrackFingerprintService trackFingerprintService;
+    private final IngestPipeline ingestPipeline;
+    private final RouteMatchingService routeMatchingService;
+    private final UserRepository userRepository;
+    private final ProgressTracker progressTracker;
+
+    // Off by default: uploads then only store the file and its derived metrics, as before
+    // the ingest pipeline; syncs and runs always record their activity
+    @Value("${mainstream.ingest.fit-upload.record-activity:false}")
+    private boolean recordActivity;
 
     @Override
     @Transactional
     public FitFileUploadResponseDto uploadFitFile(MultipartFile file, Long userId, FitFileUploadRequestDto request) {
+        String progressId = request != null ? request.getProgressId() : null;
+        try (ProgressJob progress = progressTracker.start(userId, ProgressEvent.JobType.FIT_UPLOAD, progressId)) {
+            FitFileUploadResponseDto response = uploadFitFile(file, userId);
+            if (response.getProcessingStatus() == FitFileUpload.ProcessingStatus.COMPLETED) {
+                progress.complete("Processed " + file.getOriginalFilename());
+            } else {
+                progress.fail(response.getErrorMessage());
+            }
+            return response;
+        }
+    }
+
+    private FitFileUploadResponseDto uploadFitFile(MultipartFile file, Long userId) {
         log.debug("Processing FIT file upload: {} for user: {}", file.getOriginalFilename(), userId);
 
+        FitFileUpload fitFileUpload;
+        RouteMatchingService.OnlineMatcher routeMatcher = null;
+        List<FitTrackPoint> trackPoints = null;
         try {
             if (file.isEmpty()) {
                 return FitFileUploadResponseDto.builder()
@@ -67,7 +114,7 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
                     .build();
             }
 
-            FitFileUpload fitFileUpload = FitFileUpload.builder()
+            fitFileUpload = FitFileUpload.builder()
                 .userId(userId)
                 .originalFilename(file.getOriginalFilename())
                 .fileSize(file.getSize())
@@ -81,7 +128,8 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
 
             try {
                 log.info("=== STARTING ENHANCED FIT FILE PROCESSING FOR: {} ===", file.getOriginalFilename());
-                processEnhancedFitFile(fitFileUpload, fileBytes);
+                routeMatcher = recordActivity ? routeMatchingService.startOnlineMatch() : null;
+                trackPoints = processEnhancedFitFile(fitFileUpload, fileBytes, routeMatcher);
                 fitFileUpload.setProcessingStatus(FitFileUpload.ProcessingStatus.COMPLETED);
                 fitFileUpload.setProcessedAt(LocalDateTime.now());
                 log.info("=== ENHANCED FIT FILE PROCESSING COMPLETED FOR: {} ===", file.getOriginalFilename());
@@ -91,10 +139,6 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
                 fitFileUpload.setProcessingStatus(FitFileUpload.ProcessingStatus.FAILED);
                 fitFileUpload.setErrorMessage(e.getMessage());
             }
-
-            fitFileUpload = fitFileUploadRepository.save(fitFileUpload);
-            return fitFileMapper.toResponseDto(fitFileUpload, "File uploaded and processed successfully");
-
         } catch (Exception e) {
             log.error("Error uploading FIT file: {}", e.getMessage(), e);
             return FitFileUploadResponseDto.builder()
@@ -103,6 +147,14 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
                 .errorMessage("Upload failed: " + e.getMessage())
                 .build();
         }
+
+        // Outside the catches above: a failed write here leaves the transaction rollback-only,
+        // so it must fail the request instead of being saved as a FAILED upload
+        if (fitFileUpload.getProcessingStatus() == FitFileUpload.ProcessingStatus.COMPLETED) {
+            runIngestPipeline(fitFileUpload, trackPoints, routeMatcher);
+        }
+        fitFileUpload = fitFileUploadRepository.save(fitFileUpload);
+        return fitFileMapper.toResponseDto(fitFileUpload, "File uploaded and processed successfully");
     }
 
     // Delegate other methods to original implementation
@@ -144,6 +196,12 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
             fitZoneRepository.deleteByFitFileUploadId(uploadId);
             fitEventRepository.deleteByFitFileUploadId(uploadId);
             fitHrvRepository.deleteByFitFileUploadId(uploadId);
+            splitService.deleteForFitFileUpload(uploadId);
+            activityMetricsService.deleteForFitFileUpload(uploadId);
+            chartSeriesService.deleteForFitFileUpload(uploadId);
+            activityHrvService.deleteForFitFileUpload(uploadId);
+            segmentEffortService.deleteForFitFileUpload(uploadId);
+            trackFingerprintService.deleteForFitFileUpload(uploadId);
             fitFileUploadRepository.deleteById(uploadId);
             log.info("Deleted FIT file upload with ID: {}", uploadId);
         }
@@ -181,12 +239,17 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
         return fitFileUploadRepository.countCompletedUploadsByUserId(userId);
     }
 
-    private void processEnhancedFitFile(FitFileUpload fitFileUpload, byte[] fileBytes) throws Exception {
+    /**
+     * Decode and persist the FIT file. Record positions are fed to the route matcher as
+     * they are decoded, so the route match is ready when decoding ends.
+     */
+    private List<FitTrackPoint> processEnhancedFitFile(FitFileUpload fitFileUpload, byte[] fileBytes,
+                                                       RouteMatchingService.OnlineMatcher routeMatcher) throws Exception {
         log.info("Processing enhanced FIT file with ID: {} (Size: {} bytes)", fitFileUpload.getId(), fileBytes.length);
 
         Decode decode = new Decode();
         MesgBroadcaster broadcaster = new MesgBroadcaster(decode);
-        EnhancedFitFileListener listener = new EnhancedFitFileListener(fitFileUpload);
+        EnhancedFitFileListener listener = new EnhancedFitFileListener(fitFileUpload, routeMatcher);
         
         // Register available message listeners for comprehensive data capture
         broadcaster.addListener((FileIdMesgListener) listener);
@@ -200,7 +263,7 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
         // broadcaster.addListener((PowerZoneMesgListener) listener);
         // broadcaster.addListener((SpeedZoneMesgListener) listener);
         // broadcaster.addListener((EventMesgListener) listener);
-        // broadcaster.addListener((HrvMesgListener) listener);
+        broadcaster.addListener((HrvMesgListener) listener);
 
         ByteArrayInputStream inputStream = new ByteArrayInputStream(fileBytes);
         
@@ -213,24 +276,56 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
         inputStream.reset();
         
         log.info("=== STARTING ENHANCED FIT FILE DECODING ===");
+        Optional<ProgressJob> progress = progressTracker.current();
+        progress.ifPresent(job -> job.stage(ProgressEvent.Stage.DECODING, fitFileUpload.getOriginalFilename()));
         if (!decode.read(inputStream, broadcaster)) {
             throw new RuntimeException("Failed to decode FIT file");
         }
         log.info("=== ENHANCED FIT FILE DECODING COMPLETED ===");
+        progress.ifPresent(job -> {
+            job.addDecodedMessages(listener.getMessageCount());
+            job.stage(ProgressEvent.Stage.DECODED, listener.getTrackPoints().size() + " records decoded");
+        });
 
         // Save main upload record
         fitFileUploadRepository.save(fitFileUpload);
         
         // Save all related data with batch operations for performance
+        progress.ifPresent(job -> job.stage(ProgressEvent.Stage.PERSISTING, null));
         saveAllRelatedData(listener);
-
-        log.info("Successfully processed enhanced FIT file with {} track points, {} laps, {} device info records, {} zones, {} events, {} HRV records", 
+        progress.ifPresent(job -> {
+            job.addPersistedRows(1L + listener.getTrackPoints().size() + listener.getLapData().size()
+                    + listener.getDeviceInfoList().size() + listener.getZones().size()
+                    + listener.getEvents().size() + (listener.getHrv().getIntervalCount() > 0 ? 1 : 0));
+            job.stage(ProgressEvent.Stage.PERSISTED, null);
+        });
+
+        log.info("Successfully processed enhanced FIT file with {} track points, {} laps, {} device info records, {} zones, {} events, {} R-R intervals", 
                 listener.getTrackPoints().size(), 
                 listener.getLapData().size(),
                 listener.getDeviceInfoList().size(),
                 listener.getZones().size(),
                 listener.getEvents().size(),
-                listener.getHrvData().size());
+                listener.getHrv().getIntervalCount());
+
+        return listener.getTrackPoints();
+    }
+
+    /**
+     * Derive splits, polyline and zones from the decoded track points while they are still
+     * in memory; with {@code mainstream.ingest.fit-upload.record-activity} also the route
+     * match, taken from the decode stream, and the user activity with its trophies. A
+     * failed or timed out computation only loses its result, but a failed write fails the
+     * upload, as it shares the upload's transaction.
+     */
+    private void runIngestPipeline(FitFileUpload fitFileUpload, List<FitTrackPoint> trackPoints,
+                                   RouteMatchingService.OnlineMatcher routeMatcher) {
+        ActivityModel model = ActivityModel.forFitFile(fitFileUpload, trackPoints)
+                .user(userRepository.findById(fitFileUpload.getUserId()).orElse(null))
+                .routeMatcher(routeMatcher)
+                .recordActivity(recordActivity)
+                .build();
+        ingestPipeline.execute(model);
     }
 
     private void saveAllRelatedData(EnhancedFitFileListener listener) {
@@ -264,10 +359,12 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
             log.info("Saved {} events", listener.getEvents().size());
         }
 
-        // Save HRV data
-        if (!listener.getHrvData().isEmpty()) {
-            fitHrvRepository.saveAll(listener.getHrvData());
-            log.info("Saved {} HRV records", listener.getHrvData().size());
+        // Save R-R intervals as one packed stream instead of a row per HRV message
+        HrvAnalyzer hrv = listener.getHrv();
+        if (hrv.getIntervalCount() > 0) {
+            activityHrvService.storeForFitFileUpload(listener.getFitFileUpload().getId(), hrv);
+            log.info("Saved {} R-R intervals ({} artefacts, RMSSD {} ms)",
+                    hrv.getIntervalCount(), hrv.getArtefactCount(), hrv.getRmssd());
         }
     }
 
@@ -290,23 +387,28 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
      * without any data loss. Implements all major FIT message listeners.
      */
     private static class EnhancedFitFileListener implements 
-            FileIdMesgListener, ActivityMesgListener, SessionMesgListener, RecordMesgListener, LapMesgListener {
+            FileIdMesgListener, ActivityMesgListener, SessionMesgListener, RecordMesgListener, LapMesgListener,
+            HrvMesgListener {
         
         private final FitFileUpload fitFileUpload;
+        private final RouteMatchingService.OnlineMatcher routeMatcher;
         private final List<FitTrackPoint> trackPoints = new ArrayList<>();
         private final List<FitLapData> lapData = new ArrayList<>();
         private final List<FitDeviceInfo> deviceInfoList = new ArrayList<>();
         private final List<FitZone> zones = new ArrayList<>();
         private final List<FitEvent> events = new ArrayList<>();
-        private final List<FitHrv> hrvData = new ArrayList<>();
+        private final HrvAnalyzer hrv = new HrvAnalyzer();
         private int sequenceNumber = 0;
+        private long messageCount = 0;
 
-        public EnhancedFitFileListener(FitFileUpload fitFileUpload) {
+        public EnhancedFitFileListener(FitFileUpload fitFileUpload, RouteMatchingService.OnlineMatcher routeMatcher) {
             this.fitFileUpload = fitFileUpload;
+            this.routeMatcher = routeMatcher;
         }
 
         @Override
         public void onMesg(FileIdMesg mesg) {
+            messageCount++;
             log.info("=== ENHANCED FILE ID MESSAGE ===");
             log.info("Type: {}", mesg.getType());
             log.info("Manufacturer: {}", mesg.getManufacturer());
@@ -331,6 +433,7 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
 
         @Override
         public void onMesg(ActivityMesg mesg) {
+            messageCount++;
             log.info("=== ENHANCED ACTIVITY MESSAGE ===");
             log.info("Timestamp: {}", mesg.getTimestamp());
             log.info("Total Timer Time: {} seconds", mesg.getTotalTimerTime());
@@ -350,6 +453,7 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
 
         @Override
         public void onMesg(SessionMesg mesg) {
+            messageCount++;
             log.info("=== ENHANCED SESSION MESSAGE ===");
             
             // Map ALL available Session fields for zero data loss
@@ -529,10 +633,17 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
 
         @Override
         public void onMesg(RecordMesg mesg) {
+            messageCount++;
             // Enhanced Record message processing with ALL available fields
             FitTrackPoint trackPoint = mapRecordMessage(mesg);
             if (trackPoint != null) {
                 trackPoints.add(trackPoint);
+                if (routeMatcher != null
+                        && trackPoint.getPositionLat() != null && trackPoint.getPositionLong() != null) {
+                    routeMatcher.accept(trackPoint.getPositionLat().doubleValue(),
+                            trackPoint.getPositionLong().doubleValue(),
+                            TrackPreprocessingService.seconds(trackPoint.getTimestamp()));
+                }
             }
         }
 
@@ -682,6 +793,7 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
 
         @Override
         public void onMesg(LapMesg mesg) {
+            messageCount++;
             log.info("=== ENHANCED LAP MESSAGE ===");
             FitLapData lap = mapLapMessage(mesg);
             if (lap != null) {
@@ -1028,30 +1140,18 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
         //     return event;
         // }
 
-        // HrvMesg not available in current FIT SDK
-        // public void onMesg(HrvMesg mesg) {
-        //     log.info("=== HRV MESSAGE ===");
-        //     FitHrv hrv = mapHrvMessage(mesg);
-        //     if (hrv != null) {
-        //         hrvData.add(hrv);
-        //     }
-        //     log.info("=== END HRV MESSAGE ===");
-        // }
-
-        // private FitHrv mapHrvMessage(HrvMesg mesg) {
-        //     FitHrv hrv = FitHrv.builder()
-        //         .fitFileUpload(fitFileUpload)
-        //         .build();
-
-        //     if (mesg.getTime() != null) {
-        //         // Map HRV time and interval data
-        //         List<Integer> intervals = new ArrayList<>();
-        //         // Process HRV intervals from the message
-        //         hrv.setIntervals(intervals);
-        //     }
-
-        //     return hrv;
-        // }
+        @Override
+        public void onMesg(HrvMesg mesg) {
+            messageCount++;
+            // Each message carries up to five R-R intervals in seconds; feed them straight
+            // into the analyzer instead of materializing a row per message
+            for (int i = 0; i < mesg.getNumTime(); i++) {
+                Float seconds = mesg.getTime(i);
+                if (seconds != null) {
+                    hrv.accept(Math.round(seconds * 1000));
+                }
+            }
+        }
 
         // @Override
         // public void onMesg(DeveloperFieldDescriptionMesg mesg) {
@@ -1076,11 +1176,13 @@ public class EnhancedFitFileServiceImpl implements FitFileService {
         }
 
         // Getters for all data collections
+        public FitFileUpload getFitFileUpload() { return fitFileUpload; }
         public List<FitTrackPoint> getTrackPoints() { return trackPoints; }
         public List<FitLapData> getLapData() { return lapData; }
         public List<FitDeviceInfo> getDeviceInfoList() { return deviceInfoList; }
         public List<FitZone> getZones() { return zones; }
         public List<FitEvent> getEvents() { return events; }
-        public List<FitHrv> getHrvData() { return hrvData; }
+        public HrvAnalyzer getHrv() { return hrv; }
+        public long getMessageCount() { return messageCount; }
     }
 }
\ No newline at end of file
@@ -101,7 +101,8 @@ public class GarminController {
     public ResponseEntity<Map<String, Object>> syncActivities(
             @RequestHeader("X-User-Id") Long userId,
             @RequestParam(value = "since", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Syncing Garmin activities for user ID: {}, since: {}", userId, since);
 
@@ -111,7 +112,7 @@ public class GarminController {
                 since = LocalDateTime.now().minusDays(30);
             }
 
-            List<Run> syncedRuns = garminSyncService.syncActivities(userId, since);
+            List<Run> syncedRuns = garminSyncService.syncActivities(userId, since, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -152,12 +153,13 @@ public class GarminController {
     @PostMapping("/runs/{runId}/backfill-gps")
     public ResponseEntity<Map<String, Object>> backfillGpsForRun(
             @PathVariable Long runId,
-            @RequestHeader("X-User-Id") Long userId) {
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Backfilling GPS points for run ID: {} and user ID: {}", runId, userId);
 
         try {
-            int gpsPointCount = garminSyncService.backfillGpsPointsForRun(userId, runId);
+            int gpsPointCount = garminSyncService.backfillGpsPointsForRun(userId, runId, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -183,12 +185,13 @@ public class GarminController {
      */
     @PostMapping("/backfill-all-gps")
     public ResponseEntity<Map<String, Object>> backfillAllMissingGpsPoints(
-            @RequestHeader("X-User-Id") Long userId) {
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Backfilling GPS points for all Garmin runs without GPS data for user ID: {}", userId);
 
         try {
-            Map<String, Object> result = garminSyncService.backfillAllMissingGpsPoints(userId);
+            Map<String, Object> result = garminSyncService.backfillAllMissingGpsPoints(userId, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
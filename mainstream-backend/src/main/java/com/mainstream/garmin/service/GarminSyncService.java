@@ -1,9 +1,15 @@
 package com.mainstream.garmin.service;
 
-import com.mainstream.activity.service.UserActivityService;
 import com.mainstream.garmin.dto.GarminActivity;
 import com.mainstream.garmin.dto.GarminActivityDetails;
 import com.mainstream.garmin.dto.GarminTokenResponse;
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.ingest.stage.RouteMatchStage;
+import com.mainstream.progress.dto.ProgressEvent;
+import com.mainstream.progress.service.ProgressJob;
+import com.mainstream.progress.service.ProgressTracker;
 import com.mainstream.run.entity.GpsPoint;
 import com.mainstream.run.entity.Run;
 import com.mainstream.run.repository.GpsPointRepository;
@@ -34,7 +40,9 @@ public class GarminSyncService {
     private final UserRepository userRepository;
     private final RunRepository runRepository;
     private final GpsPointRepository gpsPointRepository;
-    private final UserActivityService userActivityService;
+    private final IngestPipeline ingestPipeline;
+    private final RouteMatchingService routeMatchingService;
+    private final ProgressTracker progressTracker;
 
     private static final DateTimeFormatter GARMIN_DATE_FORMAT = DateTimeFormatter.ISO_DATE_TIME;
 
@@ -92,7 +100,12 @@ public class GarminSyncService {
      * Synchronizes activities from Garmin
      */
     @Transactional
-    public List<Run> syncActivities(Long userId, LocalDateTime since) {
+    public List<Run> syncActivities(Long userId, LocalDateTime since, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.GARMIN_SYNC, progressId,
+                progress -> syncActivities(userId, since, progress));
+    }
+
+    private List<Run> syncActivities(Long userId, LocalDateTime since, ProgressJob progress) {
         log.info("Syncing Garmin activities for user ID: {} since: {}", userId, since);
 
         User user = userRepository.findById(userId)
@@ -106,6 +119,7 @@ public class GarminSyncService {
         String accessToken = getValidAccessToken(user);
 
         // Fetch activities from Garmin
+        progress.stage(ProgressEvent.Stage.FETCHING, "Fetching activities from Garmin");
         List<GarminActivity> activities = garminApiService.getActivities(
                 accessToken,
                 since,
@@ -113,8 +127,11 @@ public class GarminSyncService {
         );
 
         List<Run> syncedRuns = new ArrayList<>();
+        progress.setTotalActivities(activities.size());
 
         for (GarminActivity activity : activities) {
+            progress.activityProcessed();
+
             // Only sync running activities
             if (!isRunningActivity(activity)) {
                 log.debug("Skipping non-running activity: {} (type: {})",
@@ -141,23 +158,16 @@ public class GarminSyncService {
 
                 int gpsPointCount = 0;
                 if (details != null && details.getGeoPolylineDTO() != null) {
-                    gpsPointCount = createGpsPointsFromDetails(savedRun, details, activity.getStartTimeLocal());
+                    // Derived metrics, route matching and trophies all run on the decoded polyline
+                    gpsPointCount = createGpsPointsFromDetails(savedRun, user, details, activity.getStartTimeLocal(), null);
                 }
+                progress.addPersistedRows(1L + gpsPointCount);
 
                 if (gpsPointCount > 0) {
                     log.info("Synced activity: {} (Garmin ID: {}) with {} kcal and {} GPS points",
                             activity.getActivityName(), activity.getActivityId(),
                             activity.getCalories() != null ? activity.getCalories().intValue() : 0,
                             gpsPointCount);
-
-                    // Process activity for route matching and trophy checking
-                    try {
-                        log.info("Processing activity for route matching and trophy checking for run {}", savedRun.getId());
-                        userActivityService.processAndCreateActivityFromRun(user, savedRun);
-                    } catch (Exception ex) {
-                        log.error("Error processing activity for route matching and trophies for run {}: {}",
-                                savedRun.getId(), ex.getMessage(), ex);
-                    }
                 } else {
                     log.warn("Synced activity: {} (Garmin ID: {}) with {} kcal but NO GPS points",
                             activity.getActivityName(), activity.getActivityId(),
@@ -180,7 +190,12 @@ public class GarminSyncService {
      * Retroactively fetches and saves GPS points for an existing Garmin run
      */
     @Transactional
-    public int backfillGpsPointsForRun(Long userId, Long runId) {
+    public int backfillGpsPointsForRun(Long userId, Long runId, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.GARMIN_BACKFILL, progressId,
+                progress -> backfillGpsPointsForRun(userId, runId, progress));
+    }
+
+    private int backfillGpsPointsForRun(Long userId, Long runId, ProgressJob progress) {
         log.info("Backfilling GPS points for run ID: {} and user ID: {}", runId, userId);
 
         Run run = runRepository.findByIdAndUserId(runId, userId)
@@ -212,7 +227,9 @@ public class GarminSyncService {
             }
 
             // We need the start time, but we can use the run's start time
-            int gpsPointCount = createGpsPointsFromDetails(run, details, run.getStartTime().toString());
+            int gpsPointCount = createGpsPointsFromDetails(run, user, details, run.getStartTime().toString(),
+                    IngestPipeline.DERIVED_METRICS);
+            progress.addPersistedRows(gpsPointCount);
             log.info("Backfilled {} GPS points for run {}", gpsPointCount, runId);
             return gpsPointCount;
         } catch (Exception e) {
@@ -225,7 +242,12 @@ public class GarminSyncService {
      * Backfills GPS points for all Garmin runs that don't have GPS data
      */
     @Transactional
-    public Map<String, Object> backfillAllMissingGpsPoints(Long userId) {
+    public Map<String, Object> backfillAllMissingGpsPoints(Long userId, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.GARMIN_BACKFILL, progressId,
+                progress -> backfillAllMissingGpsPoints(userId, progress));
+    }
+
+    private Map<String, Object> backfillAllMissingGpsPoints(Long userId, ProgressJob progress) {
         log.info("Backfilling GPS points for all Garmin runs without GPS data for user ID: {}", userId);
 
         User user = userRepository.findById(userId)
@@ -244,8 +266,11 @@ public class GarminSyncService {
         int failedCount = 0;
         List<String> errors = new ArrayList<>();
 
+        progress.setTotalActivities(garminRuns.size());
+
         for (Run run : garminRuns) {
             processedCount++;
+            progress.activityProcessed();
 
             long existingGpsPointCount = gpsPointRepository.countByRunId(run.getId());
             if (existingGpsPointCount > 0) {
@@ -255,7 +280,7 @@ public class GarminSyncService {
             }
 
             try {
-                int gpsPointCount = backfillGpsPointsForRun(userId, run.getId());
+                int gpsPointCount = backfillGpsPointsForRun(userId, run.getId(), progress);
                 if (gpsPointCount > 0) {
                     successCount++;
                     log.info("Successfully backfilled {} GPS points for run {}", gpsPointCount, run.getId());
@@ -390,9 +415,11 @@ public class GarminSyncService {
     }
 
     /**
-     * Creates GPS points from Garmin activity details
+     * Creates GPS points from Garmin activity details and runs the ingest pipeline
+     * (the given stages, or all if null) over the full polyline.
      */
-    private int createGpsPointsFromDetails(Run run, GarminActivityDetails details, String startTimeStr) {
+    private int createGpsPointsFromDetails(Run run, User user, GarminActivityDetails details, String startTimeStr,
+                                           java.util.Set<String> stages) {
         if (details.getGeoPolylineDTO() == null || details.getGeoPolylineDTO().getPolyline() == null) {
             log.warn("No polyline data available for run {}", run.getId());
             return 0;
@@ -452,6 +479,26 @@ public class GarminSyncService {
             log.info("Saved {} GPS points for run {}", gpsPoints.size(), run.getId());
         }
 
+        // The model uses the full polyline, not the truncated GPS point list above.
+        // A failed write fails the sync of this run, as it leaves the transaction rollback-only
+        ActivityModel.Builder model = ActivityModel.forRun(run, gpsPoints).user(user)
+                .recordActivity(true);
+        if (ingestPipeline.includes(stages, RouteMatchStage.NAME)) {
+            // Match while the samples are added, instead of re-scanning the track later
+            model.routeMatcher(routeMatchingService.startOnlineMatch());
+        }
+        for (GarminActivityDetails.Point point : polyline) {
+            model.addSample(
+                    point.getTime() != null ? point.getTime() / 1000.0 : Double.NaN,
+                    point.getDistanceFromStart() != null ? point.getDistanceFromStart() : Double.NaN,
+                    point.getLat() != null ? point.getLat() : Double.NaN,
+                    point.getLon() != null ? point.getLon() : Double.NaN,
+                    point.getAltitude() != null ? point.getAltitude() : Double.NaN,
+                    0,
+                    0);
+        }
+        ingestPipeline.execute(model.build(), stages);
+
         return gpsPoints.size();
     }
 }
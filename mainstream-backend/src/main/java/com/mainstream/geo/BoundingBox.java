@@ -0,0 +1,126 @@
+package com.mainstream.geo;
+
+/**
+ * Immutable latitude/longitude bounding box in degrees. Boxes crossing the antimeridian
+ * are not supported.
+ */
+public final class BoundingBox {
+
+    private static final double METERS_PER_DEGREE = GeoDistance.METERS_PER_DEGREE;
+    // Keeps the longitude padding finite near the poles
+    private static final double MIN_COS_LATITUDE = 0.01;
+
+    /** Box containing nothing; intersects and contains nothing. */
+    public static final BoundingBox EMPTY = new BoundingBox(
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    public BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * Box around the first count positions, skipping NaN coordinates.
+     */
+    public static BoundingBox of(double[] latitudes, double[] longitudes, int count) {
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double lat = latitudes[i];
+            double lon = longitudes[i];
+            if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                continue;
+            }
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+        }
+        return minLat > maxLat ? EMPTY : new BoundingBox(minLat, maxLat, minLon, maxLon);
+    }
+
+    public boolean isEmpty() {
+        return minLatitude > maxLatitude || minLongitude > maxLongitude;
+    }
+
+    /**
+     * @return this box grown to also contain the position
+     */
+    public BoundingBox including(double latitude, double longitude) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return this;
+        }
+        return new BoundingBox(Math.min(minLatitude, latitude), Math.max(maxLatitude, latitude),
+                Math.min(minLongitude, longitude), Math.max(maxLongitude, longitude));
+    }
+
+    /**
+     * @return the smallest box containing both boxes
+     */
+    public BoundingBox union(BoundingBox other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        return new BoundingBox(Math.min(minLatitude, other.minLatitude), Math.max(maxLatitude, other.maxLatitude),
+                Math.min(minLongitude, other.minLongitude), Math.max(maxLongitude, other.maxLongitude));
+    }
+
+    /**
+     * @return this box grown by at least the given distance on every side
+     */
+    public BoundingBox padded(double meters) {
+        if (isEmpty()) {
+            return this;
+        }
+        double latPadding = meters / METERS_PER_DEGREE;
+        // Degrees of longitude are shortest at the poleward edge
+        double poleward = Math.min(90.0, Math.max(Math.abs(minLatitude), Math.abs(maxLatitude)) + latPadding);
+        double lonPadding = latPadding / Math.max(Math.cos(Math.toRadians(poleward)), MIN_COS_LATITUDE);
+        return new BoundingBox(minLatitude - latPadding, maxLatitude + latPadding,
+                minLongitude - lonPadding, maxLongitude + lonPadding);
+    }
+
+    public boolean intersects(BoundingBox other) {
+        return minLatitude <= other.maxLatitude && other.minLatitude <= maxLatitude
+                && minLongitude <= other.maxLongitude && other.minLongitude <= maxLongitude;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox[" + minLatitude + ".." + maxLatitude + ", " + minLongitude + ".." + maxLongitude + "]";
+    }
+}
@@ -0,0 +1,173 @@
+package com.mainstream.geo;
+
+/**
+ * Great-circle distances between positions in degrees, shared by route matching, segments,
+ * trophies and track import.
+ *
+ * Points less than {@value #FAST_PATH_MAX_DEGREES} degrees apart in both latitude and
+ * longitude (about 11 km, which covers every consecutive pair of samples and every
+ * tolerance or radius check in this application) are measured with the equirectangular
+ * approximation: one square root instead of the trigonometry of haversine, and within a
+ * few millimetres of it over that span. Anything further apart falls back to haversine.
+ *
+ * The approximation needs cos(latitude) of both points. Callers measuring the same points
+ * repeatedly precompute it once with {@link #cosLatitudes(double[])} and use the overloads
+ * taking it. The batch methods over {@code double[]} run a scalar loop, or the
+ * {@code jdk.incubator.vector} kernel if it was built in (Maven profile {@code vector}) and
+ * the JVM runs with {@code --add-modules jdk.incubator.vector}. The kernel is looked up
+ * reflectively, so the default build needs neither the incubator module nor its warnings.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_METERS = 6371000;
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+    // Beyond this separation (in either coordinate) the flat approximation gives way to haversine
+    public static final double FAST_PATH_MAX_DEGREES = 0.1;
+
+    private static final String VECTOR_KERNEL_CLASS = "com.mainstream.geo.GeoDistanceVector";
+
+    // Null when the batch methods run scalar
+    private static final BatchKernel VECTOR_KERNEL = loadVectorKernel();
+
+    /**
+     * Batch methods of an accelerated implementation; each handles what it can from the
+     * start of the range and returns the index the scalar loop continues from.
+     */
+    interface BatchKernel {
+
+        int metersTo(double latitude, double longitude, double cosLatitude,
+                     double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                     int from, int to, double[] out);
+
+        int stepMeters(double[] latitudes, double[] longitudes, double[] cosLatitudes, int count, double[] out);
+    }
+
+    private GeoDistance() {
+    }
+
+    /**
+     * @return whether the batch methods run on the vector API
+     */
+    public static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
+    }
+
+    private static BatchKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()
+                || Boolean.getBoolean("mainstream.geo.scalar")) {
+            return null;
+        }
+        try {
+            return (BatchKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Built without the vector profile
+            return null;
+        }
+    }
+
+    public static double cosLatitude(double latitude) {
+        return Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * @return cos(latitude) of every point, for the overloads taking precomputed cosines
+     */
+    public static double[] cosLatitudes(double[] latitudes) {
+        double[] cosLatitudes = new double[latitudes.length];
+        for (int i = 0; i < latitudes.length; i++) {
+            cosLatitudes[i] = cosLatitude(latitudes[i]);
+        }
+        return cosLatitudes;
+    }
+
+    /**
+     * Distance in meters between two positions.
+     */
+    public static double meters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        if (Math.abs(dLat) > FAST_PATH_MAX_DEGREES || Math.abs(dLon) > FAST_PATH_MAX_DEGREES) {
+            return haversine(lat1, lon1, lat2, lon2);
+        }
+        double x = dLon * cosLatitude((lat1 + lat2) / 2);
+        return METERS_PER_DEGREE * Math.sqrt(dLat * dLat + x * x);
+    }
+
+    /**
+     * Distance in meters between two positions whose cos(latitude) is already known.
+     */
+    public static double meters(double lat1, double lon1, double cosLat1, double lat2, double lon2, double cosLat2) {
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        if (Math.abs(dLat) > FAST_PATH_MAX_DEGREES || Math.abs(dLon) > FAST_PATH_MAX_DEGREES) {
+            return haversine(lat1, lon1, lat2, lon2);
+        }
+        double x = dLon * (cosLat1 + cosLat2) * 0.5;
+        return METERS_PER_DEGREE * Math.sqrt(dLat * dLat + x * x);
+    }
+
+    /**
+     * Haversine distance in meters, exact on the sphere at any separation.
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Distances from one position to the points from (inclusive) to to (exclusive), written
+     * to out[0 .. to - from).
+     */
+    public static void metersTo(double latitude, double longitude, double cosLatitude,
+                                double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                                int from, int to, double[] out) {
+        int i = from;
+        if (VECTOR_KERNEL != null) {
+            i = VECTOR_KERNEL.metersTo(latitude, longitude, cosLatitude, latitudes, longitudes, cosLatitudes,
+                    from, to, out);
+        }
+        for (; i < to; i++) {
+            out[i - from] = meters(latitude, longitude, cosLatitude, latitudes[i], longitudes[i], cosLatitudes[i]);
+        }
+    }
+
+    /**
+     * Length of every step of a track: out[i] is the distance from point i - 1 to point i
+     * for i in 1 .. count - 1, and out[0] is 0.
+     */
+    public static void stepMeters(double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                                  int count, double[] out) {
+        if (count <= 0) {
+            return;
+        }
+        out[0] = 0.0;
+        int i = 1;
+        if (VECTOR_KERNEL != null) {
+            i = VECTOR_KERNEL.stepMeters(latitudes, longitudes, cosLatitudes, count, out);
+        }
+        for (; i < count; i++) {
+            out[i] = meters(latitudes[i - 1], longitudes[i - 1], cosLatitudes[i - 1],
+                    latitudes[i], longitudes[i], cosLatitudes[i]);
+        }
+    }
+
+    /**
+     * Total length in meters of the track through the first count points.
+     */
+    public static double pathMeters(double[] latitudes, double[] longitudes, int count) {
+        if (count < 2) {
+            return 0.0;
+        }
+        double[] steps = new double[count];
+        stepMeters(latitudes, longitudes, cosLatitudes(latitudes), count, steps);
+        double total = 0.0;
+        for (int i = 1; i < count; i++) {
+            total += steps[i];
+        }
+        return total;
+    }
+}
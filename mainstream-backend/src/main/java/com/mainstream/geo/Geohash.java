@@ -0,0 +1,104 @@
+package com.mainstream.geo;
+
+import java.util.Arrays;
+
+/**
+ * Geohash cells as primitive longs: the interleaved longitude/latitude bits of a geohash
+ * of the given precision (5 bits per character), without the base32 text form.
+ *
+ * At precision 7 a cell is about 153 x 153 m at the equator (narrower in longitude
+ * towards the poles), which is what track fingerprints use.
+ */
+public final class Geohash {
+
+    public static final int MAX_PRECISION = 12;
+
+    private Geohash() {
+    }
+
+    /**
+     * @return the cell containing the position, as 5 * precision bits
+     */
+    public static long encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+        }
+        double minLat = -90.0;
+        double maxLat = 90.0;
+        double minLon = -180.0;
+        double maxLon = 180.0;
+        long hash = 0;
+        int bits = 5 * precision;
+        for (int bit = 0; bit < bits; bit++) {
+            hash <<= 1;
+            if ((bit & 1) == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    hash |= 1;
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    hash |= 1;
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * The distinct cells a track passes through, sorted. Steps longer than maxStepMeters
+     * (GPS gaps, or the vertices of a simplified polyline) are interpolated, so the cells
+     * crossed between two samples are included too. Positions that are NaN are skipped.
+     */
+    public static long[] cellsAlong(double[] latitudes, double[] longitudes, int count, int precision,
+                                    double maxStepMeters) {
+        long[] cells = new long[Math.max(16, count)];
+        int size = 0;
+        double lastLat = Double.NaN;
+        double lastLon = Double.NaN;
+        for (int i = 0; i < count; i++) {
+            double latitude = latitudes[i];
+            double longitude = longitudes[i];
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                continue;
+            }
+            int steps = 1;
+            if (!Double.isNaN(lastLat)) {
+                double step = GeoDistance.meters(lastLat, lastLon, latitude, longitude);
+                steps = Math.max(1, (int) Math.ceil(step / maxStepMeters));
+            }
+            for (int s = 1; s <= steps; s++) {
+                double t = Double.isNaN(lastLat) ? 1.0 : (double) s / steps;
+                double lat = Double.isNaN(lastLat) ? latitude : lastLat + t * (latitude - lastLat);
+                double lon = Double.isNaN(lastLat) ? longitude : lastLon + t * (longitude - lastLon);
+                long cell = encode(lat, lon, precision);
+                // Consecutive samples mostly stay in the same cell
+                if (size > 0 && cells[size - 1] == cell) {
+                    continue;
+                }
+                if (size == cells.length) {
+                    cells = Arrays.copyOf(cells, size * 2);
+                }
+                cells[size++] = cell;
+            }
+            lastLat = latitude;
+            lastLon = longitude;
+        }
+
+        Arrays.sort(cells, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || cells[distinct - 1] != cells[i]) {
+                cells[distinct++] = cells[i];
+            }
+        }
+        return Arrays.copyOf(cells, distinct);
+    }
+}
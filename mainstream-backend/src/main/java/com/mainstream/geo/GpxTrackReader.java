@@ -0,0 +1,267 @@
+package com.mainstream.geo;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming (StAX) reader for the first track of a GPX 1.0/1.1 document.
+ *
+ * Track points are read one at a time into primitive arrays, without building a document
+ * or an object per point; distance and elevation gain/loss are accumulated in the same
+ * pass. Optionally the track is resampled to points at a uniform spacing along it, with
+ * interpolated position and elevation, so dense recordings do not inflate the stored route.
+ * Distance and elevation are always computed from the original points. DTDs and external
+ * entities are rejected.
+ */
+public final class GpxTrackReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private GpxTrackReader() {
+    }
+
+    /**
+     * @param resampleMeters spacing of the returned points, or 0 to keep the original points
+     * @throws IllegalArgumentException if the document is not valid GPX or has no track
+     */
+    public static GpxTrack read(InputStream input, double resampleMeters) {
+        Accumulator track = new Accumulator(resampleMeters);
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            boolean inTrack = false;
+            boolean inPoint = false;
+            boolean foundTrack = false;
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+            double elevation = Double.NaN;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("trk".equals(name)) {
+                        inTrack = true;
+                        foundTrack = true;
+                    } else if (inTrack && "trkpt".equals(name)) {
+                        inPoint = true;
+                        latitude = coordinate(reader, "lat", 90.0);
+                        longitude = coordinate(reader, "lon", 180.0);
+                        elevation = Double.NaN;
+                    } else if (inPoint && "ele".equals(name)) {
+                        elevation = parseOrNaN(reader.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (inPoint && "trkpt".equals(name)) {
+                        track.add(latitude, longitude, elevation);
+                        inPoint = false;
+                    } else if (inTrack && "trk".equals(name)) {
+                        // Only the first track is read
+                        break;
+                    }
+                }
+            }
+            if (!foundTrack) {
+                throw new IllegalArgumentException("GPX file contains no tracks");
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Invalid GPX file: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+        return track.finish();
+    }
+
+    private static double coordinate(XMLStreamReader reader, String attribute, double limit) {
+        String value = reader.getAttributeValue(null, attribute);
+        double coordinate = value != null ? parseOrNaN(value) : Double.NaN;
+        if (Double.isNaN(coordinate) || Math.abs(coordinate) > limit) {
+            throw new IllegalArgumentException("GPX track point with invalid " + attribute + ": " + value
+                    + " (line " + reader.getLocation().getLineNumber() + ")");
+        }
+        return coordinate;
+    }
+
+    private static double parseOrNaN(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Collects the (resampled) points and the totals of the original points.
+     */
+    private static final class Accumulator {
+        private final double resampleMeters;
+        private double[] latitudes = new double[1024];
+        private double[] longitudes = new double[1024];
+        private double[] elevations = new double[1024];
+        private double[] distances = new double[1024];
+        private int size;
+
+        private int originalCount;
+        private double previousLatitude;
+        private double previousLongitude;
+        private double previousElevation;
+        private double distance;
+        private double gain;
+        private double loss;
+        private double nextSample;
+
+        Accumulator(double resampleMeters) {
+            this.resampleMeters = resampleMeters;
+        }
+
+        void add(double latitude, double longitude, double elevation) {
+            if (originalCount++ == 0) {
+                append(latitude, longitude, elevation, 0.0);
+                nextSample = resampleMeters;
+            } else {
+                double step = GeoDistance.meters(previousLatitude, previousLongitude, latitude, longitude);
+                double stepStart = distance;
+                distance += step;
+                if (!Double.isNaN(elevation) && !Double.isNaN(previousElevation)) {
+                    double difference = elevation - previousElevation;
+                    if (difference > 0) {
+                        gain += difference;
+                    } else {
+                        loss -= difference;
+                    }
+                }
+                if (resampleMeters <= 0) {
+                    append(latitude, longitude, elevation, distance);
+                } else {
+                    while (nextSample <= distance) {
+                        double t = step > 0 ? (nextSample - stepStart) / step : 1.0;
+                        append(previousLatitude + t * (latitude - previousLatitude),
+                                previousLongitude + t * (longitude - previousLongitude),
+                                interpolate(previousElevation, elevation, t), nextSample);
+                        nextSample += resampleMeters;
+                    }
+                }
+            }
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+            previousElevation = elevation;
+        }
+
+        GpxTrack finish() {
+            // A resampled track still ends at the last original point
+            if (resampleMeters > 0 && originalCount > 1 && distances[size - 1] < distance) {
+                append(previousLatitude, previousLongitude, previousElevation, distance);
+            }
+            return new GpxTrack(Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size),
+                    Arrays.copyOf(elevations, size), Arrays.copyOf(distances, size),
+                    originalCount, distance, gain, loss);
+        }
+
+        private void append(double latitude, double longitude, double elevation, double distanceFromStart) {
+            if (size == latitudes.length) {
+                int capacity = size * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                elevations = Arrays.copyOf(elevations, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            elevations[size] = elevation;
+            distances[size] = distanceFromStart;
+            size++;
+        }
+
+        private static double interpolate(double from, double to, double t) {
+            if (Double.isNaN(from)) {
+                return to;
+            }
+            if (Double.isNaN(to)) {
+                return from;
+            }
+            return from + t * (to - from);
+        }
+    }
+
+    /**
+     * Points of a GPX track in primitive arrays (elevation NaN where missing), with the
+     * distance from the start of every point and the totals of the original track.
+     */
+    public static final class GpxTrack {
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[] elevations;
+        private final double[] distancesFromStart;
+        private final int originalPointCount;
+        private final double distanceMeters;
+        private final double elevationGainMeters;
+        private final double elevationLossMeters;
+
+        GpxTrack(double[] latitudes, double[] longitudes, double[] elevations, double[] distancesFromStart,
+                 int originalPointCount, double distanceMeters, double elevationGainMeters,
+                 double elevationLossMeters) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.elevations = elevations;
+            this.distancesFromStart = distancesFromStart;
+            this.originalPointCount = originalPointCount;
+            this.distanceMeters = distanceMeters;
+            this.elevationGainMeters = elevationGainMeters;
+            this.elevationLossMeters = elevationLossMeters;
+        }
+
+        public int size() {
+            return latitudes.length;
+        }
+
+        public double[] getLatitudes() {
+            return latitudes;
+        }
+
+        public double[] getLongitudes() {
+            return longitudes;
+        }
+
+        public double[] getElevations() {
+            return elevations;
+        }
+
+        public double[] getDistancesFromStart() {
+            return distancesFromStart;
+        }
+
+        public int getOriginalPointCount() {
+            return originalPointCount;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public double getElevationGainMeters() {
+            return elevationGainMeters;
+        }
+
+        public double getElevationLossMeters() {
+            return elevationLossMeters;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mainstream.geo;
+
+import java.util.Arrays;
+
+/**
+ * MinHash signatures of sets of longs, and the Jaccard similarity they estimate.
+ *
+ * Hash function k is a 64-bit mix of the element with a fixed per-function seed, so
+ * signatures are stable across restarts and can be stored. The fraction of equal
+ * positions of two signatures estimates the Jaccard similarity of their sets; with 64
+ * functions the standard error is at most 1/16.
+ */
+public final class MinHash {
+
+    public static final int MAX_SIZE = 256;
+
+    private static final long[] SEEDS = new long[MAX_SIZE];
+
+    static {
+        for (int k = 0; k < MAX_SIZE; k++) {
+            SEEDS[k] = mix(0x5DEECE66DL + k * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /**
+     * @param elements the set (duplicates are harmless)
+     * @param size     number of hash functions, at most {@value #MAX_SIZE}
+     */
+    public static int[] signature(long[] elements, int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Signature size must be between 1 and " + MAX_SIZE);
+        }
+        int[] signature = new int[size];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long element : elements) {
+            for (int k = 0; k < size; k++) {
+                int hash = (int) (mix(element ^ SEEDS[k]) >>> 33);
+                if (hash < signature[k]) {
+                    signature[k] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return the estimated Jaccard similarity of the sets behind two signatures
+     */
+    public static double estimate(int[] a, int aOffset, int[] b, int bOffset, int size) {
+        int equal = 0;
+        for (int k = 0; k < size; k++) {
+            if (a[aOffset + k] == b[bOffset + k]) {
+                equal++;
+            }
+        }
+        return (double) equal / size;
+    }
+
+    /**
+     * @return the exact Jaccard similarity of two sorted, duplicate-free sets
+     */
+    public static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 && b.length == 0) {
+            return 0.0;
+        }
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) intersection / (a.length + b.length - intersection);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,195 @@
+package com.mainstream.geo;
+
+import java.util.Arrays;
+
+/**
+ * Immutable uniform-grid index over a set of positions, answering "which points lie
+ * within r meters" by only looking at the grid cells around the query instead of at
+ * every point.
+ *
+ * Cells are square in meters: rows are a fixed latitude band, and the longitude width
+ * of each row is widened by 1/cos(latitude) of its center. Points are stored grouped by
+ * cell in flat arrays, with an open-addressing table from cell key to cell, so the index
+ * holds no boxed objects. Routes crossing the antimeridian are not supported.
+ */
+public final class PointGridIndex {
+
+    // Consistent with the distance kernel, so cell spans never under-cover a query
+    private static final double METERS_PER_DEGREE = GeoDistance.METERS_PER_DEGREE;
+    // Keeps cells finite near the poles
+    private static final double MIN_COS_LATITUDE = 0.01;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Receives every point within the query radius, with its {@link GeoDistance} distance.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(int point, double distanceMeters);
+    }
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double cellSizeMeters;
+    private final double cellLatDegrees;
+
+    // Open-addressing table: cell key -> cell ordinal
+    private final long[] tableKeys;
+    private final int[] tableCells;
+    private final int tableMask;
+
+    // Points of cell c are cellPoints[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellStart;
+    private final int[] cellPoints;
+
+    /**
+     * @param latitudes      point latitudes in degrees
+     * @param longitudes     point longitudes in degrees
+     * @param cellSizeMeters cell edge length; queries are cheapest with a radius up to this size
+     */
+    public PointGridIndex(double[] latitudes, double[] longitudes, double cellSizeMeters) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays differ in length");
+        }
+        if (cellSizeMeters <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cosLatitudes = GeoDistance.cosLatitudes(latitudes);
+        this.cellSizeMeters = cellSizeMeters;
+        this.cellLatDegrees = cellSizeMeters / METERS_PER_DEGREE;
+
+        int n = latitudes.length;
+        int capacity = Integer.highestOneBit(Math.max(16, n * 2 - 1)) << 1;
+        this.tableKeys = new long[capacity];
+        this.tableCells = new int[capacity];
+        this.tableMask = capacity - 1;
+        Arrays.fill(tableKeys, EMPTY);
+
+        // First pass: assign every point to a cell and count the points per cell
+        int[] pointCell = new int[n];
+        int[] counts = new int[Math.max(1, n)];
+        int cellCount = 0;
+        for (int i = 0; i < n; i++) {
+            int row = row(latitudes[i]);
+            long key = key(row, column(longitudes[i], row));
+            int slot = slot(key);
+            if (tableKeys[slot] == EMPTY) {
+                tableKeys[slot] = key;
+                tableCells[slot] = cellCount++;
+            }
+            int cell = tableCells[slot];
+            pointCell[i] = cell;
+            counts[cell]++;
+        }
+
+        // Second pass: lay the points out grouped by cell (counting sort, stable)
+        this.cellStart = new int[cellCount + 1];
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] = cellStart[c] + counts[c];
+        }
+        this.cellPoints = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < n; i++) {
+            cellPoints[fill[pointCell[i]]++] = i;
+        }
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double getLatitude(int point) {
+        return latitudes[point];
+    }
+
+    public double getLongitude(int point) {
+        return longitudes[point];
+    }
+
+    /**
+     * Visit every point within radiusMeters of the given position. Within one cell points
+     * are visited in ascending order; across cells the order is unspecified.
+     */
+    public void forEachWithin(double latitude, double longitude, double radiusMeters, Visitor visitor) {
+        if (latitudes.length == 0 || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return;
+        }
+        int centerRow = row(latitude);
+        int rowSpan = (int) Math.ceil(radiusMeters / cellSizeMeters);
+        double radiusLatDegrees = radiusMeters / METERS_PER_DEGREE;
+        // Cells are narrowest (in meters) at the poleward edge of the query circle
+        double poleward = Math.min(90.0, Math.abs(latitude) + radiusLatDegrees);
+        double cosLatitude = Math.max(Math.cos(Math.toRadians(poleward)), MIN_COS_LATITUDE);
+        double queryCosLatitude = GeoDistance.cosLatitude(latitude);
+
+        for (int row = centerRow - rowSpan; row <= centerRow + rowSpan; row++) {
+            double rowLonDegrees = cellLonDegrees(row);
+            // Width of this row's cells in meters at that latitude
+            int columnSpan = (int) Math.ceil(radiusMeters / (rowLonDegrees * METERS_PER_DEGREE * cosLatitude));
+            int centerColumn = column(longitude, row);
+            for (int column = centerColumn - columnSpan; column <= centerColumn + columnSpan; column++) {
+                int slot = find(key(row, column));
+                if (slot < 0) {
+                    continue;
+                }
+                int cell = tableCells[slot];
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int point = cellPoints[p];
+                    // Cheap reject on latitude before measuring
+                    if (Math.abs(latitudes[point] - latitude) > radiusLatDegrees) {
+                        continue;
+                    }
+                    double distance = GeoDistance.meters(latitude, longitude, queryCosLatitude,
+                            latitudes[point], longitudes[point], cosLatitudes[point]);
+                    if (distance <= radiusMeters) {
+                        visitor.visit(point, distance);
+                    }
+                }
+            }
+        }
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellLatDegrees);
+    }
+
+    private int column(double longitude, int row) {
+        return (int) Math.floor(longitude / cellLonDegrees(row));
+    }
+
+    private double cellLonDegrees(int row) {
+        double centerLatitude = (row + 0.5) * cellLatDegrees;
+        return cellLatDegrees / Math.max(Math.cos(Math.toRadians(centerLatitude)), MIN_COS_LATITUDE);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        int slot = hash(key);
+        while (tableKeys[slot] != EMPTY && tableKeys[slot] != key) {
+            slot = (slot + 1) & tableMask;
+        }
+        return slot;
+    }
+
+    private int find(long key) {
+        int slot = hash(key);
+        while (tableKeys[slot] != EMPTY) {
+            if (tableKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    private int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & tableMask;
+    }
+}
@@ -0,0 +1,78 @@
+package com.mainstream.geo;
+
+/**
+ * Encoder/decoder for the Encoded Polyline Algorithm Format (precision 1e5),
+ * as understood by Leaflet/Google Maps plugins on the frontend.
+ */
+public final class PolylineEncoder {
+
+    private PolylineEncoder() {
+    }
+
+    /**
+     * Encode the points at the given indices (or all points if indices is null).
+     */
+    public static String encode(double[] latitudes, double[] longitudes, int[] indices) {
+        int count = indices != null ? indices.length : latitudes.length;
+        StringBuilder result = new StringBuilder(count * 8);
+        long previousLat = 0;
+        long previousLon = 0;
+
+        for (int i = 0; i < count; i++) {
+            int index = indices != null ? indices[i] : i;
+            long lat = Math.round(latitudes[index] * 1e5);
+            long lon = Math.round(longitudes[index] * 1e5);
+            encodeValue(lat - previousLat, result);
+            encodeValue(lon - previousLon, result);
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Decode to an array of [lat, lon] pairs.
+     */
+    public static double[][] decode(String encoded) {
+        double[][] buffer = new double[Math.max(1, encoded.length() / 2)][];
+        int count = 0;
+        int index = 0;
+        long lat = 0;
+        long lon = 0;
+
+        while (index < encoded.length()) {
+            long[] value = new long[1];
+            index = decodeValue(encoded, index, value);
+            lat += value[0];
+            index = decodeValue(encoded, index, value);
+            lon += value[0];
+            buffer[count++] = new double[] {lat / 1e5, lon / 1e5};
+        }
+
+        double[][] points = new double[count][];
+        System.arraycopy(buffer, 0, points, 0, count);
+        return points;
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static int decodeValue(String encoded, int index, long[] out) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(index++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        out[0] = (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+        return index;
+    }
+}
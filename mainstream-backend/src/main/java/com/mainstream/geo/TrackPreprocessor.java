@@ -0,0 +1,272 @@
+package com.mainstream.geo;
+
+import java.util.Arrays;
+
+/**
+ * Streaming cleanup of a recorded track before it is matched, fed one position at a time.
+ *
+ * Three steps, each disabled by a setting of 0:
+ * <ul>
+ *   <li>spike rejection: a position implying a speed above maxSpeed from the last accepted
+ *   one is dropped (duplicate timestamps count as one second; positions without a time are
+ *   never rejected). After {@value #MAX_CONSECUTIVE_SPIKES} rejections in a row the next
+ *   position is accepted anyway, so a genuine jump does not discard the rest of the track;</li>
+ *   <li>stationary collapsing: positions within stationaryRadius of the last kept one are
+ *   dropped, so standing at a traffic light leaves one point instead of a jitter cluster;</li>
+ *   <li>resampling: the kept positions are replaced by points at a uniform spacing along
+ *   the path, interpolated between them; the first and last kept positions are always
+ *   emitted. A step longer than {@value #MAX_INTERPOLATED_METERS} m or
+ *   {@value #MAX_INTERPOLATED_SECONDS} s (a GPS dropout), or one ending at a position
+ *   accepted after a run of spikes, is not interpolated: nothing is known about the path
+ *   in between, so both of its ends are emitted as recorded and sampling restarts after
+ *   it.</li>
+ * </ul>
+ * Not thread safe.
+ */
+public final class TrackPreprocessor {
+
+    static final int MAX_CONSECUTIVE_SPIKES = 5;
+    static final double MAX_INTERPOLATED_METERS = 100.0;
+    static final double MAX_INTERPOLATED_SECONDS = 30.0;
+
+    /**
+     * Receives the cleaned positions in track order.
+     */
+    public interface Sink {
+        void accept(double latitude, double longitude);
+    }
+
+    private final double maxSpeedMetersPerSecond;
+    private final double stationaryRadiusMeters;
+    private final double resampleMeters;
+    private final Sink sink;
+
+    private int inputCount;
+    private int spikeCount;
+    private int stationaryCount;
+    private int gapCount;
+    private int outputCount;
+    private boolean finished;
+
+    // Last position that passed spike rejection
+    private boolean started;
+    private double lastLatitude;
+    private double lastLongitude;
+    private double lastTime = Double.NaN;
+    private int consecutiveSpikes;
+
+    // Last position kept after stationary collapsing, and the path length up to it
+    private double keptLatitude;
+    private double keptLongitude;
+    private double pathMeters;
+    private double nextSample;
+    private double lastEmittedMeters;
+
+    public TrackPreprocessor(double maxSpeedMetersPerSecond, double stationaryRadiusMeters,
+                             double resampleMeters, Sink sink) {
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        this.stationaryRadiusMeters = stationaryRadiusMeters;
+        this.resampleMeters = resampleMeters;
+        this.sink = sink;
+    }
+
+    /**
+     * Clean the first count positions of a whole track.
+     *
+     * @param timeSeconds recording time of each position in seconds, or null if unknown
+     */
+    public static Points process(double[] latitudes, double[] longitudes, double[] timeSeconds, int count,
+                                 double maxSpeedMetersPerSecond, double stationaryRadiusMeters,
+                                 double resampleMeters) {
+        Points points = new Points();
+        TrackPreprocessor preprocessor = new TrackPreprocessor(maxSpeedMetersPerSecond, stationaryRadiusMeters,
+                resampleMeters, points);
+        for (int i = 0; i < count; i++) {
+            preprocessor.accept(latitudes[i], longitudes[i], timeSeconds != null ? timeSeconds[i] : Double.NaN);
+        }
+        preprocessor.finish();
+        points.inputCount = preprocessor.inputCount;
+        points.spikeCount = preprocessor.spikeCount;
+        points.stationaryCount = preprocessor.stationaryCount;
+        points.gapCount = preprocessor.gapCount;
+        return points;
+    }
+
+    /**
+     * Feed the next position, in recording order. Positions with a NaN coordinate are ignored.
+     *
+     * @param timeSeconds recording time in seconds (any epoch), or NaN if unknown
+     */
+    public void accept(double latitude, double longitude, double timeSeconds) {
+        if (finished) {
+            throw new IllegalStateException("Track preprocessing already finished");
+        }
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return;
+        }
+        inputCount++;
+        if (!started) {
+            started = true;
+            remember(latitude, longitude, timeSeconds);
+            keptLatitude = latitude;
+            keptLongitude = longitude;
+            nextSample = resampleMeters;
+            emit(latitude, longitude);
+            return;
+        }
+
+        boolean spike = isSpike(latitude, longitude, timeSeconds);
+        if (spike && consecutiveSpikes < MAX_CONSECUTIVE_SPIKES) {
+            consecutiveSpikes++;
+            spikeCount++;
+            return;
+        }
+        consecutiveSpikes = 0;
+        double previousTime = lastTime;
+        remember(latitude, longitude, timeSeconds);
+
+        double step = GeoDistance.meters(keptLatitude, keptLongitude, latitude, longitude);
+        if (step < stationaryRadiusMeters) {
+            stationaryCount++;
+            return;
+        }
+        double stepStart = pathMeters;
+        pathMeters += step;
+        if (resampleMeters <= 0) {
+            emit(latitude, longitude);
+            lastEmittedMeters = pathMeters;
+        } else if (spike || step > MAX_INTERPOLATED_METERS
+                || timeSeconds - previousTime > MAX_INTERPOLATED_SECONDS) {
+            // A forced accept after spikes, or a dropout: keep both ends, invent nothing between
+            gapCount++;
+            // Unless the last sample already fell on it (up to rounding of the path length)
+            if (stepStart - lastEmittedMeters > 1e-6) {
+                emit(keptLatitude, keptLongitude);
+            }
+            emit(latitude, longitude);
+            lastEmittedMeters = pathMeters;
+            nextSample = pathMeters + resampleMeters;
+        } else {
+            while (nextSample <= pathMeters) {
+                double t = step > 0 ? (nextSample - stepStart) / step : 1.0;
+                emit(keptLatitude + t * (latitude - keptLatitude), keptLongitude + t * (longitude - keptLongitude));
+                lastEmittedMeters = nextSample;
+                nextSample += resampleMeters;
+            }
+        }
+        keptLatitude = latitude;
+        keptLongitude = longitude;
+    }
+
+    /**
+     * Emit the end of the track if resampling has not reached it yet. Later calls do nothing.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (started && pathMeters > lastEmittedMeters) {
+            emit(keptLatitude, keptLongitude);
+        }
+    }
+
+    private boolean isSpike(double latitude, double longitude, double timeSeconds) {
+        if (maxSpeedMetersPerSecond <= 0 || Double.isNaN(timeSeconds) || Double.isNaN(lastTime)) {
+            return false;
+        }
+        double seconds = Math.max(1.0, timeSeconds - lastTime);
+        return GeoDistance.meters(lastLatitude, lastLongitude, latitude, longitude) > maxSpeedMetersPerSecond * seconds;
+    }
+
+    private void remember(double latitude, double longitude, double timeSeconds) {
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        if (!Double.isNaN(timeSeconds)) {
+            lastTime = timeSeconds;
+        }
+    }
+
+    private void emit(double latitude, double longitude) {
+        outputCount++;
+        sink.accept(latitude, longitude);
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getSpikeCount() {
+        return spikeCount;
+    }
+
+    public int getStationaryCount() {
+        return stationaryCount;
+    }
+
+    /**
+     * @return the steps not interpolated while resampling
+     */
+    public int getGapCount() {
+        return gapCount;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Cleaned positions of a whole track in primitive arrays, with the counts of the input.
+     */
+    public static final class Points implements Sink {
+        private double[] latitudes = new double[256];
+        private double[] longitudes = new double[256];
+        private int size;
+        private int inputCount;
+        private int spikeCount;
+        private int stationaryCount;
+        private int gapCount;
+
+        @Override
+        public void accept(double latitude, double longitude) {
+            if (size == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the positions, valid up to {@link #size()}
+         */
+        public double[] getLatitudes() {
+            return latitudes;
+        }
+
+        public double[] getLongitudes() {
+            return longitudes;
+        }
+
+        public int getInputCount() {
+            return inputCount;
+        }
+
+        public int getSpikeCount() {
+            return spikeCount;
+        }
+
+        public int getStationaryCount() {
+            return stationaryCount;
+        }
+
+        public int getGapCount() {
+            return gapCount;
+        }
+    }
+}
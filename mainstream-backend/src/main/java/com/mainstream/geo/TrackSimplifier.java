@@ -0,0 +1,92 @@
+package com.mainstream.geo;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Douglas-Peucker simplification of a GPS track. Works on a local equirectangular
+ * projection, which is accurate to well below a meter at running-track scales.
+ */
+public final class TrackSimplifier {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private TrackSimplifier() {
+    }
+
+    /**
+     * @return the indices of the points to keep, in ascending order (first and last always kept)
+     */
+    public static int[] simplify(double[] latitudes, double[] longitudes, double toleranceMeters) {
+        int n = latitudes.length;
+        if (n <= 2) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        double cosLat = Math.cos(Math.toRadians(latitudes[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = longitudes[i] * METERS_PER_DEGREE * cosLat;
+            y[i] = latitudes[i] * METERS_PER_DEGREE;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+
+        // Iterative to avoid stack overflows on long tracks
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[] {0, n - 1});
+        while (!stack.isEmpty()) {
+            int[] range = stack.pop();
+            int first = range[0];
+            int last = range[1];
+            double maxDistance = -1;
+            int maxIndex = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    maxIndex = i;
+                }
+            }
+            if (maxIndex >= 0 && maxDistance > toleranceSquared) {
+                keep[maxIndex] = true;
+                stack.push(new int[] {first, maxIndex});
+                stack.push(new int[] {maxIndex, last});
+            }
+        }
+
+        int count = 0;
+        for (boolean k : keep) {
+            if (k) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                indices[j++] = i;
+            }
+        }
+        return indices;
+    }
+
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+}
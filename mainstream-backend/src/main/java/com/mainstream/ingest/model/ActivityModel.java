@@ -0,0 +1,288 @@
+package com.mainstream.ingest.model;
+
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.run.entity.GpsPoint;
+import com.mainstream.run.entity.Run;
+import com.mainstream.user.entity.User;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory activity decoded once at ingest and shared read-only by all pipeline stages.
+ *
+ * Samples are held column-wise in primitive arrays (NaN / 0 for missing values), so
+ * stages can scan them without touching entities. The persisted entities (FIT track
+ * points or GPS points) are kept alongside for stages that still work on them.
+ *
+ * When the positions were fed to an online route matcher while the activity was read,
+ * its result is carried here, so route matching needs no second pass over the track.
+ *
+ * Route matching and recording the user activity (with its trophies) only run when the
+ * ingest asks for it with {@link Builder#recordActivity}; other ingests only derive metrics.
+ */
+@Getter
+public class ActivityModel {
+
+    public enum Source {
+        FIT_FILE, RUN
+    }
+
+    private final Source source;
+    private final User user;
+    private final FitFileUpload fitFileUpload;
+    private final Run run;
+    private final List<FitTrackPoint> trackPoints;
+    private final List<GpsPoint> gpsPoints;
+
+    private final int size;
+    private final double[] timeSeconds;    // relative to the first sample
+    private final double[] distanceMeters; // cumulative, derived from positions if the source has none
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] altitudes;
+    private final int[] heartRates;
+    private final int[] cadences;
+    @Getter(AccessLevel.NONE)
+    private final boolean streamedRouteMatch;
+    private final RouteMatchingService.RouteMatchResult routeMatch;
+    private final boolean recordActivity;
+
+    private ActivityModel(Builder builder) {
+        this.source = builder.source;
+        this.user = builder.user;
+        this.fitFileUpload = builder.fitFileUpload;
+        this.run = builder.run;
+        this.trackPoints = builder.trackPoints != null ? builder.trackPoints : List.of();
+        this.gpsPoints = builder.gpsPoints != null ? builder.gpsPoints : List.of();
+        this.size = builder.size;
+        this.timeSeconds = Arrays.copyOf(builder.timeSeconds, size);
+        this.distanceMeters = Arrays.copyOf(builder.distanceMeters, size);
+        this.latitudes = Arrays.copyOf(builder.latitudes, size);
+        this.longitudes = Arrays.copyOf(builder.longitudes, size);
+        this.altitudes = Arrays.copyOf(builder.altitudes, size);
+        this.heartRates = Arrays.copyOf(builder.heartRates, size);
+        this.cadences = Arrays.copyOf(builder.cadences, size);
+        this.streamedRouteMatch = builder.routeMatcher != null;
+        this.routeMatch = streamedRouteMatch ? builder.routeMatcher.finish() : null;
+        this.recordActivity = builder.recordActivity;
+    }
+
+    /**
+     * @return true if the track was route matched while it was read; {@link #getRouteMatch()}
+     * then holds the result (null if it matched no route)
+     */
+    public boolean hasStreamedRouteMatch() {
+        return streamedRouteMatch;
+    }
+
+    public Long getUserId() {
+        if (user != null) {
+            return user.getId();
+        }
+        return fitFileUpload != null ? fitFileUpload.getUserId() : run.getUserId();
+    }
+
+    public Long getFitFileUploadId() {
+        return fitFileUpload != null ? fitFileUpload.getId() : null;
+    }
+
+    public Long getRunId() {
+        return run != null ? run.getId() : null;
+    }
+
+    public boolean hasPosition(int i) {
+        return !Double.isNaN(latitudes[i]) && !Double.isNaN(longitudes[i]);
+    }
+
+    public boolean hasHeartRate() {
+        for (int hr : heartRates) {
+            if (hr > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Builder forFitFile(FitFileUpload fitFileUpload, List<FitTrackPoint> trackPoints) {
+        Builder builder = new Builder(Source.FIT_FILE, trackPoints.size());
+        builder.fitFileUpload = fitFileUpload;
+        builder.trackPoints = trackPoints;
+        for (FitTrackPoint point : trackPoints) {
+            Double altitude = point.getEnhancedAltitude() != null ? point.getEnhancedAltitude() : point.getAltitude();
+            builder.addSample(toSeconds(point.getTimestamp()), orNaN(point.getDistance()),
+                    orNaN(point.getPositionLat()), orNaN(point.getPositionLong()), orNaN(altitude),
+                    orZero(point.getHeartRate()), orZero(point.getCadence()));
+        }
+        return builder;
+    }
+
+    public static Builder forRun(Run run, List<GpsPoint> gpsPoints) {
+        Builder builder = new Builder(Source.RUN, gpsPoints.size());
+        builder.run = run;
+        builder.gpsPoints = gpsPoints;
+        return builder;
+    }
+
+    /**
+     * Adds the persisted GPS points as samples. Provider syncs instead feed their
+     * full-resolution streams through {@link Builder#addSample}.
+     */
+    public static Builder forRunFromGpsPoints(Run run, List<GpsPoint> gpsPoints) {
+        Builder builder = forRun(run, gpsPoints);
+        for (GpsPoint point : gpsPoints) {
+            builder.addSample(toSeconds(point.getTimestamp()), orNaN(point.getDistanceFromStartMeters()),
+                    orNaN(point.getLatitude()), orNaN(point.getLongitude()), orNaN(point.getAltitude()), 0, 0);
+        }
+        return builder;
+    }
+
+    private static double toSeconds(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return Double.NaN;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) + timestamp.getNano() / 1_000_000_000.0;
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static double orNaN(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    public static class Builder {
+
+        private final Source source;
+        private User user;
+        private FitFileUpload fitFileUpload;
+        private Run run;
+        private List<FitTrackPoint> trackPoints;
+        private List<GpsPoint> gpsPoints;
+        private RouteMatchingService.OnlineMatcher routeMatcher;
+        private boolean recordActivity;
+
+        private int size;
+        private double firstTime = Double.NaN;
+        private double lastLat = Double.NaN;
+        private double lastLon = Double.NaN;
+        private double[] timeSeconds;
+        private double[] distanceMeters;
+        private double[] latitudes;
+        private double[] longitudes;
+        private double[] altitudes;
+        private int[] heartRates;
+        private int[] cadences;
+
+        private Builder(Source source, int expectedSize) {
+            this.source = source;
+            int capacity = Math.max(16, expectedSize);
+            timeSeconds = new double[capacity];
+            distanceMeters = new double[capacity];
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            altitudes = new double[capacity];
+            heartRates = new int[capacity];
+            cadences = new int[capacity];
+        }
+
+        public Builder user(User user) {
+            this.user = user;
+            return this;
+        }
+
+        /**
+         * Whether to match routes and record the user activity with its trophies (off by
+         * default).
+         */
+        public Builder recordActivity(boolean recordActivity) {
+            this.recordActivity = recordActivity;
+            return this;
+        }
+
+        /**
+         * Attach an online route matcher: positions of the samples added from now on are
+         * fed to it, and {@link #build()} finishes it. A matcher that was already fed while
+         * decoding (FIT files) is attached after the samples instead.
+         */
+        public Builder routeMatcher(RouteMatchingService.OnlineMatcher routeMatcher) {
+            this.routeMatcher = routeMatcher;
+            return this;
+        }
+
+        /**
+         * Append a sample. Samples without a timestamp are dropped; a missing distance is
+         * derived from the previous position.
+         */
+        public Builder addSample(double time, double distance, double latitude, double longitude,
+                                 double altitude, int heartRate, int cadence) {
+            if (Double.isNaN(time)) {
+                return this;
+            }
+            if (Double.isNaN(firstTime)) {
+                firstTime = time;
+            }
+            ensureCapacity();
+
+            boolean hasPosition = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+            if (Double.isNaN(distance)) {
+                double previous = size > 0 ? distanceMeters[size - 1] : 0.0;
+                distance = hasPosition && !Double.isNaN(lastLat)
+                        ? previous + GeoDistance.meters(lastLat, lastLon, latitude, longitude)
+                        : previous;
+            } else if (size > 0) {
+                // Cumulative distance must never go backwards
+                distance = Math.max(distance, distanceMeters[size - 1]);
+            }
+
+            timeSeconds[size] = time - firstTime;
+            distanceMeters[size] = distance;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            altitudes[size] = altitude;
+            heartRates[size] = heartRate;
+            cadences[size] = cadence;
+            size++;
+
+            if (hasPosition) {
+                lastLat = latitude;
+                lastLon = longitude;
+                if (routeMatcher != null) {
+                    routeMatcher.accept(latitude, longitude, time);
+                }
+            }
+            return this;
+        }
+
+        public ActivityModel build() {
+            return new ActivityModel(this);
+        }
+
+        private void ensureCapacity() {
+            if (size < timeSeconds.length) {
+                return;
+            }
+            int capacity = timeSeconds.length * 2;
+            timeSeconds = Arrays.copyOf(timeSeconds, capacity);
+            distanceMeters = Arrays.copyOf(distanceMeters, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            altitudes = Arrays.copyOf(altitudes, capacity);
+            heartRates = Arrays.copyOf(heartRates, capacity);
+            cadences = Arrays.copyOf(cadences, capacity);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.mainstream.ingest.pipeline;
+
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.stage.ChannelsStage;
+import com.mainstream.ingest.stage.FingerprintStage;
+import com.mainstream.ingest.stage.HeartRateZonesStage;
+import com.mainstream.ingest.stage.PolylineStage;
+import com.mainstream.ingest.stage.SegmentEffortStage;
+import com.mainstream.ingest.stage.SplitsStage;
+import com.mainstream.ingest.stage.SummaryStage;
+import com.mainstream.progress.dto.ProgressEvent;
+import com.mainstream.progress.service.ProgressJob;
+import com.mainstream.progress.service.ProgressTracker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the derived computations of an ingested activity as a graph of stages.
+ *
+ * The activity is decoded once into an {@link ActivityModel}; every stage computes from
+ * that model (and the results of the stages it depends on) on a bounded executor, so
+ * independent stages run in parallel and none of them reloads track points. Each stage
+ * has its own timeout, counted from the moment a worker starts it, and a failing or timed
+ * out computation only skips the stages depending on it (stages that depend on it softly
+ * run without its result).
+ *
+ * Results are then persisted on the calling thread, inside its transaction. Writes are
+ * not isolated per stage: a failed write marks the caller's transaction rollback-only
+ * (the stage services join it), so it is rethrown and fails the whole ingest rather than
+ * being reported as a skipped stage of an ingest that cannot commit anyway.
+ */
+@Slf4j
+@Service
+public class IngestPipeline {
+
+    /**
+     * Stages that only derive metrics from the track, without route matching or trophies
+     * (used when re-importing tracks of existing activities).
+     */
+    public static final Set<String> DERIVED_METRICS = Set.of(
+            SummaryStage.NAME, PolylineStage.NAME, SplitsStage.NAME, HeartRateZonesStage.NAME, ChannelsStage.NAME,
+            SegmentEffortStage.NAME, FingerprintStage.NAME);
+
+    private final List<IngestStage<?>> stages;
+    private final Map<String, IngestStage<?>> stagesByName;
+    private final ThreadPoolExecutor executor;
+    private final ProgressTracker progressTracker;
+    private final long queueTimeoutMillis;
+
+    public IngestPipeline(List<IngestStage<?>> stages,
+                          ProgressTracker progressTracker,
+                          @Value("${mainstream.ingest.pipeline-threads:4}") int threads,
+                          @Value("${mainstream.ingest.queue-capacity:64}") int queueCapacity,
+                          @Value("${mainstream.ingest.queue-timeout-ms:60000}") long queueTimeoutMillis) {
+        this.stagesByName = new HashMap<>();
+        for (IngestStage<?> stage : stages) {
+            if (stagesByName.put(stage.getName(), stage) != null) {
+                throw new IllegalStateException("Duplicate ingest stage: " + stage.getName());
+            }
+        }
+        this.stages = sortByDependencies(stages);
+        this.progressTracker = progressTracker;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ingest-stage-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // When saturated a stage runs on its own virtual thread instead, so it keeps its
+                // timeout and cancellation (running it on the caller would have neither)
+                (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Ingest pipeline is shut down");
+                    }
+                    Thread.ofVirtual().name("ingest-stage-overflow").start(task);
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        log.info("Ingest pipeline initialized with stages {} on {} threads",
+                this.stages.stream().map(IngestStage::getName).toList(), threads);
+    }
+
+    /**
+     * Run all stages supporting the model.
+     */
+    public StageResults execute(ActivityModel model) {
+        return execute(model, null);
+    }
+
+    /**
+     * Run the given stages (plus the stages they depend on), or all stages if null.
+     *
+     * @throws RuntimeException if persisting a stage fails; the caller's transaction is then
+     * rollback-only, so callers must not carry on writing in it
+     */
+    public StageResults execute(ActivityModel model, Set<String> stageNames) {
+        List<IngestStage<?>> selected = select(stageNames);
+        StageResults results = new StageResults();
+        Optional<ProgressJob> progress = progressTracker.current();
+        long start = System.currentTimeMillis();
+
+        // Compute: chain every stage on its dependencies, in topological order
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        for (IngestStage<?> stage : selected) {
+            CompletableFuture<?>[] dependencies = allDependencies(stage).stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+            futures.put(stage.getName(), CompletableFuture.allOf(dependencies)
+                    .thenCompose(ignored -> compute(stage, model, results, progress)));
+        }
+        CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+
+        // Persist: sequentially on this thread, so writes join the caller's transaction
+        for (IngestStage<?> stage : selected) {
+            if (results.isSucceeded(stage.getName())) {
+                persist(stage, model, results);
+            }
+        }
+
+        long failed = results.asMap().values().stream()
+                .filter(outcome -> outcome.getStatus() == StageResults.Status.FAILED
+                        || outcome.getStatus() == StageResults.Status.TIMED_OUT)
+                .count();
+        log.info("Ingest pipeline for {} {} finished in {} ms: {}", model.getSource(),
+                model.getSource() == ActivityModel.Source.FIT_FILE ? model.getFitFileUploadId() : model.getRunId(),
+                System.currentTimeMillis() - start, summarize(results));
+        progress.ifPresent(job -> job.stage(ProgressEvent.Stage.DERIVED,
+                selected.size() + " stages run, " + failed + " failed"));
+        return results;
+    }
+
+    /**
+     * @return true if running the given stages (null for all) includes the named stage
+     */
+    public boolean includes(Set<String> stageNames, String stageName) {
+        return select(stageNames).stream().anyMatch(stage -> stage.getName().equals(stageName));
+    }
+
+    private CompletableFuture<Void> compute(IngestStage<?> stage, ActivityModel model, StageResults results,
+                                            Optional<ProgressJob> progress) {
+        for (String dependency : stage.getDependencies()) {
+            if (!results.isSucceeded(dependency)) {
+                results.record(stage.getName(), new StageResults.Outcome(StageResults.Status.SKIPPED, null,
+                        "Dependency " + dependency + " did not succeed", 0));
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        if (!stage.supports(model)) {
+            results.record(stage.getName(), new StageResults.Outcome(StageResults.Status.SKIPPED, null,
+                    "Not applicable", 0));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        progress.ifPresent(job -> job.stage(ProgressEvent.Stage.DERIVING, stage.getName()));
+        AtomicLong startedAt = new AtomicLong();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                // The stage timeout starts when a worker picks the stage up, not while it is queued
+                startedAt.set(System.nanoTime());
+                result.orTimeout(stage.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                try {
+                    result.complete(stage.compute(model, results));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            task = null;
+        }
+
+        Future<?> submitted = task;
+        // Bounds the wait for a worker, in case all of them are stuck in stages ignoring interrupts
+        return result
+                .orTimeout(queueTimeoutMillis + stage.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .handle((value, error) -> {
+                    long started = startedAt.get();
+                    long durationMillis = started != 0 ? (System.nanoTime() - started) / 1_000_000 : 0;
+                    if (error == null) {
+                        results.record(stage.getName(), new StageResults.Outcome(
+                                StageResults.Status.SUCCEEDED, value, null, durationMillis));
+                        return null;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        if (submitted != null) {
+                            submitted.cancel(true);
+                        }
+                        if (started == 0) {
+                            log.warn("Ingest stage {} found no free worker within {} ms", stage.getName(),
+                                    queueTimeoutMillis + stage.getTimeout().toMillis());
+                        } else {
+                            log.warn("Ingest stage {} timed out after {} ms", stage.getName(), durationMillis);
+                        }
+                        results.record(stage.getName(), new StageResults.Outcome(StageResults.Status.TIMED_OUT,
+                                null, started == 0 ? "Timed out waiting for a worker" : "Timed out", durationMillis));
+                    } else {
+                        log.error("Ingest stage {} failed: {}", stage.getName(), cause.getMessage(), cause);
+                        results.record(stage.getName(), new StageResults.Outcome(
+                                StageResults.Status.FAILED, null, cause.getMessage(), durationMillis));
+                    }
+                    return null;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> void persist(IngestStage<R> stage, ActivityModel model, StageResults results) {
+        StageResults.Outcome outcome = results.getOutcome(stage.getName()).orElseThrow();
+        try {
+            stage.persist(model, (R) outcome.getResult(), results);
+        } catch (RuntimeException e) {
+            log.error("Persisting ingest stage {} failed: {}", stage.getName(), e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private List<IngestStage<?>> select(Set<String> stageNames) {
+        if (stageNames == null) {
+            return stages;
+        }
+        Set<String> required = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(stageNames);
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+            IngestStage<?> stage = stagesByName.get(name);
+            if (stage == null) {
+                throw new IllegalArgumentException("Unknown ingest stage: " + name);
+            }
+            if (required.add(name)) {
+                pending.addAll(allDependencies(stage));
+            }
+        }
+        return stages.stream().filter(stage -> required.contains(stage.getName())).toList();
+    }
+
+    /**
+     * Topological sort (Kahn), failing fast on unknown dependencies and cycles.
+     */
+    private List<IngestStage<?>> sortByDependencies(List<IngestStage<?>> unsorted) {
+        Map<String, Integer> inDegree = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (IngestStage<?> stage : unsorted) {
+            inDegree.putIfAbsent(stage.getName(), 0);
+            for (String dependency : allDependencies(stage)) {
+                if (!stagesByName.containsKey(dependency)) {
+                    throw new IllegalStateException("Ingest stage " + stage.getName()
+                            + " depends on unknown stage " + dependency);
+                }
+                inDegree.merge(stage.getName(), 1, Integer::sum);
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(stage.getName());
+            }
+        }
+
+        // Sorted by name first so the order is stable across restarts
+        Deque<String> ready = new ArrayDeque<>(inDegree.entrySet().stream()
+                .filter(entry -> entry.getValue() == 0)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList());
+        List<IngestStage<?>> sorted = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            sorted.add(stagesByName.get(name));
+            for (String dependent : dependents.getOrDefault(name, List.of())) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (sorted.size() != unsorted.size()) {
+            throw new IllegalStateException("Ingest stages contain a dependency cycle");
+        }
+        return List.copyOf(sorted);
+    }
+
+    private static Set<String> allDependencies(IngestStage<?> stage) {
+        if (stage.getSoftDependencies().isEmpty()) {
+            return stage.getDependencies();
+        }
+        Set<String> dependencies = new HashSet<>(stage.getDependencies());
+        dependencies.addAll(stage.getSoftDependencies());
+        return dependencies;
+    }
+
+    private String summarize(StageResults results) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (IngestStage<?> stage : stages) {
+            results.getOutcome(stage.getName()).ifPresent(outcome ->
+                    joiner.add(stage.getName() + "=" + outcome.getStatus() + " (" + outcome.getDurationMillis() + " ms)"));
+        }
+        return joiner.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mainstream.ingest.pipeline;
+
+import com.mainstream.ingest.model.ActivityModel;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * One derived computation in the ingest pipeline.
+ *
+ * {@link #compute} runs on the pipeline executor and must only read the model and the
+ * results of its dependencies. {@link #persist} runs afterwards on the ingesting thread,
+ * inside its transaction, in dependency order; an exception thrown there fails the ingest.
+ *
+ * @param <R> result type handed from compute to persist and to dependent stages
+ */
+public interface IngestStage<R> {
+
+    String getName();
+
+    /**
+     * Names of the stages whose results this stage needs. The stage is skipped if any
+     * of them did not succeed.
+     */
+    default Set<String> getDependencies() {
+        return Set.of();
+    }
+
+    /**
+     * Names of the stages whose results this stage uses if they are available. The stage
+     * waits for them (and persists after them), but still runs if they failed, timed out
+     * or were skipped.
+     */
+    default Set<String> getSoftDependencies() {
+        return Set.of();
+    }
+
+    default Duration getTimeout() {
+        return Duration.ofSeconds(10);
+    }
+
+    default boolean supports(ActivityModel model) {
+        return true;
+    }
+
+    R compute(ActivityModel model, StageResults results);
+
+    default void persist(ActivityModel model, R result, StageResults results) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.mainstream.ingest.pipeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcomes of the stages of one pipeline run, keyed by stage name.
+ */
+public class StageResults {
+
+    public enum Status {
+        SUCCEEDED, FAILED, TIMED_OUT, SKIPPED
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Outcome {
+        private final Status status;
+        private final Object result;
+        private final String error;
+        private final long durationMillis;
+
+        public boolean isSucceeded() {
+            return status == Status.SUCCEEDED;
+        }
+    }
+
+    private final Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+    void record(String stage, Outcome outcome) {
+        outcomes.put(stage, outcome);
+    }
+
+    public Optional<Outcome> getOutcome(String stage) {
+        return Optional.ofNullable(outcomes.get(stage));
+    }
+
+    public boolean isSucceeded(String stage) {
+        Outcome outcome = outcomes.get(stage);
+        return outcome != null && outcome.isSucceeded();
+    }
+
+    /**
+     * The result of a succeeded stage; empty if it failed, was skipped or returned null.
+     */
+    public <T> Optional<T> get(String stage, Class<T> type) {
+        Outcome outcome = outcomes.get(stage);
+        if (outcome == null || !outcome.isSucceeded() || outcome.getResult() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(type.cast(outcome.getResult()));
+    }
+
+    public Map<String, Outcome> asMap() {
+        return Collections.unmodifiableMap(outcomes);
+    }
+}
@@ -0,0 +1,42 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.service.ActivityChannelCodec;
+import com.mainstream.run.service.ChartSeriesService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Packs the full-resolution chart channels for the series endpoint.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChannelsStage implements IngestStage<byte[]> {
+
+    public static final String NAME = "channels";
+
+    private final ChartSeriesService chartSeriesService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.getSize() > 1;
+    }
+
+    @Override
+    public byte[] compute(ActivityModel model, StageResults results) {
+        return ActivityChannelCodec.pack(model.getTimeSeconds(), model.getDistanceMeters(),
+                model.getAltitudes(), model.getHeartRates(), model.getCadences());
+    }
+
+    @Override
+    public void persist(ActivityModel model, byte[] data, StageResults results) {
+        chartSeriesService.store(model.getFitFileUploadId(), model.getRunId(), data, model.getSize());
+    }
+}
@@ -0,0 +1,57 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.service.TrackFingerprintService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Geohash-cell fingerprint of the track with its MinHash signature, for similar-run search.
+ */
+@Component
+@RequiredArgsConstructor
+public class FingerprintStage implements IngestStage<TrackFingerprintService.TrackFingerprint> {
+
+    public static final String NAME = "fingerprint";
+
+    private final TrackFingerprintService trackFingerprintService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.getSize() > 1 && model.getUserId() != null;
+    }
+
+    @Override
+    public TrackFingerprintService.TrackFingerprint compute(ActivityModel model, StageResults results) {
+        return trackFingerprintService.fingerprint(model.getLatitudes(), model.getLongitudes(), model.getSize());
+    }
+
+    @Override
+    public void persist(ActivityModel model, TrackFingerprintService.TrackFingerprint fingerprint,
+                        StageResults results) {
+        if (fingerprint == null) {
+            // No positions in the track
+            return;
+        }
+        // FIT uploads carry no visibility setting and stay private
+        boolean isPublic = model.getRun() != null && Boolean.TRUE.equals(model.getRun().getIsPublic());
+        trackFingerprintService.store(model.getUserId(), model.getFitFileUploadId(), model.getRunId(), isPublic,
+                startTime(model), fingerprint);
+    }
+
+    private LocalDateTime startTime(ActivityModel model) {
+        if (model.getFitFileUpload() != null) {
+            return model.getFitFileUpload().getActivityStartTime();
+        }
+        return model.getRun().getStartTime();
+    }
+}
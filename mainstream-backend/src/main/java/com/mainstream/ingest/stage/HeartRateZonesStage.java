@@ -0,0 +1,115 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.service.ActivityMetricsService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Period;
+
+/**
+ * Time spent in the five heart rate zones (50/60/70/80/90 % of max heart rate).
+ * Max heart rate is estimated from the user's age (220 - age), falling back to the
+ * highest value recorded in the activity.
+ */
+@Component
+@RequiredArgsConstructor
+public class HeartRateZonesStage implements IngestStage<HeartRateZonesStage.Zones> {
+
+    public static final String NAME = "heartRateZones";
+
+    private static final double[] ZONE_LOWER_BOUNDS = {0.5, 0.6, 0.7, 0.8, 0.9};
+
+    // Longer gaps are recording pauses and are not attributed to any zone
+    private static final double MAX_SAMPLE_GAP_SECONDS = 30.0;
+
+    private final ActivityMetricsService activityMetricsService;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Zones {
+        private final int maxHeartRate;
+        private final int[] seconds;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.getSize() > 1 && model.hasHeartRate();
+    }
+
+    @Override
+    public Zones compute(ActivityModel model, StageResults results) {
+        int[] heartRates = model.getHeartRates();
+        double[] times = model.getTimeSeconds();
+        int maxHeartRate = estimateMaxHeartRate(model);
+
+        int[] bounds = new int[ZONE_LOWER_BOUNDS.length];
+        for (int z = 0; z < bounds.length; z++) {
+            bounds[z] = (int) Math.round(maxHeartRate * ZONE_LOWER_BOUNDS[z]);
+        }
+
+        double[] seconds = new double[bounds.length];
+        for (int i = 1; i < model.getSize(); i++) {
+            double dt = times[i] - times[i - 1];
+            int heartRate = heartRates[i];
+            if (heartRate <= 0 || dt <= 0 || dt > MAX_SAMPLE_GAP_SECONDS) {
+                continue;
+            }
+            for (int z = bounds.length - 1; z >= 0; z--) {
+                if (heartRate >= bounds[z]) {
+                    seconds[z] += dt;
+                    break;
+                }
+            }
+        }
+
+        int[] rounded = new int[seconds.length];
+        for (int z = 0; z < seconds.length; z++) {
+            rounded[z] = (int) Math.round(seconds[z]);
+        }
+        return new Zones(maxHeartRate, rounded);
+    }
+
+    @Override
+    public void persist(ActivityModel model, Zones zones, StageResults results) {
+        activityMetricsService.storeHeartRateZones(model.getFitFileUploadId(), model.getRunId(),
+                zones.getMaxHeartRate(), zones.getSeconds());
+
+        // Devices that report their own zone times win; otherwise fill them in
+        FitFileUpload upload = model.getFitFileUpload();
+        if (upload != null && upload.getHrZone1Time() == null) {
+            int[] seconds = zones.getSeconds();
+            upload.setHrZone1Time(seconds[0]);
+            upload.setHrZone2Time(seconds[1]);
+            upload.setHrZone3Time(seconds[2]);
+            upload.setHrZone4Time(seconds[3]);
+            upload.setHrZone5Time(seconds[4]);
+        }
+    }
+
+    private int estimateMaxHeartRate(ActivityModel model) {
+        LocalDate dateOfBirth = model.getUser() != null ? model.getUser().getDateOfBirth() : null;
+        if (dateOfBirth != null) {
+            int age = Period.between(dateOfBirth, LocalDate.now()).getYears();
+            if (age > 0 && age < 120) {
+                return 220 - age;
+            }
+        }
+        int observed = 0;
+        for (int heartRate : model.getHeartRates()) {
+            observed = Math.max(observed, heartRate);
+        }
+        return observed;
+    }
+}
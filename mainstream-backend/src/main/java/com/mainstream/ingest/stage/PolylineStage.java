@@ -0,0 +1,83 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.geo.TrackSimplifier;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.service.ActivityMetricsService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Simplified, encoded polyline of the track for map previews, plus the track's bounding
+ * box for finding activities near a route.
+ */
+@Component
+@RequiredArgsConstructor
+public class PolylineStage implements IngestStage<PolylineStage.Polyline> {
+
+    public static final String NAME = "polyline";
+
+    private final ActivityMetricsService activityMetricsService;
+
+    @Value("${mainstream.ingest.polyline-tolerance-meters:5}")
+    private double toleranceMeters;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Polyline {
+        private final String encoded;
+        private final int pointCount;
+        private final int sourcePointCount;
+        private final BoundingBox bounds;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        for (int i = 0; i < model.getSize(); i++) {
+            if (model.hasPosition(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Polyline compute(ActivityModel model, StageResults results) {
+        int n = model.getSize();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (model.hasPosition(i)) {
+                latitudes[count] = model.getLatitudes()[i];
+                longitudes[count] = model.getLongitudes()[i];
+                count++;
+            }
+        }
+        latitudes = Arrays.copyOf(latitudes, count);
+        longitudes = Arrays.copyOf(longitudes, count);
+
+        int[] kept = TrackSimplifier.simplify(latitudes, longitudes, toleranceMeters);
+        return new Polyline(PolylineEncoder.encode(latitudes, longitudes, kept), kept.length, count,
+                BoundingBox.of(latitudes, longitudes, count));
+    }
+
+    @Override
+    public void persist(ActivityModel model, Polyline polyline, StageResults results) {
+        activityMetricsService.storePolyline(model.getFitFileUploadId(), model.getRunId(),
+                polyline.getEncoded(), polyline.getPointCount(), polyline.getSourcePointCount(), polyline.getBounds());
+    }
+}
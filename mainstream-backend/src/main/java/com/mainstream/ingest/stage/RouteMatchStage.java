@@ -0,0 +1,73 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Matches the track against the active predefined routes. Route geometry comes from the
+ * in-memory route cache, so no transaction is needed on the worker thread. Tracks that
+ * were matched while they were read already carry their result and are not re-scanned.
+ * The match is only recorded with the activity, so it is skipped for ingests that do not
+ * record one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RouteMatchStage implements IngestStage<RouteMatchingService.RouteMatchResult> {
+
+    public static final String NAME = "routeMatch";
+
+    private final RouteMatchingService routeMatchingService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.isRecordActivity();
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return Duration.ofSeconds(30);
+    }
+
+    /**
+     * @return the best match, or null if the track has no GPS data or matches no route
+     */
+    @Override
+    public RouteMatchingService.RouteMatchResult compute(ActivityModel model, StageResults results) {
+        if (model.hasStreamedRouteMatch()) {
+            return model.getRouteMatch();
+        }
+
+        if (model.getSource() == ActivityModel.Source.FIT_FILE) {
+            List<FitTrackPoint> trackPoints = model.getTrackPoints().stream()
+                    .filter(point -> point.getPositionLat() != null && point.getPositionLong() != null)
+                    .toList();
+            if (trackPoints.isEmpty()) {
+                log.info("No track points with GPS data for FIT file {} - skipping route matching",
+                        model.getFitFileUploadId());
+                return null;
+            }
+            return routeMatchingService.matchRoute(trackPoints);
+        }
+
+        if (model.getGpsPoints().isEmpty()) {
+            log.info("No GPS points for run {} - skipping route matching", model.getRunId());
+            return null;
+        }
+        return routeMatchingService.matchRouteFromGpsPoints(model.getGpsPoints());
+    }
+}
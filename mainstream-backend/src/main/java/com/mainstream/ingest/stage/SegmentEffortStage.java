@@ -0,0 +1,58 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.segment.service.SegmentEffortDetector;
+import com.mainstream.segment.service.SegmentEffortService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Efforts on the defined segments, detected against the in-memory segment index and
+ * applied to the segment leaderboards.
+ */
+@Component
+@RequiredArgsConstructor
+public class SegmentEffortStage implements IngestStage<List<SegmentEffortDetector.DetectedEffort>> {
+
+    public static final String NAME = "segment-efforts";
+
+    private final SegmentEffortDetector segmentEffortDetector;
+    private final SegmentEffortService segmentEffortService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        // Efforts are ranked by their absolute start time, so the activity needs one
+        return model.getSize() > 1 && model.getUserId() != null && startTime(model) != null;
+    }
+
+    @Override
+    public List<SegmentEffortDetector.DetectedEffort> compute(ActivityModel model, StageResults results) {
+        return segmentEffortDetector.detect(model.getLatitudes(), model.getLongitudes(),
+                model.getTimeSeconds(), model.getDistanceMeters(), model.getSize());
+    }
+
+    @Override
+    public void persist(ActivityModel model, List<SegmentEffortDetector.DetectedEffort> efforts,
+                        StageResults results) {
+        // Also called without efforts so a re-import drops the ones no longer detected
+        segmentEffortService.recordEfforts(model.getUserId(), model.getFitFileUploadId(), model.getRunId(),
+                startTime(model), model.getTimeSeconds(), efforts);
+    }
+
+    private LocalDateTime startTime(ActivityModel model) {
+        if (model.getFitFileUpload() != null) {
+            return model.getFitFileUpload().getActivityStartTime();
+        }
+        return model.getRun().getStartTime();
+    }
+}
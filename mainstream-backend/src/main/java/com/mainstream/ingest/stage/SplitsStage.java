@@ -0,0 +1,60 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.entity.ActivitySplits;
+import com.mainstream.run.service.SplitCalculator;
+import com.mainstream.run.service.SplitService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-kilometre and per-mile auto splits.
+ */
+@Component
+@RequiredArgsConstructor
+public class SplitsStage implements IngestStage<SplitCalculator> {
+
+    public static final String NAME = "splits";
+
+    private final SplitService splitService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.getSize() > 1;
+    }
+
+    @Override
+    public SplitCalculator compute(ActivityModel model, StageResults results) {
+        SplitCalculator calculator = new SplitCalculator();
+        for (int i = 0; i < model.getSize(); i++) {
+            calculator.accept(
+                    model.getTimeSeconds()[i],
+                    model.getDistanceMeters()[i],
+                    model.getLatitudes()[i],
+                    model.getLongitudes()[i],
+                    model.getAltitudes()[i],
+                    model.getHeartRates()[i],
+                    model.getCadences()[i]);
+        }
+        // Close the open splits here so persisting only packs and writes them
+        calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+        calculator.finish(ActivitySplits.SplitUnit.MILE);
+        return calculator;
+    }
+
+    @Override
+    public void persist(ActivityModel model, SplitCalculator calculator, StageResults results) {
+        if (model.getFitFileUploadId() != null) {
+            splitService.storeForFitFileUpload(model.getFitFileUploadId(), calculator);
+        } else {
+            splitService.storeForRun(model.getRunId(), calculator);
+        }
+    }
+}
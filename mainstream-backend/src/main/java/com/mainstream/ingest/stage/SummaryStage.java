@@ -0,0 +1,150 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.fitfile.repository.FitFileUploadRepository;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import com.mainstream.run.entity.Run;
+import com.mainstream.run.repository.RunRepository;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Totals computed from the samples. Only fills fields the source did not provide
+ * (FIT session messages and provider summaries take precedence).
+ */
+@Component
+@RequiredArgsConstructor
+public class SummaryStage implements IngestStage<SummaryStage.Summary> {
+
+    public static final String NAME = "summary";
+
+    // Ignore altitude noise below this when accumulating gain/loss
+    private static final double ELEVATION_THRESHOLD_METERS = 1.0;
+
+    private final FitFileUploadRepository fitFileUploadRepository;
+    private final RunRepository runRepository;
+
+    @Getter
+    @Builder
+    public static class Summary {
+        private final double distanceMeters;
+        private final int elapsedSeconds;
+        private final double elevationGainMeters;
+        private final double elevationLossMeters;
+        private final Integer avgHeartRate;
+        private final Integer maxHeartRate;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * @return the summary, or null if there are too few samples (trophies still run on the source totals)
+     */
+    @Override
+    public Summary compute(ActivityModel model, StageResults results) {
+        int n = model.getSize();
+        if (n < 2) {
+            return null;
+        }
+        double[] altitudes = model.getAltitudes();
+        int[] heartRates = model.getHeartRates();
+
+        double gain = 0;
+        double loss = 0;
+        double reference = Double.NaN;
+        long heartRateSum = 0;
+        int heartRateCount = 0;
+        int maxHeartRate = 0;
+
+        for (int i = 0; i < n; i++) {
+            double altitude = altitudes[i];
+            if (!Double.isNaN(altitude)) {
+                if (Double.isNaN(reference)) {
+                    reference = altitude;
+                } else if (Math.abs(altitude - reference) >= ELEVATION_THRESHOLD_METERS) {
+                    if (altitude > reference) {
+                        gain += altitude - reference;
+                    } else {
+                        loss += reference - altitude;
+                    }
+                    reference = altitude;
+                }
+            }
+            if (heartRates[i] > 0) {
+                heartRateSum += heartRates[i];
+                heartRateCount++;
+                maxHeartRate = Math.max(maxHeartRate, heartRates[i]);
+            }
+        }
+
+        return Summary.builder()
+                .distanceMeters(model.getDistanceMeters()[n - 1])
+                .elapsedSeconds((int) Math.round(model.getTimeSeconds()[n - 1]))
+                .elevationGainMeters(gain)
+                .elevationLossMeters(loss)
+                .avgHeartRate(heartRateCount > 0 ? (int) Math.round((double) heartRateSum / heartRateCount) : null)
+                .maxHeartRate(heartRateCount > 0 ? maxHeartRate : null)
+                .build();
+    }
+
+    @Override
+    public void persist(ActivityModel model, Summary summary, StageResults results) {
+        if (summary == null) {
+            return;
+        }
+        if (model.getFitFileUpload() != null) {
+            FitFileUpload upload = model.getFitFileUpload();
+            if (upload.getTotalDistance() == null && summary.getDistanceMeters() > 0) {
+                upload.setTotalDistance(scale(summary.getDistanceMeters()));
+            }
+            if (upload.getTotalElapsedTime() == null) {
+                upload.setTotalElapsedTime(summary.getElapsedSeconds());
+            }
+            if (upload.getTotalTimerTime() == null) {
+                upload.setTotalTimerTime(summary.getElapsedSeconds());
+            }
+            if (upload.getTotalAscent() == null) {
+                upload.setTotalAscent(scale(summary.getElevationGainMeters()));
+            }
+            if (upload.getTotalDescent() == null) {
+                upload.setTotalDescent(scale(summary.getElevationLossMeters()));
+            }
+            if (upload.getAvgHeartRate() == null) {
+                upload.setAvgHeartRate(summary.getAvgHeartRate());
+            }
+            if (upload.getMaxHeartRate() == null) {
+                upload.setMaxHeartRate(summary.getMaxHeartRate());
+            }
+            fitFileUploadRepository.save(upload);
+        } else if (model.getRun() != null) {
+            Run run = model.getRun();
+            if (run.getDistanceMeters() == null && summary.getDistanceMeters() > 0) {
+                run.setDistanceMeters(scale(summary.getDistanceMeters()));
+            }
+            if (run.getDurationSeconds() == null) {
+                run.setDurationSeconds(summary.getElapsedSeconds());
+            }
+            if (run.getElevationGainMeters() == null) {
+                run.setElevationGainMeters(scale(summary.getElevationGainMeters()));
+            }
+            if (run.getElevationLossMeters() == null) {
+                run.setElevationLossMeters(scale(summary.getElevationLossMeters()));
+            }
+            runRepository.save(run);
+        }
+    }
+
+    private static BigDecimal scale(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
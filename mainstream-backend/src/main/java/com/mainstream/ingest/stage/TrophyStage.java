@@ -0,0 +1,64 @@
+package com.mainstream.ingest.stage;
+
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.activity.service.UserActivityService;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestStage;
+import com.mainstream.ingest.pipeline.StageResults;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Records the user activity with the route match and awards trophies. Everything
+ * happens on persist since it writes, and it runs after the summary so trophies see
+ * the filled-in totals. The route match is a soft dependency: if matching fails or times
+ * out, the activity is still recorded (without a route) and trophies are still checked.
+ * Only runs for ingests that record activities (see {@link ActivityModel.Builder#recordActivity}).
+ */
+@Component
+@RequiredArgsConstructor
+public class TrophyStage implements IngestStage<Boolean> {
+
+    public static final String NAME = "trophies";
+
+    private final UserActivityService userActivityService;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+        return Set.of(SummaryStage.NAME);
+    }
+
+    @Override
+    public Set<String> getSoftDependencies() {
+        return Set.of(RouteMatchStage.NAME);
+    }
+
+    @Override
+    public boolean supports(ActivityModel model) {
+        return model.isRecordActivity() && model.getUser() != null;
+    }
+
+    @Override
+    public Boolean compute(ActivityModel model, StageResults results) {
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public void persist(ActivityModel model, Boolean ignored, StageResults results) {
+        RouteMatchingService.RouteMatchResult matchResult =
+                results.get(RouteMatchStage.NAME, RouteMatchingService.RouteMatchResult.class).orElse(null);
+
+        if (model.getFitFileUpload() != null) {
+            userActivityService.recordActivity(model.getUser(), model.getFitFileUpload(), matchResult);
+        } else {
+            userActivityService.recordActivityFromRun(model.getUser(), model.getRun(), matchResult);
+        }
+    }
+}
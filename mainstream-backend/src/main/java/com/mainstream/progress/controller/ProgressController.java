@@ -0,0 +1,31 @@
+package com.mainstream.progress.controller;
+
+import com.mainstream.progress.service.ProgressEventHub;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/progress")
+@RequiredArgsConstructor
+@Slf4j
+public class ProgressController {
+
+    private final ProgressEventHub progressEventHub;
+
+    /**
+     * Server-Sent Events stream of upload and sync progress for the current user.
+     * Pass the progressId sent with the upload/sync request as jobId to follow a single
+     * job; without it every job of the user is streamed.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "jobId", required = false) String jobId) {
+
+        log.debug("Opening progress stream for user {} (job: {})", userId, jobId);
+        return progressEventHub.subscribe(userId, jobId);
+    }
+}
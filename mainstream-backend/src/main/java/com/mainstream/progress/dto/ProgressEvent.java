@@ -0,0 +1,66 @@
+package com.mainstream.progress.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of an ingest job's progress as pushed over SSE.
+ * Counters are cumulative, so a client that misses intermediate events
+ * (slow consumer, late subscription) still sees the correct totals.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProgressEvent {
+
+    private String jobId;
+    private JobType jobType;
+    private Stage stage;
+    private String message;
+
+    // Counters
+    private Long decodedMessages;
+    private Long persistedRows;
+    private Integer processedActivities;
+    private Integer totalActivities;
+    private Integer awardedTrophies;
+
+    // Route matching
+    private Long matchedRouteId;
+    private String matchedRouteName;
+
+    private LocalDateTime timestamp;
+
+    public boolean isTerminal() {
+        return stage == Stage.COMPLETED || stage == Stage.FAILED;
+    }
+
+    public enum JobType {
+        FIT_UPLOAD,
+        STRAVA_SYNC,
+        STRAVA_BACKFILL,
+        GARMIN_SYNC,
+        GARMIN_BACKFILL
+    }
+
+    public enum Stage {
+        STARTED,
+        FETCHING,
+        DECODING,
+        DECODED,
+        PERSISTING,
+        PERSISTED,
+        DERIVING,
+        DERIVED,
+        ROUTE_MATCHING,
+        ROUTE_MATCHED,
+        TROPHIES_CHECKED,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,196 @@
+package com.mainstream.progress.service;
+
+import com.mainstream.progress.dto.ProgressEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory fan-out of progress events to SSE subscribers.
+ *
+ * Publishing never blocks the ingest thread: each subscriber owns a bounded buffer,
+ * drained into its emitter by its own virtual thread while events are pending, so a slow
+ * client only holds up its own stream. When a subscriber falls behind, its oldest buffered
+ * event is dropped; since events carry cumulative counters the client only loses
+ * intermediate snapshots.
+ */
+@Slf4j
+@Component
+public class ProgressEventHub {
+
+    private final Map<Long, List<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+    // Latest snapshot per running job, replayed to clients that subscribe mid-job
+    private final Map<Long, Map<String, ProgressEvent>> activeJobsByUser = new ConcurrentHashMap<>();
+    // At most one drain per subscriber runs at a time (see Subscriber.enqueue)
+    private final ExecutorService dispatcher = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("progress-dispatcher-", 0).factory());
+
+    @Value("${mainstream.progress.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${mainstream.progress.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    /**
+     * Open a new SSE stream for a user. If jobId is given, only events of that job are delivered.
+     */
+    public SseEmitter subscribe(Long userId, String jobId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(userId, jobId, emitter, bufferSize);
+
+        subscribersByUser.computeIfAbsent(userId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        log.debug("Progress subscriber added for user {} (job filter: {})", userId, jobId);
+
+        Map<String, ProgressEvent> running = activeJobsByUser.get(userId);
+        if (running != null) {
+            running.values().forEach(event -> offer(subscriber, event));
+        }
+        return emitter;
+    }
+
+    public void publish(Long userId, ProgressEvent event) {
+        if (event.isTerminal()) {
+            Map<String, ProgressEvent> running = activeJobsByUser.get(userId);
+            if (running != null) {
+                running.remove(event.getJobId());
+                if (running.isEmpty()) {
+                    activeJobsByUser.remove(userId, running);
+                }
+            }
+        } else {
+            activeJobsByUser.computeIfAbsent(userId, id -> new ConcurrentHashMap<>()).put(event.getJobId(), event);
+        }
+
+        List<Subscriber> subscribers = subscribersByUser.get(userId);
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            offer(subscriber, event);
+        }
+    }
+
+    public boolean hasSubscribers(Long userId) {
+        List<Subscriber> subscribers = subscribersByUser.get(userId);
+        return subscribers != null && !subscribers.isEmpty();
+    }
+
+    /**
+     * Keeps idle connections open through proxies and detects dead clients.
+     */
+    @Scheduled(fixedRate = 20000)
+    public void sendHeartbeats() {
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> {
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                remove(subscriber);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(s -> s.emitter.complete()));
+        subscribersByUser.clear();
+        dispatcher.shutdownNow();
+    }
+
+    private void offer(Subscriber subscriber, ProgressEvent event) {
+        if (event.getJobId() != null && subscriber.jobId != null && !subscriber.jobId.equals(event.getJobId())) {
+            return;
+        }
+        if (subscriber.enqueue(event)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        ProgressEvent event;
+        while ((event = subscriber.next()) != null) {
+            try {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name("progress")
+                        .id(event.getJobId())
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Progress subscriber for user {} disconnected: {}", subscriber.userId, e.getMessage());
+                remove(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        List<Subscriber> subscribers = subscribersByUser.get(subscriber.userId);
+        if (subscribers != null) {
+            subscribers.remove(subscriber);
+            if (subscribers.isEmpty()) {
+                subscribersByUser.remove(subscriber.userId, subscribers);
+            }
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final Long userId;
+        private final String jobId;
+        private final SseEmitter emitter;
+        private final int capacity;
+        private final ArrayDeque<ProgressEvent> buffer;
+        private boolean draining;
+        private long dropped;
+
+        private Subscriber(Long userId, String jobId, SseEmitter emitter, int capacity) {
+            this.userId = userId;
+            this.jobId = jobId;
+            this.emitter = emitter;
+            this.capacity = Math.max(1, capacity);
+            this.buffer = new ArrayDeque<>(this.capacity);
+        }
+
+        /**
+         * @return true if the caller must schedule a drain
+         */
+        private synchronized boolean enqueue(ProgressEvent event) {
+            if (buffer.size() >= capacity) {
+                buffer.pollFirst();
+                dropped++;
+                if (dropped % 100 == 1) {
+                    log.debug("Progress buffer full for user {}, dropped {} events so far", userId, dropped);
+                }
+            }
+            buffer.addLast(event);
+            if (draining) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        private synchronized ProgressEvent next() {
+            ProgressEvent event = buffer.pollFirst();
+            if (event == null) {
+                draining = false;
+            }
+            return event;
+        }
+    }
+}
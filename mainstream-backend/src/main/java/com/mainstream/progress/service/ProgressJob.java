@@ -0,0 +1,147 @@
+package com.mainstream.progress.service;
+
+import com.mainstream.progress.dto.ProgressEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Handle for one running ingest job. Every mutation publishes a fresh snapshot.
+ * Obtained from {@link ProgressTracker#start}; closing it unbinds it from the
+ * current thread and completes the job if nobody did so explicitly.
+ */
+public class ProgressJob implements AutoCloseable {
+
+    private final ProgressTracker tracker;
+    private final ProgressEventHub hub;
+    private final Long userId;
+    private final String jobId;
+    private final ProgressEvent.JobType jobType;
+
+    private ProgressEvent.Stage stage = ProgressEvent.Stage.STARTED;
+    private String message;
+    private long decodedMessages;
+    private long persistedRows;
+    private int processedActivities;
+    private Integer totalActivities;
+    private int awardedTrophies;
+    private Long matchedRouteId;
+    private String matchedRouteName;
+    private boolean finished;
+    private int depth = 1;
+
+    ProgressJob(ProgressTracker tracker, ProgressEventHub hub, Long userId, String jobId,
+                ProgressEvent.JobType jobType) {
+        this.tracker = tracker;
+        this.hub = hub;
+        this.userId = userId;
+        this.jobId = jobId;
+        this.jobType = jobType;
+    }
+
+    /**
+     * Nested start() calls on the same thread (e.g. backfill-all delegating to the
+     * single-run backfill) reuse the running job; only the outermost close() ends it.
+     */
+    synchronized ProgressJob enter() {
+        depth++;
+        return this;
+    }
+
+    synchronized boolean isNested() {
+        return depth > 1;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public synchronized ProgressJob stage(ProgressEvent.Stage stage, String message) {
+        this.stage = stage;
+        this.message = message;
+        publish();
+        return this;
+    }
+
+    public synchronized void addDecodedMessages(long count) {
+        decodedMessages += count;
+        publish();
+    }
+
+    public synchronized void addPersistedRows(long count) {
+        persistedRows += count;
+        publish();
+    }
+
+    public synchronized void setTotalActivities(int total) {
+        totalActivities = total;
+        publish();
+    }
+
+    public synchronized void activityProcessed() {
+        processedActivities++;
+        publish();
+    }
+
+    public synchronized void routeMatched(Long routeId, String routeName) {
+        stage = ProgressEvent.Stage.ROUTE_MATCHED;
+        matchedRouteId = routeId;
+        matchedRouteName = routeName;
+        message = "Matched route " + routeName;
+        publish();
+    }
+
+    public synchronized void trophiesAwarded(int count) {
+        stage = ProgressEvent.Stage.TROPHIES_CHECKED;
+        awardedTrophies += count;
+        message = count + " trophies awarded";
+        publish();
+    }
+
+    public synchronized void complete(String message) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        this.stage = ProgressEvent.Stage.COMPLETED;
+        this.message = message;
+        publish();
+    }
+
+    public synchronized void fail(String message) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        this.stage = ProgressEvent.Stage.FAILED;
+        this.message = message;
+        publish();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (--depth > 0) {
+                return;
+            }
+        }
+        complete(message);
+        tracker.unbind(this);
+    }
+
+    private void publish() {
+        hub.publish(userId, ProgressEvent.builder()
+                .jobId(jobId)
+                .jobType(jobType)
+                .stage(stage)
+                .message(message)
+                .decodedMessages(decodedMessages)
+                .persistedRows(persistedRows)
+                .processedActivities(processedActivities)
+                .totalActivities(totalActivities)
+                .awardedTrophies(awardedTrophies)
+                .matchedRouteId(matchedRouteId)
+                .matchedRouteName(matchedRouteName)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+}
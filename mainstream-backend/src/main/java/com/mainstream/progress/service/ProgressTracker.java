@@ -0,0 +1,77 @@
+package com.mainstream.progress.service;
+
+import com.mainstream.progress.dto.ProgressEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Starts progress jobs and binds them to the ingesting thread, so that shared
+ * services further down (route matching, trophies) can report into whichever
+ * upload or sync job is currently running without extra parameters.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProgressTracker {
+
+    private static final ThreadLocal<ProgressJob> CURRENT_JOB = new ThreadLocal<>();
+
+    private final ProgressEventHub progressEventHub;
+
+    /**
+     * Start a job, or join the job already running on this thread.
+     *
+     * @param requestedJobId client-supplied id (so it can subscribe before starting the request), may be null
+     */
+    public ProgressJob start(Long userId, ProgressEvent.JobType jobType, String requestedJobId) {
+        ProgressJob running = CURRENT_JOB.get();
+        if (running != null) {
+            return running.enter();
+        }
+
+        String jobId = requestedJobId != null && !requestedJobId.isBlank()
+                ? requestedJobId
+                : UUID.randomUUID().toString();
+        ProgressJob job = new ProgressJob(this, progressEventHub, userId, jobId, jobType);
+        CURRENT_JOB.set(job);
+        log.debug("Started {} progress job {} for user {}", jobType, jobId, userId);
+        job.stage(ProgressEvent.Stage.STARTED, null);
+        return job;
+    }
+
+    /**
+     * Run work inside a job: the job is completed when work returns and marked failed
+     * if it throws (unless it is nested in an outer job, which decides for itself).
+     */
+    public <T> T track(Long userId, ProgressEvent.JobType jobType, String requestedJobId,
+                       Function<ProgressJob, T> work) {
+        try (ProgressJob job = start(userId, jobType, requestedJobId)) {
+            try {
+                return work.apply(job);
+            } catch (RuntimeException e) {
+                if (!job.isNested()) {
+                    job.fail(e.getMessage());
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The job bound to the current thread, if any.
+     */
+    public Optional<ProgressJob> current() {
+        return Optional.ofNullable(CURRENT_JOB.get());
+    }
+
+    void unbind(ProgressJob job) {
+        if (CURRENT_JOB.get() == job) {
+            CURRENT_JOB.remove();
+        }
+    }
+}
@@ -7,12 +7,20 @@ import com.mainstream.fitfile.dto.LapDto;
 import com.mainstream.fitfile.entity.FitFileUpload;
 import com.mainstream.fitfile.repository.FitFileUploadRepository;
 import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.run.dto.ActivityHrvDto;
+import com.mainstream.run.dto.ActivityMetricsDto;
+import com.mainstream.run.dto.ChartSeriesDto;
 import com.mainstream.run.dto.RunDto;
 import com.mainstream.run.dto.RunStatsDto;
+import com.mainstream.run.dto.SimilarActivityDto;
+import com.mainstream.run.dto.SplitDto;
+import com.mainstream.run.entity.ActivitySplits;
 import com.mainstream.run.entity.Run;
 import com.mainstream.run.repository.GpsPointRepository;
 import com.mainstream.run.repository.RunRepository;
+import com.mainstream.run.service.ChartSeriesService;
 import com.mainstream.run.service.RunService;
+import com.mainstream.run.service.TrackFingerprintService;
 import com.mainstream.user.entity.User;
 import com.mainstream.user.repository.UserRepository;
 import jakarta.validation.Valid;
@@ -206,6 +214,144 @@ public class RunController {
         return ResponseEntity.ok(laps);
     }
 
+    /**
+     * Get auto splits for a run. unit is "km" (default) or "mi".
+     */
+    @GetMapping("/{runId}/splits")
+    public ResponseEntity<List<SplitDto>> getRunSplits(
+            @PathVariable Long runId,
+            @RequestParam(defaultValue = "km") String unit,
+            @RequestHeader("X-User-Id") Long userId) {
+
+        log.info("Fetching {} splits for run {} and user: {}", unit, runId, userId);
+
+        ActivitySplits.SplitUnit splitUnit;
+        switch (unit.toLowerCase()) {
+            case "km", "kilometer" -> splitUnit = ActivitySplits.SplitUnit.KILOMETER;
+            case "mi", "mile" -> splitUnit = ActivitySplits.SplitUnit.MILE;
+            default -> {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        return runService.getRunSplits(runId, userId, splitUnit)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get a chart series for a run, downsampled with Largest-Triangle-Three-Buckets so
+     * peaks survive. channel is pace, speed, hr, elevation or cadence; x is distance
+     * (default) or time; points is the target resolution (10-5000, default 500).
+     */
+    @GetMapping("/{runId}/series")
+    public ResponseEntity<ChartSeriesDto> getRunSeries(
+            @PathVariable Long runId,
+            @RequestParam String channel,
+            @RequestParam(defaultValue = "distance") String x,
+            @RequestParam(defaultValue = "500") int points,
+            @RequestHeader("X-User-Id") Long userId) {
+
+        log.info("Fetching {} series for run {} and user: {}", channel, runId, userId);
+
+        ChartSeriesService.SeriesChannel seriesChannel;
+        switch (channel.toLowerCase()) {
+            case "pace" -> seriesChannel = ChartSeriesService.SeriesChannel.PACE;
+            case "speed" -> seriesChannel = ChartSeriesService.SeriesChannel.SPEED;
+            case "hr", "heartrate", "heart_rate" -> seriesChannel = ChartSeriesService.SeriesChannel.HEART_RATE;
+            case "elevation", "altitude" -> seriesChannel = ChartSeriesService.SeriesChannel.ELEVATION;
+            case "cadence" -> seriesChannel = ChartSeriesService.SeriesChannel.CADENCE;
+            default -> {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        ChartSeriesService.XAxis xAxis;
+        switch (x.toLowerCase()) {
+            case "distance" -> xAxis = ChartSeriesService.XAxis.DISTANCE;
+            case "time" -> xAxis = ChartSeriesService.XAxis.TIME;
+            default -> {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        if (points < 10 || points > 5000) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return runService.getRunSeries(runId, userId, seriesChannel, xAxis, points)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get the metrics derived at ingest for a run: the simplified track as an encoded
+     * polyline and the time spent in each heart rate zone.
+     */
+    @GetMapping("/{runId}/metrics")
+    public ResponseEntity<ActivityMetricsDto> getRunMetrics(
+            @PathVariable Long runId,
+            @RequestHeader("X-User-Id") Long userId) {
+
+        log.info("Fetching metrics for run {} and user: {}", runId, userId);
+
+        return runService.getRunMetrics(runId, userId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get heart rate variability (mean R-R, SDNN, RMSSD, pNN50) for a run. With
+     * intervals=true the raw R-R intervals and the indices rejected as artefacts are
+     * included as well.
+     */
+    @GetMapping("/{runId}/hrv")
+    public ResponseEntity<ActivityHrvDto> getRunHrv(
+            @PathVariable Long runId,
+            @RequestParam(defaultValue = "false") boolean intervals,
+            @RequestHeader("X-User-Id") Long userId) {
+
+        log.info("Fetching HRV for run {} and user: {}", runId, userId);
+
+        return runService.getRunHrv(runId, userId, intervals)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Find runs with a similar course. scope is mine (default: the user's own activities)
+     * or public (public runs of all users); similarity is the share of ~150 m map cells
+     * both tracks pass through, and only matches from minSimilarity (0-1, default 0.5) on
+     * are returned, most similar first.
+     */
+    @GetMapping("/{runId}/similar")
+    public ResponseEntity<List<SimilarActivityDto>> getSimilarRuns(
+            @PathVariable Long runId,
+            @RequestParam(defaultValue = "mine") String scope,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0.5") double minSimilarity,
+            @RequestHeader("X-User-Id") Long userId) {
+
+        log.info("Fetching {} similar runs for run {} and user: {}", scope, runId, userId);
+
+        TrackFingerprintService.SimilarScope similarScope;
+        switch (scope.toLowerCase()) {
+            case "mine" -> similarScope = TrackFingerprintService.SimilarScope.MINE;
+            case "public" -> similarScope = TrackFingerprintService.SimilarScope.PUBLIC;
+            default -> {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        if (limit < 1 || limit > TrackFingerprintService.MAX_LIMIT || minSimilarity < 0.0 || minSimilarity > 1.0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return runService.getSimilarRuns(runId, userId, similarScope, limit, minSimilarity)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Match a run against predefined routes and create a user activity if matched.
      * Supports both manual runs and FIT file uploads.
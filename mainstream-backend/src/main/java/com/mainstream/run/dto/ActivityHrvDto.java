@@ -0,0 +1,27 @@
+package com.mainstream.run.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityHrvDto {
+
+    private int intervalCount;
+    private int artefactCount;
+
+    // Over the accepted (NN) intervals, in milliseconds
+    private Double meanRrMs;
+    private Integer meanHeartRate;
+    private Double sdnnMs;
+    private Double rmssdMs;
+    private Double pnn50;
+
+    // Only filled when the raw intervals are requested
+    private int[] rrIntervalsMs;
+    private int[] artefactIndices;
+}
@@ -0,0 +1,24 @@
+package com.mainstream.run.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityMetricsDto {
+
+    // Simplified track
+    private String encodedPolyline;
+    private Integer polylinePointCount;
+    private Integer sourcePointCount;
+
+    // Heart rate zones
+    private Integer maxHeartRateUsed;
+    private List<Integer> hrZoneSeconds; // zone 1..5
+}
@@ -0,0 +1,23 @@
+package com.mainstream.run.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChartSeriesDto {
+
+    private String channel;    // PACE, SPEED, HEART_RATE, ELEVATION or CADENCE
+    private String axis;       // x axis: DISTANCE (meters) or TIME (seconds)
+    private String unit;       // unit of the y values, e.g. "s/km", "bpm"
+    private Integer resolution;
+    private Integer sourcePoints;
+
+    // Parallel arrays of the downsampled points
+    private double[] x;
+    private double[] y;
+}
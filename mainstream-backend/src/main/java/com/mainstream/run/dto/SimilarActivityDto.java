@@ -0,0 +1,27 @@
+package com.mainstream.run.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarActivityDto {
+
+    // Exactly one of these is set
+    private Long fitFileUploadId;
+    private Long runId;
+
+    private Long userId;
+    private LocalDateTime activityStartTime;
+
+    // Jaccard similarity of the geohash cells both tracks pass through (0..1)
+    private Double similarity;
+    // Estimate from the MinHash signatures, which selected the activity for verification
+    private Double estimatedSimilarity;
+}
@@ -0,0 +1,33 @@
+package com.mainstream.run.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SplitDto {
+
+    private Integer splitNumber;
+    private String unit; // KILOMETER or MILE
+    private Boolean partial;
+
+    // Distance / time
+    private Double distanceMeters;
+    private Double durationSeconds;
+
+    // Pace (per split unit, e.g. min/km or min/mi)
+    private Double paceSecondsPerUnit;
+    private String formattedPace;
+
+    // Heart Rate / Running Dynamics
+    private Integer avgHeartRate;
+    private Integer avgCadence;
+
+    // Elevation
+    private Double elevationGainMeters;
+    private Double elevationLossMeters;
+}
@@ -0,0 +1,50 @@
+package com.mainstream.run.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Full-resolution chart channels (time, distance, speed, elevation, heart rate, cadence)
+ * of one activity, packed into a single blob (see ActivityChannelCodec).
+ * Exactly one of fitFileUploadId / runId is set.
+ */
+@Entity
+@Table(name = "activity_channels", indexes = {
+    @Index(name = "idx_activity_channels_fit_file", columnList = "fit_file_upload_id"),
+    @Index(name = "idx_activity_channels_run", columnList = "run_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ActivityChannels {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fit_file_upload_id")
+    private Long fitFileUploadId;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Lob
+    @Column(name = "data", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
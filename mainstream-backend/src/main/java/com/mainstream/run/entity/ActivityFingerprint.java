@@ -0,0 +1,72 @@
+package com.mainstream.run.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fingerprint of an activity's track for similar-run search: the geohash cells the track
+ * passes through and their MinHash signature (see TrackFingerprintService).
+ * Exactly one of fitFileUploadId / runId is set.
+ */
+@Entity
+@Table(name = "activity_fingerprints", indexes = {
+    @Index(name = "idx_activity_fingerprints_fit_file", columnList = "fit_file_upload_id"),
+    @Index(name = "idx_activity_fingerprints_run", columnList = "run_id"),
+    @Index(name = "idx_activity_fingerprints_user", columnList = "user_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ActivityFingerprint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fit_file_upload_id")
+    private Long fitFileUploadId;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Whether the activity may show up in other users' searches
+    @Column(name = "is_public", nullable = false)
+    private Boolean isPublic;
+
+    @Column(name = "activity_start_time")
+    private LocalDateTime activityStartTime;
+
+    @Column(name = "cell_count", nullable = false)
+    private Integer cellCount;
+
+    // Sorted distinct geohash cells, packed as big-endian longs
+    @Lob
+    @Column(name = "cells", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] cells;
+
+    // MinHash signature, packed as big-endian ints
+    @Lob
+    @Column(name = "signature", nullable = false, columnDefinition = "BLOB")
+    private byte[] signature;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
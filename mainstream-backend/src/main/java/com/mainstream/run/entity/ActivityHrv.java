@@ -0,0 +1,61 @@
+package com.mainstream.run.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * R-R intervals of one FIT upload, packed into a single blob of unsigned shorts
+ * (see HrvAnalyzer), together with the HRV statistics computed while capturing them.
+ */
+@Entity
+@Table(name = "activity_hrv", indexes = {
+    @Index(name = "idx_activity_hrv_fit_file", columnList = "fit_file_upload_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ActivityHrv {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fit_file_upload_id", nullable = false)
+    private Long fitFileUploadId;
+
+    @Column(name = "interval_count", nullable = false)
+    private Integer intervalCount;
+
+    @Column(name = "artefact_count", nullable = false)
+    private Integer artefactCount;
+
+    // Statistics over the accepted intervals, in milliseconds (null if not enough beats)
+    @Column(name = "mean_rr_ms")
+    private Double meanRrMs;
+
+    @Column(name = "sdnn_ms")
+    private Double sdnnMs;
+
+    @Column(name = "rmssd_ms")
+    private Double rmssdMs;
+
+    @Column(name = "pnn50")
+    private Double pnn50;
+
+    @Lob
+    @Column(name = "data", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
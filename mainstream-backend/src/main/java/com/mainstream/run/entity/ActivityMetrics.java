@@ -0,0 +1,91 @@
+package com.mainstream.run.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Metrics derived from the track at ingest (simplified polyline, heart rate zones),
+ * so the run views never have to reload the raw track points.
+ * Exactly one of fitFileUploadId / runId is set.
+ */
+@Entity
+@Table(name = "activity_metrics", indexes = {
+    @Index(name = "idx_activity_metrics_fit_file", columnList = "fit_file_upload_id"),
+    @Index(name = "idx_activity_metrics_run", columnList = "run_id"),
+    @Index(name = "idx_activity_metrics_bounds", columnList = "min_latitude,max_latitude")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ActivityMetrics {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fit_file_upload_id")
+    private Long fitFileUploadId;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    // Encoded polyline (precision 1e5) of the Douglas-Peucker simplified track
+    @Column(name = "encoded_polyline", columnDefinition = "TEXT")
+    private String encodedPolyline;
+
+    @Column(name = "polyline_point_count")
+    private Integer polylinePointCount;
+
+    @Column(name = "source_point_count")
+    private Integer sourcePointCount;
+
+    // Bounding box of the track, for finding activities near a route
+    @Column(name = "min_latitude")
+    private Double minLatitude;
+
+    @Column(name = "max_latitude")
+    private Double maxLatitude;
+
+    @Column(name = "min_longitude")
+    private Double minLongitude;
+
+    @Column(name = "max_longitude")
+    private Double maxLongitude;
+
+    // Heart rate zones (50/60/70/80/90 % of max heart rate)
+    @Column(name = "max_heart_rate_used")
+    private Integer maxHeartRateUsed;
+
+    @Column(name = "hr_zone1_seconds")
+    private Integer hrZone1Seconds;
+
+    @Column(name = "hr_zone2_seconds")
+    private Integer hrZone2Seconds;
+
+    @Column(name = "hr_zone3_seconds")
+    private Integer hrZone3Seconds;
+
+    @Column(name = "hr_zone4_seconds")
+    private Integer hrZone4Seconds;
+
+    @Column(name = "hr_zone5_seconds")
+    private Integer hrZone5Seconds;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
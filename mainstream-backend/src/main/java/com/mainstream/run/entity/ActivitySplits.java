@@ -0,0 +1,59 @@
+package com.mainstream.run.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Precomputed auto splits for one activity and one unit system.
+ * Exactly one of fitFileUploadId / runId is set. The individual splits are stored
+ * packed in {@link #data} (see SplitCalculator#pack) so reading them never touches
+ * the raw track points.
+ */
+@Entity
+@Table(name = "activity_splits", indexes = {
+    @Index(name = "idx_activity_splits_fit_file", columnList = "fit_file_upload_id, split_unit"),
+    @Index(name = "idx_activity_splits_run", columnList = "run_id, split_unit")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ActivitySplits {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fit_file_upload_id")
+    private Long fitFileUploadId;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "split_unit", nullable = false, length = 10)
+    private SplitUnit unit;
+
+    @Column(name = "split_count", nullable = false)
+    private Integer splitCount;
+
+    @Lob
+    @Column(name = "data", nullable = false, columnDefinition = "BLOB")
+    private byte[] data;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum SplitUnit {
+        KILOMETER, MILE
+    }
+}
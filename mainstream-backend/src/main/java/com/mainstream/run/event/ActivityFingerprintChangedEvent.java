@@ -0,0 +1,17 @@
+package com.mainstream.run.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when an activity fingerprint is stored, replaced or deleted, so the in-memory
+ * fingerprint index can be updated once the change is committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ActivityFingerprintChangedEvent {
+
+    private final Long fingerprintId;
+}
@@ -0,0 +1,26 @@
+package com.mainstream.run.repository;
+
+import com.mainstream.run.entity.ActivityChannels;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ActivityChannelsRepository extends JpaRepository<ActivityChannels, Long> {
+
+    Optional<ActivityChannels> findByFitFileUploadId(Long fitFileUploadId);
+
+    Optional<ActivityChannels> findByRunId(Long runId);
+
+    @Modifying
+    @Query("DELETE FROM ActivityChannels c WHERE c.fitFileUploadId = :fitFileUploadId")
+    void deleteByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
+    @Modifying
+    @Query("DELETE FROM ActivityChannels c WHERE c.runId = :runId")
+    void deleteByRunId(@Param("runId") Long runId);
+}
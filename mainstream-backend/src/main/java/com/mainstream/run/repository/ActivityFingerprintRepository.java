@@ -0,0 +1,33 @@
+package com.mainstream.run.repository;
+
+import com.mainstream.run.entity.ActivityFingerprint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ActivityFingerprintRepository extends JpaRepository<ActivityFingerprint, Long> {
+
+    Optional<ActivityFingerprint> findByFitFileUploadId(Long fitFileUploadId);
+
+    Optional<ActivityFingerprint> findByRunId(Long runId);
+
+    /**
+     * Fingerprints after the given id, in id order (keyset pagination).
+     */
+    List<ActivityFingerprint> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM ActivityFingerprint f WHERE f.fitFileUploadId = :fitFileUploadId")
+    void deleteByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
+    @Modifying
+    @Query("DELETE FROM ActivityFingerprint f WHERE f.runId = :runId")
+    void deleteByRunId(@Param("runId") Long runId);
+}
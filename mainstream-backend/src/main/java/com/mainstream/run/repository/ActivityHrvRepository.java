@@ -0,0 +1,20 @@
+package com.mainstream.run.repository;
+
+import com.mainstream.run.entity.ActivityHrv;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ActivityHrvRepository extends JpaRepository<ActivityHrv, Long> {
+
+    Optional<ActivityHrv> findByFitFileUploadId(Long fitFileUploadId);
+
+    @Modifying
+    @Query("DELETE FROM ActivityHrv h WHERE h.fitFileUploadId = :fitFileUploadId")
+    void deleteByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+}
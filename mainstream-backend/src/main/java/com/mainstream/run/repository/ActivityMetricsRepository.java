@@ -0,0 +1,53 @@
+package com.mainstream.run.repository;
+
+import com.mainstream.run.entity.ActivityMetrics;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ActivityMetricsRepository extends JpaRepository<ActivityMetrics, Long> {
+
+    Optional<ActivityMetrics> findByFitFileUploadId(Long fitFileUploadId);
+
+    Optional<ActivityMetrics> findByRunId(Long runId);
+
+    /**
+     * Metrics after the given id whose track bounding box intersects the given box,
+     * in id order (keyset pagination).
+     */
+    @Query("SELECT m FROM ActivityMetrics m WHERE m.id > :afterId " +
+           "AND m.minLatitude <= :maxLatitude AND m.maxLatitude >= :minLatitude " +
+           "AND m.minLongitude <= :maxLongitude AND m.maxLongitude >= :minLongitude " +
+           "ORDER BY m.id")
+    List<ActivityMetrics> findIntersecting(@Param("minLatitude") double minLatitude,
+                                           @Param("maxLatitude") double maxLatitude,
+                                           @Param("minLongitude") double minLongitude,
+                                           @Param("maxLongitude") double maxLongitude,
+                                           @Param("afterId") long afterId,
+                                           Pageable pageable);
+
+    @Query("SELECT m FROM ActivityMetrics m WHERE m.minLatitude IS NULL AND m.encodedPolyline IS NOT NULL " +
+           "AND m.id > :afterId ORDER BY m.id")
+    List<ActivityMetrics> findWithoutBounds(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT m FROM ActivityMetrics m WHERE m.encodedPolyline IS NOT NULL AND m.id > :afterId " +
+           "AND NOT EXISTS (SELECT f.id FROM ActivityFingerprint f " +
+           "WHERE f.fitFileUploadId = m.fitFileUploadId OR f.runId = m.runId) " +
+           "ORDER BY m.id")
+    List<ActivityMetrics> findWithoutFingerprint(@Param("afterId") long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM ActivityMetrics m WHERE m.fitFileUploadId = :fitFileUploadId")
+    void deleteByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
+    @Modifying
+    @Query("DELETE FROM ActivityMetrics m WHERE m.runId = :runId")
+    void deleteByRunId(@Param("runId") Long runId);
+}
@@ -0,0 +1,26 @@
+package com.mainstream.run.repository;
+
+import com.mainstream.run.entity.ActivitySplits;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ActivitySplitsRepository extends JpaRepository<ActivitySplits, Long> {
+
+    Optional<ActivitySplits> findByFitFileUploadIdAndUnit(Long fitFileUploadId, ActivitySplits.SplitUnit unit);
+
+    Optional<ActivitySplits> findByRunIdAndUnit(Long runId, ActivitySplits.SplitUnit unit);
+
+    @Modifying
+    @Query("DELETE FROM ActivitySplits s WHERE s.fitFileUploadId = :fitFileUploadId")
+    void deleteByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
+    @Modifying
+    @Query("DELETE FROM ActivitySplits s WHERE s.runId = :runId")
+    void deleteByRunId(@Param("runId") Long runId);
+}
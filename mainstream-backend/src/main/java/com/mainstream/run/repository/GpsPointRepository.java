@@ -22,6 +22,13 @@ public interface GpsPointRepository extends JpaRepository<GpsPoint, Long> {
     @Query("SELECT g FROM GpsPoint g WHERE g.run.id = :runId AND g.latitude IS NOT NULL AND g.longitude IS NOT NULL ORDER BY g.sequenceNumber ASC")
     List<GpsPoint> findByRunIdWithValidCoordinates(@Param("runId") Long runId);
 
+    /**
+     * Latitude, longitude and altitude (null if missing) of the points with valid
+     * coordinates, without loading the GPS point entities
+     */
+    @Query("SELECT g.latitude, g.longitude, g.altitude FROM GpsPoint g WHERE g.run.id = :runId AND g.latitude IS NOT NULL AND g.longitude IS NOT NULL ORDER BY g.sequenceNumber ASC")
+    List<Object[]> findPositionsByRunId(@Param("runId") Long runId);
+
     /**
      * Count GPS points for a run
      */
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,6 +49,20 @@ public interface RunRepository extends JpaRepository<Run, Long> {
     @Query("SELECT r FROM Run r WHERE r.isPublic = true ORDER BY r.startTime DESC")
     Page<Run> findPublicRuns(Pageable pageable);
 
+    // Id and user of every public run started since the given time
+    @Query("SELECT r.id, r.userId FROM Run r WHERE r.isPublic = true AND r.startTime >= :since ORDER BY r.id")
+    List<Object[]> findPublicIdsAndUsersSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT r.id FROM Run r WHERE r.isPublic = true AND r.id IN :ids")
+    List<Long> findPublicIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Runs with GPS points but no activity metrics (stored before the ingest pipeline), keyset by id
+    @Query("SELECT r.id FROM Run r WHERE r.id > :afterId " +
+           "AND EXISTS (SELECT p.id FROM GpsPoint p WHERE p.run.id = r.id) " +
+           "AND NOT EXISTS (SELECT m.id FROM ActivityMetrics m WHERE m.runId = r.id) " +
+           "ORDER BY r.id")
+    List<Long> findIdsWithGpsWithoutMetrics(@Param("afterId") long afterId, Pageable pageable);
+
     // Find runs by type
     List<Run> findByUserIdAndRunTypeOrderByStartTimeDesc(Long userId, Run.RunType runType);
 
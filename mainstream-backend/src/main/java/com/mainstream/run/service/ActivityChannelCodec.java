@@ -0,0 +1,158 @@
+package com.mainstream.run.service;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Packs the per-sample chart channels of an activity into one compact blob
+ * (see ActivityChannels) and back.
+ *
+ * Layout (big-endian): version byte, sample count (int), channel bit mask (byte),
+ * then for every present channel in enum order its samples, as float (NaN = missing)
+ * or, for heart rate and cadence, as short (0 = missing).
+ */
+public final class ActivityChannelCodec {
+
+    public enum Channel {
+        TIME, DISTANCE, SPEED, ELEVATION, HEART_RATE, CADENCE;
+
+        boolean isShort() {
+            return this == HEART_RATE || this == CADENCE;
+        }
+    }
+
+    private static final byte FORMAT_VERSION = 1;
+
+    // Speed is averaged over this window to smooth GPS jitter
+    private static final double SPEED_WINDOW_SECONDS = 10.0;
+
+    private ActivityChannelCodec() {
+    }
+
+    /**
+     * @param timeSeconds    elapsed seconds per sample
+     * @param distanceMeters cumulative distance per sample
+     * @param altitudes      meters, NaN if missing
+     * @param heartRates     bpm, 0 if missing
+     * @param cadences       steps/min, 0 if missing
+     */
+    public static byte[] pack(double[] timeSeconds, double[] distanceMeters, double[] altitudes,
+                              int[] heartRates, int[] cadences) {
+        int n = timeSeconds.length;
+        double[] speeds = smoothedSpeed(timeSeconds, distanceMeters);
+
+        Map<Channel, Object> channels = new EnumMap<>(Channel.class);
+        channels.put(Channel.TIME, timeSeconds);
+        channels.put(Channel.DISTANCE, distanceMeters);
+        channels.put(Channel.SPEED, speeds);
+        if (hasAny(altitudes)) {
+            channels.put(Channel.ELEVATION, altitudes);
+        }
+        if (hasAny(heartRates)) {
+            channels.put(Channel.HEART_RATE, heartRates);
+        }
+        if (hasAny(cadences)) {
+            channels.put(Channel.CADENCE, cadences);
+        }
+
+        int size = 1 + 4 + 1;
+        byte mask = 0;
+        for (Channel channel : channels.keySet()) {
+            mask |= (byte) (1 << channel.ordinal());
+            size += n * (channel.isShort() ? 2 : 4);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(n);
+        buffer.put(mask);
+        for (Map.Entry<Channel, Object> entry : channels.entrySet()) {
+            if (entry.getKey().isShort()) {
+                for (int value : (int[]) entry.getValue()) {
+                    buffer.putShort((short) Math.max(0, Math.min(Short.MAX_VALUE, value)));
+                }
+            } else {
+                for (double value : (double[]) entry.getValue()) {
+                    buffer.putFloat((float) value);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reverse of {@link #pack}; every channel is returned as doubles with NaN for missing
+     * samples. Channels the activity did not record are absent from the map.
+     */
+    public static Map<Channel, double[]> unpack(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported channel format version: " + version);
+        }
+        int n = buffer.getInt();
+        byte mask = buffer.get();
+
+        Map<Channel, double[]> channels = new EnumMap<>(Channel.class);
+        for (Channel channel : Channel.values()) {
+            if ((mask & (1 << channel.ordinal())) == 0) {
+                continue;
+            }
+            double[] values = new double[n];
+            for (int i = 0; i < n; i++) {
+                if (channel.isShort()) {
+                    short value = buffer.getShort();
+                    values[i] = value > 0 ? value : Double.NaN;
+                } else {
+                    values[i] = buffer.getFloat();
+                }
+            }
+            channels.put(channel, values);
+        }
+        return channels;
+    }
+
+    /**
+     * Centered moving-window speed in m/s, computed with two pointers in one pass.
+     */
+    static double[] smoothedSpeed(double[] timeSeconds, double[] distanceMeters) {
+        int n = timeSeconds.length;
+        double[] speeds = new double[n];
+        double halfWindow = SPEED_WINDOW_SECONDS / 2;
+        int left = 0;
+        int right = 0;
+        for (int i = 0; i < n; i++) {
+            while (timeSeconds[i] - timeSeconds[left] > halfWindow) {
+                left++;
+            }
+            if (right < i) {
+                right = i;
+            }
+            while (right + 1 < n && timeSeconds[right + 1] - timeSeconds[i] <= halfWindow) {
+                right++;
+            }
+            double dt = timeSeconds[right] - timeSeconds[left];
+            speeds[i] = dt > 0 ? (distanceMeters[right] - distanceMeters[left]) / dt : Double.NaN;
+        }
+        return speeds;
+    }
+
+    private static boolean hasAny(double[] values) {
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasAny(int[] values) {
+        for (int value : values) {
+            if (value > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.mainstream.run.service;
+
+import com.mainstream.run.dto.ActivityHrvDto;
+import com.mainstream.run.entity.ActivityHrv;
+import com.mainstream.run.repository.ActivityHrvRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Stores and serves the R-R intervals captured from FIT uploads. Statistics are stored
+ * alongside the packed intervals, so summaries never unpack the stream.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityHrvService {
+
+    private final ActivityHrvRepository activityHrvRepository;
+
+    /**
+     * Store the intervals fed to the analyzer while decoding an upload, replacing any
+     * previous ones.
+     */
+    @Transactional
+    public void storeForFitFileUpload(Long fitFileUploadId, HrvAnalyzer analyzer) {
+        activityHrvRepository.deleteByFitFileUploadId(fitFileUploadId);
+        activityHrvRepository.save(ActivityHrv.builder()
+                .fitFileUploadId(fitFileUploadId)
+                .intervalCount(analyzer.getIntervalCount())
+                .artefactCount(analyzer.getArtefactCount())
+                .meanRrMs(valueOrNull(analyzer.getMeanRr()))
+                .sdnnMs(valueOrNull(analyzer.getSdnn()))
+                .rmssdMs(valueOrNull(analyzer.getRmssd()))
+                .pnn50(valueOrNull(analyzer.getPnn50()))
+                .data(analyzer.pack())
+                .build());
+        log.debug("Stored {} R-R intervals ({} artefacts) for FIT upload {}",
+                analyzer.getIntervalCount(), analyzer.getArtefactCount(), fitFileUploadId);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ActivityHrvDto> getForFitFileUpload(Long fitFileUploadId, boolean includeIntervals) {
+        return activityHrvRepository.findByFitFileUploadId(fitFileUploadId)
+                .map(hrv -> toDto(hrv, includeIntervals));
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        activityHrvRepository.deleteByFitFileUploadId(fitFileUploadId);
+    }
+
+    private ActivityHrvDto toDto(ActivityHrv hrv, boolean includeIntervals) {
+        ActivityHrvDto.ActivityHrvDtoBuilder dto = ActivityHrvDto.builder()
+                .intervalCount(hrv.getIntervalCount())
+                .artefactCount(hrv.getArtefactCount())
+                .meanRrMs(hrv.getMeanRrMs())
+                .meanHeartRate(hrv.getMeanRrMs() != null && hrv.getMeanRrMs() > 0
+                        ? (int) Math.round(60000.0 / hrv.getMeanRrMs()) : null)
+                .sdnnMs(hrv.getSdnnMs())
+                .rmssdMs(hrv.getRmssdMs())
+                .pnn50(hrv.getPnn50());
+        if (includeIntervals) {
+            HrvAnalyzer analyzer = HrvAnalyzer.unpack(hrv.getData());
+            dto.rrIntervalsMs(analyzer.getIntervals())
+                    .artefactIndices(analyzer.getArtefactIndices());
+        }
+        return dto.build();
+    }
+
+    private Double valueOrNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,135 @@
+package com.mainstream.run.service;
+
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.run.dto.ActivityMetricsDto;
+import com.mainstream.run.entity.ActivityMetrics;
+import com.mainstream.run.repository.ActivityMetricsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores and serves the metrics the ingest pipeline derives from an activity's track.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityMetricsService {
+
+    private final ActivityMetricsRepository activityMetricsRepository;
+
+    @Transactional
+    public void storePolyline(Long fitFileUploadId, Long runId, String encodedPolyline,
+                              int polylinePointCount, int sourcePointCount, BoundingBox bounds) {
+        ActivityMetrics metrics = findOrCreate(fitFileUploadId, runId);
+        metrics.setEncodedPolyline(encodedPolyline);
+        metrics.setPolylinePointCount(polylinePointCount);
+        metrics.setSourcePointCount(sourcePointCount);
+        setBounds(metrics, bounds);
+        activityMetricsRepository.save(metrics);
+        log.debug("Stored polyline with {} of {} points (fitFileUpload={}, run={})",
+                polylinePointCount, sourcePointCount, fitFileUploadId, runId);
+    }
+
+    /**
+     * @param zoneSeconds seconds spent in zone 1..5
+     */
+    @Transactional
+    public void storeHeartRateZones(Long fitFileUploadId, Long runId, int maxHeartRate, int[] zoneSeconds) {
+        ActivityMetrics metrics = findOrCreate(fitFileUploadId, runId);
+        metrics.setMaxHeartRateUsed(maxHeartRate);
+        metrics.setHrZone1Seconds(zoneSeconds[0]);
+        metrics.setHrZone2Seconds(zoneSeconds[1]);
+        metrics.setHrZone3Seconds(zoneSeconds[2]);
+        metrics.setHrZone4Seconds(zoneSeconds[3]);
+        metrics.setHrZone5Seconds(zoneSeconds[4]);
+        activityMetricsRepository.save(metrics);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ActivityMetricsDto> getForFitFileUpload(Long fitFileUploadId) {
+        return activityMetricsRepository.findByFitFileUploadId(fitFileUploadId).map(this::toDto);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ActivityMetricsDto> getForRun(Long runId) {
+        return activityMetricsRepository.findByRunId(runId).map(this::toDto);
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        activityMetricsRepository.deleteByFitFileUploadId(fitFileUploadId);
+    }
+
+    @Transactional
+    public void deleteForRun(Long runId) {
+        activityMetricsRepository.deleteByRunId(runId);
+    }
+
+    /**
+     * Fill in the bounding box of up to limit metrics (after the given id) stored before
+     * it was recorded, from their simplified polyline, which is within the polyline
+     * tolerance of the full track.
+     *
+     * @return the id of the last metrics examined, or afterId when none were left
+     */
+    @Transactional
+    public long backfillBounds(long afterId, int limit) {
+        List<ActivityMetrics> batch = activityMetricsRepository.findWithoutBounds(afterId, PageRequest.of(0, limit));
+        for (ActivityMetrics metrics : batch) {
+            double[][] points = PolylineEncoder.decode(metrics.getEncodedPolyline());
+            double[] latitudes = new double[points.length];
+            double[] longitudes = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                latitudes[i] = points[i][0];
+                longitudes[i] = points[i][1];
+            }
+            setBounds(metrics, BoundingBox.of(latitudes, longitudes, points.length));
+        }
+        activityMetricsRepository.saveAll(batch);
+        if (!batch.isEmpty()) {
+            log.info("Backfilled the bounding box of {} activity metrics", batch.size());
+        }
+        return batch.isEmpty() ? afterId : batch.get(batch.size() - 1).getId();
+    }
+
+    private void setBounds(ActivityMetrics metrics, BoundingBox bounds) {
+        if (bounds == null || bounds.isEmpty()) {
+            return;
+        }
+        metrics.setMinLatitude(bounds.getMinLatitude());
+        metrics.setMaxLatitude(bounds.getMaxLatitude());
+        metrics.setMinLongitude(bounds.getMinLongitude());
+        metrics.setMaxLongitude(bounds.getMaxLongitude());
+    }
+
+    private ActivityMetrics findOrCreate(Long fitFileUploadId, Long runId) {
+        Optional<ActivityMetrics> existing = fitFileUploadId != null
+                ? activityMetricsRepository.findByFitFileUploadId(fitFileUploadId)
+                : activityMetricsRepository.findByRunId(runId);
+        return existing.orElseGet(() -> ActivityMetrics.builder()
+                .fitFileUploadId(fitFileUploadId)
+                .runId(runId)
+                .build());
+    }
+
+    private ActivityMetricsDto toDto(ActivityMetrics metrics) {
+        return ActivityMetricsDto.builder()
+                .encodedPolyline(metrics.getEncodedPolyline())
+                .polylinePointCount(metrics.getPolylinePointCount())
+                .sourcePointCount(metrics.getSourcePointCount())
+                .maxHeartRateUsed(metrics.getMaxHeartRateUsed())
+                .hrZoneSeconds(metrics.getMaxHeartRateUsed() != null
+                        ? Arrays.asList(metrics.getHrZone1Seconds(), metrics.getHrZone2Seconds(),
+                                metrics.getHrZone3Seconds(), metrics.getHrZone4Seconds(), metrics.getHrZone5Seconds())
+                        : null)
+                .build();
+    }
+}
@@ -0,0 +1,244 @@
+package com.mainstream.run.service;
+
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.run.dto.ChartSeriesDto;
+import com.mainstream.run.entity.ActivityChannels;
+import com.mainstream.run.repository.ActivityChannelsRepository;
+import com.mainstream.run.repository.GpsPointRepository;
+import com.mainstream.run.service.ActivityChannelCodec.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves LTTB-downsampled chart series from the packed per-activity channel store.
+ * Downsampled series are cached per (activity, channel, x axis, resolution).
+ */
+@Slf4j
+@Service
+public class ChartSeriesService {
+
+    public enum SeriesChannel {
+        PACE("s/km"), SPEED("m/s"), HEART_RATE("bpm"), ELEVATION("m"), CADENCE("spm");
+
+        private final String unit;
+
+        SeriesChannel(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    public enum XAxis {
+        DISTANCE, TIME
+    }
+
+    // Below this speed the runner is standing; pace would spike towards infinity
+    private static final double MIN_PACE_SPEED_MS = 0.5;
+
+    private final ActivityChannelsRepository activityChannelsRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final GpsPointRepository gpsPointRepository;
+    private final Map<String, ChartSeriesDto> cache;
+
+    public ChartSeriesService(ActivityChannelsRepository activityChannelsRepository,
+                              FitTrackPointRepository fitTrackPointRepository,
+                              GpsPointRepository gpsPointRepository,
+                              @Value("${mainstream.charts.cache-size:256}") int cacheSize) {
+        this.activityChannelsRepository = activityChannelsRepository;
+        this.fitTrackPointRepository = fitTrackPointRepository;
+        this.gpsPointRepository = gpsPointRepository;
+        // Access-ordered LRU
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ChartSeriesDto> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Store the packed channels (see {@link ActivityChannelCodec#pack}) of a freshly
+     * ingested activity, replacing any previous ones.
+     */
+    @Transactional
+    public void store(Long fitFileUploadId, Long runId, byte[] data, int sampleCount) {
+        delete(fitFileUploadId, runId);
+        activityChannelsRepository.save(ActivityChannels.builder()
+                .fitFileUploadId(fitFileUploadId)
+                .runId(runId)
+                .sampleCount(sampleCount)
+                .data(data)
+                .build());
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        delete(fitFileUploadId, null);
+    }
+
+    @Transactional
+    public void deleteForRun(Long runId) {
+        delete(null, runId);
+    }
+
+    /**
+     * Get a downsampled series for a FIT upload. Uploads imported before channels were
+     * stored at ingest are backfilled once from their track points.
+     */
+    @Transactional
+    public ChartSeriesDto getSeriesForFitFileUpload(Long fitFileUploadId, SeriesChannel channel, XAxis xAxis,
+                                                    int resolution) {
+        String key = cacheKey("fit", fitFileUploadId, channel, xAxis, resolution);
+        ChartSeriesDto cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Optional<ActivityChannels> channels = activityChannelsRepository.findByFitFileUploadId(fitFileUploadId);
+        if (channels.isEmpty()) {
+            log.debug("No stored chart channels for FIT upload {}, computing from track points", fitFileUploadId);
+            backfillFitFileUpload(fitFileUploadId);
+            channels = activityChannelsRepository.findByFitFileUploadId(fitFileUploadId);
+        }
+        return cache(key, buildSeries(channels, channel, xAxis, resolution));
+    }
+
+    /**
+     * Get a downsampled series for a run. Runs imported before channels were stored at
+     * ingest are backfilled once from their GPS points.
+     */
+    @Transactional
+    public ChartSeriesDto getSeriesForRun(Long runId, SeriesChannel channel, XAxis xAxis, int resolution) {
+        String key = cacheKey("run", runId, channel, xAxis, resolution);
+        ChartSeriesDto cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Optional<ActivityChannels> channels = activityChannelsRepository.findByRunId(runId);
+        if (channels.isEmpty()) {
+            log.debug("No stored chart channels for run {}, computing from GPS points", runId);
+            backfillRun(runId);
+            channels = activityChannelsRepository.findByRunId(runId);
+        }
+        return cache(key, buildSeries(channels, channel, xAxis, resolution));
+    }
+
+    private ChartSeriesDto buildSeries(Optional<ActivityChannels> stored, SeriesChannel channel, XAxis xAxis,
+                                       int resolution) {
+        ChartSeriesDto.ChartSeriesDtoBuilder series = ChartSeriesDto.builder()
+                .channel(channel.name())
+                .axis(xAxis.name())
+                .unit(channel.unit)
+                .resolution(resolution);
+        if (stored.isEmpty()) {
+            return series.sourcePoints(0).x(new double[0]).y(new double[0]).build();
+        }
+
+        Map<Channel, double[]> channels = ActivityChannelCodec.unpack(stored.get().getData());
+        double[] xs = channels.get(xAxis == XAxis.TIME ? Channel.TIME : Channel.DISTANCE);
+        double[] ys = yValues(channels, channel);
+        if (ys == null) {
+            return series.sourcePoints(0).x(new double[0]).y(new double[0]).build();
+        }
+
+        // Drop missing samples, LTTB needs a gap-free series
+        double[] x = new double[xs.length];
+        double[] y = new double[xs.length];
+        int count = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+                x[count] = xs[i];
+                y[count] = ys[i];
+                count++;
+            }
+        }
+        x = Arrays.copyOf(x, count);
+        y = Arrays.copyOf(y, count);
+
+        int[] kept = LttbDownsampler.downsample(x, y, resolution);
+        double[] sampledX = new double[kept.length];
+        double[] sampledY = new double[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            sampledX[i] = x[kept[i]];
+            sampledY[i] = y[kept[i]];
+        }
+        return series.sourcePoints(count).x(sampledX).y(sampledY).build();
+    }
+
+    private double[] yValues(Map<Channel, double[]> channels, SeriesChannel channel) {
+        return switch (channel) {
+            case SPEED -> channels.get(Channel.SPEED);
+            case HEART_RATE -> channels.get(Channel.HEART_RATE);
+            case ELEVATION -> channels.get(Channel.ELEVATION);
+            case CADENCE -> channels.get(Channel.CADENCE);
+            case PACE -> {
+                double[] speeds = channels.get(Channel.SPEED);
+                double[] paces = new double[speeds.length];
+                for (int i = 0; i < speeds.length; i++) {
+                    paces[i] = speeds[i] >= MIN_PACE_SPEED_MS ? 1000.0 / speeds[i] : Double.NaN;
+                }
+                yield paces;
+            }
+        };
+    }
+
+    private void backfillFitFileUpload(Long fitFileUploadId) {
+        store(fitFileUploadId, null, ActivityModel.forFitFile(null,
+                fitTrackPointRepository.findByFitFileUploadIdOrderBySequenceNumber(fitFileUploadId)).build());
+    }
+
+    private void backfillRun(Long runId) {
+        store(null, runId, ActivityModel.forRunFromGpsPoints(null,
+                gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(runId)).build());
+    }
+
+    private void store(Long fitFileUploadId, Long runId, ActivityModel model) {
+        if (model.getSize() < 2) {
+            return;
+        }
+        store(fitFileUploadId, runId, ActivityChannelCodec.pack(model.getTimeSeconds(), model.getDistanceMeters(),
+                model.getAltitudes(), model.getHeartRates(), model.getCadences()), model.getSize());
+    }
+
+    private void delete(Long fitFileUploadId, Long runId) {
+        if (fitFileUploadId != null) {
+            activityChannelsRepository.deleteByFitFileUploadId(fitFileUploadId);
+            evict("fit", fitFileUploadId);
+        } else {
+            activityChannelsRepository.deleteByRunId(runId);
+            evict("run", runId);
+        }
+    }
+
+    private String cacheKey(String source, Long id, SeriesChannel channel, XAxis xAxis, int resolution) {
+        return source + ":" + id + ":" + channel + ":" + xAxis + ":" + resolution;
+    }
+
+    private ChartSeriesDto getCached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private ChartSeriesDto cache(String key, ChartSeriesDto series) {
+        synchronized (cache) {
+            cache.put(key, series);
+        }
+        return series;
+    }
+
+    private void evict(String source, Long id) {
+        String prefix = source + ":" + id + ":";
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+}
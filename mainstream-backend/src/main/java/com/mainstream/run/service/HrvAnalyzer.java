@@ -0,0 +1,183 @@
+package com.mainstream.run.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Streaming R-R interval (beat-to-beat) analyzer. Intervals are fed once in recording
+ * order; they are appended to a packed {@code short[]} stream and artefact filtering,
+ * RMSSD, SDNN and pNN50 are accumulated in the same pass, so nothing is re-read.
+ *
+ * An interval is an artefact if it is outside {@value #MIN_RR_MILLIS}-{@value #MAX_RR_MILLIS}
+ * ms, or deviates more than 20% from the last accepted interval (missed or extra beats).
+ * Successive differences are only taken between two adjacent accepted intervals.
+ */
+public class HrvAnalyzer {
+
+    public static final int MIN_RR_MILLIS = 300;
+    public static final int MAX_RR_MILLIS = 2000;
+
+    private static final double MAX_RELATIVE_CHANGE = 0.2;
+    // After this many in-range rejections in a row the rhythm really changed; re-anchor
+    private static final int MAX_CONSECUTIVE_REJECTIONS = 5;
+    private static final int NN50_MILLIS = 50;
+    private static final byte FORMAT_VERSION = 1;
+
+    private short[] intervals = new short[256];
+    private int count;
+    private final BitSet artefacts = new BitSet();
+
+    private int reference = -1;
+    private int previousAccepted = -1;
+    private int consecutiveRejections;
+
+    // Welford accumulators over the accepted (NN) intervals
+    private int validCount;
+    private double mean;
+    private double m2;
+
+    private int successiveCount;
+    private double sumSquaredDifferences;
+    private int nn50Count;
+
+    /**
+     * Feed the next R-R interval in milliseconds. Values are stored unsigned, so up to
+     * 65535 ms survive packing; anything beyond is clamped (and is an artefact anyway).
+     */
+    public void accept(int rrMillis) {
+        int rr = Math.max(0, Math.min(rrMillis, 0xFFFF));
+        if (count == intervals.length) {
+            intervals = Arrays.copyOf(intervals, intervals.length * 2);
+        }
+        int index = count++;
+        intervals[index] = (short) rr;
+
+        if (rr < MIN_RR_MILLIS || rr > MAX_RR_MILLIS) {
+            reject(index, false);
+            return;
+        }
+        if (reference > 0 && Math.abs(rr - reference) > MAX_RELATIVE_CHANGE * reference) {
+            reject(index, true);
+            return;
+        }
+
+        validCount++;
+        double delta = rr - mean;
+        mean += delta / validCount;
+        m2 += delta * (rr - mean);
+
+        if (previousAccepted > 0) {
+            int difference = rr - previousAccepted;
+            sumSquaredDifferences += (double) difference * difference;
+            successiveCount++;
+            if (Math.abs(difference) > NN50_MILLIS) {
+                nn50Count++;
+            }
+        }
+        previousAccepted = rr;
+        reference = rr;
+        consecutiveRejections = 0;
+    }
+
+    private void reject(int index, boolean inRange) {
+        artefacts.set(index);
+        // Never difference across an artefact
+        previousAccepted = -1;
+        if (inRange && ++consecutiveRejections >= MAX_CONSECUTIVE_REJECTIONS) {
+            reference = -1;
+            consecutiveRejections = 0;
+        }
+    }
+
+    public int getIntervalCount() {
+        return count;
+    }
+
+    public int getValidCount() {
+        return validCount;
+    }
+
+    public int getArtefactCount() {
+        return count - validCount;
+    }
+
+    public boolean isArtefact(int index) {
+        return artefacts.get(index);
+    }
+
+    /**
+     * @return indices of the intervals rejected as artefacts, ascending
+     */
+    public int[] getArtefactIndices() {
+        return artefacts.stream().toArray();
+    }
+
+    /**
+     * @return all intervals in milliseconds, including artefacts
+     */
+    public int[] getIntervals() {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = intervals[i] & 0xFFFF;
+        }
+        return values;
+    }
+
+    /**
+     * @return mean of the accepted intervals in ms, or NaN if there are none
+     */
+    public double getMeanRr() {
+        return validCount > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * @return standard deviation of the accepted intervals in ms, or NaN below two
+     */
+    public double getSdnn() {
+        return validCount > 1 ? Math.sqrt(m2 / (validCount - 1)) : Double.NaN;
+    }
+
+    /**
+     * @return root mean square of successive differences in ms, or NaN without pairs
+     */
+    public double getRmssd() {
+        return successiveCount > 0 ? Math.sqrt(sumSquaredDifferences / successiveCount) : Double.NaN;
+    }
+
+    /**
+     * @return percentage of successive differences above 50 ms, or NaN without pairs
+     */
+    public double getPnn50() {
+        return successiveCount > 0 ? 100.0 * nn50Count / successiveCount : Double.NaN;
+    }
+
+    /**
+     * Serialize the raw intervals: a version byte, the count and one unsigned short per
+     * interval (2 bytes per beat).
+     */
+    public byte[] pack() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Integer.BYTES + count * Short.BYTES);
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(count);
+        buffer.asShortBuffer().put(intervals, 0, count);
+        return buffer.array();
+    }
+
+    /**
+     * Replay packed intervals (see {@link #pack()}) through a fresh analyzer.
+     */
+    public static HrvAnalyzer unpack(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported HRV format version: " + version);
+        }
+        int count = buffer.getInt();
+        HrvAnalyzer analyzer = new HrvAnalyzer();
+        for (int i = 0; i < count; i++) {
+            analyzer.accept(buffer.getShort() & 0xFFFF);
+        }
+        return analyzer;
+    }
+}
@@ -7,11 +7,20 @@ import com.mainstream.fitfile.entity.FitFileUpload;
 import com.mainstream.fitfile.entity.FitLapData;
 import com.mainstream.fitfile.repository.FitFileUploadRepository;
 import com.mainstream.fitfile.repository.FitLapDataRepository;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.run.dto.ActivityHrvDto;
+import com.mainstream.run.dto.ActivityMetricsDto;
+import com.mainstream.run.dto.ChartSeriesDto;
 import com.mainstream.run.dto.RunDto;
 import com.mainstream.run.dto.RunStatsDto;
+import com.mainstream.run.dto.SimilarActivityDto;
+import com.mainstream.run.dto.SplitDto;
+import com.mainstream.run.entity.ActivitySplits;
 import com.mainstream.run.entity.Run;
 import com.mainstream.run.mapper.FitToRunMapper;
 import com.mainstream.run.repository.RunRepository;
+import com.mainstream.segment.service.SegmentEffortService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -40,6 +49,13 @@ public class RunService {
     private final com.mainstream.activity.service.UserActivityService userActivityService;
     private final com.mainstream.user.repository.UserRepository userRepository;
     private final com.mainstream.run.repository.GpsPointRepository gpsPointRepository;
+    private final SplitService splitService;
+    private final ActivityMetricsService activityMetricsService;
+    private final ChartSeriesService chartSeriesService;
+    private final ActivityHrvService activityHrvService;
+    private final SegmentEffortService segmentEffortService;
+    private final TrackFingerprintService trackFingerprintService;
+    private final IngestPipeline ingestPipeline;
 
     /**
      * Get all runs for a user, including both manual runs and FIT-imported runs
@@ -152,6 +168,7 @@ public class RunService {
         if (existingRun.isPresent()) {
             Run run = existingRun.get();
             boolean wasCompleted = run.isCompleted();
+            boolean wasPublic = Boolean.TRUE.equals(run.getIsPublic());
 
             updateRunFields(run, runUpdates);
             run.setUpdatedAt(LocalDateTime.now());
@@ -161,6 +178,12 @@ public class RunService {
 
             Run savedRun = runRepository.save(run);
 
+            // The fingerprint index filters public similar-run searches by its own copy of the flag
+            boolean isPublic = Boolean.TRUE.equals(savedRun.getIsPublic());
+            if (isPublic != wasPublic) {
+                trackFingerprintService.updateVisibilityForRun(savedRun.getId(), isPublic);
+            }
+
             // Automatically match route if run was just completed
             if (!wasCompleted && savedRun.isCompleted()) {
                 log.info("Run {} status changed to COMPLETED, attempting automatic route matching", savedRun.getId());
@@ -192,6 +215,11 @@ public class RunService {
                 userActivityService.deleteActivity(a.getId());
             });
 
+            splitService.deleteForRun(runId);
+            activityMetricsService.deleteForRun(runId);
+            chartSeriesService.deleteForRun(runId);
+            segmentEffortService.deleteForRun(runId);
+            trackFingerprintService.deleteForRun(runId);
             runRepository.delete(run.get());
             return true;
         }
@@ -209,6 +237,12 @@ public class RunService {
                 userActivityService.deleteActivity(a.getId());
             });
 
+            splitService.deleteForFitFileUpload(runId);
+            activityMetricsService.deleteForFitFileUpload(runId);
+            chartSeriesService.deleteForFitFileUpload(runId);
+            segmentEffortService.deleteForFitFileUpload(runId);
+            trackFingerprintService.deleteForFitFileUpload(runId);
+
             // Delete the FIT file (cascades to track points, laps, etc.)
             fitFileUploadRepository.delete(fitFile.get());
             return true;
@@ -488,6 +522,109 @@ public class RunService {
         return new ArrayList<>();
     }
 
+    /**
+     * Get auto splits (per kilometre or per mile) for a specific run.
+     * Splits are precomputed at ingest, so this never loads raw track points
+     * except for a one-time backfill of activities imported before that.
+     */
+    public Optional<List<SplitDto>> getRunSplits(Long runId, Long userId, ActivitySplits.SplitUnit unit) {
+        log.debug("Fetching {} splits for run {} and user {}", unit, runId, userId);
+
+        if (runRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(splitService.getSplitsForRun(runId, unit));
+        }
+
+        Optional<FitFileUpload> fitFile = fitFileUploadRepository.findByIdAndUserId(runId, userId);
+        if (fitFile.isPresent() && fitFile.get().isProcessed()) {
+            return Optional.of(splitService.getSplitsForFitFileUpload(runId, unit));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Get the metrics derived at ingest (simplified polyline, heart rate zones) for a run.
+     * Activities imported before the ingest pipeline existed return empty metrics.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ActivityMetricsDto> getRunMetrics(Long runId, Long userId) {
+        log.debug("Fetching metrics for run {} and user {}", runId, userId);
+
+        if (runRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(activityMetricsService.getForRun(runId)
+                    .orElseGet(() -> ActivityMetricsDto.builder().build()));
+        }
+
+        if (fitFileUploadRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(activityMetricsService.getForFitFileUpload(runId)
+                    .orElseGet(() -> ActivityMetricsDto.builder().build()));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Get a chart series (pace, speed, heart rate, elevation or cadence) for a run,
+     * LTTB-downsampled to the requested number of points.
+     */
+    public Optional<ChartSeriesDto> getRunSeries(Long runId, Long userId, ChartSeriesService.SeriesChannel channel,
+                                                 ChartSeriesService.XAxis xAxis, int resolution) {
+        log.debug("Fetching {} series ({} points) for run {} and user {}", channel, resolution, runId, userId);
+
+        if (runRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(chartSeriesService.getSeriesForRun(runId, channel, xAxis, resolution));
+        }
+
+        Optional<FitFileUpload> fitFile = fitFileUploadRepository.findByIdAndUserId(runId, userId);
+        if (fitFile.isPresent() && fitFile.get().isProcessed()) {
+            return Optional.of(chartSeriesService.getSeriesForFitFileUpload(runId, channel, xAxis, resolution));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Get the heart rate variability of a run: statistics over the artefact-filtered
+     * R-R intervals and optionally the raw intervals. Only FIT uploads recorded with a
+     * chest strap carry R-R intervals; other runs get an empty result.
+     */
+    public Optional<ActivityHrvDto> getRunHrv(Long runId, Long userId, boolean includeIntervals) {
+        log.debug("Fetching HRV for run {} and user {}", runId, userId);
+
+        if (runRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(ActivityHrvDto.builder().build());
+        }
+
+        if (fitFileUploadRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(activityHrvService.getForFitFileUpload(runId, includeIntervals)
+                    .orElseGet(() -> ActivityHrvDto.builder().build()));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Find activities whose course overlaps this run's: among the user's own activities,
+     * or among public runs of all users. Activities not fingerprinted yet (before the
+     * startup backfill reached them) return an empty list.
+     */
+    public Optional<List<SimilarActivityDto>> getSimilarRuns(Long runId, Long userId,
+                                                            TrackFingerprintService.SimilarScope scope,
+                                                            int limit, double minSimilarity) {
+        log.debug("Fetching {} similar activities for run {} and user {}", scope, runId, userId);
+
+        if (runRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(trackFingerprintService.findSimilarToRun(runId, userId, scope, limit, minSimilarity));
+        }
+
+        if (fitFileUploadRepository.findByIdAndUserId(runId, userId).isPresent()) {
+            return Optional.of(trackFingerprintService.findSimilarToFitFileUpload(runId, userId, scope, limit,
+                    minSimilarity));
+        }
+
+        return Optional.empty();
+    }
+
     private LapDto convertLapToDto(FitLapData lap) {
         return LapDto.builder()
                 .id(lap.getId())
@@ -531,42 +668,34 @@ public class RunService {
 
     /**
      * Attempt to automatically match a run to predefined routes and persist the result.
-     * This is called when a run is completed.
+     * This is called when a run is completed. A failed or timed out computation does not
+     * fail the run operation, but a failed write does: it shares the run's transaction,
+     * which is then rollback-only.
      */
     private void attemptAutoRouteMatching(Run run) {
-        try {
-            // Check if run has GPS points
-            long gpsPointCount = gpsPointRepository.countByRunId(run.getId());
-            if (gpsPointCount == 0) {
-                log.info("Run {} has no GPS points - skipping automatic route matching", run.getId());
-                return;
-            }
-
-            log.info("Run {} has {} GPS points, attempting route matching", run.getId(), gpsPointCount);
+        // Check if run has GPS points
+        long gpsPointCount = gpsPointRepository.countByRunId(run.getId());
+        if (gpsPointCount == 0) {
+            log.info("Run {} has no GPS points - skipping automatic route matching", run.getId());
+            return;
+        }
 
-            // Load user
-            Optional<com.mainstream.user.entity.User> userOpt = userRepository.findById(run.getUserId());
-            if (userOpt.isEmpty()) {
-                log.error("User {} not found for run {}", run.getUserId(), run.getId());
-                return;
-            }
+        log.info("Run {} has {} GPS points, running ingest pipeline", run.getId(), gpsPointCount);
 
-            // Attempt route matching and persist result
-            com.mainstream.activity.entity.UserActivity activity =
-                userActivityService.processAndCreateActivityFromRun(userOpt.get(), run);
-
-            if (activity != null && activity.getMatchedRoute() != null) {
-                log.info("Successfully matched run {} to route: {} ({}% complete)",
-                         run.getId(),
-                         activity.getMatchedRoute().getName(),
-                         activity.getRouteCompletionPercentage());
-            } else {
-                log.info("Run {} did not match any predefined route", run.getId());
-            }
-        } catch (Exception e) {
-            log.error("Error during automatic route matching for run {}: {}", run.getId(), e.getMessage(), e);
-            // Don't fail the run operation if route matching fails
+        // Load user
+        Optional<com.mainstream.user.entity.User> userOpt = userRepository.findById(run.getUserId());
+        if (userOpt.isEmpty()) {
+            log.error("User {} not found for run {}", run.getUserId(), run.getId());
+            return;
         }
+
+        // Splits, polyline, route match and trophies from a single read of the GPS points
+        ActivityModel model = ActivityModel
+            .forRunFromGpsPoints(run, gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(run.getId()))
+            .user(userOpt.get())
+            .recordActivity(true)
+            .build();
+        ingestPipeline.execute(model);
     }
 
     /**
@@ -0,0 +1,276 @@
+package com.mainstream.run.service;
+
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.run.entity.ActivitySplits;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming split calculator. Samples are fed once in recording order and kilometre
+ * and mile splits are accumulated side by side, so no source ever has to be
+ * re-read or buffered to produce both unit systems.
+ *
+ * Split boundaries are interpolated linearly between the two samples that straddle
+ * them; heart rate and cadence are time-weighted averages over the split.
+ */
+public class SplitCalculator {
+
+    public static final double KILOMETER_METERS = 1000.0;
+    public static final double MILE_METERS = 1609.344;
+
+    private static final byte FORMAT_VERSION = 1;
+    // distance(float) + duration(float) + hr(short) + cadence(short) + gain(float) + loss(float)
+    private static final int BYTES_PER_SPLIT = 20;
+
+    private final Accumulator kilometers = new Accumulator(KILOMETER_METERS);
+    private final Accumulator miles = new Accumulator(MILE_METERS);
+
+    private boolean hasPrevious;
+    private double prevTime;
+    private double prevDistance;
+    private double prevAltitude = Double.NaN;
+    private double prevLat = Double.NaN;
+    private double prevLon = Double.NaN;
+    private int sampleCount;
+
+    /**
+     * Feed the next sample.
+     *
+     * @param timeSeconds    elapsed or absolute time in seconds (only differences are used)
+     * @param distanceMeters cumulative distance, or NaN to derive it from the position
+     * @param latitude       latitude in degrees, or NaN if unknown
+     * @param longitude      longitude in degrees, or NaN if unknown
+     * @param altitude       altitude in meters, or NaN if unknown
+     * @param heartRate      heart rate in bpm, or a value &lt;= 0 if unknown
+     * @param cadence        cadence in spm/rpm, or a value &lt;= 0 if unknown
+     */
+    public void accept(double timeSeconds, double distanceMeters, double latitude, double longitude,
+                       double altitude, int heartRate, int cadence) {
+        if (Double.isNaN(timeSeconds)) {
+            return;
+        }
+
+        double distance = distanceMeters;
+        if (Double.isNaN(distance)) {
+            if (!hasPrevious) {
+                distance = 0.0;
+            } else if (!Double.isNaN(latitude) && !Double.isNaN(longitude)
+                    && !Double.isNaN(prevLat) && !Double.isNaN(prevLon)) {
+                distance = prevDistance + GeoDistance.meters(prevLat, prevLon, latitude, longitude);
+            } else {
+                distance = prevDistance;
+            }
+        }
+
+        if (hasPrevious) {
+            double dt = Math.max(0.0, timeSeconds - prevTime);
+            // Distance is cumulative; ignore sensor jitter that would move it backwards
+            double segmentEnd = Math.max(distance, prevDistance);
+            double elevationDelta = Double.isNaN(altitude) || Double.isNaN(prevAltitude) ? 0.0 : altitude - prevAltitude;
+
+            kilometers.advance(prevTime, prevDistance, timeSeconds, segmentEnd, dt, elevationDelta, heartRate, cadence);
+            miles.advance(prevTime, prevDistance, timeSeconds, segmentEnd, dt, elevationDelta, heartRate, cadence);
+            distance = segmentEnd;
+        } else {
+            kilometers.start(timeSeconds, distance);
+            miles.start(timeSeconds, distance);
+            hasPrevious = true;
+        }
+
+        prevTime = timeSeconds;
+        prevDistance = distance;
+        if (!Double.isNaN(altitude)) {
+            prevAltitude = altitude;
+        }
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            prevLat = latitude;
+            prevLon = longitude;
+        }
+        sampleCount++;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Closes the trailing partial split and returns the splits for the requested unit.
+     */
+    public List<Split> finish(ActivitySplits.SplitUnit unit) {
+        Accumulator accumulator = unit == ActivitySplits.SplitUnit.MILE ? miles : kilometers;
+        accumulator.closePartial(prevTime, prevDistance);
+        return Collections.unmodifiableList(accumulator.splits);
+    }
+
+    /**
+     * Pack splits into a compact big-endian byte array (one version byte, then 20 bytes per split).
+     */
+    public static byte[] pack(List<Split> splits) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + splits.size() * BYTES_PER_SPLIT);
+        buffer.put(FORMAT_VERSION);
+        for (Split split : splits) {
+            buffer.putFloat((float) split.getDistanceMeters());
+            buffer.putFloat((float) split.getDurationSeconds());
+            buffer.putShort((short) (split.getAvgHeartRate() != null ? split.getAvgHeartRate() : 0));
+            buffer.putShort((short) (split.getAvgCadence() != null ? split.getAvgCadence() : 0));
+            buffer.putFloat((float) split.getElevationGainMeters());
+            buffer.putFloat((float) split.getElevationLossMeters());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reverse of {@link #pack(List)}.
+     */
+    public static List<Split> unpack(byte[] data) {
+        if (data == null || data.length == 0) {
+            return List.of();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported split format version: " + version);
+        }
+
+        int count = buffer.remaining() / BYTES_PER_SPLIT;
+        List<Split> splits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double distance = buffer.getFloat();
+            double duration = buffer.getFloat();
+            short heartRate = buffer.getShort();
+            short cadence = buffer.getShort();
+            double gain = buffer.getFloat();
+            double loss = buffer.getFloat();
+            splits.add(new Split(i + 1, distance, duration,
+                    heartRate > 0 ? (int) heartRate : null,
+                    cadence > 0 ? (int) cadence : null,
+                    gain, loss));
+        }
+        return splits;
+    }
+
+    /**
+     * A single computed split. The last split of an activity is usually partial,
+     * i.e. shorter than the unit length.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Split {
+        private int splitNumber;
+        private double distanceMeters;
+        private double durationSeconds;
+        private Integer avgHeartRate;
+        private Integer avgCadence;
+        private double elevationGainMeters;
+        private double elevationLossMeters;
+    }
+
+    /**
+     * Running state for one unit system.
+     */
+    private static final class Accumulator {
+
+        private final double unitMeters;
+        private final List<Split> splits = new ArrayList<>();
+
+        private double splitStartTime;
+        private double splitStartDistance;
+        private double nextBoundary;
+        private double heartRateSum;
+        private double heartRateWeight;
+        private double cadenceSum;
+        private double cadenceWeight;
+        private double gain;
+        private double loss;
+        private boolean closed;
+
+        private Accumulator(double unitMeters) {
+            this.unitMeters = unitMeters;
+        }
+
+        private void start(double time, double distance) {
+            splitStartTime = time;
+            splitStartDistance = distance;
+            nextBoundary = distance + unitMeters;
+        }
+
+        private void advance(double t0, double d0, double t1, double d1, double dt,
+                             double elevationDelta, int heartRate, int cadence) {
+            double segmentLength = d1 - d0;
+            double consumed = 0.0;
+
+            while (d1 >= nextBoundary && segmentLength > 0) {
+                double fraction = (nextBoundary - d0) / segmentLength;
+                double share = fraction - consumed;
+                accumulate(share, dt, elevationDelta, heartRate, cadence);
+
+                double boundaryTime = t0 + fraction * (t1 - t0);
+                emit(boundaryTime - splitStartTime, nextBoundary - splitStartDistance);
+
+                splitStartTime = boundaryTime;
+                splitStartDistance = nextBoundary;
+                nextBoundary += unitMeters;
+                consumed = fraction;
+            }
+
+            accumulate(1.0 - consumed, dt, elevationDelta, heartRate, cadence);
+        }
+
+        private void accumulate(double share, double dt, double elevationDelta, int heartRate, int cadence) {
+            if (share <= 0) {
+                return;
+            }
+            double weight = share * dt;
+            if (heartRate > 0 && weight > 0) {
+                heartRateSum += heartRate * weight;
+                heartRateWeight += weight;
+            }
+            if (cadence > 0 && weight > 0) {
+                cadenceSum += cadence * weight;
+                cadenceWeight += weight;
+            }
+            double delta = share * elevationDelta;
+            if (delta > 0) {
+                gain += delta;
+            } else {
+                loss -= delta;
+            }
+        }
+
+        private void emit(double duration, double distance) {
+            splits.add(new Split(
+                    splits.size() + 1,
+                    distance,
+                    duration,
+                    heartRateWeight > 0 ? (int) Math.round(heartRateSum / heartRateWeight) : null,
+                    cadenceWeight > 0 ? (int) Math.round(cadenceSum / cadenceWeight) : null,
+                    gain,
+                    loss));
+            heartRateSum = 0;
+            heartRateWeight = 0;
+            cadenceSum = 0;
+            cadenceWeight = 0;
+            gain = 0;
+            loss = 0;
+        }
+
+        private void closePartial(double lastTime, double lastDistance) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            double remaining = lastDistance - splitStartDistance;
+            // Drop GPS dribble at the end (e.g. walking to stop the watch)
+            if (remaining >= 10.0) {
+                emit(lastTime - splitStartTime, remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.mainstream.run.service;
+
+import com.mainstream.fitfile.entity.FitTrackPoint;
+import com.mainstream.fitfile.repository.FitTrackPointRepository;
+import com.mainstream.run.dto.SplitDto;
+import com.mainstream.run.entity.ActivitySplits;
+import com.mainstream.run.entity.GpsPoint;
+import com.mainstream.run.repository.ActivitySplitsRepository;
+import com.mainstream.run.repository.GpsPointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Computes auto splits (per kilometre and per mile) at ingest time and serves them
+ * from the compact activity_splits table.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SplitService {
+
+    private final ActivitySplitsRepository activitySplitsRepository;
+    private final FitTrackPointRepository fitTrackPointRepository;
+    private final GpsPointRepository gpsPointRepository;
+
+    /**
+     * Compute and persist splits for a freshly decoded FIT file.
+     */
+    @Transactional
+    public void storeForFitFileUpload(Long fitFileUploadId, List<FitTrackPoint> trackPoints) {
+        SplitCalculator calculator = new SplitCalculator();
+        for (FitTrackPoint point : trackPoints) {
+            Double altitude = point.getEnhancedAltitude() != null ? point.getEnhancedAltitude() : point.getAltitude();
+            calculator.accept(
+                    toSeconds(point.getTimestamp()),
+                    orNaN(point.getDistance()),
+                    orNaN(point.getPositionLat()),
+                    orNaN(point.getPositionLong()),
+                    orNaN(altitude),
+                    orZero(point.getHeartRate()),
+                    orZero(point.getCadence()));
+        }
+        store(calculator, fitFileUploadId, null);
+    }
+
+    /**
+     * Compute and persist splits for a run from its stored GPS points.
+     */
+    @Transactional
+    public void storeForRun(Long runId, List<GpsPoint> gpsPoints) {
+        SplitCalculator calculator = new SplitCalculator();
+        for (GpsPoint point : gpsPoints) {
+            calculator.accept(
+                    toSeconds(point.getTimestamp()),
+                    orNaN(point.getDistanceFromStartMeters()),
+                    orNaN(point.getLatitude()),
+                    orNaN(point.getLongitude()),
+                    orNaN(point.getAltitude()),
+                    0,
+                    0);
+        }
+        store(calculator, null, runId);
+    }
+
+    /**
+     * Persist splits from a calculator that the caller has already fed (e.g. directly
+     * from full-resolution provider streams).
+     */
+    @Transactional
+    public void storeForRun(Long runId, SplitCalculator calculator) {
+        store(calculator, null, runId);
+    }
+
+    /**
+     * Persist splits for a FIT upload from an already fed calculator.
+     */
+    @Transactional
+    public void storeForFitFileUpload(Long fitFileUploadId, SplitCalculator calculator) {
+        store(calculator, fitFileUploadId, null);
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        activitySplitsRepository.deleteByFitFileUploadId(fitFileUploadId);
+    }
+
+    @Transactional
+    public void deleteForRun(Long runId) {
+        activitySplitsRepository.deleteByRunId(runId);
+    }
+
+    /**
+     * Get splits for a FIT upload. Uploads imported before splits were computed at
+     * ingest are backfilled once from their track points.
+     */
+    @Transactional
+    public List<SplitDto> getSplitsForFitFileUpload(Long fitFileUploadId, ActivitySplits.SplitUnit unit) {
+        Optional<ActivitySplits> splits = activitySplitsRepository.findByFitFileUploadIdAndUnit(fitFileUploadId, unit);
+        if (splits.isEmpty()) {
+            log.debug("No stored splits for FIT upload {}, computing from track points", fitFileUploadId);
+            storeForFitFileUpload(fitFileUploadId,
+                    fitTrackPointRepository.findByFitFileUploadIdOrderBySequenceNumber(fitFileUploadId));
+            splits = activitySplitsRepository.findByFitFileUploadIdAndUnit(fitFileUploadId, unit);
+        }
+        return splits.map(this::toDtos).orElseGet(List::of);
+    }
+
+    /**
+     * Get splits for a run. Runs imported before splits were computed at ingest are
+     * backfilled once from their GPS points.
+     */
+    @Transactional
+    public List<SplitDto> getSplitsForRun(Long runId, ActivitySplits.SplitUnit unit) {
+        Optional<ActivitySplits> splits = activitySplitsRepository.findByRunIdAndUnit(runId, unit);
+        if (splits.isEmpty()) {
+            List<GpsPoint> gpsPoints = gpsPointRepository.findByRunIdOrderBySequenceNumberAsc(runId);
+            if (gpsPoints.isEmpty()) {
+                return List.of();
+            }
+            log.debug("No stored splits for run {}, computing from {} GPS points", runId, gpsPoints.size());
+            storeForRun(runId, gpsPoints);
+            splits = activitySplitsRepository.findByRunIdAndUnit(runId, unit);
+        }
+        return splits.map(this::toDtos).orElseGet(List::of);
+    }
+
+    private void store(SplitCalculator calculator, Long fitFileUploadId, Long runId) {
+        if (calculator.getSampleCount() < 2) {
+            log.debug("Not enough samples to compute splits (fitFileUpload={}, run={})", fitFileUploadId, runId);
+            return;
+        }
+
+        if (fitFileUploadId != null) {
+            activitySplitsRepository.deleteByFitFileUploadId(fitFileUploadId);
+        } else {
+            activitySplitsRepository.deleteByRunId(runId);
+        }
+
+        for (ActivitySplits.SplitUnit unit : ActivitySplits.SplitUnit.values()) {
+            List<SplitCalculator.Split> splits = calculator.finish(unit);
+            activitySplitsRepository.save(ActivitySplits.builder()
+                    .fitFileUploadId(fitFileUploadId)
+                    .runId(runId)
+                    .unit(unit)
+                    .splitCount(splits.size())
+                    .data(SplitCalculator.pack(splits))
+                    .build());
+        }
+        log.info("Stored splits for {} {} from {} samples",
+                fitFileUploadId != null ? "FIT upload" : "run",
+                fitFileUploadId != null ? fitFileUploadId : runId,
+                calculator.getSampleCount());
+    }
+
+    private List<SplitDto> toDtos(ActivitySplits activitySplits) {
+        double unitMeters = activitySplits.getUnit() == ActivitySplits.SplitUnit.MILE
+                ? SplitCalculator.MILE_METERS
+                : SplitCalculator.KILOMETER_METERS;
+        String unitLabel = activitySplits.getUnit() == ActivitySplits.SplitUnit.MILE ? "mi" : "km";
+
+        return SplitCalculator.unpack(activitySplits.getData()).stream()
+                .map(split -> {
+                    Double pace = split.getDistanceMeters() > 0
+                            ? split.getDurationSeconds() / (split.getDistanceMeters() / unitMeters)
+                            : null;
+                    return SplitDto.builder()
+                            .splitNumber(split.getSplitNumber())
+                            .unit(activitySplits.getUnit().name())
+                            .partial(split.getDistanceMeters() < unitMeters - 0.5)
+                            .distanceMeters(split.getDistanceMeters())
+                            .durationSeconds(split.getDurationSeconds())
+                            .paceSecondsPerUnit(pace)
+                            .formattedPace(formatPace(pace, unitLabel))
+                            .avgHeartRate(split.getAvgHeartRate())
+                            .avgCadence(split.getAvgCadence())
+                            .elevationGainMeters(split.getElevationGainMeters())
+                            .elevationLossMeters(split.getElevationLossMeters())
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private String formatPace(Double paceSeconds, String unitLabel) {
+        if (paceSeconds == null) {
+            return "--:--";
+        }
+        int totalSeconds = (int) Math.round(paceSeconds);
+        return String.format("%d:%02d min/%s", totalSeconds / 60, totalSeconds % 60, unitLabel);
+    }
+
+    private static double toSeconds(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return Double.NaN;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) + timestamp.getNano() / 1_000_000_000.0;
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static double orNaN(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
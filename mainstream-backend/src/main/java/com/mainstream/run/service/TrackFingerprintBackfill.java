@@ -0,0 +1,72 @@
+package com.mainstream.run.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fingerprints activities imported before track fingerprints existed, once after startup,
+ * on a background thread and in chunks so the database is never saturated. Activities
+ * already fingerprinted are skipped by the query, so an interrupted run simply continues
+ * on the next start.
+ */
+@Slf4j
+@Service
+public class TrackFingerprintBackfill {
+
+    private final TrackFingerprintService trackFingerprintService;
+    private final int chunkSize;
+    private final long chunkDelayMillis;
+    private final ExecutorService executor;
+
+    public TrackFingerprintBackfill(TrackFingerprintService trackFingerprintService,
+                                    @Value("${mainstream.fingerprint.backfill-chunk-size:100}") int chunkSize,
+                                    @Value("${mainstream.fingerprint.backfill-chunk-delay-ms:1000}") long chunkDelayMillis) {
+        this.trackFingerprintService = trackFingerprintService;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMillis = chunkDelayMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fingerprint-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.submit(this::run);
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        try {
+            while (true) {
+                long lastId = trackFingerprintService.backfill(afterId, chunkSize);
+                if (lastId == afterId) {
+                    break;
+                }
+                afterId = lastId;
+                Thread.sleep(chunkDelayMillis);
+            }
+            if (afterId > 0) {
+                log.info("Fingerprint backfill finished in {} ms", System.currentTimeMillis() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Fingerprint backfill failed after activity metrics {}: {}", afterId, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,332 @@
+package com.mainstream.run.service;
+
+import com.mainstream.run.entity.ActivityFingerprint;
+import com.mainstream.run.event.ActivityFingerprintChangedEvent;
+import com.mainstream.run.repository.ActivityFingerprintRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory locality-sensitive hashing index over the MinHash signatures of all activity
+ * fingerprints, for finding similar tracks without comparing against every activity.
+ *
+ * The signature is cut into {@value #BANDS} bands of {@value #ROWS} values; each band is
+ * hashed into a bucket, and two activities become candidates when they share a bucket in
+ * any band. With these sizes a pair with Jaccard similarity s is found with probability
+ * 1 - (1 - s^2)^32: over 99 % from s = 0.4 on, while tracks in different areas (s = 0)
+ * never meet. Candidates are ranked by the similarity their signatures estimate, from the
+ * low 16 bits of each value kept per activity, and only the best are verified exactly.
+ *
+ * Entries live in flat primitive arrays; buckets chain their entries through a per-band
+ * next array, so adding an activity allocates nothing beyond occasional growth. Loaded
+ * lazily on first use, then kept current from {@link ActivityFingerprintChangedEvent}s
+ * after their transaction committed. Replaced or deleted entries are skipped until
+ * enough have accumulated to rebuild.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrackFingerprintIndex {
+
+    public static final int BANDS = 32;
+    public static final int ROWS = 2;
+    public static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int NONE = -1;
+
+    private final ActivityFingerprintRepository activityFingerprintRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    // Entry e: fingerprint, owner and visibility, 16-bit signature sketch at e * SIGNATURE_SIZE
+    private int size;
+    private int deadCount;
+    private long[] fingerprintIds = new long[0];
+    private long[] userIds = new long[0];
+    private short[] sketches = new short[0];
+    private final BitSet publicEntries = new BitSet();
+    private final BitSet deadEntries = new BitSet();
+    private final Map<Long, Integer> entryByFingerprintId = new HashMap<>();
+
+    // Open-addressing table: band key -> first entry of the bucket; entry e continues in
+    // band b with bandNext[e * BANDS + b]
+    private long[] bucketKeys = new long[0];
+    private int[] bucketHeads = new int[0];
+    private int bucketCount;
+    private int[] bandNext = new int[0];
+
+    /**
+     * Activities sharing a bucket with the signature, best estimate first.
+     *
+     * @param userId              only this user's activities, or null for any user
+     * @param publicOnly          only activities visible to other users
+     * @param excludeFingerprintId the query activity itself
+     * @param minEstimate         drop candidates estimated below this similarity
+     * @param limit               at most this many candidates
+     */
+    public List<Candidate> candidates(int[] signature, Long userId, boolean publicOnly,
+                                      long excludeFingerprintId, double minEstimate, int limit) {
+        ensureLoaded();
+        short[] sketch = sketch(signature);
+        lock.readLock().lock();
+        try {
+            List<Candidate> candidates = new ArrayList<>();
+            BitSet seen = new BitSet();
+            for (int band = 0; band < BANDS; band++) {
+                int bucket = findBucket(bandKey(signature, band));
+                if (bucket == NONE) {
+                    continue;
+                }
+                for (int entry = bucketHeads[bucket]; entry != NONE; entry = bandNext[entry * BANDS + band]) {
+                    if (seen.get(entry)) {
+                        continue;
+                    }
+                    seen.set(entry);
+                    if (deadEntries.get(entry) || fingerprintIds[entry] == excludeFingerprintId
+                            || (userId != null && userIds[entry] != userId)
+                            || (publicOnly && !publicEntries.get(entry))) {
+                        continue;
+                    }
+                    double estimate = estimate(sketch, entry);
+                    if (estimate >= minEstimate) {
+                        candidates.add(new Candidate(fingerprintIds[entry], estimate));
+                    }
+                }
+            }
+            candidates.sort((a, b) -> Double.compare(b.getEstimatedSimilarity(), a.getEstimatedSimilarity()));
+            return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return size - deadCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFingerprintChanged(ActivityFingerprintChangedEvent event) {
+        ActivityFingerprint fingerprint = activityFingerprintRepository.findById(event.getFingerprintId()).orElse(null);
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Nothing loaded yet; the first read loads the committed state anyway
+                return;
+            }
+            // Entries are keyed by fingerprint id, so replaying a change is harmless
+            remove(event.getFingerprintId());
+            if (fingerprint != null) {
+                add(fingerprint);
+            }
+            if (deadCount > 1024 && deadCount > size / 2) {
+                // Mostly replaced entries; this change is committed, so a reload includes it
+                loadAll();
+                log.info("Rebuilt the fingerprint index with {} activity fingerprints", size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                loadAll();
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Loaded {} activity fingerprints into the fingerprint index in {} ms",
+                    size, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void add(ActivityFingerprint fingerprint) {
+        int[] signature = TrackFingerprintService.unpackSignature(fingerprint.getSignature());
+        if (signature.length != SIGNATURE_SIZE) {
+            log.warn("Fingerprint {} has a signature of size {} and is not indexed",
+                    fingerprint.getId(), signature.length);
+            return;
+        }
+        ensureCapacity(size + 1);
+        int entry = size++;
+        fingerprintIds[entry] = fingerprint.getId();
+        userIds[entry] = fingerprint.getUserId();
+        publicEntries.set(entry, Boolean.TRUE.equals(fingerprint.getIsPublic()));
+        System.arraycopy(sketch(signature), 0, sketches, entry * SIGNATURE_SIZE, SIGNATURE_SIZE);
+        entryByFingerprintId.put(fingerprint.getId(), entry);
+
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = insertBucket(bandKey(signature, band));
+            bandNext[entry * BANDS + band] = bucketHeads[bucket];
+            bucketHeads[bucket] = entry;
+        }
+    }
+
+    private void remove(long fingerprintId) {
+        Integer entry = entryByFingerprintId.remove(fingerprintId);
+        if (entry != null) {
+            deadEntries.set(entry);
+            deadCount++;
+        }
+    }
+
+    private void loadAll() {
+        size = 0;
+        deadCount = 0;
+        fingerprintIds = new long[0];
+        userIds = new long[0];
+        sketches = new short[0];
+        bandNext = new int[0];
+        publicEntries.clear();
+        deadEntries.clear();
+        entryByFingerprintId.clear();
+        bucketKeys = new long[0];
+        bucketHeads = new int[0];
+        bucketCount = 0;
+
+        long afterId = 0;
+        while (true) {
+            List<ActivityFingerprint> page = activityFingerprintRepository
+                    .findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (ActivityFingerprint fingerprint : page) {
+                add(fingerprint);
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                return;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private double estimate(short[] sketch, int entry) {
+        int offset = entry * SIGNATURE_SIZE;
+        int equal = 0;
+        for (int k = 0; k < SIGNATURE_SIZE; k++) {
+            if (sketches[offset + k] == sketch[k]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    private static short[] sketch(int[] signature) {
+        short[] sketch = new short[signature.length];
+        for (int k = 0; k < signature.length; k++) {
+            sketch[k] = (short) signature[k];
+        }
+        return sketch;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int r = 0; r < ROWS; r++) {
+            key = key * 0x9E3779B97F4A7C15L + (signature[band * ROWS + r] & 0xFFFFFFFFL);
+        }
+        key ^= key >>> 31;
+        return key;
+    }
+
+    private int findBucket(long key) {
+        if (bucketKeys.length == 0) {
+            return NONE;
+        }
+        int mask = bucketKeys.length - 1;
+        for (int bucket = (int) (key ^ (key >>> 32)) & mask; ; bucket = (bucket + 1) & mask) {
+            if (bucketHeads[bucket] == NONE) {
+                return NONE;
+            }
+            if (bucketKeys[bucket] == key) {
+                return bucket;
+            }
+        }
+    }
+
+    private int insertBucket(long key) {
+        if ((bucketCount + 1) * 2 > bucketKeys.length) {
+            rehash(Math.max(1024, bucketKeys.length * 2));
+        }
+        int mask = bucketKeys.length - 1;
+        int bucket = (int) (key ^ (key >>> 32)) & mask;
+        while (bucketHeads[bucket] != NONE) {
+            if (bucketKeys[bucket] == key) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        bucketKeys[bucket] = key;
+        bucketCount++;
+        return bucket;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = bucketKeys;
+        int[] oldHeads = bucketHeads;
+        bucketKeys = new long[capacity];
+        bucketHeads = new int[capacity];
+        Arrays.fill(bucketHeads, NONE);
+        int mask = capacity - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldHeads[old] == NONE) {
+                continue;
+            }
+            int bucket = (int) (oldKeys[old] ^ (oldKeys[old] >>> 32)) & mask;
+            while (bucketHeads[bucket] != NONE) {
+                bucket = (bucket + 1) & mask;
+            }
+            bucketKeys[bucket] = oldKeys[old];
+            bucketHeads[bucket] = oldHeads[old];
+        }
+    }
+
+    private void ensureCapacity(int entries) {
+        if (entries <= fingerprintIds.length) {
+            return;
+        }
+        int capacity = Math.max(1024, fingerprintIds.length * 2);
+        fingerprintIds = Arrays.copyOf(fingerprintIds, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        sketches = Arrays.copyOf(sketches, capacity * SIGNATURE_SIZE);
+        bandNext = Arrays.copyOf(bandNext, capacity * BANDS);
+    }
+
+    /**
+     * An activity sharing at least one band with the query.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate {
+        private final long fingerprintId;
+        private final double estimatedSimilarity;
+    }
+}
@@ -0,0 +1,297 @@
+package com.mainstream.run.service;
+
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.fitfile.repository.FitFileUploadRepository;
+import com.mainstream.geo.Geohash;
+import com.mainstream.geo.MinHash;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.run.dto.SimilarActivityDto;
+import com.mainstream.run.entity.ActivityFingerprint;
+import com.mainstream.run.entity.ActivityMetrics;
+import com.mainstream.run.entity.Run;
+import com.mainstream.run.event.ActivityFingerprintChangedEvent;
+import com.mainstream.run.repository.ActivityFingerprintRepository;
+import com.mainstream.run.repository.ActivityMetricsRepository;
+import com.mainstream.run.repository.RunRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Track fingerprints for similar-run search.
+ *
+ * An activity's fingerprint is the set of geohash cells (precision {@value #CELL_PRECISION},
+ * about 150 m) its track passes through, and the MinHash signature of that set. Two runs
+ * of the same course share nearly all cells whatever their direction, pace or GPS noise,
+ * so the Jaccard similarity of the cell sets measures how much of their courses overlap.
+ * Searching goes through the LSH {@link TrackFingerprintIndex}; only its best candidates
+ * are loaded and verified with the exact similarity. Public searches also re-check each
+ * candidate against its run's current visibility, so a run made private is never shown
+ * even before its fingerprint is updated.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrackFingerprintService {
+
+    public static final int CELL_PRECISION = 7;
+    // Well below the cell size, so no cell crossed between two samples is missed
+    public static final double MAX_STEP_METERS = 25.0;
+
+    public static final double DEFAULT_MIN_SIMILARITY = 0.5;
+    public static final int MAX_LIMIT = 100;
+
+    // Signature estimates are within ~0.06 (one standard error); verify a wider margin
+    private static final double ESTIMATE_MARGIN = 0.15;
+    private static final int VERIFY_FACTOR = 4;
+    private static final int MIN_VERIFIED = 50;
+
+    private final ActivityFingerprintRepository activityFingerprintRepository;
+    private final ActivityMetricsRepository activityMetricsRepository;
+    private final RunRepository runRepository;
+    private final FitFileUploadRepository fitFileUploadRepository;
+    private final TrackFingerprintIndex trackFingerprintIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public enum SimilarScope {
+        // The requesting user's own activities
+        MINE,
+        // Public activities of all users
+        PUBLIC
+    }
+
+    /**
+     * @return the cells and signature of a track, or null if it has no position
+     */
+    public TrackFingerprint fingerprint(double[] latitudes, double[] longitudes, int count) {
+        long[] cells = Geohash.cellsAlong(latitudes, longitudes, count, CELL_PRECISION, MAX_STEP_METERS);
+        if (cells.length == 0) {
+            return null;
+        }
+        return new TrackFingerprint(cells, MinHash.signature(cells, TrackFingerprintIndex.SIGNATURE_SIZE));
+    }
+
+    @Transactional
+    public void store(Long userId, Long fitFileUploadId, Long runId, boolean isPublic,
+                      LocalDateTime activityStartTime, TrackFingerprint fingerprint) {
+        Optional<ActivityFingerprint> existing = fitFileUploadId != null
+                ? activityFingerprintRepository.findByFitFileUploadId(fitFileUploadId)
+                : activityFingerprintRepository.findByRunId(runId);
+        ActivityFingerprint entity = existing.orElseGet(() -> ActivityFingerprint.builder()
+                .fitFileUploadId(fitFileUploadId)
+                .runId(runId)
+                .build());
+        entity.setUserId(userId);
+        entity.setIsPublic(isPublic);
+        entity.setActivityStartTime(activityStartTime);
+        entity.setCellCount(fingerprint.getCells().length);
+        entity.setCells(packCells(fingerprint.getCells()));
+        entity.setSignature(packSignature(fingerprint.getSignature()));
+        ActivityFingerprint saved = activityFingerprintRepository.save(entity);
+        eventPublisher.publishEvent(new ActivityFingerprintChangedEvent(saved.getId()));
+        log.debug("Stored fingerprint with {} cells (fitFileUpload={}, run={})",
+                fingerprint.getCells().length, fitFileUploadId, runId);
+    }
+
+    /**
+     * Follow a change of the run's visibility, so public searches stop (or start) finding it.
+     */
+    @Transactional
+    public void updateVisibilityForRun(Long runId, boolean isPublic) {
+        activityFingerprintRepository.findByRunId(runId).ifPresent(fingerprint -> {
+            fingerprint.setIsPublic(isPublic);
+            ActivityFingerprint saved = activityFingerprintRepository.save(fingerprint);
+            eventPublisher.publishEvent(new ActivityFingerprintChangedEvent(saved.getId()));
+        });
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        activityFingerprintRepository.findByFitFileUploadId(fitFileUploadId).ifPresent(this::delete);
+    }
+
+    @Transactional
+    public void deleteForRun(Long runId) {
+        activityFingerprintRepository.findByRunId(runId).ifPresent(this::delete);
+    }
+
+    /**
+     * Activities whose course overlaps the given FIT upload's by at least minSimilarity,
+     * most similar first. Empty if the upload has no fingerprint (yet).
+     */
+    @Transactional(readOnly = true)
+    public List<SimilarActivityDto> findSimilarToFitFileUpload(Long fitFileUploadId, Long userId, SimilarScope scope,
+                                                               int limit, double minSimilarity) {
+        return activityFingerprintRepository.findByFitFileUploadId(fitFileUploadId)
+                .map(fingerprint -> findSimilar(fingerprint, userId, scope, limit, minSimilarity))
+                .orElseGet(List::of);
+    }
+
+    /**
+     * Activities whose course overlaps the given run's by at least minSimilarity, most
+     * similar first. Empty if the run has no fingerprint (yet).
+     */
+    @Transactional(readOnly = true)
+    public List<SimilarActivityDto> findSimilarToRun(Long runId, Long userId, SimilarScope scope,
+                                                     int limit, double minSimilarity) {
+        return activityFingerprintRepository.findByRunId(runId)
+                .map(fingerprint -> findSimilar(fingerprint, userId, scope, limit, minSimilarity))
+                .orElseGet(List::of);
+    }
+
+    /**
+     * Fingerprint up to limit activities (after the given metrics id) stored before
+     * fingerprints were computed, from their simplified polyline. Its vertices are within
+     * the polyline tolerance of the track, and the steps between them are interpolated, so
+     * the cells match those of the full track except where it grazes a cell border.
+     *
+     * @return the id of the last metrics examined, or afterId when none were left
+     */
+    @Transactional
+    public long backfill(long afterId, int limit) {
+        List<ActivityMetrics> batch = activityMetricsRepository.findWithoutFingerprint(afterId, PageRequest.of(0, limit));
+        int stored = 0;
+        for (ActivityMetrics metrics : batch) {
+            double[][] points = PolylineEncoder.decode(metrics.getEncodedPolyline());
+            double[] latitudes = new double[points.length];
+            double[] longitudes = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                latitudes[i] = points[i][0];
+                longitudes[i] = points[i][1];
+            }
+            TrackFingerprint fingerprint = fingerprint(latitudes, longitudes, points.length);
+            if (fingerprint == null) {
+                continue;
+            }
+
+            if (metrics.getRunId() != null) {
+                Optional<Run> run = runRepository.findById(metrics.getRunId());
+                if (run.isPresent()) {
+                    store(run.get().getUserId(), null, run.get().getId(), Boolean.TRUE.equals(run.get().getIsPublic()),
+                            run.get().getStartTime(), fingerprint);
+                    stored++;
+                }
+            } else if (metrics.getFitFileUploadId() != null) {
+                Optional<FitFileUpload> upload = fitFileUploadRepository.findById(metrics.getFitFileUploadId());
+                if (upload.isPresent()) {
+                    // FIT uploads carry no visibility setting and stay private
+                    store(upload.get().getUserId(), upload.get().getId(), null, false,
+                            upload.get().getActivityStartTime(), fingerprint);
+                    stored++;
+                }
+            }
+        }
+        if (stored > 0) {
+            log.info("Backfilled the fingerprint of {} activities", stored);
+        }
+        return batch.isEmpty() ? afterId : batch.get(batch.size() - 1).getId();
+    }
+
+    private List<SimilarActivityDto> findSimilar(ActivityFingerprint query, Long userId, SimilarScope scope,
+                                                 int limit, double minSimilarity) {
+        long start = System.nanoTime();
+        int[] signature = unpackSignature(query.getSignature());
+        List<TrackFingerprintIndex.Candidate> candidates = trackFingerprintIndex.candidates(signature,
+                scope == SimilarScope.MINE ? userId : null, scope == SimilarScope.PUBLIC, query.getId(),
+                Math.max(0.0, minSimilarity - ESTIMATE_MARGIN), Math.max(MIN_VERIFIED, limit * VERIFY_FACTOR));
+        long lookupNanos = System.nanoTime() - start;
+
+        Map<Long, Double> estimates = new HashMap<>();
+        for (TrackFingerprintIndex.Candidate candidate : candidates) {
+            estimates.put(candidate.getFingerprintId(), candidate.getEstimatedSimilarity());
+        }
+        long[] queryCells = unpackCells(query.getCells());
+        // Candidates deleted since the index saw them are simply not found
+        List<ActivityFingerprint> loaded = activityFingerprintRepository.findAllById(estimates.keySet());
+        Set<Long> publicRunIds = scope == SimilarScope.PUBLIC ? findPublicRunIds(loaded) : Set.of();
+        List<SimilarActivityDto> similar = new ArrayList<>();
+        for (ActivityFingerprint candidate : loaded) {
+            if (scope == SimilarScope.PUBLIC
+                    && (candidate.getRunId() == null || !publicRunIds.contains(candidate.getRunId()))) {
+                // Not a public run (any more): FIT uploads stay private, and runs may have been
+                // made private since the fingerprint was stored
+                continue;
+            }
+            double similarity = MinHash.jaccard(queryCells, unpackCells(candidate.getCells()));
+            if (similarity < minSimilarity) {
+                continue;
+            }
+            similar.add(SimilarActivityDto.builder()
+                    .fitFileUploadId(candidate.getFitFileUploadId())
+                    .runId(candidate.getRunId())
+                    .userId(candidate.getUserId())
+                    .activityStartTime(candidate.getActivityStartTime())
+                    .similarity(similarity)
+                    .estimatedSimilarity(estimates.get(candidate.getId()))
+                    .build());
+        }
+        similar.sort(Comparator.comparing(SimilarActivityDto::getSimilarity).reversed());
+        log.debug("Similar to fingerprint {} ({}): {} candidates in {} us, {} verified",
+                query.getId(), scope, candidates.size(), lookupNanos / 1000, similar.size());
+        return similar.size() > limit ? similar.subList(0, limit) : similar;
+    }
+
+    private Set<Long> findPublicRunIds(List<ActivityFingerprint> fingerprints) {
+        List<Long> runIds = fingerprints.stream()
+                .map(ActivityFingerprint::getRunId)
+                .filter(Objects::nonNull)
+                .toList();
+        return runIds.isEmpty() ? Set.of() : new HashSet<>(runRepository.findPublicIdsByIdIn(runIds));
+    }
+
+    private void delete(ActivityFingerprint fingerprint) {
+        activityFingerprintRepository.delete(fingerprint);
+        eventPublisher.publishEvent(new ActivityFingerprintChangedEvent(fingerprint.getId()));
+    }
+
+    static byte[] packCells(long[] cells) {
+        ByteBuffer buffer = ByteBuffer.allocate(cells.length * Long.BYTES);
+        buffer.asLongBuffer().put(cells);
+        return buffer.array();
+    }
+
+    static long[] unpackCells(byte[] data) {
+        long[] cells = new long[data.length / Long.BYTES];
+        ByteBuffer.wrap(data).asLongBuffer().get(cells);
+        return cells;
+    }
+
+    static byte[] packSignature(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    static int[] unpackSignature(byte[] data) {
+        int[] signature = new int[data.length / Integer.BYTES];
+        ByteBuffer.wrap(data).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    /**
+     * Sorted distinct cells of a track and their MinHash signature.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TrackFingerprint {
+        private final long[] cells;
+        private final int[] signature;
+    }
+}
@@ -0,0 +1,195 @@
+package com.mainstream.segment.controller;
+
+import com.mainstream.segment.dto.CreateSegmentRequest;
+import com.mainstream.segment.dto.SegmentDto;
+import com.mainstream.segment.dto.SegmentEffortDto;
+import com.mainstream.segment.dto.SegmentLeaderboardEntryDto;
+import com.mainstream.segment.entity.Segment;
+import com.mainstream.segment.entity.SegmentEffort;
+import com.mainstream.segment.entity.SegmentLeaderboardEntry;
+import com.mainstream.segment.service.SegmentEffortService;
+import com.mainstream.segment.service.SegmentService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for segments, their efforts and leaderboards.
+ * Creating and (de)activating segments is admin-only.
+ */
+@RestController
+@RequestMapping("/api/segments")
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentController {
+
+    private static final int MAX_LEADERBOARD_SIZE = 100;
+
+    private final SegmentService segmentService;
+    private final SegmentEffortService segmentEffortService;
+
+    /**
+     * Create a segment from a section of a predefined route (Admin only).
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createSegment(@Valid @RequestBody CreateSegmentRequest request) {
+        try {
+            Segment segment = segmentService.createFromRoute(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(toDto(segment));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid segment: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Get all segments, optionally only those of one route.
+     */
+    @GetMapping
+    public ResponseEntity<List<SegmentDto>> getSegments(
+            @RequestParam(value = "activeOnly", defaultValue = "true") boolean activeOnly,
+            @RequestParam(value = "routeId", required = false) Long routeId) {
+        List<SegmentDto> dtos = segmentService.getSegments(activeOnly, routeId).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(dtos);
+    }
+
+    /**
+     * Get a specific segment by ID.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<SegmentDto> getSegment(@PathVariable Long id) {
+        return segmentService.getSegment(id)
+                .map(segment -> ResponseEntity.ok(toDto(segment)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Activate a segment (Admin only).
+     */
+    @PutMapping("/{id}/activate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SegmentDto> activateSegment(@PathVariable Long id) {
+        return segmentService.setActive(id, true)
+                .map(segment -> ResponseEntity.ok(toDto(segment)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Deactivate a segment (Admin only).
+     */
+    @PutMapping("/{id}/deactivate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SegmentDto> deactivateSegment(@PathVariable Long id) {
+        return segmentService.setActive(id, false)
+                .map(segment -> ResponseEntity.ok(toDto(segment)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get the fastest users on a segment.
+     */
+    @GetMapping("/{id}/leaderboard")
+    public ResponseEntity<List<SegmentLeaderboardEntryDto>> getLeaderboard(
+            @PathVariable Long id,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<SegmentLeaderboardEntry> entries =
+                segmentEffortService.getLeaderboard(id, Math.min(limit, MAX_LEADERBOARD_SIZE));
+        List<SegmentLeaderboardEntryDto> dtos = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            dtos.add(toDto(entries.get(i), i + 1L));
+        }
+        return ResponseEntity.ok(dtos);
+    }
+
+    /**
+     * Get the current user's best effort and rank on a segment.
+     */
+    @GetMapping("/{id}/leaderboard/me")
+    public ResponseEntity<SegmentLeaderboardEntryDto> getMyLeaderboardEntry(
+            @PathVariable Long id,
+            @RequestHeader("X-User-Id") Long userId) {
+        return segmentEffortService.getLeaderboardEntry(id, userId)
+                .map(entry -> ResponseEntity.ok(toDto(entry, segmentEffortService.getRank(entry))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Get the segment efforts of a run or FIT file upload.
+     */
+    @GetMapping("/efforts")
+    public ResponseEntity<List<SegmentEffortDto>> getEfforts(
+            @RequestParam(value = "runId", required = false) Long runId,
+            @RequestParam(value = "fitFileUploadId", required = false) Long fitFileUploadId) {
+        if ((runId == null) == (fitFileUploadId == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<SegmentEffort> efforts = runId != null
+                ? segmentEffortService.getEffortsForRun(runId)
+                : segmentEffortService.getEffortsForFitFile(fitFileUploadId);
+        return ResponseEntity.ok(efforts.stream().map(this::toDto).collect(Collectors.toList()));
+    }
+
+    /**
+     * Convert entity to DTO.
+     */
+    private SegmentDto toDto(Segment segment) {
+        return SegmentDto.builder()
+                .id(segment.getId())
+                .name(segment.getName())
+                .description(segment.getDescription())
+                .routeId(segment.getRoute() != null ? segment.getRoute().getId() : null)
+                .encodedPolyline(segment.getEncodedPolyline())
+                .pointCount(segment.getPointCount())
+                .distanceMeters(segment.getDistanceMeters())
+                .startLatitude(segment.getStartLatitude())
+                .startLongitude(segment.getStartLongitude())
+                .endLatitude(segment.getEndLatitude())
+                .endLongitude(segment.getEndLongitude())
+                .gateRadiusMeters(segment.getGateRadiusMeters())
+                .isActive(segment.getIsActive())
+                .createdAt(segment.getCreatedAt())
+                .updatedAt(segment.getUpdatedAt())
+                .build();
+    }
+
+    private SegmentEffortDto toDto(SegmentEffort effort) {
+        return SegmentEffortDto.builder()
+                .id(effort.getId())
+                .segmentId(effort.getSegment().getId())
+                .segmentName(effort.getSegment().getName())
+                .userId(effort.getUserId())
+                .fitFileUploadId(effort.getFitFileUploadId())
+                .runId(effort.getRunId())
+                .startTime(effort.getStartTime())
+                .elapsedSeconds(effort.getElapsedSeconds())
+                .distanceMeters(effort.getDistanceMeters())
+                .startIndex(effort.getStartIndex())
+                .endIndex(effort.getEndIndex())
+                .build();
+    }
+
+    private SegmentLeaderboardEntryDto toDto(SegmentLeaderboardEntry entry, long rank) {
+        return SegmentLeaderboardEntryDto.builder()
+                .rank(rank)
+                .segmentId(entry.getSegment().getId())
+                .userId(entry.getUser().getId())
+                .userFirstName(entry.getUser().getFirstName())
+                .userLastName(entry.getUser().getLastName())
+                .bestEffortId(entry.getBestEffortId())
+                .bestElapsedSeconds(entry.getBestElapsedSeconds())
+                .bestEffortStartTime(entry.getBestEffortStartTime())
+                .effortCount(entry.getEffortCount())
+                .build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.mainstream.segment.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cuts a segment out of a predefined route: the track points from startPointIndex to
+ * endPointIndex (by sequence, inclusive) become the segment geometry.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateSegmentRequest {
+    @NotBlank(message = "Name is required")
+    private String name;
+
+    private String description;
+
+    @NotNull(message = "Route is required")
+    private Long routeId;
+
+    @NotNull(message = "Start point index is required")
+    @PositiveOrZero
+    private Integer startPointIndex;
+
+    @NotNull(message = "End point index is required")
+    @PositiveOrZero
+    private Integer endPointIndex;
+
+    // Defaults to 25 m
+    private Double gateRadiusMeters;
+}
@@ -0,0 +1,31 @@
+package com.mainstream.segment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentDto {
+    private Long id;
+    private String name;
+    private String description;
+    private Long routeId;
+    private String encodedPolyline;
+    private Integer pointCount;
+    private BigDecimal distanceMeters;
+    private BigDecimal startLatitude;
+    private BigDecimal startLongitude;
+    private BigDecimal endLatitude;
+    private BigDecimal endLongitude;
+    private Double gateRadiusMeters;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,26 @@
+package com.mainstream.segment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentEffortDto {
+    private Long id;
+    private Long segmentId;
+    private String segmentName;
+    private Long userId;
+    private Long fitFileUploadId;
+    private Long runId;
+    private LocalDateTime startTime;
+    private Integer elapsedSeconds;
+    private Double distanceMeters;
+    private Integer startIndex;
+    private Integer endIndex;
+}
@@ -0,0 +1,24 @@
+package com.mainstream.segment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentLeaderboardEntryDto {
+    private Long rank;
+    private Long segmentId;
+    private Long userId;
+    private String userFirstName;
+    private String userLastName;
+    private Long bestEffortId;
+    private Integer bestElapsedSeconds;
+    private LocalDateTime bestEffortStartTime;
+    private Integer effortCount;
+}
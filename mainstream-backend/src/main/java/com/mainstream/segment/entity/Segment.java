@@ -0,0 +1,87 @@
+package com.mainstream.segment.entity;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Admin-defined sub-section of a predefined route (a hill, a riverside kilometre) on which
+ * runners get timed efforts. An effort starts at the start gate and ends at the end gate,
+ * both circles of gateRadiusMeters around the first and last point of the geometry.
+ */
+@Entity
+@Table(name = "segments")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class Segment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 200)
+    private String name;
+
+    @Column(length = 1000)
+    private String description;
+
+    /**
+     * Route the segment was cut from (null if the route was deleted)
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "route_id")
+    private PredefinedRoute route;
+
+    /**
+     * Encoded polyline (precision 1e5) of the segment, from start gate to end gate
+     */
+    @Column(name = "encoded_polyline", columnDefinition = "TEXT", nullable = false)
+    private String encodedPolyline;
+
+    @Column(nullable = false)
+    private Integer pointCount;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal distanceMeters;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal startLatitude;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal startLongitude;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal endLatitude;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal endLongitude;
+
+    /**
+     * Radius of the start and end gates in meters
+     */
+    @Column(nullable = false)
+    private Double gateRadiusMeters;
+
+    /**
+     * Whether efforts are detected on this segment
+     */
+    @Column(nullable = false)
+    private Boolean isActive = true;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
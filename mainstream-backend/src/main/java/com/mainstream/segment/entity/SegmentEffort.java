@@ -0,0 +1,67 @@
+package com.mainstream.segment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * One timed pass over a segment, detected when the activity was ingested.
+ * Exactly one of fitFileUploadId / runId is set.
+ */
+@Entity
+@Table(name = "segment_efforts", indexes = {
+    @Index(name = "idx_segment_efforts_segment_user", columnList = "segment_id,user_id,elapsed_seconds"),
+    @Index(name = "idx_segment_efforts_fit_file", columnList = "fit_file_upload_id"),
+    @Index(name = "idx_segment_efforts_run", columnList = "run_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class SegmentEffort {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "segment_id", nullable = false)
+    private Segment segment;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "fit_file_upload_id")
+    private Long fitFileUploadId;
+
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "elapsed_seconds", nullable = false)
+    private Integer elapsedSeconds;
+
+    // Distance run between the gates, from the activity's own distance stream
+    @Column(name = "distance_meters")
+    private Double distanceMeters;
+
+    // Sample range of the activity covering the effort
+    @Column(name = "start_index", nullable = false)
+    private Integer startIndex;
+
+    @Column(name = "end_index", nullable = false)
+    private Integer endIndex;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,57 @@
+package com.mainstream.segment.entity;
+
+import com.mainstream.user.entity.User;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's best effort on a segment. Kept up to date as efforts are recorded, so a
+ * leaderboard is a single indexed range read instead of a grouping over all efforts.
+ */
+@Entity
+@Table(name = "segment_leaderboard_entries",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_segment_leaderboard_user", columnNames = {"segment_id", "user_id"})
+    },
+    indexes = {
+        @Index(name = "idx_segment_leaderboard_rank", columnList = "segment_id,best_elapsed_seconds")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class SegmentLeaderboardEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "segment_id", nullable = false)
+    private Segment segment;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "best_effort_id", nullable = false)
+    private Long bestEffortId;
+
+    @Column(name = "best_elapsed_seconds", nullable = false)
+    private Integer bestElapsedSeconds;
+
+    @Column(name = "best_effort_start_time", nullable = false)
+    private LocalDateTime bestEffortStartTime;
+
+    @Column(name = "effort_count", nullable = false)
+    private Integer effortCount;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,22 @@
+package com.mainstream.segment.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when a segment is created, activated or deactivated, so the in-memory
+ * segment index can be refreshed once the change is committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SegmentChangedEvent {
+
+    public enum ChangeType {
+        CREATED, ACTIVATED, DEACTIVATED
+    }
+
+    private final Long segmentId;
+    private final ChangeType changeType;
+}
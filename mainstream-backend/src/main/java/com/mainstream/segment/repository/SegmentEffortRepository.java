@@ -0,0 +1,28 @@
+package com.mainstream.segment.repository;
+
+import com.mainstream.segment.entity.SegmentEffort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SegmentEffortRepository extends JpaRepository<SegmentEffort, Long> {
+
+    List<SegmentEffort> findByFitFileUploadIdOrderByStartIndexAsc(Long fitFileUploadId);
+
+    List<SegmentEffort> findByRunIdOrderByStartIndexAsc(Long runId);
+
+    @Query("SELECT e FROM SegmentEffort e JOIN FETCH e.segment WHERE e.fitFileUploadId = :fitFileUploadId ORDER BY e.startIndex ASC")
+    List<SegmentEffort> findWithSegmentByFitFileUploadId(@Param("fitFileUploadId") Long fitFileUploadId);
+
+    @Query("SELECT e FROM SegmentEffort e JOIN FETCH e.segment WHERE e.runId = :runId ORDER BY e.startIndex ASC")
+    List<SegmentEffort> findWithSegmentByRunId(@Param("runId") Long runId);
+
+    Optional<SegmentEffort> findFirstBySegmentIdAndUserIdOrderByElapsedSecondsAscStartTimeAsc(Long segmentId, Long userId);
+
+    long countBySegmentIdAndUserId(Long segmentId, Long userId);
+}
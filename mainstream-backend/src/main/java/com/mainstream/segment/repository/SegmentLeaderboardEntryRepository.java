@@ -0,0 +1,40 @@
+package com.mainstream.segment.repository;
+
+import com.mainstream.segment.entity.SegmentLeaderboardEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SegmentLeaderboardEntryRepository extends JpaRepository<SegmentLeaderboardEntry, Long> {
+
+    Optional<SegmentLeaderboardEntry> findBySegmentIdAndUserId(Long segmentId, Long userId);
+
+    @Query("SELECT e FROM SegmentLeaderboardEntry e JOIN FETCH e.user WHERE e.segment.id = :segmentId AND e.user.id = :userId")
+    Optional<SegmentLeaderboardEntry> findEntryWithUser(@Param("segmentId") Long segmentId, @Param("userId") Long userId);
+
+    /**
+     * Fastest users first; on equal times the earlier effort ranks higher.
+     */
+    @Query("SELECT e FROM SegmentLeaderboardEntry e JOIN FETCH e.user WHERE e.segment.id = :segmentId " +
+           "ORDER BY e.bestElapsedSeconds ASC, e.bestEffortStartTime ASC")
+    List<SegmentLeaderboardEntry> findLeaderboard(@Param("segmentId") Long segmentId, Pageable pageable);
+
+    /**
+     * Number of users ranked ahead of the given time, for the rank of a single entry.
+     */
+    @Query("SELECT COUNT(e) FROM SegmentLeaderboardEntry e WHERE e.segment.id = :segmentId AND " +
+           "(e.bestElapsedSeconds < :elapsedSeconds OR " +
+           "(e.bestElapsedSeconds = :elapsedSeconds AND e.bestEffortStartTime < :startTime))")
+    long countAhead(@Param("segmentId") Long segmentId,
+                    @Param("elapsedSeconds") Integer elapsedSeconds,
+                    @Param("startTime") LocalDateTime startTime);
+
+    long countBySegmentId(Long segmentId);
+}
@@ -0,0 +1,19 @@
+package com.mainstream.segment.repository;
+
+import com.mainstream.segment.entity.Segment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SegmentRepository extends JpaRepository<Segment, Long> {
+
+    List<Segment> findByIsActiveTrueOrderByIdAsc();
+
+    List<Segment> findAllByOrderByIdAsc();
+
+    List<Segment> findByRouteIdOrderByIdAsc(Long routeId);
+
+    boolean existsByName(String name);
+}
@@ -0,0 +1,185 @@
+package com.mainstream.segment.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects segment efforts in an activity track against the {@link SegmentIndex}.
+ *
+ * Every position is looked up once in the shared start gate grid, so the cost of the scan
+ * does not grow with the number of segments. Only when the track passes through a start
+ * gate is that segment walked: from the gate point closest to the start, each following
+ * position has to lie within {@link SegmentIndex#CORRIDOR_METERS} of the segment, a little
+ * behind or ahead of the progress made so far (at most {@value #MAX_OFF_CORRIDOR_POINTS}
+ * positions in a row may stray, for GPS glitches). The effort ends at the position
+ * closest to the end gate once the track has covered the segment up to the gate. A track
+ * can hold several efforts on the same segment (laps); they never overlap.
+ *
+ * Detection time is recorded in the {@value #DETECTION_METRIC} timer.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentEffortDetector {
+
+    static final String DETECTION_METRIC = "mainstream.segments.detection";
+
+    static final int MAX_OFF_CORRIDOR_POINTS = 3;
+    // Furthest the progress may jump between two positions (sampling gaps, GPS dropouts)
+    static final double MAX_STEP_METERS = 100.0;
+
+    private final SegmentIndex segmentIndex;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * An effort found in the track, by sample index.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DetectedEffort {
+        private final long segmentId;
+        private final int startIndex;
+        private final int endIndex;
+        private final double elapsedSeconds;
+        // NaN if the track has no distance stream
+        private final double distanceMeters;
+    }
+
+    /**
+     * @param timeSeconds    sample times in seconds (any origin); efforts without timing are dropped
+     * @param distanceMeters cumulative distance per sample, NaN if unknown
+     * @return efforts in track order
+     */
+    public List<DetectedEffort> detect(double[] latitudes, double[] longitudes, double[] timeSeconds,
+                                       double[] distanceMeters, int size) {
+        long start = System.nanoTime();
+        SegmentIndex.Snapshot index = segmentIndex.current();
+        List<DetectedEffort> efforts = new ArrayList<>();
+        if (index.getSegmentCount() == 0 || size < 2) {
+            return efforts;
+        }
+
+        // Per segment, the first sample a new effort may start at
+        int[] nextStart = new int[index.getSegmentCount()];
+        // Segments whose start gate the current position is in (grown where many gates overlap)
+        int[][] gateHits = {new int[8]};
+        int[] gateHitCount = new int[1];
+
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(latitudes[i]) || Double.isNaN(longitudes[i])) {
+                continue;
+            }
+            gateHitCount[0] = 0;
+            int sample = i;
+            index.forEachStartGate(latitudes[i], longitudes[i], (segment, distance) -> {
+                if (sample < nextStart[segment]) {
+                    return;
+                }
+                if (gateHitCount[0] == gateHits[0].length) {
+                    gateHits[0] = Arrays.copyOf(gateHits[0], gateHits[0].length * 2);
+                }
+                gateHits[0][gateHitCount[0]++] = segment;
+            });
+
+            for (int h = 0; h < gateHitCount[0]; h++) {
+                int segment = gateHits[0][h];
+                SegmentGeometry geometry = index.getSegment(segment);
+                int[] gate = closestInGate(geometry, true, latitudes, longitudes, i, size);
+                DetectedEffort effort = walk(geometry, gate[0], latitudes, longitudes, timeSeconds, distanceMeters, size);
+                if (effort != null) {
+                    efforts.add(effort);
+                    nextStart[segment] = effort.getEndIndex() + 1;
+                } else {
+                    // Not again from the same pass through the gate
+                    nextStart[segment] = gate[1];
+                }
+            }
+        }
+
+        efforts.sort((a, b) -> Integer.compare(a.getStartIndex(), b.getStartIndex()));
+        long elapsedNanos = System.nanoTime() - start;
+        meterRegistry.timer(DETECTION_METRIC).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.debug("Detected {} segment efforts in {} samples against {} segments in {} µs",
+                efforts.size(), size, index.getSegmentCount(), elapsedNanos / 1000);
+        return efforts;
+    }
+
+    /**
+     * Follow the track from the start gate along the segment's corridor.
+     *
+     * @return the effort, or null if the track left the corridor before the end gate
+     */
+    private DetectedEffort walk(SegmentGeometry geometry, int start, double[] latitudes, double[] longitudes,
+                                double[] timeSeconds, double[] distanceMeters, int size) {
+        double corridor = SegmentIndex.CORRIDOR_METERS;
+        // The end gate only counts once the track has followed the segment up to it
+        double finishFrom = geometry.getDistanceMeters() - geometry.getGateRadiusMeters() - corridor;
+        double progress = 0.0;
+        int offCorridor = 0;
+
+        for (int j = start + 1; j < size; j++) {
+            if (Double.isNaN(latitudes[j]) || Double.isNaN(longitudes[j])) {
+                continue;
+            }
+            int point = geometry.nearestWithin(latitudes[j], longitudes[j], corridor,
+                    progress - corridor, progress + MAX_STEP_METERS);
+            if (point < 0) {
+                if (++offCorridor > MAX_OFF_CORRIDOR_POINTS) {
+                    return null;
+                }
+                continue;
+            }
+            offCorridor = 0;
+            progress = Math.max(progress, geometry.getDistancesFromStart()[point]);
+
+            if (progress >= finishFrom
+                    && geometry.distanceToEnd(latitudes[j], longitudes[j]) <= geometry.getGateRadiusMeters()) {
+                int end = closestInGate(geometry, false, latitudes, longitudes, j, size)[0];
+                double elapsed = timeSeconds[end] - timeSeconds[start];
+                if (Double.isNaN(elapsed) || elapsed <= 0) {
+                    return null;
+                }
+                return new DetectedEffort(geometry.getId(), start, end, elapsed,
+                        distanceMeters[end] - distanceMeters[start]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scan the pass through a gate starting at sample from (which lies in the gate).
+     *
+     * @return the sample closest to the gate's center, and the first sample after the pass
+     */
+    private int[] closestInGate(SegmentGeometry geometry, boolean startGate, double[] latitudes,
+                                double[] longitudes, int from, int size) {
+        int closest = from;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        int i = from;
+        for (; i < size; i++) {
+            if (Double.isNaN(latitudes[i]) || Double.isNaN(longitudes[i])) {
+                continue;
+            }
+            double distance = startGate
+                    ? geometry.distanceToStart(latitudes[i], longitudes[i])
+                    : geometry.distanceToEnd(latitudes[i], longitudes[i]);
+            if (distance > geometry.getGateRadiusMeters()) {
+                break;
+            }
+            if (distance < closestDistance) {
+                closest = i;
+                closestDistance = distance;
+            }
+        }
+        return new int[] {closest, i};
+    }
+}
@@ -0,0 +1,178 @@
+package com.mainstream.segment.service;
+
+import com.mainstream.segment.entity.Segment;
+import com.mainstream.segment.entity.SegmentEffort;
+import com.mainstream.segment.entity.SegmentLeaderboardEntry;
+import com.mainstream.segment.repository.SegmentEffortRepository;
+import com.mainstream.segment.repository.SegmentLeaderboardEntryRepository;
+import com.mainstream.segment.repository.SegmentRepository;
+import com.mainstream.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Stores the segment efforts of an activity and keeps the segment leaderboards up to date.
+ *
+ * Leaderboards are maintained incrementally: a new effort only touches the entry of its
+ * own user on its own segment. Only when an activity is ingested again are the entries
+ * its previous efforts belonged to recomputed, from that user's remaining efforts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentEffortService {
+
+    private final SegmentRepository segmentRepository;
+    private final SegmentEffortRepository segmentEffortRepository;
+    private final SegmentLeaderboardEntryRepository leaderboardEntryRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Replace the efforts of a FIT file upload or run (exactly one id set).
+     *
+     * @param activityStartTime absolute time of the sample timeSeconds refers to as 0
+     * @param timeSeconds       sample times relative to activityStartTime
+     */
+    @Transactional
+    public List<SegmentEffort> recordEfforts(Long userId, Long fitFileUploadId, Long runId,
+                                             LocalDateTime activityStartTime, double[] timeSeconds,
+                                             List<SegmentEffortDetector.DetectedEffort> detected) {
+        List<SegmentEffort> previous = fitFileUploadId != null
+                ? segmentEffortRepository.findByFitFileUploadIdOrderByStartIndexAsc(fitFileUploadId)
+                : segmentEffortRepository.findByRunIdOrderByStartIndexAsc(runId);
+        removeEfforts(previous);
+
+        List<SegmentEffort> efforts = detected.stream()
+                .map(effort -> SegmentEffort.builder()
+                        .segment(segmentRepository.getReferenceById(effort.getSegmentId()))
+                        .userId(userId)
+                        .fitFileUploadId(fitFileUploadId)
+                        .runId(runId)
+                        .startTime(activityStartTime.plusNanos(
+                                Math.round(timeSeconds[effort.getStartIndex()] * 1_000_000_000L)))
+                        .elapsedSeconds((int) Math.round(effort.getElapsedSeconds()))
+                        .distanceMeters(Double.isNaN(effort.getDistanceMeters()) ? null : effort.getDistanceMeters())
+                        .startIndex(effort.getStartIndex())
+                        .endIndex(effort.getEndIndex())
+                        .build())
+                .toList();
+        List<SegmentEffort> saved = segmentEffortRepository.saveAll(efforts);
+        saved.forEach(this::applyToLeaderboard);
+
+        if (!saved.isEmpty() || !previous.isEmpty()) {
+            log.info("Recorded {} segment efforts for {} {} (replacing {})", saved.size(),
+                    fitFileUploadId != null ? "FIT file" : "run",
+                    fitFileUploadId != null ? fitFileUploadId : runId, previous.size());
+        }
+        return saved;
+    }
+
+    @Transactional
+    public void deleteForFitFileUpload(Long fitFileUploadId) {
+        removeEfforts(segmentEffortRepository.findByFitFileUploadIdOrderByStartIndexAsc(fitFileUploadId));
+    }
+
+    @Transactional
+    public void deleteForRun(Long runId) {
+        removeEfforts(segmentEffortRepository.findByRunIdOrderByStartIndexAsc(runId));
+    }
+
+    public List<SegmentEffort> getEffortsForFitFile(Long fitFileUploadId) {
+        return segmentEffortRepository.findWithSegmentByFitFileUploadId(fitFileUploadId);
+    }
+
+    public List<SegmentEffort> getEffortsForRun(Long runId) {
+        return segmentEffortRepository.findWithSegmentByRunId(runId);
+    }
+
+    /**
+     * @return the fastest users on the segment, best first
+     */
+    @Transactional(readOnly = true)
+    public List<SegmentLeaderboardEntry> getLeaderboard(Long segmentId, int limit) {
+        return leaderboardEntryRepository.findLeaderboard(segmentId, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    public Optional<SegmentLeaderboardEntry> getLeaderboardEntry(Long segmentId, Long userId) {
+        return leaderboardEntryRepository.findEntryWithUser(segmentId, userId);
+    }
+
+    /**
+     * @return 1-based rank of the entry on its segment's leaderboard
+     */
+    public long getRank(SegmentLeaderboardEntry entry) {
+        return leaderboardEntryRepository.countAhead(entry.getSegment().getId(),
+                entry.getBestElapsedSeconds(), entry.getBestEffortStartTime()) + 1;
+    }
+
+    /**
+     * Delete efforts of one activity and recompute the leaderboard entries they counted on.
+     */
+    private void removeEfforts(List<SegmentEffort> efforts) {
+        if (efforts.isEmpty()) {
+            return;
+        }
+        Long userId = efforts.get(0).getUserId();
+        Set<Long> touchedSegments = new LinkedHashSet<>();
+        efforts.forEach(effort -> touchedSegments.add(effort.getSegment().getId()));
+        segmentEffortRepository.deleteAll(efforts);
+        segmentEffortRepository.flush();
+        touchedSegments.forEach(segmentId -> rebuildEntry(segmentId, userId));
+    }
+
+    /**
+     * Count the effort on its user's leaderboard entry, creating the entry on the first one.
+     */
+    private void applyToLeaderboard(SegmentEffort effort) {
+        Segment segment = effort.getSegment();
+        SegmentLeaderboardEntry entry = leaderboardEntryRepository
+                .findBySegmentIdAndUserId(segment.getId(), effort.getUserId())
+                .orElse(null);
+
+        if (entry == null) {
+            entry = new SegmentLeaderboardEntry();
+            entry.setSegment(segment);
+            entry.setUser(userRepository.getReferenceById(effort.getUserId()));
+            entry.setEffortCount(0);
+        }
+        entry.setEffortCount(entry.getEffortCount() + 1);
+        if (entry.getBestElapsedSeconds() == null || effort.getElapsedSeconds() < entry.getBestElapsedSeconds()) {
+            entry.setBestEffortId(effort.getId());
+            entry.setBestElapsedSeconds(effort.getElapsedSeconds());
+            entry.setBestEffortStartTime(effort.getStartTime());
+        }
+        leaderboardEntryRepository.save(entry);
+    }
+
+    /**
+     * Recompute a user's entry from their remaining efforts, removing it if none are left.
+     */
+    private void rebuildEntry(Long segmentId, Long userId) {
+        SegmentLeaderboardEntry entry = leaderboardEntryRepository.findBySegmentIdAndUserId(segmentId, userId)
+                .orElse(null);
+        if (entry == null) {
+            return;
+        }
+        SegmentEffort best = segmentEffortRepository
+                .findFirstBySegmentIdAndUserIdOrderByElapsedSecondsAscStartTimeAsc(segmentId, userId)
+                .orElse(null);
+        if (best == null) {
+            leaderboardEntryRepository.delete(entry);
+            return;
+        }
+        entry.setBestEffortId(best.getId());
+        entry.setBestElapsedSeconds(best.getElapsedSeconds());
+        entry.setBestEffortStartTime(best.getStartTime());
+        entry.setEffortCount((int) segmentEffortRepository.countBySegmentIdAndUserId(segmentId, userId));
+        leaderboardEntryRepository.save(entry);
+    }
+}
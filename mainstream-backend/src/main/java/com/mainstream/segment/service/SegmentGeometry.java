@@ -0,0 +1,123 @@
+package com.mainstream.segment.service;
+
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PointGridIndex;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Immutable geometry of one active segment, as held by the {@link SegmentIndex}.
+ *
+ * The stored polyline is densified to at most {@value #POINT_SPACING_METERS} m between
+ * points, so a corridor query only has to find the points within the corridor width
+ * instead of measuring the distance to every line piece. Arrays are shared; callers
+ * must not modify them.
+ */
+@Getter
+public final class SegmentGeometry {
+
+    static final double POINT_SPACING_METERS = 5.0;
+
+    private final long id;
+    private final String name;
+    private final double distanceMeters;
+    private final double gateRadiusMeters;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] distancesFromStart;
+    @Getter(AccessLevel.NONE)
+    private final PointGridIndex grid;
+
+    private SegmentGeometry(long id, String name, double gateRadiusMeters, double[] latitudes, double[] longitudes,
+                            double[] distancesFromStart, double cellSizeMeters) {
+        this.id = id;
+        this.name = name;
+        this.gateRadiusMeters = gateRadiusMeters;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.distancesFromStart = distancesFromStart;
+        this.distanceMeters = distancesFromStart[distancesFromStart.length - 1];
+        this.grid = new PointGridIndex(latitudes, longitudes, cellSizeMeters);
+    }
+
+    /**
+     * Densify the polyline and index it for corridor queries of up to cellSizeMeters.
+     *
+     * @param latitudes  at least two points, start gate first
+     */
+    static SegmentGeometry of(long id, String name, double gateRadiusMeters,
+                              double[] latitudes, double[] longitudes, double cellSizeMeters) {
+        int n = latitudes.length;
+        int capacity = n;
+        // pieceLengths[i + 1] is the length of the piece from point i to point i + 1
+        double[] pieceLengths = new double[n];
+        GeoDistance.stepMeters(latitudes, longitudes, GeoDistance.cosLatitudes(latitudes), n, pieceLengths);
+        int[] pieceSteps = new int[Math.max(0, n - 1)];
+        for (int i = 0; i + 1 < n; i++) {
+            pieceSteps[i] = Math.max(1, (int) Math.ceil(pieceLengths[i + 1] / POINT_SPACING_METERS));
+            capacity += pieceSteps[i] - 1;
+        }
+
+        double[] denseLatitudes = new double[capacity];
+        double[] denseLongitudes = new double[capacity];
+        double[] distancesFromStart = new double[capacity];
+        int k = 0;
+        double cumulative = 0.0;
+        for (int i = 0; i + 1 < n; i++) {
+            for (int step = 0; step < pieceSteps[i]; step++) {
+                double t = (double) step / pieceSteps[i];
+                denseLatitudes[k] = latitudes[i] + t * (latitudes[i + 1] - latitudes[i]);
+                denseLongitudes[k] = longitudes[i] + t * (longitudes[i + 1] - longitudes[i]);
+                distancesFromStart[k] = cumulative + t * pieceLengths[i + 1];
+                k++;
+            }
+            cumulative += pieceLengths[i + 1];
+        }
+        denseLatitudes[k] = latitudes[n - 1];
+        denseLongitudes[k] = longitudes[n - 1];
+        distancesFromStart[k] = cumulative;
+
+        return new SegmentGeometry(id, name, gateRadiusMeters, denseLatitudes, denseLongitudes, distancesFromStart,
+                cellSizeMeters);
+    }
+
+    public int getPointCount() {
+        return latitudes.length;
+    }
+
+    public double getStartLatitude() {
+        return latitudes[0];
+    }
+
+    public double getStartLongitude() {
+        return longitudes[0];
+    }
+
+    public double distanceToStart(double latitude, double longitude) {
+        return GeoDistance.meters(latitude, longitude, latitudes[0], longitudes[0]);
+    }
+
+    public double distanceToEnd(double latitude, double longitude) {
+        int last = latitudes.length - 1;
+        return GeoDistance.meters(latitude, longitude, latitudes[last], longitudes[last]);
+    }
+
+    /**
+     * @return the segment point closest to the position among those within
+     * corridorMeters whose distance from the start lies in [fromDistance, toDistance],
+     * or -1 if there is none
+     */
+    int nearestWithin(double latitude, double longitude, double corridorMeters,
+                      double fromDistance, double toDistance) {
+        int[] nearest = {-1};
+        double[] nearestDistance = {Double.POSITIVE_INFINITY};
+        grid.forEachWithin(latitude, longitude, corridorMeters, (point, distance) -> {
+            double along = distancesFromStart[point];
+            if (along >= fromDistance && along <= toDistance && distance < nearestDistance[0]) {
+                nearest[0] = point;
+                nearestDistance[0] = distance;
+            }
+        });
+        return nearest[0];
+    }
+}
@@ -0,0 +1,150 @@
+package com.mainstream.segment.service;
+
+import com.mainstream.geo.PointGridIndex;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.segment.entity.Segment;
+import com.mainstream.segment.event.SegmentChangedEvent;
+import com.mainstream.segment.repository.SegmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-memory index of all active segments for effort detection.
+ *
+ * The start gates of all segments share one grid, so each activity point finds the
+ * segments it may start in with a single cell lookup, however many segments exist. Each
+ * segment keeps its own densified geometry and grid for the corridor check of an effort
+ * once started. Segments are loaded on first use; afterwards only the segment named in a
+ * {@link SegmentChangedEvent} is reloaded after its change committed, into a new
+ * immutable snapshot. Readers keep the snapshot they started with.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentIndex {
+
+    /** Width of the corridor around a segment that an effort has to stay within. */
+    static final double CORRIDOR_METERS = 20.0;
+
+    private final SegmentRepository segmentRepository;
+
+    private volatile Snapshot snapshot;
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = loadAll(0);
+            }
+            return snapshot;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSegmentChanged(SegmentChangedEvent event) {
+        synchronized (this) {
+            if (snapshot == null) {
+                // Nothing loaded yet; the first read loads the current state anyway
+                return;
+            }
+            Optional<SegmentGeometry> reloaded = segmentRepository.findById(event.getSegmentId())
+                    .filter(segment -> Boolean.TRUE.equals(segment.getIsActive()))
+                    .flatMap(this::toGeometry);
+
+            List<SegmentGeometry> segments = new ArrayList<>(snapshot.segments);
+            segments.removeIf(segment -> segment.getId() == event.getSegmentId());
+            reloaded.ifPresent(segments::add);
+            segments.sort(Comparator.comparingLong(SegmentGeometry::getId));
+            snapshot = new Snapshot(snapshot.version + 1, List.copyOf(segments));
+            log.info("Segment index refreshed for {}: {} active segments (version {})",
+                    event, segments.size(), snapshot.version);
+        }
+    }
+
+    private Snapshot loadAll(long version) {
+        long start = System.currentTimeMillis();
+        List<SegmentGeometry> segments = segmentRepository.findByIsActiveTrueOrderByIdAsc().stream()
+                .map(this::toGeometry)
+                .flatMap(Optional::stream)
+                .toList();
+        log.info("Loaded {} active segments into the segment index in {} ms",
+                segments.size(), System.currentTimeMillis() - start);
+        return new Snapshot(version, segments);
+    }
+
+    private Optional<SegmentGeometry> toGeometry(Segment segment) {
+        double[][] points = PolylineEncoder.decode(segment.getEncodedPolyline());
+        if (points.length < 2) {
+            log.warn("Segment {} has fewer than two points and is not indexed", segment.getId());
+            return Optional.empty();
+        }
+        double[] latitudes = new double[points.length];
+        double[] longitudes = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            latitudes[i] = points[i][0];
+            longitudes[i] = points[i][1];
+        }
+        return Optional.of(SegmentGeometry.of(segment.getId(), segment.getName(), segment.getGateRadiusMeters(),
+                latitudes, longitudes, CORRIDOR_METERS));
+    }
+
+    /**
+     * Immutable index over the active segments, numbered 0..n-1 in id order; the
+     * start gate grid holds the start point of segment s as point s.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<SegmentGeometry> segments;
+        private final PointGridIndex startGates;
+        private final double maxGateRadiusMeters;
+
+        private Snapshot(long version, List<SegmentGeometry> segments) {
+            this.version = version;
+            this.segments = segments;
+            double[] latitudes = new double[segments.size()];
+            double[] longitudes = new double[segments.size()];
+            double maxGateRadius = 0.0;
+            for (int s = 0; s < segments.size(); s++) {
+                latitudes[s] = segments.get(s).getStartLatitude();
+                longitudes[s] = segments.get(s).getStartLongitude();
+                maxGateRadius = Math.max(maxGateRadius, segments.get(s).getGateRadiusMeters());
+            }
+            this.maxGateRadiusMeters = maxGateRadius;
+            // Cells as wide as the widest gate, so a gate query scans at most 3x3 cells
+            this.startGates = new PointGridIndex(latitudes, longitudes, Math.max(maxGateRadius, 1.0));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int getSegmentCount() {
+            return segments.size();
+        }
+
+        public SegmentGeometry getSegment(int segment) {
+            return segments.get(segment);
+        }
+
+        /**
+         * Visit the segments whose start gate contains the position.
+         */
+        void forEachStartGate(double latitude, double longitude, PointGridIndex.Visitor visitor) {
+            startGates.forEachWithin(latitude, longitude, maxGateRadiusMeters, (segment, distance) -> {
+                if (distance <= segments.get(segment).getGateRadiusMeters()) {
+                    visitor.visit(segment, distance);
+                }
+            });
+        }
+    }
+}
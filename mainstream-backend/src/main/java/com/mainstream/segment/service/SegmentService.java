@@ -0,0 +1,133 @@
+package com.mainstream.segment.service;
+
+import com.mainstream.activity.entity.PredefinedRoute;
+import com.mainstream.activity.entity.RouteTrackPoint;
+import com.mainstream.activity.repository.PredefinedRouteRepository;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.segment.dto.CreateSegmentRequest;
+import com.mainstream.segment.entity.Segment;
+import com.mainstream.segment.event.SegmentChangedEvent;
+import com.mainstream.segment.repository.SegmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service for managing segments (admin only).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentService {
+
+    static final double DEFAULT_GATE_RADIUS_METERS = 25.0;
+    static final double MIN_GATE_RADIUS_METERS = 5.0;
+    static final double MAX_GATE_RADIUS_METERS = 100.0;
+    static final double MIN_DISTANCE_METERS = 100.0;
+
+    private final SegmentRepository segmentRepository;
+    private final PredefinedRouteRepository predefinedRouteRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Create a segment from a section of a predefined route.
+     *
+     * @throws IllegalArgumentException if the name is taken, the route or point range is
+     * invalid, or the section is too short for its gates
+     */
+    @Transactional
+    public Segment createFromRoute(CreateSegmentRequest request) {
+        String name = request.getName().trim();
+        if (segmentRepository.existsByName(name)) {
+            throw new IllegalArgumentException("Segment with name '" + name + "' already exists");
+        }
+
+        PredefinedRoute route = predefinedRouteRepository.findByIdWithTrackPoints(request.getRouteId())
+                .orElseThrow(() -> new IllegalArgumentException("Route " + request.getRouteId() + " not found"));
+        List<RouteTrackPoint> trackPoints = route.getTrackPoints();
+        int first = request.getStartPointIndex();
+        int last = request.getEndPointIndex();
+        if (first >= last || last >= trackPoints.size()) {
+            throw new IllegalArgumentException("Point range " + first + ".." + last
+                    + " is not a section of route " + route.getId() + " (" + trackPoints.size() + " points)");
+        }
+
+        double gateRadius = request.getGateRadiusMeters() != null
+                ? request.getGateRadiusMeters() : DEFAULT_GATE_RADIUS_METERS;
+        if (gateRadius < MIN_GATE_RADIUS_METERS || gateRadius > MAX_GATE_RADIUS_METERS) {
+            throw new IllegalArgumentException("Gate radius must be between " + MIN_GATE_RADIUS_METERS
+                    + " and " + MAX_GATE_RADIUS_METERS + " meters");
+        }
+
+        int n = last - first + 1;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            RouteTrackPoint trackPoint = trackPoints.get(first + i);
+            latitudes[i] = trackPoint.getLatitude().doubleValue();
+            longitudes[i] = trackPoint.getLongitude().doubleValue();
+        }
+        double distance = GeoDistance.pathMeters(latitudes, longitudes, n);
+        // Both gates must fit on the segment with room to spare, or an effort would end where it starts
+        if (distance < Math.max(MIN_DISTANCE_METERS, 4 * gateRadius)) {
+            throw new IllegalArgumentException(String.format(
+                    "Segment is %.0f m long; it must be at least %.0f m for a %.0f m gate",
+                    distance, Math.max(MIN_DISTANCE_METERS, 4 * gateRadius), gateRadius));
+        }
+
+        Segment segment = new Segment();
+        segment.setName(name);
+        segment.setDescription(request.getDescription() != null && !request.getDescription().trim().isEmpty()
+                ? request.getDescription().trim() : null);
+        segment.setRoute(route);
+        segment.setEncodedPolyline(PolylineEncoder.encode(latitudes, longitudes, null));
+        segment.setPointCount(n);
+        segment.setDistanceMeters(BigDecimal.valueOf(distance).setScale(2, RoundingMode.HALF_UP));
+        segment.setStartLatitude(trackPoints.get(first).getLatitude());
+        segment.setStartLongitude(trackPoints.get(first).getLongitude());
+        segment.setEndLatitude(trackPoints.get(last).getLatitude());
+        segment.setEndLongitude(trackPoints.get(last).getLongitude());
+        segment.setGateRadiusMeters(gateRadius);
+        segment.setIsActive(true);
+
+        Segment saved = segmentRepository.save(segment);
+        eventPublisher.publishEvent(new SegmentChangedEvent(saved.getId(), SegmentChangedEvent.ChangeType.CREATED));
+        log.info("Created segment '{}' ({} m) on route {}", name, Math.round(distance), route.getId());
+        return saved;
+    }
+
+    /**
+     * Activate or deactivate a segment; efforts and leaderboards are kept either way.
+     */
+    @Transactional
+    public Optional<Segment> setActive(Long id, boolean active) {
+        return segmentRepository.findById(id).map(segment -> {
+            segment.setIsActive(active);
+            Segment saved = segmentRepository.save(segment);
+            eventPublisher.publishEvent(new SegmentChangedEvent(id, active
+                    ? SegmentChangedEvent.ChangeType.ACTIVATED : SegmentChangedEvent.ChangeType.DEACTIVATED));
+            return saved;
+        });
+    }
+
+    public List<Segment> getSegments(boolean activeOnly, Long routeId) {
+        if (routeId != null) {
+            return segmentRepository.findByRouteIdOrderByIdAsc(routeId).stream()
+                    .filter(segment -> !activeOnly || Boolean.TRUE.equals(segment.getIsActive()))
+                    .toList();
+        }
+        return activeOnly ? segmentRepository.findByIsActiveTrueOrderByIdAsc() : segmentRepository.findAllByOrderByIdAsc();
+    }
+
+    public Optional<Segment> getSegment(Long id) {
+        return segmentRepository.findById(id);
+    }
+}
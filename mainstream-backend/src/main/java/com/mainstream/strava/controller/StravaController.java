@@ -101,7 +101,8 @@ public class StravaController {
     public ResponseEntity<Map<String, Object>> syncActivities(
             @RequestHeader("X-User-Id") Long userId,
             @RequestParam(value = "since", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Syncing Strava activities for user ID: {}, since: {}", userId, since);
 
@@ -111,7 +112,7 @@ public class StravaController {
                 since = LocalDateTime.now().minusDays(30);
             }
 
-            List<Run> syncedRuns = stravaSyncService.syncActivities(userId, since);
+            List<Run> syncedRuns = stravaSyncService.syncActivities(userId, since, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -154,12 +155,13 @@ public class StravaController {
     @PostMapping("/runs/{runId}/backfill-gps")
     public ResponseEntity<Map<String, Object>> backfillGpsForRun(
             @PathVariable Long runId,
-            @RequestHeader("X-User-Id") Long userId) {
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Backfilling GPS points for run ID: {} and user ID: {}", runId, userId);
 
         try {
-            int gpsPointCount = stravaSyncService.backfillGpsPointsForRun(userId, runId);
+            int gpsPointCount = stravaSyncService.backfillGpsPointsForRun(userId, runId, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -185,12 +187,13 @@ public class StravaController {
      */
     @PostMapping("/backfill-all-gps")
     public ResponseEntity<Map<String, Object>> backfillAllMissingGpsPoints(
-            @RequestHeader("X-User-Id") Long userId) {
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestParam(value = "progressId", required = false) String progressId) {
 
         log.info("Backfilling GPS points for all runs without GPS data for user ID: {}", userId);
 
         try {
-            Map<String, Object> result = stravaSyncService.backfillAllMissingGpsPoints(userId);
+            Map<String, Object> result = stravaSyncService.backfillAllMissingGpsPoints(userId, progressId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -162,7 +162,7 @@ public class StravaApiService {
 
         // Note: NOT using key_by_type=true because it returns an object instead of an array
         String url = UriComponentsBuilder.fromHttpUrl(stravaProperties.getApiUrl() + "/activities/" + activityId + "/streams")
-                .queryParam("keys", "latlng,altitude,time,distance")
+                .queryParam("keys", "latlng,altitude,time,distance,heartrate,cadence")
                 .toUriString();
 
         HttpHeaders headers = new HttpHeaders();
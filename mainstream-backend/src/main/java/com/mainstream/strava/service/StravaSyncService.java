@@ -1,6 +1,12 @@
 package com.mainstream.strava.service;
 
-import com.mainstream.activity.service.UserActivityService;
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.ingest.stage.RouteMatchStage;
+import com.mainstream.progress.dto.ProgressEvent;
+import com.mainstream.progress.service.ProgressJob;
+import com.mainstream.progress.service.ProgressTracker;
 import com.mainstream.run.entity.GpsPoint;
 import com.mainstream.run.entity.Run;
 import com.mainstream.run.repository.GpsPointRepository;
@@ -32,7 +38,9 @@ public class StravaSyncService {
     private final UserRepository userRepository;
     private final RunRepository runRepository;
     private final GpsPointRepository gpsPointRepository;
-    private final UserActivityService userActivityService;
+    private final IngestPipeline ingestPipeline;
+    private final RouteMatchingService routeMatchingService;
+    private final ProgressTracker progressTracker;
 
     /**
      * Connects a user to Strava using the authorization code
@@ -87,7 +95,12 @@ public class StravaSyncService {
      * Synchronizes activities from Strava
      */
     @Transactional
-    public List<Run> syncActivities(Long userId, LocalDateTime since) {
+    public List<Run> syncActivities(Long userId, LocalDateTime since, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.STRAVA_SYNC, progressId,
+                progress -> syncActivities(userId, since, progress));
+    }
+
+    private List<Run> syncActivities(Long userId, LocalDateTime since, ProgressJob progress) {
         log.info("Syncing Strava activities for user ID: {} since: {}", userId, since);
 
         User user = userRepository.findById(userId)
@@ -101,6 +114,7 @@ public class StravaSyncService {
         String accessToken = getValidAccessToken(user);
 
         // Fetch activities from Strava
+        progress.stage(ProgressEvent.Stage.FETCHING, "Fetching activities from Strava");
         List<StravaActivity> activities = stravaApiService.getActivities(
                 accessToken,
                 since,
@@ -108,8 +122,11 @@ public class StravaSyncService {
         );
 
         List<Run> syncedRuns = new ArrayList<>();
+        progress.setTotalActivities(activities.size());
 
         for (StravaActivity activity : activities) {
+            progress.activityProcessed();
+
             // Only sync running activities
             if (!"Run".equalsIgnoreCase(activity.getType())) {
                 log.debug("Skipping non-running activity: {} (type: {})", activity.getName(), activity.getType());
@@ -139,22 +156,16 @@ public class StravaSyncService {
                     log.warn("No streams returned for activity {} - GPS points cannot be created", activity.getId());
                 }
 
-                int gpsPointCount = createGpsPointsFromStreams(savedRun, streams, detailedActivity.getStartDateLocal());
+                // Derived metrics, route matching and trophies all run on the decoded streams
+                int gpsPointCount = createGpsPointsFromStreams(savedRun, user, streams,
+                        detailedActivity.getStartDateLocal(), null);
+                progress.addPersistedRows(1L + gpsPointCount);
 
                 if (gpsPointCount > 0) {
                     log.info("✓ Synced activity: {} (Strava ID: {}) with {} kcal and {} GPS points",
                             activity.getName(), activity.getId(),
                             detailedActivity.getCalories() != null ? detailedActivity.getCalories().intValue() : 0,
                             gpsPointCount);
-
-                    // Process activity for route matching and trophy checking
-                    try {
-                        log.info("Processing activity for route matching and trophy checking for run {}", savedRun.getId());
-                        userActivityService.processAndCreateActivityFromRun(user, savedRun);
-                    } catch (Exception ex) {
-                        log.error("Error processing activity for route matching and trophies for run {}: {}",
-                                savedRun.getId(), ex.getMessage(), ex);
-                    }
                 } else {
                     log.warn("✗ Synced activity: {} (Strava ID: {}) with {} kcal but NO GPS points",
                             activity.getName(), activity.getId(),
@@ -177,7 +188,12 @@ public class StravaSyncService {
      * Retroactively fetches and saves GPS points for an existing Strava run that doesn't have GPS data
      */
     @Transactional
-    public int backfillGpsPointsForRun(Long userId, Long runId) {
+    public int backfillGpsPointsForRun(Long userId, Long runId, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.STRAVA_BACKFILL, progressId,
+                progress -> backfillGpsPointsForRun(userId, runId, progress));
+    }
+
+    private int backfillGpsPointsForRun(Long userId, Long runId, ProgressJob progress) {
         log.info("Backfilling GPS points for run ID: {} and user ID: {}", runId, userId);
 
         // Find the run
@@ -213,7 +229,9 @@ public class StravaSyncService {
         // Fetch and save GPS points from activity streams
         try {
             List<StravaStream> streams = stravaApiService.getActivityStreams(accessToken, run.getStravaActivityId());
-            int gpsPointCount = createGpsPointsFromStreams(run, streams, activity.getStartDateLocal());
+            int gpsPointCount = createGpsPointsFromStreams(run, user, streams, activity.getStartDateLocal(),
+                    IngestPipeline.DERIVED_METRICS);
+            progress.addPersistedRows(gpsPointCount);
             log.info("Backfilled {} GPS points for run {}", gpsPointCount, runId);
             return gpsPointCount;
         } catch (Exception e) {
@@ -226,7 +244,12 @@ public class StravaSyncService {
      * Backfills GPS points for all Strava runs that don't have GPS data
      */
     @Transactional
-    public Map<String, Object> backfillAllMissingGpsPoints(Long userId) {
+    public Map<String, Object> backfillAllMissingGpsPoints(Long userId, String progressId) {
+        return progressTracker.track(userId, ProgressEvent.JobType.STRAVA_BACKFILL, progressId,
+                progress -> backfillAllMissingGpsPoints(userId, progress));
+    }
+
+    private Map<String, Object> backfillAllMissingGpsPoints(Long userId, ProgressJob progress) {
         log.info("Backfilling GPS points for all runs without GPS data for user ID: {}", userId);
 
         User user = userRepository.findById(userId)
@@ -246,8 +269,11 @@ public class StravaSyncService {
         int failedCount = 0;
         List<String> errors = new ArrayList<>();
 
+        progress.setTotalActivities(stravaRuns.size());
+
         for (Run run : stravaRuns) {
             processedCount++;
+            progress.activityProcessed();
 
             // Check if run already has GPS points
             long existingGpsPointCount = gpsPointRepository.countByRunId(run.getId());
@@ -259,7 +285,7 @@ public class StravaSyncService {
 
             // Try to backfill GPS points
             try {
-                int gpsPointCount = backfillGpsPointsForRun(userId, run.getId());
+                int gpsPointCount = backfillGpsPointsForRun(userId, run.getId(), progress);
                 if (gpsPointCount > 0) {
                     successCount++;
                     log.info("Successfully backfilled {} GPS points for run {}", gpsPointCount, run.getId());
@@ -359,9 +385,11 @@ public class StravaSyncService {
     }
 
     /**
-     * Creates GPS points from Strava activity streams
+     * Creates GPS points from Strava activity streams and runs the ingest pipeline
+     * (the given stages, or all if null) over the full-resolution streams.
      */
-    private int createGpsPointsFromStreams(Run run, List<StravaStream> streams, java.time.ZonedDateTime activityStartTime) {
+    private int createGpsPointsFromStreams(Run run, User user, List<StravaStream> streams,
+                                           java.time.ZonedDateTime activityStartTime, java.util.Set<String> stages) {
         if (streams == null || streams.isEmpty()) {
             log.warn("No streams available for run {} (activity {})",
                     run.getId(), run.getStravaActivityId());
@@ -409,6 +437,8 @@ public class StravaSyncService {
         List<Double> altitudeData = altitudeStream != null ? altitudeStream.getNumericData() : null;
         List<Integer> timeData = timeStream != null ? timeStream.getTimeData() : null;
         List<Double> distanceData = distanceStream != null ? distanceStream.getNumericData() : null;
+        List<Double> heartRateData = findNumericStream(streams, "heartrate");
+        List<Double> cadenceData = findNumericStream(streams, "cadence");
 
         // Convert activity start time to LocalDateTime
         LocalDateTime startTime = activityStartTime != null ?
@@ -463,6 +493,47 @@ public class StravaSyncService {
             log.info("Saved {} GPS points for run {}", gpsPoints.size(), run.getId());
         }
 
+        // The model uses the full-resolution streams, not the truncated GPS point list above.
+        // A failed write fails the sync of this run, as it leaves the transaction rollback-only
+        ActivityModel.Builder model = ActivityModel.forRun(run, gpsPoints).user(user)
+                .recordActivity(true);
+        if (ingestPipeline.includes(stages, RouteMatchStage.NAME)) {
+            // Match while the samples are added, instead of re-scanning the track later
+            model.routeMatcher(routeMatchingService.startOnlineMatch());
+        }
+        for (int i = 0; i < latlngData.size(); i++) {
+            List<Double> coords = latlngData.get(i);
+            boolean hasCoords = coords != null && coords.size() >= 2 && coords.get(0) != null && coords.get(1) != null;
+            model.addSample(
+                    valueAt(timeData, i),
+                    valueAt(distanceData, i),
+                    hasCoords ? coords.get(0) : Double.NaN,
+                    hasCoords ? coords.get(1) : Double.NaN,
+                    valueAt(altitudeData, i),
+                    (int) Math.round(orZero(valueAt(heartRateData, i))),
+                    (int) Math.round(orZero(valueAt(cadenceData, i))));
+        }
+        ingestPipeline.execute(model.build(), stages);
+
         return gpsPoints.size();
     }
+
+    private List<Double> findNumericStream(List<StravaStream> streams, String type) {
+        return streams.stream()
+                .filter(s -> type.equals(s.getType()))
+                .findFirst()
+                .map(StravaStream::getNumericData)
+                .orElse(null);
+    }
+
+    private double valueAt(List<? extends Number> data, int index) {
+        if (data == null || index >= data.size() || data.get(index) == null) {
+            return Double.NaN;
+        }
+        return data.get(index).doubleValue();
+    }
+
+    private double orZero(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
 }
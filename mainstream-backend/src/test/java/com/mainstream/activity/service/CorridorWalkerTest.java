@@ -0,0 +1,251 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.UserActivity;
+import com.mainstream.geo.BoundingBox;
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PointGridIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for matching a user track against one route by walking its corridor
+ */
+class CorridorWalkerTest {
+
+    private static final double CENTER_LATITUDE = 48.137;
+    private static final double CENTER_LONGITUDE = 11.575;
+    // About 400 m around, one point every 5 m
+    private static final double LOOP_RADIUS_METERS = 64.0;
+    private static final int LOOP_POINTS = 80;
+
+    @Test
+    @DisplayName("Should complete a loop walked in point order as clockwise")
+    void shouldCompleteLoopClockwise() {
+        // Given
+        RouteGeometry route = loop();
+        CorridorWalker walker = walker(route);
+
+        // When - once around with 8 m between samples, 3 m off the route
+        int samples = walkLoop(walker, 0.0, 1.0);
+
+        // Then
+        assertThat(walker.getMatchCount()).isEqualTo(samples);
+        assertThat(walker.getMaxConsecutive()).isEqualTo(samples);
+        assertThat(walker.getCompletionPercentage()).isCloseTo(100.0, within(0.5));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should complete a loop walked against point order as counter-clockwise")
+    void shouldCompleteLoopCounterClockwise() {
+        // Given
+        RouteGeometry route = loop();
+        CorridorWalker walker = walker(route);
+
+        // When
+        walkLoop(walker, 1.0, 0.0);
+
+        // Then
+        assertThat(walker.getCompletionPercentage()).isCloseTo(100.0, within(0.5));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.COUNTER_CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should keep walking across the start/finish seam of a loop")
+    void shouldWalkAcrossLoopSeam() {
+        // Given
+        RouteGeometry route = loop();
+        CorridorWalker walker = walker(route);
+
+        // When - from three quarters around, over the start, to one quarter around
+        int samples = walkLoop(walker, 0.75, 1.25);
+
+        // Then - half the loop, without a jump at the seam
+        assertThat(walker.getMaxConsecutive()).isEqualTo(samples);
+        assertThat(walker.getCompletionPercentage()).isCloseTo(50.0, within(0.5));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should keep walking across the seam of a loop walked in reverse")
+    void shouldWalkAcrossLoopSeamInReverse() {
+        // Given
+        RouteGeometry route = loop();
+        CorridorWalker walker = walker(route);
+
+        // When - from one quarter around, back over the start, to three quarters around
+        walkLoop(walker, 1.25, 0.75);
+
+        // Then
+        assertThat(walker.getCompletionPercentage()).isCloseTo(50.0, within(0.5));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.COUNTER_CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should report partial coverage when the user leaves the route")
+    void shouldReportPartialCoverage() {
+        // Given - a straight 1 km route due east
+        RouteGeometry route = line(1000.0);
+        CorridorWalker walker = walker(route);
+
+        // When - the first 400 m along the route, then 200 m north, away from it
+        int index = 0;
+        for (double meters = 0.0; meters <= 400.0; meters += 8.0) {
+            walker.accept(index++, offset(3.0, meters)[0], offset(3.0, meters)[1]);
+        }
+        int onRoute = index;
+        for (double meters = 10.0; meters <= 200.0; meters += 10.0) {
+            walker.accept(index++, offset(3.0 + meters, 400.0)[0], offset(3.0 + meters, 400.0)[1]);
+        }
+
+        // Then
+        assertThat(walker.getMatchCount()).isEqualTo(onRoute);
+        assertThat(walker.getMaxConsecutive()).isEqualTo(onRoute);
+        assertThat(walker.getCoveredMeters()).isCloseTo(400.0, within(10.0));
+        assertThat(walker.getCompletionPercentage()).isCloseTo(40.0, within(1.0));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should not count the stretch skipped on a parallel street")
+    void shouldNotCountStretchSkippedOnParallelStreet() {
+        // Given - a straight 2 km route due east
+        RouteGeometry route = line(2000.0);
+        CorridorWalker walker = walker(route);
+
+        // When - 500 m on the route, 1 km on a street 50 m north of it, the last 500 m on the route
+        int index = 0;
+        for (double meters = 0.0; meters <= 500.0; meters += 8.0) {
+            walker.accept(index++, offset(3.0, meters)[0], offset(3.0, meters)[1]);
+        }
+        for (double meters = 504.0; meters < 1500.0; meters += 8.0) {
+            walker.accept(index++, offset(50.0, meters)[0], offset(50.0, meters)[1]);
+        }
+        for (double meters = 1500.0; meters <= 2000.0; meters += 8.0) {
+            walker.accept(index++, offset(3.0, meters)[0], offset(3.0, meters)[1]);
+        }
+
+        // Then - only the two stretches actually run
+        assertThat(walker.getCoveredMeters()).isCloseTo(1000.0, within(20.0));
+        assertThat(walker.getCompletionPercentage()).isCloseTo(50.0, within(1.0));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should not count a stretch walked back and forth twice")
+    void shouldNotCountStretchTwice() {
+        // Given
+        RouteGeometry route = line(1000.0);
+        CorridorWalker walker = walker(route);
+
+        // When - out to 200 m, back to 100 m and out to 200 m again
+        int index = 0;
+        for (double meters = 0.0; meters <= 200.0; meters += 8.0) {
+            walker.accept(index++, offset(2.0, meters)[0], offset(2.0, meters)[1]);
+        }
+        for (double meters = 192.0; meters >= 100.0; meters -= 8.0) {
+            walker.accept(index++, offset(2.0, meters)[0], offset(2.0, meters)[1]);
+        }
+        for (double meters = 108.0; meters <= 200.0; meters += 8.0) {
+            walker.accept(index++, offset(2.0, meters)[0], offset(2.0, meters)[1]);
+        }
+
+        // Then - 300 m forward against 100 m back is still one direction
+        assertThat(walker.getCoveredMeters()).isCloseTo(200.0, within(10.0));
+        assertThat(walker.getCompletionPercentage()).isCloseTo(20.0, within(1.0));
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.CLOCKWISE);
+    }
+
+    @Test
+    @DisplayName("Should leave the direction unknown below three matched points")
+    void shouldLeaveDirectionUnknownWithFewMatches() {
+        // Given
+        RouteGeometry route = line(1000.0);
+        CorridorWalker walker = walker(route);
+
+        // When
+        walker.accept(0, offset(0.0, 0.0)[0], offset(0.0, 0.0)[1]);
+        walker.accept(1, offset(0.0, 8.0)[0], offset(0.0, 8.0)[1]);
+
+        // Then
+        assertThat(walker.getMatchCount()).isEqualTo(2);
+        assertThat(walker.getDirection()).isEqualTo(UserActivity.RunDirection.UNKNOWN);
+    }
+
+    /**
+     * Walk the loop from one fraction of a turn to another, 3 m outside the route.
+     *
+     * @return number of positions fed
+     */
+    private static int walkLoop(CorridorWalker walker, double fromTurn, double toTurn) {
+        double circumference = 2 * Math.PI * LOOP_RADIUS_METERS;
+        int samples = (int) Math.round(Math.abs(toTurn - fromTurn) * circumference / 8.0);
+        for (int i = 0; i <= samples; i++) {
+            double turn = fromTurn + (toTurn - fromTurn) * i / samples;
+            double[] position = onCircle(LOOP_RADIUS_METERS + 3.0, turn);
+            walker.accept(i, position[0], position[1]);
+        }
+        return samples + 1;
+    }
+
+    private static CorridorWalker walker(RouteGeometry route) {
+        PointGridIndex grid = new PointGridIndex(route.getLatitudes(), route.getLongitudes(),
+            RouteSpatialIndex.CELL_SIZE_METERS);
+        return new CorridorWalker(route, grid, RouteMatchingService.MATCHING_TOLERANCE_METERS);
+    }
+
+    /**
+     * A circle starting due north of the center; increasing point order runs clockwise.
+     * The last point repeats the first.
+     */
+    private static RouteGeometry loop() {
+        double[] latitudes = new double[LOOP_POINTS + 1];
+        double[] longitudes = new double[LOOP_POINTS + 1];
+        for (int i = 0; i <= LOOP_POINTS; i++) {
+            double[] position = onCircle(LOOP_RADIUS_METERS, (double) (i % LOOP_POINTS) / LOOP_POINTS);
+            latitudes[i] = position[0];
+            longitudes[i] = position[1];
+        }
+        return route(latitudes, longitudes);
+    }
+
+    /**
+     * A straight route due east from the center, one point every 5 m.
+     */
+    private static RouteGeometry line(double lengthMeters) {
+        int points = (int) (lengthMeters / 5.0) + 1;
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        for (int i = 0; i < points; i++) {
+            double[] position = offset(0.0, i * 5.0);
+            latitudes[i] = position[0];
+            longitudes[i] = position[1];
+        }
+        return route(latitudes, longitudes);
+    }
+
+    private static RouteGeometry route(double[] latitudes, double[] longitudes) {
+        double[] distancesFromStart = new double[latitudes.length];
+        for (int i = 1; i < latitudes.length; i++) {
+            distancesFromStart[i] = distancesFromStart[i - 1]
+                + GeoDistance.meters(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+        return new RouteGeometry(1L, "Test route", distancesFromStart[latitudes.length - 1], latitudes, longitudes,
+            distancesFromStart, BoundingBox.of(latitudes, longitudes, latitudes.length));
+    }
+
+    private static double[] onCircle(double radiusMeters, double turn) {
+        double angle = 2 * Math.PI * turn;
+        return offset(radiusMeters * Math.cos(angle), radiusMeters * Math.sin(angle));
+    }
+
+    private static double[] offset(double northMeters, double eastMeters) {
+        double latitude = CENTER_LATITUDE + northMeters / GeoDistance.METERS_PER_DEGREE;
+        double longitude = CENTER_LONGITUDE
+            + eastMeters / (GeoDistance.METERS_PER_DEGREE * Math.cos(Math.toRadians(CENTER_LATITUDE)));
+        return new double[] {latitude, longitude};
+    }
+}
@@ -0,0 +1,283 @@
+package com.mainstream.activity.service;
+
+import com.mainstream.activity.entity.UserActivityStats;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the decoded per-user activity counters
+ */
+class UserActivityAggregateTest {
+
+    // A Wednesday
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 21);
+
+    @Test
+    @DisplayName("Should leave the same counters after removing an added activity")
+    void shouldRemoveWhatWasAdded() {
+        // Given
+        UserActivityAggregate.Contribution first = contribution(TODAY.minusDays(1).atTime(7, 0), 5000, 1800, cell(0, 0));
+        UserActivityAggregate.Contribution second = contribution(TODAY.atTime(18, 30), 10000, 3600, cell(0, 0), cell(0, 1));
+        UserActivityAggregate expected = new UserActivityAggregate();
+        expected.add(first);
+
+        // When
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.add(first);
+        aggregate.add(second);
+        aggregate.remove(second);
+
+        // Then
+        assertThat(aggregate.getActivityCount()).isEqualTo(1);
+        assertThat(aggregate.getTotalDistanceMeters()).isEqualByComparingTo(new BigDecimal("5000"));
+        assertThat(aggregate.getTotalDurationSeconds()).isEqualTo(1800L);
+        assertThat(aggregate.countAreas(1000)).isEqualTo(1);
+        assertThat(aggregate.countInTimeWindow(18, 19, null)).isEqualTo(0L);
+        assertThat(encode(aggregate)).isEqualTo(encode(expected));
+    }
+
+    @Test
+    @DisplayName("Should keep a day, hour and area visited by another activity when removing one")
+    void shouldKeepSharedCountersOnRemove() {
+        // Given - two activities in the same hour and area
+        UserActivityAggregate.Contribution morning = contribution(TODAY.atTime(7, 5), 5000, 1800, cell(3, 3));
+        UserActivityAggregate.Contribution other = contribution(TODAY.atTime(7, 40), 3000, 1200, cell(3, 3));
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.add(morning);
+        aggregate.add(other);
+
+        // When
+        aggregate.remove(morning);
+
+        // Then
+        assertThat(aggregate.currentStreakDays(TODAY)).isEqualTo(1);
+        assertThat(aggregate.countInTimeWindow(7, 8, null)).isEqualTo(1L);
+        assertThat(aggregate.countAreas(1000)).isEqualTo(1);
+
+        // When - the last one goes as well
+        aggregate.remove(other);
+
+        // Then
+        assertThat(aggregate.getActivityCount()).isEqualTo(0);
+        assertThat(aggregate.getTotalDistanceMeters()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(aggregate.currentStreakDays(TODAY)).isEqualTo(0);
+        assertThat(aggregate.countInTimeWindow(0, 24, null)).isEqualTo(0L);
+        assertThat(aggregate.countAreas(1000)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should count the current streak up to yesterday when today is still missing")
+    void shouldCountStreakWithoutToday() {
+        // Given - the three days before today, and one more after a rest day
+        UserActivityAggregate aggregate = aggregateOnDays(1, 2, 3, 5);
+
+        // When / Then
+        assertThat(aggregate.currentStreakDays(TODAY)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should count today into the streak and end it at a missed yesterday")
+    void shouldEndStreakAtMissedDay() {
+        // When / Then
+        assertThat(aggregateOnDays(0, 1, 2).currentStreakDays(TODAY)).isEqualTo(3);
+        assertThat(aggregateOnDays(0, 2, 3).currentStreakDays(TODAY)).isEqualTo(1);
+        assertThat(aggregateOnDays(2, 3).currentStreakDays(TODAY)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should count consecutive weeks where the current week may still fall short")
+    void shouldCountConsecutiveWeeks() {
+        // Given - one activity this week, two in each of the three weeks before, one in the week before those
+        UserActivityAggregate aggregate = aggregateOnDays(1, 3, 6, 10, 12, 20, 23, 27);
+
+        // When / Then
+        assertThat(aggregate.consecutiveWeeks(TODAY, 2, 52)).isEqualTo(3);
+        assertThat(aggregate.consecutiveWeeks(TODAY, 1, 52)).isEqualTo(5);
+        assertThat(aggregate.consecutiveWeeks(TODAY, 2, 2)).isEqualTo(1);
+
+        // When - the current week reaches the minimum
+        aggregate.add(contribution(TODAY.atTime(12, 0), 1000, 600));
+
+        // Then
+        assertThat(aggregate.consecutiveWeeks(TODAY, 2, 52)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should count activities by start hour and weekday")
+    void shouldCountInTimeWindow() {
+        // Given - Monday 6:30 and 7:10, Tuesday 22:00, Saturday 6:00
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.add(contribution(LocalDateTime.of(2026, 10, 19, 6, 30), 5000, 1800));
+        aggregate.add(contribution(LocalDateTime.of(2026, 10, 19, 7, 10), 5000, 1800));
+        aggregate.add(contribution(LocalDateTime.of(2026, 10, 20, 22, 0), 5000, 1800));
+        aggregate.add(contribution(LocalDateTime.of(2026, 10, 24, 6, 0), 5000, 1800));
+
+        // When / Then
+        assertThat(aggregate.countInTimeWindow(5, 8, null)).isEqualTo(3L);
+        assertThat(aggregate.countInTimeWindow(5, 8, List.of())).isEqualTo(3L);
+        assertThat(aggregate.countInTimeWindow(5, 8, List.of(6, 7))).isEqualTo(1L);
+        assertThat(aggregate.countInTimeWindow(7, 7, null)).isEqualTo(0L);
+        assertThat(aggregate.countInTimeWindow(22, 30, null)).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should coarsen area cells to larger grid sizes")
+    void shouldCoarsenAreaCells() {
+        // Given - a 4 x 4 block of base cells, aligned to the 2 km and 4 km grids
+        long[] block = new long[16];
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 4; column++) {
+                block[row * 4 + column] = cell(4800 + row, 1000 + column);
+            }
+        }
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.add(contribution(TODAY.atTime(9, 0), 20000, 7200, block));
+
+        // When / Then
+        assertThat(aggregate.countAreas(1000)).isEqualTo(16);
+        assertThat(aggregate.countAreas(2000)).isEqualTo(4);
+        assertThat(aggregate.countAreas(4000)).isEqualTo(1);
+        assertThat(aggregate.countAreas(3000)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should coarsen area cells across the prime meridian")
+    void shouldCoarsenAreaCellsAcrossPrimeMeridian() {
+        // Given - two base cells west of the meridian and two east of it
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        aggregate.add(contribution(TODAY.atTime(9, 0), 4000, 1200,
+            cell(5000, -2), cell(5000, -1), cell(5000, 0), cell(5000, 1)));
+
+        // When / Then
+        assertThat(aggregate.countAreas(1000)).isEqualTo(4);
+        assertThat(aggregate.countAreas(2000)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should only answer grid sizes that are a multiple of the area cell")
+    void shouldRejectUnsupportedGridSize() {
+        // Given
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+
+        // When / Then
+        assertThat(UserActivityAggregate.supportsGridSize(2000)).isTrue();
+        assertThat(UserActivityAggregate.supportsGridSize(1500)).isFalse();
+        assertThat(UserActivityAggregate.supportsGridSize(0)).isFalse();
+        assertThatThrownBy(() -> aggregate.countAreas(500)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should keep the best completion per route")
+    void shouldKeepBestRouteCompletion() {
+        // Given
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+
+        // When
+        aggregate.mergeRouteCompletions(Map.of(1L, new BigDecimal("95.50"), 2L, new BigDecimal("40.00")));
+        aggregate.mergeRouteCompletions(Map.of(1L, new BigDecimal("60.00"), 3L, new BigDecimal("100.00")));
+
+        // Then
+        assertThat(aggregate.hasCompletedRoute(1L, 95)).isTrue();
+        assertThat(aggregate.hasCompletedRoute(2L, 50)).isFalse();
+        assertThat(aggregate.hasCompletedRoute(4L, 0)).isFalse();
+        assertThat(aggregate.countCompletedRoutes(90)).isEqualTo(2);
+
+        // When - reloaded after an activity was removed
+        aggregate.replaceRouteCompletions(Map.of(2L, new BigDecimal("40.00")));
+
+        // Then
+        assertThat(aggregate.countCompletedRoutes(90)).isEqualTo(0);
+        assertThat(aggregate.hasCompletedRoute(2L, 40)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should round-trip all counters through the stats row")
+    void shouldRoundTripThroughStatsRow() {
+        // Given
+        UserActivityAggregate aggregate = aggregateOnDays(0, 1, 8);
+        aggregate.add(contribution(TODAY.atTime(6, 15), 12345, 4000, cell(10, -3), cell(10, -2)));
+        aggregate.mergeRouteCompletions(Map.of(7L, new BigDecimal("87.25")));
+        UserActivityStats stats = new UserActivityStats();
+        aggregate.encodeInto(stats);
+
+        // When
+        UserActivityAggregate decoded = UserActivityAggregate.decode(stats);
+
+        // Then
+        assertThat(decoded.getActivityCount()).isEqualTo(4);
+        assertThat(decoded.getTotalDistanceMeters()).isEqualByComparingTo(aggregate.getTotalDistanceMeters());
+        assertThat(decoded.getTotalDurationSeconds()).isEqualTo(aggregate.getTotalDurationSeconds());
+        assertThat(decoded.currentStreakDays(TODAY)).isEqualTo(2);
+        assertThat(decoded.countInTimeWindow(6, 7, null)).isEqualTo(1L);
+        assertThat(decoded.countAreas(1000)).isEqualTo(2);
+        assertThat(decoded.hasCompletedRoute(7L, 87)).isTrue();
+        assertThat(decoded.hasCompletedRoute(7L, 88)).isFalse();
+        assertThat(encode(decoded)).isEqualTo(encode(aggregate));
+    }
+
+    @Test
+    @DisplayName("Should decode a freshly created empty stats row")
+    void shouldDecodeEmptyStatsRow() {
+        // Given - as created by INSERT IGNORE before the first rebuild
+        UserActivityStats stats = new UserActivityStats();
+        stats.setActivityCount(0);
+        stats.setTotalDistanceMeters(BigDecimal.ZERO);
+        stats.setTotalDurationSeconds(0L);
+        stats.setDayCounts(new byte[0]);
+        stats.setWeekdayHourCounts(new byte[0]);
+        stats.setRouteCompletions(new byte[0]);
+        stats.setAreaCells(new byte[0]);
+
+        // When
+        UserActivityAggregate aggregate = UserActivityAggregate.decode(stats);
+
+        // Then
+        assertThat(aggregate.getActivityCount()).isEqualTo(0);
+        assertThat(aggregate.currentStreakDays(TODAY)).isEqualTo(0);
+        assertThat(aggregate.countInTimeWindow(0, 24, null)).isEqualTo(0L);
+        assertThat(aggregate.countAreas(1000)).isEqualTo(0);
+    }
+
+    private static UserActivityAggregate aggregateOnDays(int... daysAgo) {
+        UserActivityAggregate aggregate = new UserActivityAggregate();
+        for (int days : daysAgo) {
+            aggregate.add(contribution(TODAY.minusDays(days).atTime(12, 0), 5000, 1800));
+        }
+        return aggregate;
+    }
+
+    private static UserActivityAggregate.Contribution contribution(LocalDateTime start, int meters, int seconds,
+                                                                   long... areaCells) {
+        return new UserActivityAggregate.Contribution(start, BigDecimal.valueOf(meters), seconds, areaCells);
+    }
+
+    /**
+     * Key of the base area cell in the given row and column, taken from a position at its center.
+     */
+    private static long cell(int row, int column) {
+        double degrees = UserActivityAggregate.AREA_CELL_METERS / 111000.0;
+        return UserActivityAggregate.areaCell((row + 0.5) * degrees, (column + 0.5) * degrees);
+    }
+
+    /**
+     * The encoded counters, for comparing two aggregates.
+     */
+    private static List<String> encode(UserActivityAggregate aggregate) {
+        UserActivityStats stats = new UserActivityStats();
+        aggregate.encodeInto(stats);
+        return List.of(String.valueOf(stats.getActivityCount()), stats.getTotalDistanceMeters().toPlainString(),
+            String.valueOf(stats.getTotalDurationSeconds()), Arrays.toString(stats.getDayCounts()),
+            Arrays.toString(stats.getWeekdayHourCounts()), Arrays.toString(stats.getRouteCompletions()),
+            Arrays.toString(stats.getAreaCells()));
+    }
+}
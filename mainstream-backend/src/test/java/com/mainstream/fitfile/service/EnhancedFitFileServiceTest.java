@@ -1,13 +1,23 @@
 package com.mainstream.fitfile.service;
 
+import com.mainstream.activity.service.RouteMatchingService;
 import com.mainstream.fitfile.entity.*;
 import com.mainstream.fitfile.repository.*;
 import com.mainstream.fitfile.service.impl.EnhancedFitFileServiceImpl;
+import com.mainstream.ingest.pipeline.IngestPipeline;
+import com.mainstream.progress.service.ProgressEventHub;
+import com.mainstream.progress.service.ProgressTracker;
+import com.mainstream.run.service.ActivityHrvService;
+import com.mainstream.run.service.ActivityMetricsService;
+import com.mainstream.run.service.ChartSeriesService;
+import com.mainstream.run.service.SplitService;
+import com.mainstream.user.repository.UserRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
@@ -49,6 +59,30 @@ class EnhancedFitFileServiceTest {
     @Mock
     private FitHrvRepository fitHrvRepository;
 
+    @Mock
+    private SplitService splitService;
+
+    @Mock
+    private ActivityMetricsService activityMetricsService;
+
+    @Mock
+    private ChartSeriesService chartSeriesService;
+
+    @Mock
+    private ActivityHrvService activityHrvService;
+
+    @Mock
+    private IngestPipeline ingestPipeline;
+
+    @Mock
+    private RouteMatchingService routeMatchingService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private ProgressTracker progressTracker = new ProgressTracker(new ProgressEventHub());
+
     @InjectMocks
     private EnhancedFitFileServiceImpl enhancedFitFileService;
 
@@ -0,0 +1,112 @@
+package com.mainstream.geo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for MinHash signatures and the Jaccard similarity they estimate
+ */
+class MinHashTest {
+
+    @Test
+    @DisplayName("Should keep signatures stable, as they are stored")
+    void shouldKeepSignaturesStable() {
+        // When
+        int[] signature = MinHash.signature(new long[] {42L, 4711L}, 4);
+
+        // Then - changing the hash functions invalidates every stored fingerprint
+        assertThat(signature).containsExactly(30740060, 14801916, 244824230, 352674904);
+    }
+
+    @Test
+    @DisplayName("Should ignore element order and duplicates")
+    void shouldIgnoreOrderAndDuplicates() {
+        // When
+        int[] signature = MinHash.signature(new long[] {1L, 2L, 3L}, 64);
+        int[] shuffled = MinHash.signature(new long[] {3L, 1L, 2L, 3L, 1L}, 64);
+
+        // Then
+        assertThat(shuffled).isEqualTo(signature);
+        assertThat(MinHash.estimate(signature, 0, shuffled, 0, 64)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should estimate the Jaccard similarity of overlapping sets")
+    void shouldEstimateJaccardSimilarity() {
+        // Given - 1000 elements each, 500 shared: Jaccard 1/3
+        long[] a = range(0, 1000);
+        long[] b = range(500, 1500);
+
+        // When
+        double estimate = MinHash.estimate(MinHash.signature(a, MinHash.MAX_SIZE), 0,
+            MinHash.signature(b, MinHash.MAX_SIZE), 0, MinHash.MAX_SIZE);
+
+        // Then - standard error about 0.03 with 256 functions
+        assertThat(MinHash.jaccard(a, b)).isCloseTo(1.0 / 3, within(1e-12));
+        assertThat(estimate).isCloseTo(1.0 / 3, within(0.1));
+    }
+
+    @Test
+    @DisplayName("Should estimate a low similarity for disjoint sets")
+    void shouldEstimateLowSimilarityForDisjointSets() {
+        // Given
+        long[] a = range(0, 200);
+        long[] b = range(10_000, 10_200);
+
+        // When
+        double estimate = MinHash.estimate(MinHash.signature(a, 128), 0, MinHash.signature(b, 128), 0, 128);
+
+        // Then
+        assertThat(MinHash.jaccard(a, b)).isEqualTo(0.0);
+        assertThat(estimate).isLessThan(0.05);
+    }
+
+    @Test
+    @DisplayName("Should compare signatures stored at offsets of a shared array")
+    void shouldCompareSignaturesAtOffsets() {
+        // Given - two signatures of 16 packed behind a third
+        int[] first = MinHash.signature(range(0, 100), 16);
+        int[] second = MinHash.signature(range(50, 150), 16);
+        int[] packed = new int[48];
+        System.arraycopy(MinHash.signature(range(1000, 1100), 16), 0, packed, 0, 16);
+        System.arraycopy(first, 0, packed, 16, 16);
+        System.arraycopy(second, 0, packed, 32, 16);
+
+        // When / Then
+        assertThat(MinHash.estimate(packed, 16, second, 0, 16))
+            .isEqualTo(MinHash.estimate(first, 0, second, 0, 16));
+        assertThat(MinHash.estimate(packed, 32, packed, 32, 16)).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should compute the exact Jaccard similarity of sorted sets")
+    void shouldComputeExactJaccard() {
+        // When / Then
+        assertThat(MinHash.jaccard(new long[] {1L, 2L, 3L}, new long[] {2L, 3L, 4L})).isEqualTo(0.5);
+        assertThat(MinHash.jaccard(new long[] {1L, 2L}, new long[] {1L, 2L})).isEqualTo(1.0);
+        assertThat(MinHash.jaccard(new long[] {1L}, new long[0])).isEqualTo(0.0);
+        assertThat(MinHash.jaccard(new long[0], new long[0])).isEqualTo(0.0);
+    }
+
+    @Test
+    @DisplayName("Should reject signature sizes outside 1 to MAX_SIZE")
+    void shouldRejectInvalidSizes() {
+        // When / Then
+        assertThatThrownBy(() -> MinHash.signature(new long[] {1L}, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MinHash.signature(new long[] {1L}, MinHash.MAX_SIZE + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long[] range(long from, long to) {
+        long[] elements = new long[(int) (to - from)];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = from + i;
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,219 @@
+package com.mainstream.geo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for spike rejection, stationary collapsing and resampling of recorded tracks
+ */
+class TrackPreprocessorTest {
+
+    private static final double LATITUDE = 48.137;
+    private static final double LONGITUDE = 11.575;
+    private static final double MAX_SPEED = 15.0;
+
+    @Test
+    @DisplayName("Should drop a position implying an impossible speed")
+    void shouldDropSpike() {
+        // Given - 5 m/s due east, one position 500 m north
+        double[] east = new double[21];
+        double[] north = new double[21];
+        for (int i = 0; i < east.length; i++) {
+            east[i] = i * 5.0;
+        }
+        north[8] = 500.0;
+
+        // When
+        TrackPreprocessor.Points points = process(north, east, seconds(21), MAX_SPEED, 0.0, 0.0);
+
+        // Then
+        assertThat(points.getInputCount()).isEqualTo(21);
+        assertThat(points.getSpikeCount()).isEqualTo(1);
+        assertThat(points.size()).isEqualTo(20);
+        for (int i = 0; i < points.size(); i++) {
+            assertThat(northOf(points, i)).isCloseTo(0.0, within(0.01));
+        }
+    }
+
+    @Test
+    @DisplayName("Should accept a genuine jump after the maximum number of spikes, without interpolating it")
+    void shouldAcceptGenuineJump() {
+        // Given - 50 m, then the recording continues 2 km further east
+        double[] east = new double[31];
+        for (int i = 0; i < east.length; i++) {
+            east[i] = i <= 10 ? i * 5.0 : 2000.0 + (i - 11) * 5.0;
+        }
+
+        // When
+        TrackPreprocessor.Points points = process(new double[31], east, seconds(31), MAX_SPEED, 0.0, 10.0);
+
+        // Then - the first positions after the jump are rejected, then the jump is taken
+        assertThat(points.getSpikeCount()).isEqualTo(TrackPreprocessor.MAX_CONSECUTIVE_SPIKES);
+        assertThat(points.getGapCount()).isEqualTo(1);
+        assertThat(eastOf(points, points.size() - 1)).isCloseTo(2095.0, within(0.01));
+        for (int i = 0; i < points.size(); i++) {
+            double meters = eastOf(points, i);
+            assertThat(meters <= 50.01 || meters >= 2024.99).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Should never reject positions without a time")
+    void shouldNotRejectWithoutTime() {
+        // Given
+        double[] east = {0.0, 5.0, 10.0, 2000.0, 2005.0};
+
+        // When
+        TrackPreprocessor.Points points = process(new double[5], east, null, MAX_SPEED, 0.0, 0.0);
+
+        // Then
+        assertThat(points.getSpikeCount()).isEqualTo(0);
+        assertThat(points.size()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should collapse positions around a stop into one")
+    void shouldCollapseStationaryPositions() {
+        // Given - 20 m east, 30 s of jitter within 2 m, then 20 m further
+        double[] north = new double[40];
+        double[] east = new double[40];
+        for (int i = 0; i < 40; i++) {
+            if (i <= 4) {
+                east[i] = i * 5.0;
+            } else if (i < 35) {
+                east[i] = 20.0 + ((i % 3) - 1) * 1.5;
+                north[i] = ((i % 2) * 2 - 1) * 1.0;
+            } else {
+                east[i] = 20.0 + (i - 34) * 5.0;
+            }
+        }
+
+        // When
+        TrackPreprocessor.Points points = process(north, east, seconds(40), MAX_SPEED, 3.0, 0.0);
+
+        // Then
+        assertThat(points.getStationaryCount()).isEqualTo(30);
+        assertThat(points.size()).isEqualTo(10);
+        assertThat(eastOf(points, 4)).isCloseTo(20.0, within(0.01));
+        assertThat(eastOf(points, 5)).isCloseTo(25.0, within(0.01));
+    }
+
+    @Test
+    @DisplayName("Should resample irregular positions to a uniform spacing")
+    void shouldResampleUniformly() {
+        // Given
+        double[] east = {0.0, 3.0, 17.0, 40.0, 41.0, 77.0, 100.0, 104.0};
+
+        // When
+        TrackPreprocessor.Points points = process(new double[east.length], east, seconds(east.length),
+            MAX_SPEED * 3, 0.0, 10.0);
+
+        // Then - every 10 m, and the last position
+        assertThat(points.size()).isEqualTo(12);
+        for (int i = 0; i <= 10; i++) {
+            assertThat(eastOf(points, i)).isCloseTo(i * 10.0, within(0.01));
+        }
+        assertThat(eastOf(points, 11)).isCloseTo(104.0, within(0.01));
+        assertThat(points.getGapCount()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Should not interpolate across a long step")
+    void shouldNotInterpolateAcrossLongStep() {
+        // Given - a 200 m step at a plausible speed
+        double[] east = {0.0, 10.0, 20.0, 25.0, 225.0, 235.0};
+        double[] times = {0.0, 2.0, 4.0, 5.0, 45.0, 47.0};
+
+        // When
+        TrackPreprocessor.Points points = process(new double[east.length], east, times, MAX_SPEED, 0.0, 10.0);
+
+        // Then - both ends of the step as recorded, sampling restarts after it
+        assertThat(points.getGapCount()).isEqualTo(1);
+        assertThat(points.size()).isEqualTo(6);
+        double[] expected = {0.0, 10.0, 20.0, 25.0, 225.0, 235.0};
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(eastOf(points, i)).isCloseTo(expected[i], within(0.01));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not interpolate across a long pause in the recording")
+    void shouldNotInterpolateAcrossLongPause() {
+        // Given - 40 m covered in a minute without positions
+        double[] east = {0.0, 10.0, 20.0, 60.0, 70.0};
+        double[] times = {0.0, 2.0, 4.0, 64.0, 66.0};
+
+        // When
+        TrackPreprocessor.Points points = process(new double[east.length], east, times, MAX_SPEED, 0.0, 10.0);
+
+        // Then
+        assertThat(points.getGapCount()).isEqualTo(1);
+        assertThat(points.size()).isEqualTo(5);
+        assertThat(eastOf(points, 3)).isCloseTo(60.0, within(0.01));
+    }
+
+    @Test
+    @DisplayName("Should ignore positions with a missing coordinate")
+    void shouldIgnoreMissingCoordinates() {
+        // Given
+        double[] latitudes = {LATITUDE, Double.NaN, LATITUDE};
+        double[] longitudes = {LONGITUDE, LONGITUDE, Double.NaN};
+
+        // When
+        TrackPreprocessor.Points points = TrackPreprocessor.process(latitudes, longitudes, null, 3,
+            MAX_SPEED, 0.0, 0.0);
+
+        // Then
+        assertThat(points.getInputCount()).isEqualTo(1);
+        assertThat(points.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reject positions fed after finishing")
+    void shouldRejectPositionsAfterFinish() {
+        // Given
+        TrackPreprocessor preprocessor = new TrackPreprocessor(MAX_SPEED, 0.0, 0.0, (latitude, longitude) -> { });
+        preprocessor.accept(LATITUDE, LONGITUDE, 0.0);
+        preprocessor.finish();
+
+        // When / Then
+        assertThatThrownBy(() -> preprocessor.accept(LATITUDE, LONGITUDE, 1.0))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static TrackPreprocessor.Points process(double[] north, double[] east, double[] times,
+                                                    double maxSpeed, double stationaryRadius, double resample) {
+        double[] latitudes = new double[east.length];
+        double[] longitudes = new double[east.length];
+        for (int i = 0; i < east.length; i++) {
+            latitudes[i] = LATITUDE + north[i] / GeoDistance.METERS_PER_DEGREE;
+            longitudes[i] = LONGITUDE + east[i] / metersPerDegreeLongitude();
+        }
+        return TrackPreprocessor.process(latitudes, longitudes, times, east.length, maxSpeed, stationaryRadius,
+            resample);
+    }
+
+    private static double[] seconds(int count) {
+        double[] times = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = i;
+        }
+        return times;
+    }
+
+    private static double northOf(TrackPreprocessor.Points points, int index) {
+        return (points.getLatitudes()[index] - LATITUDE) * GeoDistance.METERS_PER_DEGREE;
+    }
+
+    private static double eastOf(TrackPreprocessor.Points points, int index) {
+        return (points.getLongitudes()[index] - LONGITUDE) * metersPerDegreeLongitude();
+    }
+
+    private static double metersPerDegreeLongitude() {
+        return GeoDistance.METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+    }
+}
@@ -0,0 +1,155 @@
+package com.mainstream.ingest.pipeline;
+
+import com.mainstream.activity.service.RouteMatchingService;
+import com.mainstream.activity.service.UserActivityService;
+import com.mainstream.fitfile.entity.FitFileUpload;
+import com.mainstream.ingest.model.ActivityModel;
+import com.mainstream.ingest.stage.RouteMatchStage;
+import com.mainstream.ingest.stage.SummaryStage;
+import com.mainstream.ingest.stage.TrophyStage;
+import com.mainstream.progress.service.ProgressTracker;
+import com.mainstream.user.entity.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for running ingest stages along their dependencies
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestPipelineTest {
+
+    private static final Duration MATCH_TIMEOUT = Duration.ofMillis(50);
+
+    @Mock
+    private UserActivityService userActivityService;
+
+    @Mock
+    private ProgressTracker progressTracker;
+
+    @Test
+    @DisplayName("Should still record the activity without a route when route matching times out")
+    void shouldRecordActivityWhenRouteMatchTimesOut() {
+        // Given - route matching takes far longer than its timeout
+        IngestPipeline pipeline = pipeline(
+            new FakeStage(RouteMatchStage.NAME, MATCH_TIMEOUT, () -> {
+                Thread.sleep(10_000);
+                return null;
+            }),
+            new FakeStage(SummaryStage.NAME, MATCH_TIMEOUT, () -> Boolean.TRUE));
+        User user = new User();
+        FitFileUpload upload = new FitFileUpload();
+
+        // When
+        StageResults results = pipeline.execute(model(user, upload));
+
+        // Then
+        assertThat(status(results, RouteMatchStage.NAME)).isEqualTo(StageResults.Status.TIMED_OUT);
+        assertThat(status(results, TrophyStage.NAME)).isEqualTo(StageResults.Status.SUCCEEDED);
+        verify(userActivityService).recordActivity(user, upload, null);
+    }
+
+    @Test
+    @DisplayName("Should record the activity with the route match when it succeeds")
+    void shouldRecordActivityWithRouteMatch() {
+        // Given
+        RouteMatchingService.RouteMatchResult match = new RouteMatchingService.RouteMatchResult();
+        IngestPipeline pipeline = pipeline(
+            new FakeStage(RouteMatchStage.NAME, MATCH_TIMEOUT, () -> match),
+            new FakeStage(SummaryStage.NAME, MATCH_TIMEOUT, () -> Boolean.TRUE));
+        User user = new User();
+        FitFileUpload upload = new FitFileUpload();
+
+        // When
+        pipeline.execute(model(user, upload));
+
+        // Then
+        verify(userActivityService).recordActivity(user, upload, match);
+    }
+
+    @Test
+    @DisplayName("Should skip the trophies when the summary they depend on fails")
+    void shouldSkipTrophiesWhenSummaryFails() {
+        // Given
+        IngestPipeline pipeline = pipeline(
+            new FakeStage(RouteMatchStage.NAME, MATCH_TIMEOUT, () -> null),
+            new FakeStage(SummaryStage.NAME, MATCH_TIMEOUT, () -> {
+                throw new IllegalStateException("Broken summary");
+            }));
+        User user = new User();
+        FitFileUpload upload = new FitFileUpload();
+
+        // When
+        StageResults results = pipeline.execute(model(user, upload));
+
+        // Then
+        assertThat(status(results, SummaryStage.NAME)).isEqualTo(StageResults.Status.FAILED);
+        assertThat(status(results, TrophyStage.NAME)).isEqualTo(StageResults.Status.SKIPPED);
+        verify(userActivityService, never()).recordActivity(user, upload, null);
+    }
+
+    private IngestPipeline pipeline(FakeStage routeMatch, FakeStage summary) {
+        return new IngestPipeline(List.of(routeMatch, summary, new TrophyStage(userActivityService)),
+            progressTracker, 2, 8, 1000);
+    }
+
+    private static ActivityModel model(User user, FitFileUpload upload) {
+        return ActivityModel.forFitFile(upload, List.of()).user(user).recordActivity(true).build();
+    }
+
+    private static StageResults.Status status(StageResults results, String stageName) {
+        return results.getOutcome(stageName).orElseThrow().getStatus();
+    }
+
+    /**
+     * Stands in for a real stage under its name, computing with the given callable and
+     * persisting nothing.
+     */
+    private static final class FakeStage implements IngestStage<Object> {
+        private final String name;
+        private final Duration timeout;
+        private final Callable<Object> computation;
+
+        private FakeStage(String name, Duration timeout, Callable<Object> computation) {
+            this.name = name;
+            this.timeout = timeout;
+            this.computation = computation;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        public Object compute(ActivityModel model, StageResults results) {
+            try {
+                return computation.call();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void persist(ActivityModel model, Object result, StageResults results) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.mainstream.run.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for the streaming R-R interval analyzer
+ */
+class HrvAnalyzerTest {
+
+    @Test
+    @DisplayName("Should compute mean, SDNN, RMSSD and pNN50 of clean intervals")
+    void shouldComputeStatisticsOfCleanIntervals() {
+        // Given
+        HrvAnalyzer analyzer = feed(800, 860, 800, 840);
+
+        // Then - successive differences 60, 60 and 40 ms
+        assertThat(analyzer.getValidCount()).isEqualTo(4);
+        assertThat(analyzer.getArtefactCount()).isEqualTo(0);
+        assertThat(analyzer.getMeanRr()).isCloseTo(825.0, within(1e-9));
+        assertThat(analyzer.getSdnn()).isCloseTo(Math.sqrt((625.0 + 1225.0 + 625.0 + 225.0) / 3), within(1e-9));
+        assertThat(analyzer.getRmssd()).isCloseTo(Math.sqrt((3600.0 + 3600.0 + 1600.0) / 3), within(1e-9));
+        assertThat(analyzer.getPnn50()).isCloseTo(200.0 / 3, within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Should reject out-of-range intervals and never difference across them")
+    void shouldRejectOutOfRangeIntervals() {
+        // Given
+        HrvAnalyzer analyzer = feed(800, 250, 810, 2500, 820);
+
+        // Then
+        assertThat(analyzer.getArtefactIndices()).containsExactly(1, 3);
+        assertThat(analyzer.getValidCount()).isEqualTo(3);
+        assertThat(analyzer.getRmssd()).isNaN();
+        assertThat(analyzer.getPnn50()).isNaN();
+    }
+
+    @Test
+    @DisplayName("Should reject missed and extra beats deviating more than 20 percent")
+    void shouldRejectEctopicBeats() {
+        // Given - a short beat followed by a compensatory long one
+        HrvAnalyzer analyzer = feed(800, 800, 400, 1200, 800, 810);
+
+        // Then - only 800/800 and 800/810 are adjacent accepted pairs
+        assertThat(analyzer.getArtefactIndices()).containsExactly(2, 3);
+        assertThat(analyzer.isArtefact(4)).isFalse();
+        assertThat(analyzer.getRmssd()).isCloseTo(Math.sqrt((0.0 + 100.0) / 2), within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Should re-anchor after five in-range rejections in a row")
+    void shouldReanchorAfterRhythmChange() {
+        // Given - the heart rate jumps from 60 to 100 bpm and stays there
+        HrvAnalyzer analyzer = feed(1000, 1000, 600, 600, 600, 600, 600, 600, 605);
+
+        // Then - the first five beats at the new rhythm are rejected, then it is accepted
+        assertThat(analyzer.getArtefactIndices()).containsExactly(2, 3, 4, 5, 6);
+        assertThat(analyzer.getValidCount()).isEqualTo(4);
+        // 1000/1000 and 600/605; the first accepted 600 has no accepted predecessor
+        assertThat(analyzer.getRmssd()).isCloseTo(Math.sqrt((0.0 + 25.0) / 2), within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Should not re-anchor on out-of-range rejections")
+    void shouldNotReanchorOnOutOfRangeRejections() {
+        // Given - dropouts do not count as a changed rhythm
+        HrvAnalyzer analyzer = feed(800, 0, 0, 0, 0, 0, 0, 500);
+
+        // Then
+        assertThat(analyzer.getArtefactIndices()).containsExactly(1, 2, 3, 4, 5, 6, 7);
+        assertThat(analyzer.getValidCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should round-trip intervals, artefacts and statistics through pack and unpack")
+    void shouldRoundTripPackedIntervals() {
+        // Given - including a value above the unsigned short range, which is clamped
+        HrvAnalyzer analyzer = feed(800, 250, 810, 70000, 820, 1200, 830, 845);
+
+        // When
+        HrvAnalyzer unpacked = HrvAnalyzer.unpack(analyzer.pack());
+
+        // Then
+        assertThat(unpacked.getIntervals()).containsExactly(800, 250, 810, 65535, 820, 1200, 830, 845);
+        assertThat(unpacked.getArtefactIndices()).isEqualTo(analyzer.getArtefactIndices());
+        assertThat(unpacked.getValidCount()).isEqualTo(analyzer.getValidCount());
+        assertThat(unpacked.getMeanRr()).isEqualTo(analyzer.getMeanRr());
+        assertThat(unpacked.getSdnn()).isEqualTo(analyzer.getSdnn());
+        assertThat(unpacked.getRmssd()).isEqualTo(analyzer.getRmssd());
+    }
+
+    @Test
+    @DisplayName("Should grow the interval stream beyond its initial capacity")
+    void shouldGrowIntervalStream() {
+        // Given
+        HrvAnalyzer analyzer = new HrvAnalyzer();
+        for (int i = 0; i < 1000; i++) {
+            analyzer.accept(i % 2 == 0 ? 790 : 810);
+        }
+
+        // When
+        HrvAnalyzer unpacked = HrvAnalyzer.unpack(analyzer.pack());
+
+        // Then
+        assertThat(unpacked.getIntervalCount()).isEqualTo(1000);
+        assertThat(unpacked.getRmssd()).isCloseTo(20.0, within(1e-9));
+    }
+
+    private static HrvAnalyzer feed(int... intervals) {
+        HrvAnalyzer analyzer = new HrvAnalyzer();
+        for (int rr : intervals) {
+            analyzer.accept(rr);
+        }
+        return analyzer;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mainstream.run.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for Largest-Triangle-Three-Buckets downsampling
+ */
+class LttbDownsamplerTest {
+
+    @Test
+    @DisplayName("Should keep all points when the threshold is not below the size")
+    void shouldKeepAllPointsAtOrAboveSize() {
+        // Given
+        double[] x = {0, 1, 2, 3, 4};
+        double[] y = {5, 3, 8, 1, 4};
+
+        // When / Then
+        assertThat(LttbDownsampler.downsample(x, y, 5)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(LttbDownsampler.downsample(x, y, 100)).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    @DisplayName("Should keep all points when the threshold is below three")
+    void shouldKeepAllPointsBelowThree() {
+        // Given
+        double[] x = {0, 1, 2, 3, 4};
+        double[] y = {5, 3, 8, 1, 4};
+
+        // When / Then
+        assertThat(LttbDownsampler.downsample(x, y, 2)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(LttbDownsampler.downsample(x, y, 0)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(LttbDownsampler.downsample(new double[0], new double[0], 10)).hasSize(0);
+    }
+
+    @Test
+    @DisplayName("Should keep the first and last point and the peak at threshold three")
+    void shouldKeepEndsAndPeakAtThresholdThree() {
+        // Given - a flat series with one spike
+        double[] x = new double[20];
+        double[] y = new double[20];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        y[13] = 50.0;
+
+        // When
+        int[] sampled = LttbDownsampler.downsample(x, y, 3);
+
+        // Then
+        assertThat(sampled).containsExactly(0, 13, 19);
+    }
+
+    @Test
+    @DisplayName("Should return threshold ascending indices one below the size")
+    void shouldReturnAscendingIndicesOneBelowSize() {
+        // Given
+        double[] x = new double[50];
+        double[] y = new double[50];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+            y[i] = Math.sin(i / 3.0);
+        }
+
+        // When
+        int[] sampled = LttbDownsampler.downsample(x, y, 49);
+
+        // Then
+        assertThat(sampled).hasSize(49);
+        assertThat(sampled[0]).isEqualTo(0);
+        assertThat(sampled[48]).isEqualTo(49);
+        for (int i = 1; i < sampled.length; i++) {
+            assertThat(sampled[i]).isGreaterThan(sampled[i - 1]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep peaks that plain decimation would miss")
+    void shouldKeepPeaks() {
+        // Given - 1000 flat samples with spikes at uneven positions
+        double[] x = new double[1000];
+        double[] y = new double[1000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        y[101] = 10.0;
+        y[457] = -10.0;
+        y[833] = 10.0;
+
+        // When
+        int[] sampled = LttbDownsampler.downsample(x, y, 50);
+
+        // Then
+        assertThat(sampled).hasSize(50);
+        assertThat(sampled).contains(0, 101, 457, 833, 999);
+    }
+}
@@ -0,0 +1,151 @@
+package com.mainstream.run.service;
+
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.run.entity.ActivitySplits;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for the streaming split calculator
+ */
+class SplitCalculatorTest {
+
+    @Test
+    @DisplayName("Should close the trailing partial kilometre split")
+    void shouldCloseTrailingPartialSplit() {
+        // Given - 2.5 km at a steady 5 m/s and 150 bpm
+        SplitCalculator calculator = new SplitCalculator();
+        for (int i = 0; i <= 50; i++) {
+            calculator.accept(i * 10.0, i * 50.0, Double.NaN, Double.NaN, Double.NaN, 150, 170);
+        }
+
+        // When
+        List<SplitCalculator.Split> splits = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+
+        // Then
+        assertThat(splits).hasSize(3);
+        assertThat(splits.get(0).getDistanceMeters()).isCloseTo(1000.0, within(1e-6));
+        assertThat(splits.get(0).getDurationSeconds()).isCloseTo(200.0, within(1e-6));
+        assertThat(splits.get(0).getAvgHeartRate()).isEqualTo(150);
+        assertThat(splits.get(0).getAvgCadence()).isEqualTo(170);
+        assertThat(splits.get(2).getSplitNumber()).isEqualTo(3);
+        assertThat(splits.get(2).getDistanceMeters()).isCloseTo(500.0, within(1e-6));
+        assertThat(splits.get(2).getDurationSeconds()).isCloseTo(100.0, within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should accumulate mile splits from the same samples")
+    void shouldAccumulateMileSplits() {
+        // Given
+        SplitCalculator calculator = new SplitCalculator();
+        for (int i = 0; i <= 50; i++) {
+            calculator.accept(i * 10.0, i * 50.0, Double.NaN, Double.NaN, Double.NaN, 0, 0);
+        }
+
+        // When
+        List<SplitCalculator.Split> kilometers = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+        List<SplitCalculator.Split> miles = calculator.finish(ActivitySplits.SplitUnit.MILE);
+
+        // Then
+        assertThat(kilometers).hasSize(3);
+        assertThat(miles).hasSize(2);
+        assertThat(miles.get(0).getDistanceMeters()).isCloseTo(SplitCalculator.MILE_METERS, within(1e-6));
+        assertThat(miles.get(0).getDurationSeconds()).isCloseTo(SplitCalculator.MILE_METERS / 5.0, within(1e-6));
+        assertThat(miles.get(0).getAvgHeartRate()).isNull();
+        assertThat(miles.get(1).getDistanceMeters()).isCloseTo(2500.0 - SplitCalculator.MILE_METERS, within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should drop a trailing partial split under ten meters")
+    void shouldDropTrailingDribble() {
+        // Given - 2 km and then 5 m of walking to stop the watch
+        SplitCalculator calculator = new SplitCalculator();
+        for (int i = 0; i <= 40; i++) {
+            calculator.accept(i * 10.0, i * 50.0, Double.NaN, Double.NaN, Double.NaN, 0, 0);
+        }
+        calculator.accept(430.0, 2005.0, Double.NaN, Double.NaN, Double.NaN, 0, 0);
+
+        // When
+        List<SplitCalculator.Split> splits = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+
+        // Then
+        assertThat(splits).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should interpolate the split boundary between straddling samples")
+    void shouldInterpolateSplitBoundary() {
+        // Given - the 1 km mark lies halfway between the second and third sample
+        SplitCalculator calculator = new SplitCalculator();
+        calculator.accept(0.0, 0.0, Double.NaN, Double.NaN, 100.0, 140, 0);
+        calculator.accept(100.0, 900.0, Double.NaN, Double.NaN, 110.0, 140, 0);
+        calculator.accept(200.0, 1100.0, Double.NaN, Double.NaN, 130.0, 160, 0);
+
+        // When
+        List<SplitCalculator.Split> splits = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+
+        // Then
+        assertThat(splits).hasSize(2);
+        assertThat(splits.get(0).getDurationSeconds()).isCloseTo(150.0, within(1e-6));
+        // 100 s at 140 bpm and 50 s at 160 bpm
+        assertThat(splits.get(0).getAvgHeartRate()).isEqualTo(147);
+        assertThat(splits.get(0).getElevationGainMeters()).isCloseTo(20.0, within(1e-6));
+        assertThat(splits.get(1).getDistanceMeters()).isCloseTo(100.0, within(1e-6));
+        assertThat(splits.get(1).getElevationGainMeters()).isCloseTo(10.0, within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should derive the distance from positions when the distance stream is missing")
+    void shouldDeriveDistanceFromPositions() {
+        // Given - a track due north with about 55.6 m between samples and no distance stream
+        SplitCalculator calculator = new SplitCalculator();
+        double[] latitudes = new double[41];
+        double[] longitudes = new double[41];
+        for (int i = 0; i <= 40; i++) {
+            latitudes[i] = 48.0 + i * 0.0005;
+            longitudes[i] = 11.0;
+            calculator.accept(i * 10.0, Double.NaN, latitudes[i], longitudes[i], Double.NaN, 0, 0);
+        }
+        double trackMeters = GeoDistance.pathMeters(latitudes, longitudes, latitudes.length);
+
+        // When
+        List<SplitCalculator.Split> splits = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+
+        // Then
+        assertThat(splits).hasSize(3);
+        assertThat(splits.get(0).getDistanceMeters()).isCloseTo(1000.0, within(1e-6));
+        assertThat(splits.get(0).getDurationSeconds()).isCloseTo(1000.0 / (trackMeters / 400.0), within(0.5));
+        assertThat(splits.get(2).getDistanceMeters()).isCloseTo(trackMeters - 2000.0, within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should round-trip splits through pack and unpack")
+    void shouldRoundTripPackedSplits() {
+        // Given
+        SplitCalculator calculator = new SplitCalculator();
+        for (int i = 0; i <= 50; i++) {
+            calculator.accept(i * 10.0, i * 50.0, Double.NaN, Double.NaN, 100.0 + (i % 4), 150, 0);
+        }
+        List<SplitCalculator.Split> splits = calculator.finish(ActivitySplits.SplitUnit.KILOMETER);
+
+        // When
+        List<SplitCalculator.Split> unpacked = SplitCalculator.unpack(SplitCalculator.pack(splits));
+
+        // Then
+        assertThat(unpacked).hasSize(splits.size());
+        for (int i = 0; i < splits.size(); i++) {
+            assertThat(unpacked.get(i).getSplitNumber()).isEqualTo(i + 1);
+            assertThat(unpacked.get(i).getDistanceMeters()).isCloseTo(splits.get(i).getDistanceMeters(), within(1e-3));
+            assertThat(unpacked.get(i).getDurationSeconds()).isCloseTo(splits.get(i).getDurationSeconds(), within(1e-3));
+            assertThat(unpacked.get(i).getAvgHeartRate()).isEqualTo(150);
+            assertThat(unpacked.get(i).getAvgCadence()).isNull();
+            assertThat(unpacked.get(i).getElevationGainMeters())
+                .isCloseTo(splits.get(i).getElevationGainMeters(), within(1e-3));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.mainstream.segment.service;
+
+import com.mainstream.geo.GeoDistance;
+import com.mainstream.geo.PolylineEncoder;
+import com.mainstream.segment.entity.Segment;
+import com.mainstream.segment.repository.SegmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for segment effort detection against the segment index
+ */
+@ExtendWith(MockitoExtension.class)
+class SegmentEffortDetectorTest {
+
+    private static final double ORIGIN_LATITUDE = 48.137;
+    private static final double ORIGIN_LONGITUDE = 11.575;
+    private static final long SEGMENT_ID = 7L;
+    // A straight segment 500 m due east of the origin
+    private static final double SEGMENT_METERS = 500.0;
+    private static final double GATE_RADIUS_METERS = 15.0;
+
+    @Mock
+    private SegmentRepository segmentRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should detect an effort from start gate to end gate")
+    void shouldDetectEffort() {
+        // Given - 50 m run-up, the segment, 50 m beyond, at 5 m/s
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -50.0).lineTo(0.0, SEGMENT_METERS + 50.0);
+
+        // When
+        List<SegmentEffortDetector.DetectedEffort> efforts = track.detect(detector);
+
+        // Then
+        assertThat(efforts).hasSize(1);
+        SegmentEffortDetector.DetectedEffort effort = efforts.get(0);
+        assertThat(effort.getSegmentId()).isEqualTo(SEGMENT_ID);
+        assertThat(effort.getStartIndex()).isEqualTo(10);
+        assertThat(effort.getEndIndex()).isEqualTo(110);
+        assertThat(effort.getElapsedSeconds()).isCloseTo(100.0, within(1e-9));
+        assertThat(effort.getDistanceMeters()).isCloseTo(SEGMENT_METERS, within(2.0));
+        assertThat(meterRegistry.get(SegmentEffortDetector.DETECTION_METRIC).timer().count()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should detect every lap of a segment without overlap")
+    void shouldDetectLaps() {
+        // Given - the segment, back to the start 100 m further north, and the segment again
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0)
+            .lineTo(0.0, SEGMENT_METERS + 20.0)
+            .lineTo(100.0, SEGMENT_METERS + 20.0)
+            .lineTo(100.0, -20.0)
+            .lineTo(0.0, -20.0)
+            .lineTo(0.0, SEGMENT_METERS + 20.0);
+
+        // When
+        List<SegmentEffortDetector.DetectedEffort> efforts = track.detect(detector);
+
+        // Then
+        assertThat(efforts).hasSize(2);
+        assertThat(efforts.get(0).getEndIndex()).isLessThan(efforts.get(1).getStartIndex());
+        assertThat(efforts.get(1).getElapsedSeconds()).isCloseTo(100.0, within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Should not detect an effort that leaves the corridor")
+    void shouldNotDetectEffortLeavingCorridor() {
+        // Given - turns off to the north halfway along the segment
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0)
+            .lineTo(0.0, SEGMENT_METERS / 2)
+            .lineTo(200.0, SEGMENT_METERS / 2)
+            .lineTo(200.0, SEGMENT_METERS + 20.0)
+            .lineTo(0.0, SEGMENT_METERS + 20.0);
+
+        // When / Then
+        assertThat(track.detect(detector)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should tolerate up to three positions off the corridor in a row")
+    void shouldTolerateShortGlitch() {
+        // Given - three positions 40 m off the segment halfway along
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0).lineTo(0.0, SEGMENT_METERS + 20.0)
+            .displace(64, 3, 40.0);
+
+        // When / Then
+        assertThat(track.detect(detector)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should give up after four positions off the corridor in a row")
+    void shouldNotTolerateLongGlitch() {
+        // Given
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0).lineTo(0.0, SEGMENT_METERS + 20.0)
+            .displace(64, SegmentEffortDetector.MAX_OFF_CORRIDOR_POINTS + 1, 40.0);
+
+        // When / Then
+        assertThat(track.detect(detector)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should not detect an effort ridden in the wrong direction")
+    void shouldNotDetectReverseEffort() {
+        // Given
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, SEGMENT_METERS + 20.0).lineTo(0.0, -20.0);
+
+        // When / Then
+        assertThat(track.detect(detector)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should report no distance without a distance stream")
+    void shouldReportNoDistanceWithoutDistanceStream() {
+        // Given
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0).lineTo(0.0, SEGMENT_METERS + 20.0);
+        Arrays.fill(track.distances, Double.NaN);
+
+        // When
+        List<SegmentEffortDetector.DetectedEffort> efforts = track.detect(detector);
+
+        // Then
+        assertThat(efforts).hasSize(1);
+        assertThat(efforts.get(0).getDistanceMeters()).isNaN();
+    }
+
+    @Test
+    @DisplayName("Should drop efforts without timing")
+    void shouldDropEffortsWithoutTiming() {
+        // Given
+        SegmentEffortDetector detector = detectorWithSegment();
+        Track track = new Track(0.0, -20.0).lineTo(0.0, SEGMENT_METERS + 20.0);
+        Arrays.fill(track.times, Double.NaN);
+
+        // When / Then
+        assertThat(track.detect(detector)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should find nothing without active segments")
+    void shouldFindNothingWithoutSegments() {
+        // Given
+        when(segmentRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(List.of());
+        SegmentEffortDetector detector = new SegmentEffortDetector(new SegmentIndex(segmentRepository), meterRegistry);
+        Track track = new Track(0.0, -20.0).lineTo(0.0, SEGMENT_METERS + 20.0);
+
+        // When / Then
+        assertThat(track.detect(detector)).isEmpty();
+    }
+
+    private SegmentEffortDetector detectorWithSegment() {
+        double[] start = position(0.0, 0.0);
+        double[] end = position(0.0, SEGMENT_METERS);
+        Segment segment = new Segment();
+        segment.setId(SEGMENT_ID);
+        segment.setName("Test segment");
+        segment.setEncodedPolyline(PolylineEncoder.encode(
+            new double[] {start[0], end[0]}, new double[] {start[1], end[1]}, null));
+        segment.setGateRadiusMeters(GATE_RADIUS_METERS);
+        segment.setIsActive(true);
+        when(segmentRepository.findByIsActiveTrueOrderByIdAsc()).thenReturn(List.of(segment));
+        return new SegmentEffortDetector(new SegmentIndex(segmentRepository), meterRegistry);
+    }
+
+    private static double[] position(double northMeters, double eastMeters) {
+        double latitude = ORIGIN_LATITUDE + northMeters / GeoDistance.METERS_PER_DEGREE;
+        double longitude = ORIGIN_LONGITUDE
+            + eastMeters / (GeoDistance.METERS_PER_DEGREE * Math.cos(Math.toRadians(ORIGIN_LATITUDE)));
+        return new double[] {latitude, longitude};
+    }
+
+    /**
+     * A track sampled every 5 m at one sample per second, with a distance stream.
+     */
+    private static final class Track {
+        private double[] latitudes = new double[0];
+        private double[] longitudes = new double[0];
+        private double[] times = new double[0];
+        private double[] distances = new double[0];
+        private int size;
+        private double north;
+        private double east;
+
+        private Track(double north, double east) {
+            this.north = north;
+            this.east = east;
+            add(0.0);
+        }
+
+        private Track lineTo(double toNorth, double toEast) {
+            double length = Math.hypot(toNorth - north, toEast - east);
+            int steps = (int) Math.round(length / 5.0);
+            double fromNorth = north;
+            double fromEast = east;
+            for (int step = 1; step <= steps; step++) {
+                north = fromNorth + (toNorth - fromNorth) * step / steps;
+                east = fromEast + (toEast - fromEast) * step / steps;
+                add(length / steps);
+            }
+            return this;
+        }
+
+        /**
+         * Move count samples from index first sideways (north), as a GPS glitch would.
+         */
+        private Track displace(int first, int count, double meters) {
+            for (int i = first; i < first + count; i++) {
+                latitudes[i] += meters / GeoDistance.METERS_PER_DEGREE;
+            }
+            return this;
+        }
+
+        private void add(double stepMeters) {
+            if (size == latitudes.length) {
+                int capacity = Math.max(64, size * 2);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                times = Arrays.copyOf(times, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+            }
+            double[] position = position(north, east);
+            latitudes[size] = position[0];
+            longitudes[size] = position[1];
+            times[size] = size;
+            distances[size] = size > 0 ? distances[size - 1] + stepMeters : 0.0;
+            size++;
+        }
+
+        private List<SegmentEffortDetector.DetectedEffort> detect(SegmentEffortDetector detector) {
+            return detector.detect(latitudes, longitudes, times, distances, size);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.mainstream.geo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the {@link GeoDistance} batch methods. Only compiled with the
+ * {@code vector} Maven profile, and only loaded (by {@link GeoDistance}) when the
+ * {@code jdk.incubator.vector} module is present; each method handles the whole vectors
+ * and returns the index the caller's scalar loop continues from.
+ *
+ * Lanes whose points are too far apart for the equirectangular approximation are
+ * recomputed with haversine, exactly as the scalar path would.
+ */
+final class GeoDistanceVector implements GeoDistance.BatchKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    GeoDistanceVector() {
+    }
+
+    @Override
+    public int metersTo(double latitude, double longitude, double cosLatitude,
+                        double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                        int from, int to, double[] out) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dLat = DoubleVector.fromArray(SPECIES, latitudes, i).sub(latitude);
+            DoubleVector dLon = DoubleVector.fromArray(SPECIES, longitudes, i).sub(longitude);
+            DoubleVector cosLat = DoubleVector.fromArray(SPECIES, cosLatitudes, i).add(cosLatitude);
+            DoubleVector x = dLon.mul(cosLat).mul(0.5);
+            dLat.fma(dLat, x.mul(x)).sqrt().mul(GeoDistance.METERS_PER_DEGREE).intoArray(out, i - from);
+
+            VectorMask<Double> far = outsideFastPath(dLat, dLon);
+            if (far.anyTrue()) {
+                for (int lane = far.firstTrue(); lane < SPECIES.length(); lane++) {
+                    if (far.laneIsSet(lane)) {
+                        out[i - from + lane] = GeoDistance.haversine(latitude, longitude,
+                                latitudes[i + lane], longitudes[i + lane]);
+                    }
+                }
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public int stepMeters(double[] latitudes, double[] longitudes, double[] cosLatitudes, int count, double[] out) {
+        // Steps 1 .. count - 1; lane k of a vector at i covers the step from i - 1 + k to i + k
+        int bound = 1 + SPECIES.loopBound(count - 1);
+        int i = 1;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dLat = DoubleVector.fromArray(SPECIES, latitudes, i)
+                    .sub(DoubleVector.fromArray(SPECIES, latitudes, i - 1));
+            DoubleVector dLon = DoubleVector.fromArray(SPECIES, longitudes, i)
+                    .sub(DoubleVector.fromArray(SPECIES, longitudes, i - 1));
+            DoubleVector cosLat = DoubleVector.fromArray(SPECIES, cosLatitudes, i)
+                    .add(DoubleVector.fromArray(SPECIES, cosLatitudes, i - 1));
+            DoubleVector x = dLon.mul(cosLat).mul(0.5);
+            dLat.fma(dLat, x.mul(x)).sqrt().mul(GeoDistance.METERS_PER_DEGREE).intoArray(out, i);
+
+            VectorMask<Double> far = outsideFastPath(dLat, dLon);
+            if (far.anyTrue()) {
+                for (int lane = far.firstTrue(); lane < SPECIES.length(); lane++) {
+                    if (far.laneIsSet(lane)) {
+                        int point = i + lane;
+                        out[point] = GeoDistance.haversine(latitudes[point - 1], longitudes[point - 1],
+                                latitudes[point], longitudes[point]);
+                    }
+                }
+            }
+        }
+        return i;
+    }
+
+    private static VectorMask<Double> outsideFastPath(DoubleVector dLat, DoubleVector dLon) {
+        return dLat.abs().compare(VectorOperators.GT, GeoDistance.FAST_PATH_MAX_DEGREES)
+                .or(dLon.abs().compare(VectorOperators.GT, GeoDistance.FAST_PATH_MAX_DEGREES));
+    }
+}